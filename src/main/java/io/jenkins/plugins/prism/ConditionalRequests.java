@@ -0,0 +1,106 @@
+package io.jenkins.plugins.prism;
+
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+/**
+ * Supports conditional HTTP requests for responses that are identified by a strong entity tag (ETag). Source code
+ * files that are stored for a build do not change anymore, so the entity tag of a response can be derived from the
+ * digest of the content and all other properties that influence the HTML. If the browser sends a matching
+ * {@code If-None-Match} header, then the response is answered with {@code 304 Not Modified} and the source code does
+ * not need to be rendered and transferred again.
+ *
+ * @author Ullrich Hafner
+ */
+final class ConditionalRequests {
+    /** The responses may contain user specific content and must be revalidated before a cached copy is used. */
+    static final String CACHE_CONTROL = "private, no-cache";
+
+    private static final Pattern LIST_SEPARATOR = Pattern.compile("\\s*,\\s*");
+    private static final String WEAK_PREFIX = "W/";
+
+    /**
+     * Creates a strong entity tag from the specified properties of a response.
+     *
+     * @param properties
+     *         all properties that influence the content of the response
+     *
+     * @return the quoted entity tag
+     */
+    static String createEntityTag(final String... properties) {
+        return '"' + RenderedSourceCache.digestOf(properties) + '"';
+    }
+
+    /**
+     * Returns whether the specified {@code If-None-Match} header matches the entity tag. The weak comparison is used,
+     * as required for {@code If-None-Match}.
+     *
+     * @param ifNoneMatch
+     *         the value of the {@code If-None-Match} header, might be {@code null}
+     * @param entityTag
+     *         the entity tag of the current response
+     *
+     * @return {@code true} if the header matches the entity tag, {@code false} otherwise
+     */
+    static boolean matches(@CheckForNull final String ifNoneMatch, final String entityTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : LIST_SEPARATOR.split(ifNoneMatch.trim())) {
+            if ("*".equals(candidate) || stripWeakPrefix(candidate).equals(entityTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeakPrefix(final String entityTag) {
+        return entityTag.startsWith(WEAK_PREFIX) ? entityTag.substring(WEAK_PREFIX.length()) : entityTag;
+    }
+
+    /**
+     * Answers the request with {@code 304 Not Modified} if the browser already has the current version of the
+     * response. Otherwise, the response is not changed: the caller needs to write the content and should set the
+     * caching headers using {@link #setEntityTag(HttpServletResponse, String)}.
+     *
+     * @param request
+     *         the request
+     * @param response
+     *         the response
+     * @param entityTag
+     *         the entity tag of the current response
+     *
+     * @return {@code true} if the request has been answered with {@code 304 Not Modified}, {@code false} if the
+     *         content of the response still needs to be written
+     */
+    static boolean answerIfNotModified(final HttpServletRequest request, final HttpServletResponse response,
+            final String entityTag) {
+        if (matches(request.getHeader("If-None-Match"), entityTag)) {
+            setEntityTag(response, entityTag);
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sets the caching headers of a response: the entity tag and the cache control directives.
+     *
+     * @param response
+     *         the response
+     * @param entityTag
+     *         the entity tag of the response
+     */
+    static void setEntityTag(final HttpServletResponse response, final String entityTag) {
+        response.setHeader("ETag", entityTag);
+        response.setHeader("Cache-Control", CACHE_CONTROL);
+    }
+
+    private ConditionalRequests() {
+        // prevents instantiation
+    }
+}
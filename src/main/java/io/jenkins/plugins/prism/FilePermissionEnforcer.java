@@ -1,10 +1,10 @@
 package io.jenkins.plugins.prism;
 
-import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import edu.hm.hafner.util.PathUtil;
 
@@ -18,6 +18,13 @@ import hudson.FilePath;
  * allowed to be shown in Jenkins user interface here. Note, that such a directory must be an absolute path on the
  * <b>agent</b> that executes the build.
  *
+ * <p>
+ * If several files need to be checked, then a {@link PermittedPathMatcher} should be created once using
+ * {@link #createMatcher(FilePath, Set)}: the matcher normalizes the workspace and the permitted directories only once.
+ * A strict matcher that additionally resolves symbolic links can be created with
+ * {@link #createStrictMatcher(FilePath, Set)}.
+ * </p>
+ *
  * @author Ullrich Hafner
  */
 public class FilePermissionEnforcer {
@@ -52,14 +59,49 @@ public class FilePermissionEnforcer {
      * @return {@code true} if the file is in the workspace, {@code false} otherwise
      */
     public boolean isInWorkspace(final String fileName, final FilePath workspace, final Set<String> permittedDirectories) {
-        String sourceFile = PATH_UTIL.getAbsolutePath(fileName);
-        Set<String> permittedAbsolutePaths = permittedDirectories.stream()
-                .map(PATH_UTIL::getAbsolutePath)
-                .collect(Collectors.toSet());
-        permittedAbsolutePaths.add(workspace.getRemote());
+        return createMatcher(workspace, permittedDirectories).isPermitted(fileName);
+    }
+
+    /**
+     * Creates a matcher that checks whether files are part of Jenkins' workspace or one of the permitted directories.
+     * The matcher can be reused to check any number of files.
+     *
+     * @param workspace
+     *         the workspace on the agent, files within that folder are always permitted
+     * @param permittedDirectories
+     *         an additional set of permitted directories
+     *
+     * @return the matcher
+     */
+    public PermittedPathMatcher createMatcher(final FilePath workspace, final Set<String> permittedDirectories) {
+        return new PermittedPathMatcher(getDirectories(workspace, permittedDirectories));
+    }
+
+    /**
+     * Creates a strict matcher that checks whether files are part of Jenkins' workspace or one of the permitted
+     * directories. In contrast to {@link #createMatcher(FilePath, Set)}, the real paths of the files are checked, so
+     * files that are reachable through a symbolic link within the workspace but actually are stored outside of all
+     * permitted directories are rejected. The real paths of the directories are memoized for the lifetime of the
+     * matcher, so the matcher should be used for a single check session only. Since the real paths are resolved on the
+     * local file system, strict matchers need to be created and used on the agent that contains the workspace.
+     *
+     * @param workspace
+     *         the workspace on the agent, files within that folder are always permitted
+     * @param permittedDirectories
+     *         an additional set of permitted directories
+     *
+     * @return the strict matcher
+     */
+    public PermittedPathMatcher createStrictMatcher(final FilePath workspace, final Set<String> permittedDirectories) {
+        return new PermittedPathMatcher(getDirectories(workspace, permittedDirectories), new RealPathResolver());
+    }
 
-        return permittedAbsolutePaths.stream()
-                .map(Paths::get)
-                .anyMatch(prefix -> Paths.get(sourceFile).startsWith(prefix));
+    private List<String> getDirectories(final FilePath workspace, final Set<String> permittedDirectories) {
+        List<String> directories = new ArrayList<>();
+        for (String directory : permittedDirectories) {
+            directories.add(PATH_UTIL.getAbsolutePath(directory));
+        }
+        directories.add(workspace.getRemote());
+        return directories;
     }
 }
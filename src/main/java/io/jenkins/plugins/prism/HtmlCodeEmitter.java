@@ -0,0 +1,278 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Emits the lines of a source code file as the escaped content of an HTML {@code code} element. Each character is
+ * escaped in a single pass, marked columns are enclosed in a {@code code-mark} span while escaping. The output is
+ * collected in a reusable buffer that is written to the underlying {@link Writer} whenever it exceeds a given size.
+ *
+ * <p>
+ * The escaped text contains no markup, so there is no need to run a sanitizer over the result. The escaping follows
+ * the rules of the OWASP sanitizer that is used in Jenkins: besides the HTML special characters some additional
+ * characters are encoded as numeric entities, characters that are not allowed in HTML documents are removed.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+class HtmlCodeEmitter {
+    private static final String OPENING_TAG = "<span class='code-mark'>";
+    private static final String CLOSING_TAG = "</span>";
+    private static final char NEW_LINE = '\n';
+    private static final char GREEK_VARIA = '\u1FEF'; // canonically equivalent to a back tick
+
+    private final Writer writer;
+    private final int chunkSize;
+    private final StringBuilder buffer;
+
+    /**
+     * Creates a new instance of {@link HtmlCodeEmitter}.
+     *
+     * @param writer
+     *         the writer that receives the escaped HTML
+     * @param chunkSize
+     *         the number of characters that are collected before the buffer will be written
+     */
+    HtmlCodeEmitter(final Writer writer, final int chunkSize) {
+        this.writer = writer;
+        this.chunkSize = chunkSize;
+        buffer = new StringBuilder(chunkSize + chunkSize / 4);
+    }
+
+    /**
+     * Appends the specified HTML snippet without escaping.
+     *
+     * @param html
+     *         the HTML to append
+     *
+     * @throws IOException
+     *         if the buffer could not be written
+     */
+    void appendHtml(final String html) throws IOException {
+        buffer.append(html);
+        flushIfFull();
+    }
+
+    /**
+     * Appends the specified line of source code. The line will be escaped and terminated with a newline.
+     *
+     * @param line
+     *         the line to append
+     *
+     * @throws IOException
+     *         if the buffer could not be written
+     */
+    void appendLine(final CharSequence line) throws IOException {
+        escape(line, 0, line.length());
+        buffer.append(NEW_LINE);
+        flushIfFull();
+    }
+
+    /**
+     * Appends the specified line of source code and marks the specified columns. The line will be escaped and
+     * terminated with a newline. The columns are interpreted like the columns of a {@link Marker}: columns start at 1,
+     * the end column is inclusive, and an end column of 0 marks all characters until the end of the line. The newline
+     * at the end of the line counts as additional column. If the columns are not part of the line, then no columns
+     * will be marked.
+     *
+     * @param line
+     *         the line to append
+     * @param columnStart
+     *         the first column to mark
+     * @param columnEnd
+     *         the last column to mark
+     *
+     * @throws IOException
+     *         if the buffer could not be written
+     */
+    void appendLine(final CharSequence line, final int columnStart, final int columnEnd) throws IOException {
+        int length = line.length() + 1; // including the newline
+        int start = columnStart - 1;
+        int end = columnEnd == 0 ? length : columnEnd;
+        if (columnStart < 1 || columnEnd > length || start >= end) {
+            appendLine(line);
+            return;
+        }
+
+        escape(line, 0, start);
+        buffer.append(OPENING_TAG);
+        if (end == length) {
+            escape(line, start, line.length());
+            buffer.append(NEW_LINE);
+            buffer.append(CLOSING_TAG);
+        }
+        else {
+            escape(line, start, end);
+            buffer.append(CLOSING_TAG);
+            escape(line, end, line.length());
+            buffer.append(NEW_LINE);
+        }
+        flushIfFull();
+    }
+
+    /**
+     * Appends the specified line of source code, marks the specified columns, and encloses the specified syntax tokens
+     * in {@code span} elements. The columns are interpreted like the columns in {@link #appendLine(CharSequence, int,
+     * int)}. If the marked columns start or end within a token, then the token is split, so that the elements are
+     * always properly nested.
+     *
+     * @param line
+     *         the line to append
+     * @param columnStart
+     *         the first column to mark
+     * @param columnEnd
+     *         the last column to mark
+     * @param tokens
+     *         the syntax tokens of the line
+     *
+     * @throws IOException
+     *         if the buffer could not be written
+     */
+    void appendLine(final CharSequence line, final int columnStart, final int columnEnd, final LineTokens tokens)
+            throws IOException {
+        if (tokens.isEmpty()) {
+            appendLine(line, columnStart, columnEnd);
+            return;
+        }
+
+        int length = line.length();
+        int markStart = columnStart - 1;
+        int markEnd = columnEnd == 0 ? length + 1 : columnEnd;
+        if (columnStart < 1 || columnEnd > length + 1 || markStart >= markEnd) {
+            markStart = -1;
+            markEnd = -1;
+        }
+
+        int position = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            appendSegment(line, position, tokens.getStart(i), null, markStart, markEnd);
+            appendSegment(line, tokens.getStart(i), tokens.getEnd(i), tokens.getOpeningTag(i), markStart, markEnd);
+            position = tokens.getEnd(i);
+        }
+        appendSegment(line, position, length, null, markStart, markEnd);
+        if (markStart == length) {
+            buffer.append(OPENING_TAG);
+        }
+        buffer.append(NEW_LINE);
+        if (markEnd == length + 1) {
+            buffer.append(CLOSING_TAG);
+        }
+        flushIfFull();
+    }
+
+    /**
+     * Appends the characters of the specified segment of a line. The segment is split at the start and end of the
+     * marked columns, each part is enclosed in the specified opening tag and a closing tag.
+     */
+    private void appendSegment(final CharSequence line, final int start, final int end, final String openingTag,
+            final int markStart, final int markEnd) {
+        int position = start;
+        while (position < end) {
+            if (position == markStart) {
+                buffer.append(OPENING_TAG);
+            }
+            int next = end;
+            if (markStart > position && markStart < next) {
+                next = markStart;
+            }
+            if (markEnd > position && markEnd < next) {
+                next = markEnd;
+            }
+            if (openingTag == null) {
+                escape(line, position, next);
+            }
+            else {
+                buffer.append(openingTag);
+                escape(line, position, next);
+                buffer.append(CLOSING_TAG);
+            }
+            if (next == markEnd) {
+                buffer.append(CLOSING_TAG);
+            }
+            position = next;
+        }
+    }
+
+    /**
+     * Writes the content of the buffer to the underlying writer.
+     *
+     * @throws IOException
+     *         if the buffer could not be written
+     */
+    void flush() throws IOException {
+        writer.append(buffer);
+        buffer.setLength(0);
+    }
+
+    private void flushIfFull() throws IOException {
+        if (buffer.length() >= chunkSize) {
+            flush();
+        }
+    }
+
+    @SuppressWarnings({"checkstyle:CyclomaticComplexity", "PMD.CyclomaticComplexity"})
+    private void escape(final CharSequence text, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    buffer.append("&amp;");
+                    break;
+                case '<':
+                    buffer.append("&lt;");
+                    break;
+                case '>':
+                    buffer.append("&gt;");
+                    break;
+                case '"':
+                    buffer.append("&#34;");
+                    break;
+                case '\'':
+                    buffer.append("&#39;");
+                    break;
+                case '+':
+                    buffer.append("&#43;");
+                    break;
+                case '=':
+                    buffer.append("&#61;");
+                    break;
+                case '@':
+                    buffer.append("&#64;");
+                    break;
+                case '`':
+                    buffer.append("&#96;");
+                    break;
+                case GREEK_VARIA:
+                    buffer.append("&#8175;");
+                    break;
+                default:
+                    i = appendCharacter(text, i, end);
+                    break;
+            }
+        }
+    }
+
+    private int appendCharacter(final CharSequence text, final int index, final int end) {
+        char c = text.charAt(index);
+        if (Character.isHighSurrogate(c)) {
+            if (index + 1 < end && Character.isLowSurrogate(text.charAt(index + 1))) {
+                buffer.append("&#x")
+                        .append(Integer.toHexString(Character.toCodePoint(c, text.charAt(index + 1))))
+                        .append(';');
+                return index + 1;
+            }
+        }
+        else if (isAllowed(c)) {
+            buffer.append(c);
+        }
+        return index;
+    }
+
+    private boolean isAllowed(final char c) {
+        if (c < ' ') {
+            return c == '\t' || c == '\n' || c == '\r';
+        }
+        return !Character.isLowSurrogate(c) && c != '\uFFFE' && c != '\uFFFF';
+    }
+}
@@ -0,0 +1,118 @@
+package io.jenkins.plugins.prism;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Decorates the lines of a source code file with CSS classes, e.g. to show the coverage state of each line. The state
+ * of each line is stored in a compact byte array: the state of line {@code n} is stored at index {@code n - 1}. A
+ * state of 0 marks an undecorated line, every other state {@code s} refers to the CSS class at position {@code s - 1}
+ * of the specified CSS classes. A decorated line is enclosed in a {@code span} element with the CSS class of its state.
+ * Characters that are not allowed in CSS class names are removed from the classes.
+ *
+ * <p>
+ * Example: the decorations {@code new LineDecorations(new byte[] {1, 1, 0, 2}, "covered", "missed")} mark the lines 1
+ * and 2 as covered and line 4 as missed.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+public final class LineDecorations {
+    /** Decorations that do not decorate any line. */
+    public static final LineDecorations NONE = new LineDecorations(new byte[0]);
+
+    private final byte[] states;
+    private final String[] cssClasses;
+    private final String[] openingTags;
+
+    /**
+     * Creates new {@link LineDecorations}.
+     *
+     * @param states
+     *         the state of each line, the state of line {@code n} is stored at index {@code n - 1}
+     * @param cssClasses
+     *         the CSS classes of the states: state {@code s} is mapped to the CSS class at index {@code s - 1}
+     *
+     * @throws IllegalArgumentException
+     *         if a state does not refer to one of the CSS classes
+     */
+    public LineDecorations(final byte[] states, final String... cssClasses) {
+        this.states = Arrays.copyOf(states, states.length);
+        this.cssClasses = Arrays.copyOf(cssClasses, cssClasses.length);
+
+        for (byte state : states) {
+            if (Byte.toUnsignedInt(state) > cssClasses.length) {
+                throw new IllegalArgumentException(String.format(
+                        "State %d does not refer to one of the %d CSS classes", Byte.toUnsignedInt(state),
+                        cssClasses.length));
+            }
+        }
+        openingTags = new String[cssClasses.length + 1];
+        openingTags[0] = "";
+        for (int i = 0; i < cssClasses.length; i++) {
+            openingTags[i + 1] = "<span class=\"" + cssClasses[i].replaceAll("[^\\w -]", "") + "\">";
+        }
+    }
+
+    /**
+     * Returns whether no line is decorated.
+     *
+     * @return {@code true} if there are no decorated lines, {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        for (byte state : states) {
+            if (state != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the CSS class of the specified line.
+     *
+     * @param line
+     *         the line (lines start at 1)
+     *
+     * @return the CSS class, or an empty string if the line is not decorated
+     */
+    public String getCssClass(final int line) {
+        int state = getState(line);
+        return state == 0 ? "" : cssClasses[state - 1];
+    }
+
+    /**
+     * Returns the opening {@code span} tag of the specified line. This tag is precomputed for each state, so rendering
+     * a decorated line does not require additional objects.
+     *
+     * @param line
+     *         the line (lines start at 1)
+     *
+     * @return the opening tag, or an empty string if the line is not decorated
+     */
+    String getOpeningTag(final int line) {
+        return openingTags[getState(line)];
+    }
+
+    private int getState(final int line) {
+        if (line < 1 || line > states.length) {
+            return 0;
+        }
+        return Byte.toUnsignedInt(states[line - 1]);
+    }
+
+    /**
+     * Adds the states and CSS classes of these decorations to the specified digest.
+     *
+     * @param digest
+     *         the digest to update
+     */
+    void update(final MessageDigest digest) {
+        digest.update(states);
+        for (String cssClass : cssClasses) {
+            digest.update(cssClass.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+    }
+}
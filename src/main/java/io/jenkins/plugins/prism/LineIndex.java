@@ -0,0 +1,365 @@
+package io.jenkins.plugins.prism;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+/**
+ * An index of the byte offsets of the lines of a source code file. The index stores the offset of every {@link #STRIDE
+ * n-th} line, so it requires only a few kilobytes even for files with hundreds of thousands of lines. The offset of
+ * any other line is found by scanning the bytes after the preceding indexed line. So a reader can start at an
+ * arbitrary line without decoding and splitting all lines before it.
+ *
+ * <p>
+ * Lines are terminated by {@code \n}, {@code \r}, or {@code \r\n}, just like in {@link java.io.BufferedReader#lines()}.
+ * The terminators are detected in the raw bytes of the file, so an index can be used only for files with a charset
+ * that encodes these terminators as single ASCII bytes that do not occur within other characters (e.g., UTF-8 or
+ * the ISO-8859 family), see {@link #isSupported(Charset)}.
+ * </p>
+ *
+ * <p>
+ * The index of a file can be stored in the {@link RenderedSourceCache cache folder} of the build, see
+ * {@link #resolve(Path, String)} and {@link #load(Path, Path)}. The index file is named after the digest of the content
+ * (or the path) of the indexed file, so it is never written next to the source code file (e.g., into a permitted
+ * source code folder outside of Jenkins). The index file records the size and the modification time of the indexed
+ * file, so an outdated index will be created again.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+public final class LineIndex {
+    /** Number of lines between two indexed lines. */
+    public static final int STRIDE = 64;
+
+    static final String INDEX_SUFFIX = ".line-index";
+    static final byte[] MAGIC = {'P', 'R', 'L', 'I'};
+    static final int VERSION = 1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    /**
+     * Returns whether the lines of files with the specified charset can be indexed.
+     *
+     * @param charset
+     *         the charset of the file
+     *
+     * @return {@code true} if line terminators are encoded as single ASCII bytes, {@code false} otherwise
+     */
+    public static boolean isSupported(final Charset charset) {
+        return charset.canEncode()
+                && Arrays.equals("\r\n".getBytes(charset), new byte[] {CARRIAGE_RETURN, LINE_FEED});
+    }
+
+    /**
+     * Returns the file that stores the index of a source code file with the specified content in the cache folder of
+     * the build.
+     *
+     * @param buildDirectory
+     *         the root folder of the build
+     * @param digest
+     *         the SHA-256 digest of the content of the source code file, see {@link SourceManifest.Entry#getDigest()},
+     *         or the digest of its path if the digest of the content is not known
+     *
+     * @return the index file
+     */
+    public static Path resolve(final Path buildDirectory, final String digest) {
+        return RenderedSourceCache.getCacheDirectory(buildDirectory).resolve(digest + INDEX_SUFFIX);
+    }
+
+    /**
+     * Returns the index of the specified file. If the specified index file contains a valid index, then the index is
+     * read from this file. Otherwise, the index is created and stored in the index file. Failures to store the index
+     * file are ignored, e.g. if the folder is read-only.
+     *
+     * @param file
+     *         the file to index
+     * @param indexFile
+     *         the file that stores the index, see {@link #resolve(Path, String)}. If {@code null}, then the index is
+     *         created but not stored.
+     *
+     * @return the index
+     * @throws IOException
+     *         if the file could not be read
+     */
+    public static LineIndex load(final Path file, @CheckForNull final Path indexFile) throws IOException {
+        if (indexFile == null) {
+            return create(file);
+        }
+
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        if (Files.isRegularFile(indexFile)) {
+            try (InputStream input = Files.newInputStream(indexFile)) {
+                LineIndex index = readFrom(input);
+                if (index.size == size && index.modified == modified) {
+                    return index;
+                }
+            }
+            catch (IOException ignore) {
+                // create the index again
+            }
+        }
+
+        LineIndex index = create(file);
+        try {
+            Files.createDirectories(indexFile.getParent());
+            Path temporary = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+            try (OutputStream output = Files.newOutputStream(temporary)) {
+                index.writeTo(output);
+            }
+            Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException ignore) {
+            // the index file is optional
+        }
+        return index;
+    }
+
+    /**
+     * Creates the index of the specified file.
+     *
+     * @param file
+     *         the file to index
+     *
+     * @return the index
+     * @throws IOException
+     *         if the file could not be read
+     */
+    public static LineIndex create(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            long size = channel.size();
+
+            long[] offsets = new long[16];
+            int lineCount = 0;
+            boolean isLineStart = true;
+            boolean isAfterCarriageReturn = false;
+            long position = 0;
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte value = buffer.get();
+                    if (isAfterCarriageReturn && value == LINE_FEED) {
+                        isAfterCarriageReturn = false;
+                    }
+                    else {
+                        if (isLineStart) {
+                            if (lineCount % STRIDE == 0) {
+                                if (lineCount / STRIDE == offsets.length) {
+                                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                                }
+                                offsets[lineCount / STRIDE] = position;
+                            }
+                            lineCount++;
+                        }
+                        isAfterCarriageReturn = value == CARRIAGE_RETURN;
+                        isLineStart = value == LINE_FEED || isAfterCarriageReturn;
+                    }
+                    position++;
+                }
+                buffer.clear();
+            }
+            int sampleCount = (lineCount + STRIDE - 1) / STRIDE;
+            return new LineIndex(size, modified, lineCount, Arrays.copyOf(offsets, sampleCount));
+        }
+    }
+
+    /**
+     * Reads an index that has been written using {@link #writeTo(OutputStream)}.
+     *
+     * @param input
+     *         the stream to read the index from
+     *
+     * @return the index
+     * @throws IOException
+     *         if the index could not be read
+     */
+    public static LineIndex readFrom(final InputStream input) throws IOException {
+        InputStream buffered = new BufferedInputStream(input);
+        byte[] magic = new byte[MAGIC.length];
+        for (int i = 0; i < magic.length; i++) {
+            magic[i] = (byte) readByte(buffered);
+        }
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Stream does not contain a line index");
+        }
+        long version = readLong(buffered);
+        if (version != VERSION) {
+            throw new IOException(String.format("Unsupported version %d of line index (expected %d)",
+                    version, VERSION));
+        }
+        long size = readLong(buffered);
+        long modified = readLong(buffered);
+        long stride = readLong(buffered);
+        if (stride != STRIDE) {
+            throw new IOException("Unsupported stride of line index: " + stride);
+        }
+        long lineCount = readLong(buffered);
+        if (lineCount > size) {
+            throw new IOException("Invalid number of lines: " + lineCount);
+        }
+        long[] offsets = new long[(int) ((lineCount + STRIDE - 1) / STRIDE)];
+        long offset = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            offset += readLong(buffered);
+            offsets[i] = offset;
+        }
+        return new LineIndex(size, modified, (int) lineCount, offsets);
+    }
+
+    private final long size;
+    private final long modified;
+    private final int lineCount;
+    private final long[] offsets;
+
+    private LineIndex(final long size, final long modified, final int lineCount, final long[] offsets) {
+        this.size = size;
+        this.modified = modified;
+        this.lineCount = lineCount;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Returns the number of lines of the indexed file.
+     *
+     * @return the number of lines
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Returns the size of the indexed file in bytes.
+     *
+     * @return the size of the file
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Finds the byte offset of the specified line. The offset is computed by scanning the bytes after the preceding
+     * indexed line, so at most {@link #STRIDE} lines will be read.
+     *
+     * @param channel
+     *         the channel of the indexed file
+     * @param line
+     *         the line (lines start at 1)
+     *
+     * @return the offset of the first byte of the line, or the size of the file if the file has fewer lines
+     * @throws IOException
+     *         if the file could not be read
+     */
+    public long findOffset(final FileChannel channel, final int line) throws IOException {
+        if (line > lineCount) {
+            return size;
+        }
+        int target = Math.max(line, 1) - 1;
+        long position = offsets[target / STRIDE];
+        int remaining = target % STRIDE;
+        if (remaining == 0) {
+            return position;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        boolean isAfterCarriageReturn = false;
+        while (channel.read(buffer, position) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                byte value = buffer.get();
+                if (isAfterCarriageReturn) {
+                    isAfterCarriageReturn = false;
+                    if (value != LINE_FEED) {
+                        remaining--;
+                        if (remaining == 0) {
+                            return position;
+                        }
+                    }
+                }
+                position++;
+                if (value == LINE_FEED) {
+                    remaining--;
+                    if (remaining == 0) {
+                        return position;
+                    }
+                }
+                else if (value == CARRIAGE_RETURN) {
+                    isAfterCarriageReturn = true;
+                }
+            }
+            buffer.clear();
+        }
+        return size;
+    }
+
+    /**
+     * Writes this index to the specified stream. The offsets are stored as variable-length differences, so an index
+     * requires about one or two bytes per indexed line.
+     *
+     * @param output
+     *         the stream to write the index to
+     *
+     * @throws IOException
+     *         if the index could not be written
+     */
+    public void writeTo(final OutputStream output) throws IOException {
+        OutputStream buffered = new BufferedOutputStream(output);
+        buffered.write(MAGIC);
+        writeLong(buffered, VERSION);
+        writeLong(buffered, size);
+        writeLong(buffered, modified);
+        writeLong(buffered, STRIDE);
+        writeLong(buffered, lineCount);
+        long previous = 0;
+        for (long offset : offsets) {
+            writeLong(buffered, offset - previous);
+            previous = offset;
+        }
+        buffered.flush();
+    }
+
+    private static void writeLong(final OutputStream output, final long value) throws IOException {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            output.write((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        output.write((int) remaining);
+    }
+
+    private static long readLong(final InputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int current = readByte(input);
+            value |= (long) (current & 0x7F) << shift;
+            if ((current & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    private static int readByte(final InputStream input) throws IOException {
+        int value = input.read();
+        if (value < 0) {
+            throw new EOFException("Unexpected end of line index");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,76 @@
+package io.jenkins.plugins.prism;
+
+import java.util.Arrays;
+
+/**
+ * The syntax tokens of a single line of source code. A token is a range of characters in the line that will be
+ * enclosed in a {@code span} element. The tokens are sorted and do not overlap. Adjacent tokens with the same opening
+ * tag are merged into a single token. An instance is reused for all lines of a file, so tokenizing a line does not
+ * require additional objects.
+ *
+ * @author Ullrich Hafner
+ */
+final class LineTokens {
+    private static final int INITIAL_CAPACITY = 32;
+
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private String[] openingTags = new String[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Removes all tokens.
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Adds a token. Empty tokens and tokens without an opening tag are ignored.
+     *
+     * @param start
+     *         the index of the first character of the token
+     * @param end
+     *         the index after the last character of the token
+     * @param openingTag
+     *         the opening {@code span} tag of the token, might be {@code null} for text that is not a token
+     */
+    void add(final int start, final int end, final String openingTag) {
+        if (end <= start || openingTag == null) {
+            return;
+        }
+        if (size > 0 && ends[size - 1] == start && openingTags[size - 1].equals(openingTag)) {
+            ends[size - 1] = end;
+            return;
+        }
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+            openingTags = Arrays.copyOf(openingTags, size * 2);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        openingTags[size] = openingTag;
+        size++;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getStart(final int index) {
+        return starts[index];
+    }
+
+    int getEnd(final int index) {
+        return ends[index];
+    }
+
+    String getOpeningTag(final int index) {
+        return openingTags[index];
+    }
+}
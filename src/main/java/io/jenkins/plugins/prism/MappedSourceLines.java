@@ -0,0 +1,267 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+import edu.hm.hafner.util.VisibleForTesting;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+/**
+ * Reads the lines of a large source code file without creating a {@link String} for each line. The file is mapped into
+ * memory in windows of {@link #WINDOW_SIZE} bytes, the bytes are decoded in chunks by a single {@link CharsetDecoder}
+ * into a recycled {@link CharBuffer}. A line is exposed as a slice of this buffer, so rendering a file requires no
+ * allocations per line. The buffer grows only if a single line does not fit.
+ *
+ * <p>
+ * Lines are terminated by {@code \n}, {@code \r}, or {@code \r\n}, just like in {@link java.io.BufferedReader#lines()}.
+ * Malformed input is replaced by the replacement character of the charset, just like in an {@link
+ * java.io.InputStreamReader}.
+ * </p>
+ *
+ * <p>
+ * Note that on Windows a mapped file cannot be moved or deleted until the mapping has been garbage collected, even if
+ * the lines have been closed. So {@link SourceCodeFile} does not map files on Windows.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+public final class MappedSourceLines implements SourceLines {
+    /** Number of bytes of the file that are mapped into memory at the same time. */
+    static final int WINDOW_SIZE = 16 * 1024 * 1024;
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+
+    /**
+     * Opens the lines of the specified file, starting with the specified line. If the charset of the file supports a
+     * {@link LineIndex}, then the preceding lines are not read at all. Otherwise, the lines are read from the start of
+     * the file.
+     *
+     * @param file
+     *         the source code file
+     * @param charset
+     *         the charset of the file
+     * @param line
+     *         the first line that needs to be read (lines start at 1)
+     * @param indexFile
+     *         the file that stores the {@link LineIndex} of the file, see {@link LineIndex#load(Path, Path)}
+     *
+     * @return the lines of the file
+     * @throws IOException
+     *         if the file could not be opened
+     */
+    public static MappedSourceLines open(final Path file, final Charset charset, final int line,
+            @CheckForNull final Path indexFile) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (line > 1 && LineIndex.isSupported(charset)) {
+                long offset = LineIndex.load(file, indexFile).findOffset(channel, line);
+                return new MappedSourceLines(channel, charset, offset, line, WINDOW_SIZE);
+            }
+            return new MappedSourceLines(channel, charset, 0, 1, WINDOW_SIZE);
+        }
+        catch (IOException exception) {
+            channel.close();
+            throw exception;
+        }
+    }
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+    private final CharsetDecoder decoder;
+    private final Slice slice = new Slice();
+
+    private ByteBuffer bytes;
+    private long windowStart;
+    private CharBuffer chars = CharBuffer.allocate(INITIAL_CAPACITY);
+    private int start;
+    private int end;
+    private boolean isFlushing;
+    private boolean isDecoded;
+    private boolean isAfterCarriageReturn;
+    private int line;
+
+    @VisibleForTesting
+    MappedSourceLines(final FileChannel channel, final Charset charset, final long offset, final int firstLine,
+            final int windowSize) throws IOException {
+        this.channel = channel;
+        this.windowSize = windowSize;
+
+        size = channel.size();
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        line = Math.max(firstLine, 1) - 1;
+        map(Math.min(offset, size));
+    }
+
+    private void map(final long position) throws IOException {
+        windowStart = position;
+        bytes = channel.map(MapMode.READ_ONLY, position, Math.min(windowSize, size - position));
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (isAfterCarriageReturn) {
+            isAfterCarriageReturn = false;
+            if ((start < end || fill()) && chars.array()[start] == '\n') {
+                start++;
+            }
+        }
+        return start < end || fill();
+    }
+
+    @Override
+    public CharSequence next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more lines in source code file");
+        }
+        line++;
+
+        int position = start;
+        while (true) {
+            char[] content = chars.array();
+            for (; position < end; position++) {
+                char c = content[position];
+                if (c == '\n' || c == '\r') {
+                    slice.set(content, start, position);
+                    start = position + 1;
+                    isAfterCarriageReturn = c == '\r';
+                    return slice;
+                }
+            }
+            int scanned = position - start;
+            if (!fill()) {
+                slice.set(chars.array(), start, end);
+                start = end;
+                return slice;
+            }
+            position = start + scanned;
+        }
+    }
+
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Decodes the next chunk of the file. The characters that have not been read yet are moved to the start of the
+     * buffer before.
+     *
+     * @return {@code true} if characters have been added, {@code false} if the end of the file has been reached
+     */
+    private boolean fill() {
+        if (isDecoded) {
+            return false;
+        }
+        compact();
+        int before = end;
+        try {
+            while (end == before && !isDecoded) {
+                decode();
+            }
+        }
+        catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        return end > before;
+    }
+
+    private void compact() {
+        int remaining = end - start;
+        char[] content = chars.array();
+        if (remaining + 2 > content.length) { // room for at least one surrogate pair
+            CharBuffer larger = CharBuffer.allocate(content.length * 2);
+            System.arraycopy(content, start, larger.array(), 0, remaining);
+            chars = larger;
+        }
+        else {
+            System.arraycopy(content, start, content, 0, remaining);
+        }
+        start = 0;
+        end = remaining;
+    }
+
+    private void decode() throws IOException {
+        chars.limit(chars.capacity()).position(end);
+        if (isFlushing) {
+            isDecoded = decoder.flush(chars).isUnderflow();
+        }
+        else {
+            boolean isLastWindow = windowStart + bytes.limit() >= size;
+            CoderResult result = decoder.decode(bytes, chars, isLastWindow);
+            if (result.isError()) {
+                throw new CharacterCodingException();
+            }
+            if (result.isUnderflow()) {
+                if (isLastWindow) {
+                    isFlushing = true;
+                    isDecoded = decoder.flush(chars).isUnderflow();
+                }
+                else {
+                    map(windowStart + bytes.position());
+                }
+            }
+        }
+        end = chars.position();
+    }
+
+    /**
+     * A line of the source code: a slice of the characters of the decode buffer.
+     */
+    private static final class Slice implements CharSequence {
+        private char[] content = new char[0];
+        private int offset;
+        private int length;
+
+        void set(final char[] characters, final int from, final int to) {
+            content = characters;
+            offset = from;
+            length = to - from;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for length " + length);
+            }
+            return content[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(final int from, final int to) {
+            if (from < 0 || to > length || from > to) {
+                throw new IndexOutOfBoundsException(
+                        "Range [" + from + ", " + to + ") is out of bounds for length " + length);
+            }
+            return new String(content, offset + from, to - from);
+        }
+
+        @Override
+        public String toString() {
+            return new String(content, offset, length);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package io.jenkins.plugins.prism;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import io.jenkins.plugins.prism.MarkerSet.MarkerSetBuilder;
+
+import static io.jenkins.plugins.prism.MarkerWriter.*;
+
+/**
+ * Reads {@link Marker markers} that have been written by a {@link MarkerWriter}. The markers are read one after
+ * another, so a caller can process an arbitrary number of markers without holding them in memory. Texts that are used
+ * by several markers are read only once and are shared by all markers.
+ *
+ * @author Ullrich Hafner
+ */
+public class MarkerReader implements Closeable {
+    private static final int MAXIMUM_STRING_LENGTH = 64 * 1024 * 1024;
+
+    private final InputStream input;
+    private final List<String> strings = new ArrayList<>();
+    private int previousLineStart;
+    private boolean isFinished;
+
+    /**
+     * Creates a new {@link MarkerReader} and reads the header of the format.
+     *
+     * @param input
+     *         the stream to read the markers from
+     *
+     * @throws IOException
+     *         if the header could not be read or if the stream does not contain markers in a supported version
+     */
+    public MarkerReader(final InputStream input) throws IOException {
+        this.input = new BufferedInputStream(input);
+
+        byte[] magic = new byte[MAGIC.length];
+        for (int i = 0; i < magic.length; i++) {
+            magic[i] = (byte) readByte();
+        }
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Stream does not contain markers");
+        }
+        int version = readInt();
+        if (version != VERSION) {
+            throw new IOException(String.format("Unsupported version %d of markers (expected %d)", version, VERSION));
+        }
+    }
+
+    /**
+     * Reads all remaining markers into a {@link MarkerSet}.
+     *
+     * @return the markers
+     * @throws IOException
+     *         if the markers could not be read
+     */
+    public MarkerSet readAll() throws IOException {
+        MarkerSetBuilder builder = new MarkerSetBuilder();
+        for (Optional<Marker> marker = read(); marker.isPresent(); marker = read()) {
+            builder.add(marker.get());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Reads the next marker.
+     *
+     * @return the next marker, or an empty optional if all markers have been read
+     * @throws IOException
+     *         if the marker could not be read
+     */
+    public Optional<Marker> read() throws IOException {
+        if (isFinished) {
+            return Optional.empty();
+        }
+        int tag = readByte();
+        if (tag == END) {
+            isFinished = true;
+            return Optional.empty();
+        }
+        if (tag != RECORD) {
+            throw new IOException("Invalid record tag " + tag);
+        }
+
+        int lineStart = previousLineStart + readSignedInt();
+        int lineEnd = lineStart + readSignedInt();
+        int columnStart = readInt();
+        int columnEnd = columnStart + readSignedInt();
+        String title = readString();
+        String icon = readString();
+        String description = readString();
+
+        previousLineStart = lineStart;
+        return Optional.of(new Marker(title, icon, description, lineStart, lineEnd, columnStart, columnEnd));
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private String readString() throws IOException {
+        int reference = readInt();
+        if (reference == NEW_STRING) {
+            int length = readInt();
+            if (length < 0 || length > MAXIMUM_STRING_LENGTH) {
+                throw new IOException("Invalid length of text: " + length);
+            }
+            byte[] bytes = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                int read = input.read(bytes, offset, length - offset);
+                if (read < 0) {
+                    throw new EOFException("Unexpected end of markers");
+                }
+                offset += read;
+            }
+            String text = new String(bytes, StandardCharsets.UTF_8);
+            strings.add(text);
+            return text;
+        }
+        if (reference > strings.size()) {
+            throw new IOException("Invalid reference to text " + reference);
+        }
+        return strings.get(reference - 1);
+    }
+
+    private int readSignedInt() throws IOException {
+        int value = readInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private int readInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid variable-length integer");
+    }
+
+    private int readByte() throws IOException {
+        int b = input.read();
+        if (b < 0) {
+            throw new EOFException("Unexpected end of markers");
+        }
+        return b;
+    }
+}
@@ -0,0 +1,353 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * An immutable and compact list of {@link Marker markers}. The coordinates of the markers are stored in parallel
+ * {@code int} arrays, and the titles, icons, and descriptions are stored only once in a shared string table. So a
+ * marker requires only a few bytes as long as its texts are shared with other markers. The {@link Marker} instances
+ * are created on demand when an element of this list is accessed.
+ *
+ * <p>
+ * The markers are sorted by their lines. An implicit interval tree on top of the sorted coordinates provides fast
+ * queries for all markers that overlap a given range of lines, see {@link #findMarkers(int, int)}.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+public final class MarkerSet extends AbstractList<Marker> implements RandomAccess {
+    private static final int LINEAR_SCAN_LEVEL = 3;
+    private static final Comparator<Marker> LINE_ORDER
+            = Comparator.comparingInt(Marker::getLineStart).thenComparingInt(Marker::getLineEnd);
+
+    private final int size;
+    private final int[] lineStarts;
+    private final int[] lineEnds;
+    private final int[] columnStarts;
+    private final int[] columnEnds;
+    private final int[] titles;
+    private final int[] icons;
+    private final int[] descriptions;
+    private final String[] strings;
+
+    /** Maximum line end of the subtree of each node of the implicit interval tree. */
+    private final int[] maximumLineEnds;
+    private final int maximumLevel;
+
+    /**
+     * Creates a new {@link MarkerSet} that contains the specified markers.
+     *
+     * @param markers
+     *         the markers
+     *
+     * @return the new set of markers
+     */
+    public static MarkerSet copyOf(final Collection<Marker> markers) {
+        if (markers instanceof MarkerSet) {
+            return (MarkerSet) markers;
+        }
+        return new MarkerSetBuilder().addAll(markers).build();
+    }
+
+    /**
+     * Reads a {@link MarkerSet} from the specified stream. The markers must have been written by {@link
+     * #writeTo(OutputStream)} or by a {@link MarkerWriter}. The stream will be closed afterwards.
+     *
+     * @param input
+     *         the stream to read the markers from
+     *
+     * @return the markers
+     * @throws IOException
+     *         if the markers could not be read
+     */
+    public static MarkerSet readFrom(final InputStream input) throws IOException {
+        try (MarkerReader reader = new MarkerReader(input)) {
+            return reader.readAll();
+        }
+    }
+
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    private MarkerSet(final int size, final int[] lineStarts, final int[] lineEnds,
+            final int[] columnStarts, final int[] columnEnds,
+            final int[] titles, final int[] icons, final int[] descriptions, final String[] strings) {
+        super();
+
+        this.size = size;
+        this.lineStarts = lineStarts;
+        this.lineEnds = lineEnds;
+        this.columnStarts = columnStarts;
+        this.columnEnds = columnEnds;
+        this.titles = titles;
+        this.icons = icons;
+        this.descriptions = descriptions;
+        this.strings = strings;
+
+        maximumLineEnds = new int[size];
+        maximumLevel = createIndex();
+    }
+
+    @Override
+    public Marker get(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return new Marker(strings[titles[index]], strings[icons[index]], strings[descriptions[index]],
+                lineStarts[index], lineEnds[index], columnStarts[index], columnEnds[index]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Writes the markers of this set in the compact binary format of {@link MarkerWriter} to the specified stream. The
+     * stream will be closed afterwards.
+     *
+     * @param output
+     *         the stream to write the markers to
+     *
+     * @throws IOException
+     *         if the markers could not be written
+     */
+    public void writeTo(final OutputStream output) throws IOException {
+        try (MarkerWriter writer = new MarkerWriter(output)) {
+            writer.writeAll(this);
+        }
+    }
+
+    /**
+     * Returns the number of distinct titles, icons, and descriptions of the markers.
+     *
+     * @return the number of distinct strings
+     */
+    int getStringCount() {
+        return strings.length;
+    }
+
+    /**
+     * Returns all markers that overlap the specified range of lines. The markers are returned in the order of this
+     * list, i.e. sorted by their lines.
+     *
+     * @param from
+     *         the first line of the range (inclusive)
+     * @param to
+     *         the last line of the range (inclusive)
+     *
+     * @return the markers that overlap the specified range
+     */
+    public List<Marker> findMarkers(final int from, final int to) {
+        int[] indices = findIndices(from, to);
+        List<Marker> markers = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            markers.add(get(index));
+        }
+        return markers;
+    }
+
+    /**
+     * Returns the indices of all markers that overlap the specified range of lines. The indices are sorted in
+     * ascending order.
+     *
+     * @param from
+     *         the first line of the range (inclusive)
+     * @param to
+     *         the last line of the range (inclusive)
+     *
+     * @return the indices of the markers that overlap the specified range
+     */
+    int[] findIndices(final int from, final int to) {
+        if (size == 0 || from > to) {
+            return new int[0];
+        }
+
+        IntList found = new IntList();
+        int[] nodes = new int[2 * (maximumLevel + 2)];
+        int[] levels = new int[nodes.length];
+        boolean[] isLeftVisited = new boolean[nodes.length];
+        int top = 0;
+        nodes[top] = (1 << maximumLevel) - 1;
+        levels[top] = maximumLevel;
+        isLeftVisited[top] = false;
+        top++;
+        while (top > 0) {
+            top--;
+            int node = nodes[top];
+            int level = levels[top];
+            if (level <= LINEAR_SCAN_LEVEL) { // small subtree: scan all of its nodes
+                int first = node >> level << level;
+                int last = Math.min(size, first + (1 << (level + 1)) - 1);
+                for (int i = first; i < last && lineStarts[i] <= to; i++) {
+                    if (lineEnds[i] >= from) {
+                        found.add(i);
+                    }
+                }
+            }
+            else if (!isLeftVisited[top]) { // visit the left child first, then come back to this node
+                int left = node - (1 << (level - 1));
+                isLeftVisited[top] = true;
+                top++;
+                if (left >= size || maximumLineEnds[left] >= from) {
+                    nodes[top] = left;
+                    levels[top] = level - 1;
+                    isLeftVisited[top] = false;
+                    top++;
+                }
+            }
+            else if (node < size && lineStarts[node] <= to) { // visit this node and the right child
+                if (lineEnds[node] >= from) {
+                    found.add(node);
+                }
+                nodes[top] = node + (1 << (level - 1));
+                levels[top] = level - 1;
+                isLeftVisited[top] = false;
+                top++;
+            }
+        }
+        int[] indices = found.toArray();
+        Arrays.sort(indices);
+        return indices;
+    }
+
+    /**
+     * Creates the implicit interval tree: the sorted elements are the nodes of a complete binary tree in in-order. The
+     * leaves are the elements with an even index, the root is the element with index {@code 2^k - 1}. Each node stores
+     * the maximum line end of its subtree. If the number of elements is not a power of two, then the tree is
+     * incomplete: then the maximum line end of a missing right subtree is the maximum line end of the last existing
+     * subtree on the same level.
+     *
+     * @return the level of the root of the tree
+     */
+    private int createIndex() {
+        if (size == 0) {
+            return 0;
+        }
+
+        int lastIndex = 0;
+        int last = 0;
+        for (int i = 0; i < size; i += 2) {
+            lastIndex = i;
+            last = lineEnds[i];
+            maximumLineEnds[i] = last;
+        }
+        int level = 1;
+        for (; 1L << level <= size; level++) {
+            int offset = 1 << (level - 1);
+            int step = offset << 2;
+            for (int i = (offset << 1) - 1; i < size; i += step) {
+                int leftMaximum = maximumLineEnds[i - offset];
+                int rightMaximum = i + offset < size ? maximumLineEnds[i + offset] : last;
+                maximumLineEnds[i] = Math.max(lineEnds[i], Math.max(leftMaximum, rightMaximum));
+            }
+            lastIndex = (lastIndex >> level & 1) == 0 ? lastIndex + offset : lastIndex - offset;
+            if (lastIndex < size && maximumLineEnds[lastIndex] > last) {
+                last = maximumLineEnds[lastIndex];
+            }
+        }
+        return level - 1;
+    }
+
+    /**
+     * A growable list of primitive {@code int} values.
+     */
+    private static class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(final int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Creates {@link MarkerSet} instances using the builder pattern.
+     *
+     * @author Ullrich Hafner
+     */
+    public static class MarkerSetBuilder {
+        private final List<Marker> markers = new ArrayList<>();
+
+        /**
+         * Adds the specified marker.
+         *
+         * @param marker
+         *         the marker to add
+         *
+         * @return this builder
+         */
+        public MarkerSetBuilder add(final Marker marker) {
+            markers.add(marker);
+            return this;
+        }
+
+        /**
+         * Adds all of the specified markers.
+         *
+         * @param additionalMarkers
+         *         the markers to add
+         *
+         * @return this builder
+         */
+        public MarkerSetBuilder addAll(final Collection<Marker> additionalMarkers) {
+            markers.addAll(additionalMarkers);
+            return this;
+        }
+
+        /**
+         * Creates an immutable {@link MarkerSet} instance that contains all added markers. The markers are sorted by
+         * their first and last lines, markers with the same lines retain the order they have been added.
+         *
+         * @return the new set of markers
+         */
+        public MarkerSet build() {
+            markers.sort(LINE_ORDER);
+
+            int size = markers.size();
+            int[] lineStarts = new int[size];
+            int[] lineEnds = new int[size];
+            int[] columnStarts = new int[size];
+            int[] columnEnds = new int[size];
+            int[] titles = new int[size];
+            int[] icons = new int[size];
+            int[] descriptions = new int[size];
+            Map<String, Integer> table = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                Marker marker = markers.get(i);
+                lineStarts[i] = marker.getLineStart();
+                lineEnds[i] = marker.getLineEnd();
+                columnStarts[i] = marker.getColumnStart();
+                columnEnds[i] = marker.getColumnEnd();
+                titles[i] = intern(table, marker.getTitle());
+                icons[i] = intern(table, marker.getIcon());
+                descriptions[i] = intern(table, marker.getDescription());
+            }
+            String[] strings = new String[table.size()];
+            table.forEach((string, index) -> strings[index] = string);
+
+            return new MarkerSet(size, lineStarts, lineEnds, columnStarts, columnEnds,
+                    titles, icons, descriptions, strings);
+        }
+
+        private int intern(final Map<String, Integer> table, final String value) {
+            return table.computeIfAbsent(value, key -> table.size());
+        }
+    }
+}
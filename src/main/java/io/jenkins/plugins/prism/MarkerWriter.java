@@ -0,0 +1,136 @@
+package io.jenkins.plugins.prism;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Writes {@link Marker markers} in a compact binary format to an {@link OutputStream}. The markers are written one
+ * after another, so an arbitrary number of markers can be written without holding them in memory. The markers can be
+ * read again using a {@link MarkerReader}.
+ *
+ * <p>
+ * The format starts with a header that consists of a magic number and the version of the format. Each marker is
+ * stored as a record that is introduced by a tag byte. A record contains the lines and columns of the marker as
+ * variable-length integers: the first line is stored relative to the first line of the previous marker, the last line
+ * and column are stored relative to the first line and column. So markers that are sorted by line (like the markers of
+ * a {@link MarkerSet}) require only a few bytes for their coordinates. The title, icon, and description are stored in
+ * a string table that is built while writing: the first occurrence of a text is written inline, subsequent
+ * occurrences refer to the index of this text in the table. Texts that are {@code null} are stored as empty texts.
+ * The end of the stream is marked by a terminating tag.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+public class MarkerWriter implements Closeable {
+    static final byte[] MAGIC = {'P', 'R', 'S', 'M'};
+    static final int VERSION = 1;
+    static final int RECORD = 1;
+    static final int END = 0;
+    /** Reference of a text that is not yet part of the string table. */
+    static final int NEW_STRING = 0;
+
+    private final OutputStream output;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private int previousLineStart;
+
+    /**
+     * Creates a new {@link MarkerWriter} and writes the header of the format.
+     *
+     * @param output
+     *         the stream to write the markers to
+     *
+     * @throws IOException
+     *         if the header could not be written
+     */
+    public MarkerWriter(final OutputStream output) throws IOException {
+        this.output = new BufferedOutputStream(output);
+
+        this.output.write(MAGIC);
+        writeInt(VERSION);
+    }
+
+    /**
+     * Writes all of the specified markers.
+     *
+     * @param markers
+     *         the markers to write
+     *
+     * @throws IOException
+     *         if the markers could not be written
+     */
+    public void writeAll(final Iterable<Marker> markers) throws IOException {
+        for (Marker marker : markers) {
+            write(marker);
+        }
+    }
+
+    /**
+     * Writes the specified marker.
+     *
+     * @param marker
+     *         the marker to write
+     *
+     * @throws IOException
+     *         if the marker could not be written
+     */
+    public void write(final Marker marker) throws IOException {
+        output.write(RECORD);
+        writeSignedInt(marker.getLineStart() - previousLineStart);
+        writeSignedInt(marker.getLineEnd() - marker.getLineStart());
+        writeInt(marker.getColumnStart());
+        writeSignedInt(marker.getColumnEnd() - marker.getColumnStart());
+        writeString(marker.getTitle());
+        writeString(marker.getIcon());
+        writeString(marker.getDescription());
+
+        previousLineStart = marker.getLineStart();
+    }
+
+    /**
+     * Writes the end of the markers and closes the underlying stream.
+     *
+     * @throws IOException
+     *         if the stream could not be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+        try (OutputStream stream = output) {
+            stream.write(END);
+        }
+    }
+
+    private void writeString(final String value) throws IOException {
+        String text = StringUtils.defaultString(value);
+        Integer index = strings.get(text);
+        if (index == null) {
+            writeInt(NEW_STRING);
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            output.write(bytes);
+            strings.put(text, strings.size());
+        }
+        else {
+            writeInt(index + 1);
+        }
+    }
+
+    private void writeSignedInt(final int value) throws IOException {
+        writeInt((value << 1) ^ (value >> 31)); // zig-zag encoding: small negative values become small values
+    }
+
+    private void writeInt(final int value) throws IOException {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            output.write((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        output.write(remaining);
+    }
+}
@@ -0,0 +1,204 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.SystemUtils;
+
+import edu.hm.hafner.util.VisibleForTesting;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+/**
+ * Checks whether files are part of the workspace or of one of the permitted source code directories. The workspace
+ * and the permitted directories are normalized only once, when the matcher is created: the matcher stores the
+ * segments of these directories in a trie. Checking a file then requires a single walk along the segments of its path,
+ * so checking a large number of files costs time proportional to the total number of path segments. Matchers are
+ * immutable and can be shared between threads. Use {@link FilePermissionEnforcer#createMatcher} to create a matcher.
+ *
+ * <p>
+ * Paths are normalized without accessing the file system: backslashes are replaced by slashes, and {@code .} and
+ * {@code ..} segments are resolved. A path that navigates above its root is never permitted. Like in
+ * {@link java.nio.file.Path#startsWith(java.nio.file.Path)}, paths are compared case-insensitive on Windows and
+ * case-sensitive on all other platforms.
+ * </p>
+ *
+ * <p>
+ * Since the normalization does not access the file system, a symbolic link within a permitted directory might point
+ * to a file outside of all permitted directories. A strict matcher resolves the real paths of the permitted
+ * directories and of each file using a {@link RealPathResolver}, so such files are rejected as well. Files that do not
+ * exist are never permitted by a strict matcher. Strict matchers need to be used on the machine that contains the
+ * files, i.e. on the agent. Use {@link FilePermissionEnforcer#createStrictMatcher} to create a strict matcher.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+public final class PermittedPathMatcher {
+    private static final char SEPARATOR = '/';
+
+    private final Node root = new Node();
+    private final boolean isCaseSensitive;
+    @CheckForNull
+    private final RealPathResolver resolver;
+
+    PermittedPathMatcher(final Collection<String> directories) {
+        this(directories, !SystemUtils.IS_OS_WINDOWS);
+    }
+
+    PermittedPathMatcher(final Collection<String> directories, final RealPathResolver resolver) {
+        this(directories, !SystemUtils.IS_OS_WINDOWS, resolver);
+    }
+
+    @VisibleForTesting
+    PermittedPathMatcher(final Collection<String> directories, final boolean isCaseSensitive) {
+        this(directories, isCaseSensitive, null);
+    }
+
+    @VisibleForTesting
+    PermittedPathMatcher(final Collection<String> directories, final boolean isCaseSensitive,
+            @CheckForNull final RealPathResolver resolver) {
+        this.isCaseSensitive = isCaseSensitive;
+        this.resolver = resolver;
+
+        for (String directory : directories) {
+            add(resolveDirectory(directory));
+        }
+    }
+
+    private String resolveDirectory(final String directory) {
+        if (resolver != null) {
+            try {
+                return resolver.resolve(directory).toString();
+            }
+            catch (IOException | IllegalArgumentException exception) {
+                // a directory that does not exist contains no files
+            }
+        }
+        return directory;
+    }
+
+    /**
+     * Returns whether this matcher resolves symbolic links.
+     *
+     * @return {@code true} if this matcher resolves the real paths of the files, {@code false} if the paths are
+     *         compared as they are
+     */
+    public boolean isStrict() {
+        return resolver != null;
+    }
+
+    private void add(final String directory) {
+        String normalized = normalize(directory);
+        if (StringUtils.isEmpty(normalized)) {
+            return;
+        }
+        Node node = root.getOrCreateChild(getPrefix(normalized));
+        int start = FilenameUtils.getPrefixLength(normalized);
+        while (start < normalized.length()) {
+            int end = getSegmentEnd(normalized, start);
+            node = node.getOrCreateChild(fold(normalized.substring(start, end)));
+            start = end + 1;
+        }
+        node.isPermitted = true;
+    }
+
+    /**
+     * Returns whether the specified file is part of the workspace or of one of the permitted directories.
+     *
+     * @param fileName
+     *         the absolute path of the file
+     *
+     * @return {@code true} if the file is permitted, {@code false} otherwise
+     */
+    public boolean isPermitted(final String fileName) {
+        if (resolver == null) {
+            return matches(fileName);
+        }
+        try {
+            return matches(resolver.resolve(fileName).toString());
+        }
+        catch (IOException | IllegalArgumentException exception) {
+            return false;
+        }
+    }
+
+    private boolean matches(final String fileName) {
+        String normalized = normalize(fileName);
+        if (StringUtils.isEmpty(normalized)) {
+            return false;
+        }
+        Node node = root.getChild(getPrefix(normalized));
+        int start = FilenameUtils.getPrefixLength(normalized);
+        while (node != null) {
+            if (node.isPermitted) {
+                return true;
+            }
+            if (start >= normalized.length()) {
+                return false;
+            }
+            int end = getSegmentEnd(normalized, start);
+            node = node.getChild(fold(normalized.substring(start, end)));
+            start = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the files that are part of the workspace or of one of the permitted directories.
+     *
+     * @param fileNames
+     *         the absolute paths of the files
+     *
+     * @return the permitted files, in the same order as the specified files
+     */
+    public List<String> filterPermitted(final Collection<String> fileNames) {
+        List<String> permitted = new ArrayList<>(fileNames.size());
+        for (String fileName : fileNames) {
+            if (isPermitted(fileName)) {
+                permitted.add(fileName);
+            }
+        }
+        return permitted;
+    }
+
+    @CheckForNull
+    private static String normalize(final String path) {
+        return FilenameUtils.normalizeNoEndSeparator(StringUtils.replaceChars(path, '\\', SEPARATOR), true);
+    }
+
+    private String getPrefix(final String normalized) {
+        return fold(FilenameUtils.getPrefix(normalized));
+    }
+
+    private static int getSegmentEnd(final String path, final int start) {
+        int end = path.indexOf(SEPARATOR, start);
+        return end < 0 ? path.length() : end;
+    }
+
+    private String fold(final String segment) {
+        return isCaseSensitive ? segment : segment.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * A segment of a permitted directory.
+     */
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private boolean isPermitted;
+
+        Node getOrCreateChild(final String segment) {
+            return children.computeIfAbsent(segment, key -> new Node());
+        }
+
+        @CheckForNull
+        Node getChild(final String segment) {
+            return children.get(segment);
+        }
+    }
+}
@@ -41,6 +41,24 @@ import io.jenkins.plugins.util.JenkinsFacade;
  *      <b>Theme</b>: Prism supports several themes that can be used to adapt the look and feel. You can configure the
  *      default theme that is used for all Jenkins jobs.
  *     </li>
+ *     <li>
+ *      <b>Context lines</b>: the number of lines that are shown before and after a marker in the source code view.
+ *      The remaining lines of the file will be loaded on demand. If this value is 0, then the whole file is rendered.
+ *     </li>
+ *     <li>
+ *      <b>Cache</b>: the rendered HTML of source code files can be cached in memory and optionally on disk in the
+ *      build folder. You can configure the size of the in-memory cache (in megabytes) and whether the on-disk cache
+ *      should be used.
+ *     </li>
+ *     <li>
+ *      <b>Server side highlighting</b>: the source code of supported languages can be split into syntax tokens on the
+ *      server. Then Prism.js does not need to tokenize large files in the browser.
+ *     </li>
+ *     <li>
+ *      <b>Admission control</b>: the maximum number of source code files that are rendered concurrently and the
+ *      memory budget of these renders (in megabytes). Additional requests wait for a short time and are rejected
+ *      afterwards, see {@link RenderAdmission}.
+ *     </li>
  * </ul>
  *
  * @author Ullrich Hafner
@@ -50,10 +68,25 @@ import io.jenkins.plugins.util.JenkinsFacade;
 @SuppressWarnings("PMD.DataClass")
 public class PrismConfiguration extends GlobalConfigurationItem {
     private static final PathUtil PATH_UTIL = new PathUtil();
+    private static final int DEFAULT_CACHE_SIZE = 16;
+    private static final int DEFAULT_MAXIMUM_CONCURRENT_RENDERS = 4;
+    private static final int DEFAULT_RENDER_MEMORY_BUDGET = 256;
+    private static final int DEFAULT_RETAINED_BUILDS = 10;
+    private static final int DEFAULT_RETAINED_DAYS = 30;
+    private static final int DEFAULT_SOURCE_CODE_BUDGET = 1024;
 
     private List<PermittedSourceCodeDirectory> sourceDirectories = Collections.emptyList();
     private Set<String> normalizedSourceDirectories = Collections.emptySet();
     private PrismTheme theme = PrismTheme.PRISM;
+    private int contextLines;
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+    private boolean diskCacheEnabled;
+    private boolean serverSideHighlighting;
+    private int maximumConcurrentRenders = DEFAULT_MAXIMUM_CONCURRENT_RENDERS;
+    private int renderMemoryBudget = DEFAULT_RENDER_MEMORY_BUDGET;
+    private int retainedBuilds = DEFAULT_RETAINED_BUILDS;
+    private int retainedDays = DEFAULT_RETAINED_DAYS;
+    private int sourceCodeBudget = DEFAULT_SOURCE_CODE_BUDGET;
     private final JenkinsFacade jenkins;
 
     /**
@@ -145,6 +178,153 @@ public class PrismConfiguration extends GlobalConfigurationItem {
         return theme;
     }
 
+    /**
+     * Sets the number of lines that should be rendered before and after a marker in the source code view. The
+     * remaining lines of the file will be loaded on demand. If this value is 0, then the whole file is rendered.
+     *
+     * @param contextLines
+     *         the number of lines to show before and after a marker
+     */
+    @DataBoundSetter
+    public void setContextLines(final int contextLines) {
+        this.contextLines = Math.max(contextLines, 0);
+    }
+
+    public int getContextLines() {
+        return contextLines;
+    }
+
+    /**
+     * Sets the size of the in-memory cache for rendered source code files. If this value is 0, then rendered source
+     * code files will not be cached in memory.
+     *
+     * @param cacheSize
+     *         the size of the cache in megabytes
+     */
+    @DataBoundSetter
+    public void setCacheSize(final int cacheSize) {
+        this.cacheSize = Math.max(cacheSize, 0);
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Enables or disables the on-disk cache for rendered source code files. If enabled, then the rendered HTML will be
+     * stored in the folder of the build that owns the source code file, up to a budget of
+     * {@link RenderedSourceCache#MAXIMUM_DISK_SIZE} bytes per build.
+     *
+     * @param diskCacheEnabled
+     *         determines whether the on-disk cache should be used
+     */
+    @DataBoundSetter
+    public void setDiskCacheEnabled(final boolean diskCacheEnabled) {
+        this.diskCacheEnabled = diskCacheEnabled;
+    }
+
+    public boolean isDiskCacheEnabled() {
+        return diskCacheEnabled;
+    }
+
+    /**
+     * Enables or disables the syntax highlighting on the server. If enabled, then the source code of supported
+     * languages will be split into syntax tokens on the server, so that Prism.js does not need to tokenize the source
+     * code in the browser. The source code of all other languages will still be highlighted in the browser.
+     *
+     * @param serverSideHighlighting
+     *         determines whether the source code should be highlighted on the server
+     */
+    @DataBoundSetter
+    public void setServerSideHighlighting(final boolean serverSideHighlighting) {
+        this.serverSideHighlighting = serverSideHighlighting;
+    }
+
+    public boolean isServerSideHighlighting() {
+        return serverSideHighlighting;
+    }
+
+    /**
+     * Sets the maximum number of source code files that will be rendered concurrently. If this value is 0, then the
+     * number of concurrent renders is not limited.
+     *
+     * @param maximumConcurrentRenders
+     *         the maximum number of concurrent renders
+     */
+    @DataBoundSetter
+    public void setMaximumConcurrentRenders(final int maximumConcurrentRenders) {
+        this.maximumConcurrentRenders = Math.max(maximumConcurrentRenders, 0);
+    }
+
+    public int getMaximumConcurrentRenders() {
+        return maximumConcurrentRenders;
+    }
+
+    /**
+     * Sets the memory budget of all concurrent renders of source code files. If this value is 0, then the memory
+     * of concurrent renders is not limited.
+     *
+     * @param renderMemoryBudget
+     *         the memory budget in megabytes
+     */
+    @DataBoundSetter
+    public void setRenderMemoryBudget(final int renderMemoryBudget) {
+        this.renderMemoryBudget = Math.max(renderMemoryBudget, 0);
+    }
+
+    public int getRenderMemoryBudget() {
+        return renderMemoryBudget;
+    }
+
+    /**
+     * Sets the number of builds whose source code files are retained by {@link SourceCodeRetention#LAST_BUILDS}.
+     * The current build is part of this number.
+     *
+     * @param retainedBuilds
+     *         the number of builds
+     */
+    @DataBoundSetter
+    public void setRetainedBuilds(final int retainedBuilds) {
+        this.retainedBuilds = Math.max(retainedBuilds, 1);
+    }
+
+    public int getRetainedBuilds() {
+        return retainedBuilds;
+    }
+
+    /**
+     * Sets the number of days the source code files of a build are retained by
+     * {@link SourceCodeRetention#RECENT_BUILDS}.
+     *
+     * @param retainedDays
+     *         the number of days
+     */
+    @DataBoundSetter
+    public void setRetainedDays(final int retainedDays) {
+        this.retainedDays = Math.max(retainedDays, 0);
+    }
+
+    public int getRetainedDays() {
+        return retainedDays;
+    }
+
+    /**
+     * Sets the disk budget for the source code files of all builds of a job that is used by
+     * {@link SourceCodeRetention#DISK_BUDGET}. The source code files of the oldest builds are deleted first if the
+     * budget is exceeded.
+     *
+     * @param sourceCodeBudget
+     *         the disk budget in megabytes
+     */
+    @DataBoundSetter
+    public void setSourceCodeBudget(final int sourceCodeBudget) {
+        this.sourceCodeBudget = Math.max(sourceCodeBudget, 0);
+    }
+
+    public int getSourceCodeBudget() {
+        return sourceCodeBudget;
+    }
+
     /**
      * Returns all available themes.
      *
@@ -0,0 +1,182 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+/**
+ * Sends the raw content of a source code file. The bytes of the file are transferred from a {@link FileChannel} to the
+ * response, so the content is neither decoded nor copied into Java strings. Single byte ranges of the HTTP
+ * {@code Range} header are supported, so that clients can resume downloads or fetch parts of large files. Requests
+ * with several ranges are answered with the whole file.
+ *
+ * @author Ullrich Hafner
+ */
+final class RawSourceDownload {
+    private static final Pattern SINGLE_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    /**
+     * Sends the specified file as response to the specified request.
+     *
+     * @param request
+     *         the request
+     * @param response
+     *         the response
+     * @param file
+     *         the file to send
+     * @param charset
+     *         the charset of the file
+     *
+     * @throws IOException
+     *         if the file could not be read or the response could not be written
+     */
+    static void send(final HttpServletRequest request, final HttpServletResponse response, final Path file,
+            final Charset charset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            String entityTag = ConditionalRequests.createEntityTag("raw", file.toString(), String.valueOf(size),
+                    String.valueOf(Files.getLastModifiedTime(file).toMillis()));
+            if (ConditionalRequests.answerIfNotModified(request, response, entityTag)) {
+                return;
+            }
+
+            ConditionalRequests.setEntityTag(response, entityTag);
+            response.setContentType("text/plain;charset=" + charset.name());
+            response.setHeader("X-Content-Type-Options", "nosniff");
+            response.setHeader("Accept-Ranges", "bytes");
+
+            String rangeHeader = isRangeApplicable(request, entityTag) ? request.getHeader("Range") : null;
+            Optional<ByteRange> range = ByteRange.parse(rangeHeader, size);
+            if (range.isPresent()) {
+                ByteRange byteRange = range.get();
+                if (!byteRange.isSatisfiable()) {
+                    response.setHeader("Content-Range", "bytes */" + size);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range",
+                        String.format("bytes %d-%d/%d", byteRange.getFirst(), byteRange.getLast(), size));
+                transfer(channel, byteRange.getFirst(), byteRange.getLength(), response);
+            }
+            else {
+                transfer(channel, 0, size, response);
+            }
+        }
+    }
+
+    private static boolean isRangeApplicable(final HttpServletRequest request, final String entityTag) {
+        String ifRange = request.getHeader("If-Range");
+        return ifRange == null || ifRange.equals(entityTag);
+    }
+
+    private static void transfer(final FileChannel channel, final long position, final long length,
+            final HttpServletResponse response) throws IOException {
+        response.setContentLengthLong(length);
+        WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+        long transferred = 0;
+        while (transferred < length) {
+            long count = channel.transferTo(position + transferred, length - transferred, target);
+            if (count <= 0) {
+                break; // the file has been truncated
+            }
+            transferred += count;
+        }
+        response.flushBuffer();
+    }
+
+    /**
+     * A single range of bytes of a file.
+     */
+    static final class ByteRange {
+        private static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+        /**
+         * Parses the specified {@code Range} header.
+         *
+         * @param header
+         *         the value of the {@code Range} header, might be {@code null}
+         * @param size
+         *         the size of the file in bytes
+         *
+         * @return the requested range, or an empty optional if the whole file should be sent, i.e. if there is no
+         *         header, the header is not valid, or the header contains several ranges
+         */
+        static Optional<ByteRange> parse(@CheckForNull final String header, final long size) {
+            if (header == null) {
+                return Optional.empty();
+            }
+            Matcher matcher = SINGLE_RANGE.matcher(header.trim());
+            if (!matcher.matches()) {
+                return Optional.empty();
+            }
+            String first = matcher.group(1);
+            String last = matcher.group(2);
+            try {
+                if (first.isEmpty()) {
+                    if (last.isEmpty()) {
+                        return Optional.empty();
+                    }
+                    long suffixLength = Long.parseLong(last);
+                    if (suffixLength == 0 || size == 0) {
+                        return Optional.of(UNSATISFIABLE);
+                    }
+                    return Optional.of(new ByteRange(Math.max(0, size - suffixLength), size - 1));
+                }
+                long start = Long.parseLong(first);
+                long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+                if (!last.isEmpty() && Long.parseLong(last) < start) {
+                    return Optional.empty(); // syntactically invalid range
+                }
+                if (start >= size) {
+                    return Optional.of(UNSATISFIABLE);
+                }
+                return Optional.of(new ByteRange(start, end));
+            }
+            catch (NumberFormatException exception) {
+                return Optional.empty(); // values too large
+            }
+        }
+
+        private final long first;
+        private final long last;
+
+        private ByteRange(final long first, final long last) {
+            this.first = first;
+            this.last = last;
+        }
+
+        boolean isSatisfiable() {
+            return first >= 0;
+        }
+
+        long getFirst() {
+            return first;
+        }
+
+        long getLast() {
+            return last;
+        }
+
+        long getLength() {
+            return last - first + 1;
+        }
+    }
+
+    private RawSourceDownload() {
+        // prevents instantiation
+    }
+}
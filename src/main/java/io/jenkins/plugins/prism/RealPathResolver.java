@@ -0,0 +1,94 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.hm.hafner.util.VisibleForTesting;
+
+/**
+ * Resolves the real paths of files, i.e. the paths with all symbolic links resolved. Resolving the real path of each
+ * file with {@link Path#toRealPath(LinkOption...)} requires a file system call for each segment of the path. Since
+ * source code files typically share deep directory trees, this resolver resolves the path segment by segment and
+ * memoizes the real paths of the directories. Then each directory is resolved only once, and resolving another file
+ * in an already known directory requires a single file system call.
+ *
+ * <p>
+ * A resolver should be used for a single check session only (e.g., for the files of a single build): the memoized
+ * directories are never invalidated, so changes of symbolic links afterwards are not detected. Resolvers are thread
+ * safe.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+public final class RealPathResolver {
+    private static final String CURRENT = ".";
+    private static final String PARENT = "..";
+
+    private final Map<Path, Path> directories = new ConcurrentHashMap<>();
+    private final AtomicLong fileSystemCalls = new AtomicLong();
+
+    /**
+     * Returns the real path of the specified file. All symbolic links in the path are resolved, {@code .} and
+     * {@code ..} segments are resolved after the preceding segments have been resolved, just like the file system does.
+     *
+     * @param fileName
+     *         the absolute path of the file
+     *
+     * @return the real path of the file
+     * @throws IOException
+     *         if the file or one of its directories does not exist, or if a symbolic link could not be resolved
+     */
+    public Path resolve(final String fileName) throws IOException {
+        Path path = Paths.get(fileName);
+        Path root = path.getRoot();
+        if (root == null || !path.isAbsolute()) {
+            throw new IOException("Source code file is not an absolute path: " + fileName);
+        }
+
+        Path current = root;
+        int count = path.getNameCount();
+        for (int i = 0; i < count; i++) {
+            String segment = path.getName(i).toString();
+            if (PARENT.equals(segment)) {
+                Path parent = current.getParent();
+                current = parent == null ? current : parent;
+            }
+            else if (!CURRENT.equals(segment)) {
+                current = i < count - 1 ? resolveDirectory(current, segment) : resolveSegment(current.resolve(segment));
+            }
+        }
+        return current;
+    }
+
+    private Path resolveDirectory(final Path realParent, final String segment) throws IOException {
+        Path directory = realParent.resolve(segment);
+        Path resolved = directories.get(directory);
+        if (resolved == null) {
+            resolved = resolveSegment(directory);
+            directories.put(directory, resolved);
+        }
+        return resolved;
+    }
+
+    private Path resolveSegment(final Path path) throws IOException {
+        fileSystemCalls.incrementAndGet();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+        if (attributes.isSymbolicLink()) {
+            return path.toRealPath();
+        }
+        return path;
+    }
+
+    @VisibleForTesting
+    long getFileSystemCalls() {
+        return fileSystemCalls.get();
+    }
+}
@@ -0,0 +1,230 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+import edu.hm.hafner.util.VisibleForTesting;
+
+/**
+ * Limits the number of source code files that are rendered at the same time. Each render requires a permit that
+ * reserves an estimated amount of memory. A permit is granted if both the maximum number of concurrent renders and the
+ * memory budget are not exceeded. Otherwise, the request waits in a short queue: if no permit becomes available in
+ * time or if the queue is full, then the request is rejected with a {@link BusyException}, so that the user can retry
+ * later rather than the controller running out of memory.
+ *
+ * <p>
+ * The limits are read from the {@link PrismConfiguration} whenever a permit is requested, a value of 0 disables the
+ * corresponding limit. A single render that requires more memory than the whole budget is admitted if no other
+ * render is active. The length of the queue is always bounded: it is derived from the maximum number of concurrent
+ * renders, or is {@link #DEFAULT_QUEUE_LENGTH fixed} if the number of concurrent renders is not limited.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+public final class RenderAdmission {
+    private static final long MEGA_BYTES = 1024 * 1024;
+    /** Number of waiting requests per permitted concurrent render. */
+    private static final int QUEUE_FACTOR = 2;
+    /** Number of waiting requests if the number of concurrent renders is not limited. */
+    @VisibleForTesting
+    static final int DEFAULT_QUEUE_LENGTH = 16;
+    private static final long MAXIMUM_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private static final RenderAdmission INSTANCE = new RenderAdmission(
+            () -> PrismConfiguration.getInstance().getMaximumConcurrentRenders(),
+            () -> PrismConfiguration.getInstance().getRenderMemoryBudget() * MEGA_BYTES,
+            MAXIMUM_WAIT_MILLIS);
+
+    /**
+     * Returns the admission control that is shared by all source code views.
+     *
+     * @return the shared admission control
+     */
+    public static RenderAdmission getInstance() {
+        return INSTANCE;
+    }
+
+    private final IntSupplier maximumRenders;
+    private final LongSupplier memoryBudget;
+    private final long maximumWaitMillis;
+
+    private int activeCount;
+    private long reservedMemory;
+    private int waitingCount;
+
+    private long admittedCount;
+    private long queuedCount;
+    private long rejectedCount;
+
+    @VisibleForTesting
+    RenderAdmission(final IntSupplier maximumRenders, final LongSupplier memoryBudget, final long maximumWaitMillis) {
+        this.maximumRenders = maximumRenders;
+        this.memoryBudget = memoryBudget;
+        this.maximumWaitMillis = maximumWaitMillis;
+    }
+
+    /**
+     * Requests a permit to render a source code file. If the limits are exceeded, then the request waits for a short
+     * time until another render has been finished. The permit must be closed when the render has been finished.
+     *
+     * @param memory
+     *         the estimated number of bytes that will be required to render the file
+     *
+     * @return the permit
+     * @throws BusyException
+     *         if the limits are still exceeded after waiting, or if too many requests are already waiting
+     * @throws InterruptedIOException
+     *         if the thread has been interrupted while waiting
+     */
+    public synchronized Permit acquire(final long memory) throws IOException {
+        if (canAdmit(memory)) {
+            return admit(memory);
+        }
+
+        if (waitingCount >= getMaximumQueueLength()) {
+            rejectedCount++;
+            throw new BusyException();
+        }
+
+        queuedCount++;
+        waitingCount++;
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maximumWaitMillis);
+            while (!canAdmit(memory)) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    rejectedCount++;
+                    throw new BusyException();
+                }
+                wait(remaining);
+            }
+            return admit(memory);
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            rejectedCount++;
+            throw new InterruptedIOException("Interrupted while waiting for a permit to render source code");
+        }
+        finally {
+            waitingCount--;
+        }
+    }
+
+    private int getMaximumQueueLength() {
+        int maximum = maximumRenders.getAsInt();
+        return maximum > 0 ? maximum * QUEUE_FACTOR : DEFAULT_QUEUE_LENGTH;
+    }
+
+    private boolean canAdmit(final long memory) {
+        if (activeCount == 0) {
+            return true;
+        }
+        int maximum = maximumRenders.getAsInt();
+        if (maximum > 0 && activeCount >= maximum) {
+            return false;
+        }
+        long budget = memoryBudget.getAsLong();
+        return budget <= 0 || reservedMemory + memory <= budget;
+    }
+
+    private Permit admit(final long memory) {
+        activeCount++;
+        reservedMemory += memory;
+        admittedCount++;
+        return new Permit(memory);
+    }
+
+    private synchronized void release(final long memory) {
+        activeCount--;
+        reservedMemory -= memory;
+        notifyAll();
+    }
+
+    /**
+     * Returns the number of renders that are currently active.
+     *
+     * @return the number of active renders
+     */
+    public synchronized int getActiveCount() {
+        return activeCount;
+    }
+
+    /**
+     * Returns the number of bytes that are currently reserved by the active renders.
+     *
+     * @return the reserved memory
+     */
+    public synchronized long getReservedMemory() {
+        return reservedMemory;
+    }
+
+    /**
+     * Returns the number of requests that are currently waiting for a permit.
+     *
+     * @return the number of waiting requests
+     */
+    public synchronized int getWaitingCount() {
+        return waitingCount;
+    }
+
+    /**
+     * Returns the number of permits that have been granted so far.
+     *
+     * @return the number of admitted requests
+     */
+    public synchronized long getAdmittedCount() {
+        return admittedCount;
+    }
+
+    /**
+     * Returns the number of requests that had to wait for a permit so far.
+     *
+     * @return the number of queued requests
+     */
+    public synchronized long getQueuedCount() {
+        return queuedCount;
+    }
+
+    /**
+     * Returns the number of requests that have been rejected so far.
+     *
+     * @return the number of rejected requests
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * A permit to render a source code file. Closing the permit releases the reserved resources.
+     */
+    public final class Permit implements AutoCloseable {
+        private final long memory;
+        private boolean isReleased;
+
+        private Permit(final long memory) {
+            this.memory = memory;
+        }
+
+        @Override
+        public void close() {
+            if (!isReleased) {
+                isReleased = true;
+                release(memory);
+            }
+        }
+    }
+
+    /**
+     * Thrown if a source code file cannot be rendered right now, since too many other files are being rendered.
+     */
+    public static final class BusyException extends IOException {
+        private static final long serialVersionUID = -2553541298226546052L;
+
+        BusyException() {
+            super("Too many source code files are being rendered at the moment, please try again later");
+        }
+    }
+}
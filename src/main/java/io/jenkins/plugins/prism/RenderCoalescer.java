@@ -0,0 +1,292 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.hm.hafner.util.VisibleForTesting;
+
+import io.jenkins.plugins.prism.RenderedSourceCache.RecordingWriter;
+
+/**
+ * Coalesces identical renders of source code files that are requested at the same time. The first request of a
+ * source code file renders the file and streams the HTML to its client, while the HTML is recorded. All requests for
+ * the same file (same content, markers, and theme, see {@link RenderedSourceCache#createKey}) that arrive while the
+ * file is being rendered wait for the recorded HTML and write it to their clients. So the file is read and rendered
+ * only once, even if no {@link RenderedSourceCache} is configured.
+ *
+ * <p>
+ * If the HTML exceeds the recording limit, if the first request fails, or if the waiting time exceeds the timeout,
+ * then a waiting request renders the file on its own. If the client of the first request disconnects while other
+ * requests are waiting, then the file is still rendered completely for the waiting requests.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+public final class RenderCoalescer {
+    /** Maximum number of characters that will be recorded if no {@link RenderedSourceCache} is configured. */
+    static final int DEFAULT_RECORDING_LIMIT = 4 * 1024 * 1024;
+
+    private static final RenderCoalescer INSTANCE = new RenderCoalescer(TimeUnit.SECONDS.toMillis(30));
+
+    /**
+     * Returns the coalescer that is shared by all source code views.
+     *
+     * @return the shared coalescer
+     */
+    public static RenderCoalescer getInstance() {
+        return INSTANCE;
+    }
+
+    private final long maximumWaitMillis;
+    private final Map<String, Flight> inFlight = new HashMap<>();
+
+    private final AtomicLong renderCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong fallbackCount = new AtomicLong();
+
+    @VisibleForTesting
+    RenderCoalescer(final long maximumWaitMillis) {
+        this.maximumWaitMillis = maximumWaitMillis;
+    }
+
+    /**
+     * Renders a source code file to the specified writer. If the same file is already being rendered by another
+     * thread, then the HTML of this render will be written instead.
+     *
+     * @param key
+     *         the key that identifies the rendered HTML, see {@link RenderedSourceCache#createKey}
+     * @param writer
+     *         the writer to write the HTML to
+     * @param recordingLimit
+     *         the maximum number of characters that will be recorded to share the HTML with waiting threads
+     * @param renderer
+     *         renders the source code file
+     *
+     * @return the recorded HTML if this thread has rendered the file, an empty optional if the HTML has been shared by
+     *         another thread or if it exceeds the recording limit
+     * @throws IOException
+     *         if the file could not be rendered or if the HTML could not be written
+     */
+    public Optional<String> render(final String key, final Writer writer, final int recordingLimit,
+            final SourceRenderer renderer) throws IOException {
+        Flight flight;
+        boolean isLeader;
+        synchronized (inFlight) {
+            flight = inFlight.get(key);
+            isLeader = flight == null;
+            if (isLeader) {
+                flight = new Flight();
+                inFlight.put(key, flight);
+            }
+            else {
+                flight.waiting++;
+            }
+        }
+
+        if (isLeader) {
+            return lead(key, flight, writer, recordingLimit, renderer);
+        }
+
+        Optional<String> shared = await(flight);
+        if (shared.isPresent()) {
+            coalescedCount.incrementAndGet();
+            writer.write(shared.get());
+        }
+        else {
+            fallbackCount.incrementAndGet();
+            renderer.render(writer);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Returns whether the source code file with the specified key is currently being rendered. Then a subsequent
+     * render of the same key will wait for the HTML of this render rather than rendering the file again.
+     *
+     * @param key
+     *         the key that identifies the rendered HTML, see {@link RenderedSourceCache#createKey}
+     *
+     * @return {@code true} if the file is currently being rendered, {@code false} otherwise
+     */
+    public boolean isRendering(final String key) {
+        synchronized (inFlight) {
+            return inFlight.containsKey(key);
+        }
+    }
+
+    private Optional<String> lead(final String key, final Flight flight, final Writer writer,
+            final int recordingLimit, final SourceRenderer renderer) throws IOException {
+        renderCount.incrementAndGet();
+        Optional<String> html = Optional.empty();
+        try {
+            DetachableWriter client = new DetachableWriter(writer, flight);
+            RecordingWriter recorder = new RecordingWriter(client, recordingLimit);
+            renderer.render(recorder);
+            html = recorder.getRecorded();
+            client.rethrow();
+            return html;
+        }
+        finally {
+            synchronized (inFlight) {
+                inFlight.remove(key);
+            }
+            flight.html.complete(html);
+        }
+    }
+
+    private Optional<String> await(final Flight flight) throws InterruptedIOException {
+        try {
+            return flight.html.get(maximumWaitMillis, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the rendered source code");
+        }
+        catch (ExecutionException | TimeoutException exception) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the number of renders that have been started.
+     *
+     * @return the number of renders
+     */
+    public long getRenderCount() {
+        return renderCount.get();
+    }
+
+    /**
+     * Returns the number of requests that have been served with the HTML of another render.
+     *
+     * @return the number of coalesced requests
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Returns the number of requests that waited for another render but needed to render the file on their own.
+     *
+     * @return the number of fallback renders
+     */
+    public long getFallbackCount() {
+        return fallbackCount.get();
+    }
+
+    @VisibleForTesting
+    int getWaitingCount(final String key) {
+        synchronized (inFlight) {
+            Flight flight = inFlight.get(key);
+            return flight == null ? 0 : flight.waiting;
+        }
+    }
+
+    /**
+     * Renders the HTML of a source code file.
+     */
+    @FunctionalInterface
+    public interface SourceRenderer {
+        /**
+         * Renders the HTML of a source code file to the specified writer.
+         *
+         * @param writer
+         *         the writer to write the HTML to
+         *
+         * @throws IOException
+         *         if the file could not be rendered or if the HTML could not be written
+         */
+        void render(Writer writer) throws IOException;
+    }
+
+    /**
+     * A render that is in progress.
+     */
+    private static class Flight {
+        private final CompletableFuture<Optional<String>> html = new CompletableFuture<>();
+        private int waiting; // guarded by inFlight
+    }
+
+    /**
+     * Writes to the client of the first request. If the client disconnects while other requests are waiting for the
+     * HTML, then the writer detaches from the client so that the render can be completed for the waiting requests.
+     * The failure will be reported to the first request afterwards.
+     */
+    private class DetachableWriter extends Writer {
+        private final Writer delegate;
+        private final Flight flight;
+        private IOException failure;
+
+        DetachableWriter(final Writer delegate, final Flight flight) {
+            super();
+
+            this.delegate = delegate;
+            this.flight = flight;
+        }
+
+        @Override
+        public void write(final char[] buffer, final int offset, final int length) throws IOException {
+            if (failure == null) {
+                try {
+                    delegate.write(buffer, offset, length);
+                }
+                catch (IOException exception) {
+                    detach(exception);
+                }
+            }
+        }
+
+        @Override
+        public void write(final String text, final int offset, final int length) throws IOException {
+            if (failure == null) {
+                try {
+                    delegate.write(text, offset, length);
+                }
+                catch (IOException exception) {
+                    detach(exception);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (failure == null) {
+                try {
+                    delegate.flush();
+                }
+                catch (IOException exception) {
+                    detach(exception);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        private void detach(final IOException exception) throws IOException {
+            synchronized (inFlight) {
+                if (flight.waiting == 0) {
+                    throw exception;
+                }
+            }
+            failure = exception;
+        }
+
+        void rethrow() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,610 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+import edu.hm.hafner.util.VisibleForTesting;
+
+/**
+ * Caches the HTML of rendered source code files. Source code files that are stored for a build do not change anymore,
+ * so the rendered HTML of a file can be reused as long as the content of the file, the marker, the theme, and the
+ * rendering algorithm are the same. The cache consists of two tiers:
+ *
+ * <ul>
+ *     <li>a size-bounded in-memory tier that evicts the least recently used entries</li>
+ *     <li>an optional on-disk tier that stores the rendered HTML in a sub-folder of the build</li>
+ * </ul>
+ *
+ * <p>
+ * The on-disk tier of a build is bounded by a budget of bytes: if storing an entry exceeds the budget, then the least
+ * recently used entries of the build are deleted. Additionally, the whole on-disk tier is deleted together with the
+ * source code files of the build when the build is cleaned by the {@link SourceCodeRetention}.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+public final class RenderedSourceCache {
+    /** Version of the rendering algorithm: increment this value if the HTML of {@link SourcePrinter} changes. */
+    static final int PRINTER_VERSION = 2;
+
+    /** Name of the sub-folder of a build that contains the on-disk tier and the {@link LineIndex} files. */
+    static final String CACHE_DIRECTORY = "prism-cache";
+    private static final String HTML_SUFFIX = ".html";
+    private static final long MEGA_BYTES = 1024 * 1024;
+    private static final char SEPARATOR = '\0';
+    private static final int BUFFER_SIZE = 8192;
+    /** Maximum number of characters of an entry that is stored in the on-disk tier only. */
+    private static final int MAXIMUM_DISK_ENTRY_SIZE = 8 * 1024 * 1024;
+    /** Maximum number of bytes of the on-disk tier of a single build. */
+    static final long MAXIMUM_DISK_SIZE = 64 * MEGA_BYTES;
+
+    private static final RenderedSourceCache INSTANCE = new RenderedSourceCache(
+            () -> PrismConfiguration.getInstance().getCacheSize() * MEGA_BYTES / Character.BYTES,
+            () -> PrismConfiguration.getInstance().isDiskCacheEnabled(), () -> MAXIMUM_DISK_SIZE);
+
+    /**
+     * Returns the cache that is shared by all source code views.
+     *
+     * @return the shared cache
+     */
+    public static RenderedSourceCache getInstance() {
+        return INSTANCE;
+    }
+
+    private final LongSupplier maximumSize;
+    private final BooleanSupplier isDiskCacheEnabled;
+    private final LongSupplier maximumDiskSize;
+
+    private final Map<String, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+
+    @VisibleForTesting
+    RenderedSourceCache(final LongSupplier maximumSize, final BooleanSupplier isDiskCacheEnabled) {
+        this(maximumSize, isDiskCacheEnabled, () -> MAXIMUM_DISK_SIZE);
+    }
+
+    @VisibleForTesting
+    RenderedSourceCache(final LongSupplier maximumSize, final BooleanSupplier isDiskCacheEnabled,
+            final LongSupplier maximumDiskSize) {
+        this.maximumSize = maximumSize;
+        this.isDiskCacheEnabled = isDiskCacheEnabled;
+        this.maximumDiskSize = maximumDiskSize;
+    }
+
+    /**
+     * Returns whether this cache is enabled. The cache is disabled if neither the in-memory tier nor the on-disk tier
+     * is enabled.
+     *
+     * @return {@code true} if the cache is enabled, {@code false} otherwise
+     */
+    public boolean isEnabled() {
+        return getMaximumSize() > 0 || isDiskCacheEnabled.getAsBoolean();
+    }
+
+    /**
+     * Returns the maximum number of characters that will be stored in the in-memory tier.
+     *
+     * @return the maximum number of characters
+     */
+    public long getMaximumSize() {
+        return Math.max(0, maximumSize.getAsLong());
+    }
+
+    /**
+     * Returns the number of characters that are currently stored in the in-memory tier.
+     *
+     * @return the number of characters
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of entries that are currently stored in the in-memory tier.
+     *
+     * @return the number of entries
+     */
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of lookups that have been answered by the in-memory tier.
+     *
+     * @return the number of hits in memory
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that have been answered by the on-disk tier.
+     *
+     * @return the number of hits on disk
+     */
+    public long getDiskHitCount() {
+        return diskHits.get();
+    }
+
+    /**
+     * Returns the number of lookups that have been answered by neither tier.
+     *
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of entries that have been evicted from the in-memory tier.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the number of entries that have been deleted from the on-disk tier of a build because its budget has
+     * been exceeded.
+     *
+     * @return the number of evictions on disk
+     */
+    public long getDiskEvictionCount() {
+        return diskEvictions.get();
+    }
+
+    /**
+     * Returns the rendered HTML for the specified key. If the HTML is not part of the in-memory tier, then the on-disk
+     * tier in the specified build folder will be searched. Entries found on disk are promoted to the in-memory tier
+     * and marked as recently used in the on-disk tier.
+     *
+     * @param key
+     *         the key of the entry, see {@link #createKey(String, String, Marker, int, PrismTheme)}
+     * @param buildDirectory
+     *         the root folder of the build that owns the source code file
+     *
+     * @return the rendered HTML, or an empty optional if the entry is not cached
+     */
+    public Optional<String> get(final String key, final Path buildDirectory) {
+        String html = getFromMemory(key);
+        if (html != null) {
+            hits.incrementAndGet();
+            return Optional.of(html);
+        }
+        if (isDiskCacheEnabled.getAsBoolean()) {
+            Path file = getCacheFile(key, buildDirectory);
+            if (Files.isRegularFile(file)) {
+                try {
+                    String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                    Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                    putIntoMemory(key, content);
+                    diskHits.incrementAndGet();
+                    return Optional.of(content);
+                }
+                catch (IOException ignore) {
+                    // ignore and treat as a miss
+                }
+            }
+        }
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    /**
+     * Returns whether the rendered HTML for the specified key is cached. In contrast to
+     * {@link #get(String, Path)}, the HTML is not read and the statistics are not updated.
+     *
+     * @param key
+     *         the key of the entry, see {@link #createKey(String, String, Marker, int, PrismTheme)}
+     * @param buildDirectory
+     *         the root folder of the build that owns the source code file
+     *
+     * @return {@code true} if the entry is cached in one of the tiers, {@code false} otherwise
+     */
+    public boolean contains(final String key, final Path buildDirectory) {
+        return getFromMemory(key) != null
+                || isDiskCacheEnabled.getAsBoolean() && Files.isRegularFile(getCacheFile(key, buildDirectory));
+    }
+
+    /**
+     * Stores the rendered HTML for the specified key. The HTML will be stored in the in-memory tier and, if enabled, in
+     * the on-disk tier in the specified build folder. If the on-disk tier of the build exceeds its budget, then the
+     * least recently used entries of the build will be deleted.
+     *
+     * @param key
+     *         the key of the entry, see {@link #createKey(String, String, Marker, int, PrismTheme)}
+     * @param html
+     *         the rendered HTML
+     * @param buildDirectory
+     *         the root folder of the build that owns the source code file
+     */
+    public void put(final String key, final String html, final Path buildDirectory) {
+        putIntoMemory(key, html);
+        if (isDiskCacheEnabled.getAsBoolean()) {
+            writeToDisk(key, html, buildDirectory);
+        }
+    }
+
+    /**
+     * Removes all entries from the in-memory tier.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    private synchronized String getFromMemory(final String key) {
+        return entries.get(key);
+    }
+
+    private synchronized void putIntoMemory(final String key, final String html) {
+        long limit = getMaximumSize();
+        if (html.length() > limit) {
+            return;
+        }
+        String previous = entries.put(key, html);
+        if (previous != null) {
+            size -= previous.length();
+        }
+        size += html.length();
+
+        Iterator<Entry<String, String>> iterator = entries.entrySet().iterator();
+        while (size > limit && iterator.hasNext()) {
+            Entry<String, String> eldest = iterator.next();
+            size -= eldest.getValue().length();
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void writeToDisk(final String key, final String html, final Path buildDirectory) {
+        byte[] bytes = html.getBytes(StandardCharsets.UTF_8);
+        long limit = maximumDiskSize.getAsLong();
+        if (bytes.length > limit) {
+            return;
+        }
+        try {
+            Path file = getCacheFile(key, buildDirectory);
+            Files.createDirectories(file.getParent());
+            Path temporary = Files.createTempFile(file.getParent(), key, ".tmp");
+            Files.write(temporary, bytes);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            evictFromDisk(file.getParent(), limit);
+        }
+        catch (IOException ignore) {
+            // the on-disk tier is optional
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries of the on-disk tier in the specified folder until the size of the
+     * remaining entries is within the specified limit. Entries are marked as used by their modification time.
+     */
+    private void evictFromDisk(final Path directory, final long limit) throws IOException {
+        Map<Path, BasicFileAttributes> files = new HashMap<>();
+        long total = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*" + HTML_SUFFIX)) {
+            for (Path file : entries) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    files.put(file, attributes);
+                    total += attributes.size();
+                }
+                catch (IOException ignore) {
+                    // the entry has been deleted concurrently
+                }
+            }
+        }
+        if (total <= limit) {
+            return;
+        }
+
+        List<Path> leastRecentlyUsed = new ArrayList<>(files.keySet());
+        leastRecentlyUsed.sort(Comparator.comparing(file -> files.get(file).lastModifiedTime()));
+        for (Iterator<Path> iterator = leastRecentlyUsed.iterator(); iterator.hasNext() && total > limit; ) {
+            Path file = iterator.next();
+            if (Files.deleteIfExists(file)) {
+                diskEvictions.incrementAndGet();
+            }
+            total -= files.get(file).size();
+        }
+    }
+
+    private Path getCacheFile(final String key, final Path buildDirectory) {
+        return getCacheDirectory(buildDirectory).resolve(key + HTML_SUFFIX);
+    }
+
+    /**
+     * Returns the folder of a build that contains the on-disk tier of the cache.
+     *
+     * @param buildDirectory
+     *         the root folder of the build
+     *
+     * @return the cache folder of the build
+     */
+    static Path getCacheDirectory(final Path buildDirectory) {
+        return buildDirectory.resolve(CACHE_DIRECTORY);
+    }
+
+    /**
+     * Returns the maximum number of characters of a single entry. Larger results will not be recorded while rendering,
+     * so the memory that is required to cache a result is bounded.
+     *
+     * @return the maximum size of an entry
+     */
+    int getMaximumEntrySize() {
+        long limit = getMaximumSize();
+        if (isDiskCacheEnabled.getAsBoolean()) {
+            limit = Math.max(limit, MAXIMUM_DISK_ENTRY_SIZE);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, limit);
+    }
+
+    /**
+     * Creates the key of a cache entry. The key is a digest of all properties that influence the rendered HTML.
+     *
+     * @param contentDigest
+     *         the digest of the content of the source code file, see {@link #digest(Reader)}
+     * @param fileName
+     *         the file name of the source code file
+     * @param marker
+     *         the marker to show
+     * @param contextLines
+     *         the number of lines rendered before and after the marker
+     * @param theme
+     *         the active theme
+     *
+     * @return the key
+     */
+    public static String createKey(final String contentDigest, final String fileName, final Marker marker,
+            final int contextLines, final PrismTheme theme) {
+        return createKey(contentDigest, fileName, Collections.singletonList(marker), contextLines, theme);
+    }
+
+    /**
+     * Creates the key of a cache entry for a source code file that highlights several markers. The key is a digest of
+     * all properties that influence the rendered HTML.
+     *
+     * @param contentDigest
+     *         the digest of the content of the source code file, see {@link #digest(Reader)}
+     * @param fileName
+     *         the file name of the source code file
+     * @param markers
+     *         the markers to show
+     * @param contextLines
+     *         the number of lines rendered before and after the marker
+     * @param theme
+     *         the active theme
+     *
+     * @return the key
+     */
+    public static String createKey(final String contentDigest, final String fileName,
+            final Collection<Marker> markers, final int contextLines, final PrismTheme theme) {
+        return createKey(contentDigest, fileName, markers, LineDecorations.NONE, contextLines, theme);
+    }
+
+    /**
+     * Creates the key of a cache entry for a source code file that highlights several markers and decorates its
+     * lines. The key is a digest of all properties that influence the rendered HTML.
+     *
+     * @param contentDigest
+     *         the digest of the content of the source code file, see {@link #digest(Reader)}
+     * @param fileName
+     *         the file name of the source code file
+     * @param markers
+     *         the markers to show
+     * @param decorations
+     *         the CSS classes of the lines
+     * @param contextLines
+     *         the number of lines rendered before and after the marker
+     * @param theme
+     *         the active theme
+     *
+     * @return the key
+     */
+    public static String createKey(final String contentDigest, final String fileName,
+            final Collection<Marker> markers, final LineDecorations decorations, final int contextLines,
+            final PrismTheme theme) {
+        return createKey(contentDigest, fileName, markers, decorations, contextLines, theme, false);
+    }
+
+    /**
+     * Creates the key of a cache entry for a source code file that highlights several markers and decorates its
+     * lines. The key is a digest of all properties that influence the rendered HTML.
+     *
+     * @param contentDigest
+     *         the digest of the content of the source code file, see {@link #digest(Reader)}
+     * @param fileName
+     *         the file name of the source code file
+     * @param markers
+     *         the markers to show
+     * @param decorations
+     *         the CSS classes of the lines
+     * @param contextLines
+     *         the number of lines rendered before and after the marker
+     * @param theme
+     *         the active theme
+     * @param isServerSideHighlighting
+     *         determines whether the syntax of the source code is highlighted on the server
+     *
+     * @return the key
+     */
+    public static String createKey(final String contentDigest, final String fileName,
+            final Collection<Marker> markers, final LineDecorations decorations, final int contextLines,
+            final PrismTheme theme, final boolean isServerSideHighlighting) {
+        MessageDigest digest = createDigest();
+        update(digest, String.valueOf(PRINTER_VERSION));
+        update(digest, contentDigest);
+        update(digest, fileName);
+        for (Marker marker : markers) {
+            update(digest, marker.getTitle());
+            update(digest, marker.getIcon());
+            update(digest, marker.getDescription());
+            update(digest, String.format("%d:%d:%d:%d", marker.getLineStart(), marker.getLineEnd(),
+                    marker.getColumnStart(), marker.getColumnEnd()));
+        }
+        decorations.update(digest);
+        digest.update((byte) SEPARATOR);
+        update(digest, String.valueOf(contextLines));
+        update(digest, theme.name());
+        update(digest, String.valueOf(isServerSideHighlighting));
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Computes the digest of the content that is provided by the specified reader. The digest is computed from the
+     * UTF-16 code units of the content, so it does not depend on the encoding of the file. The reader will be consumed
+     * but not closed.
+     *
+     * @param reader
+     *         the reader that provides the content
+     *
+     * @return the digest of the content as hex string
+     * @throws IOException
+     *         if the content could not be read
+     */
+    public static String digest(final Reader reader) throws IOException {
+        MessageDigest digest = createDigest();
+        char[] buffer = new char[BUFFER_SIZE];
+        byte[] bytes = new byte[2 * BUFFER_SIZE];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                bytes[2 * i] = (byte) (buffer[i] >> 8);
+                bytes[2 * i + 1] = (byte) buffer[i];
+            }
+            digest.update(bytes, 0, 2 * read);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Computes the digest of the specified values.
+     *
+     * @param values
+     *         the values to digest
+     *
+     * @return the digest of the values as hex string
+     */
+    static String digestOf(final String... values) {
+        MessageDigest digest = createDigest();
+        for (String value : values) {
+            update(digest, value);
+        }
+        return toHex(digest.digest());
+    }
+
+    private static void update(final MessageDigest digest, final String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) SEPARATOR);
+    }
+
+    static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is not supported by the JVM", exception);
+        }
+    }
+
+    static String toHex(final byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * A {@link Writer} that forwards all characters to another writer and additionally records the characters until
+     * a given limit is reached. This writer is used to cache the HTML of a source code file that is streamed to the
+     * response.
+     */
+    static class RecordingWriter extends Writer {
+        private final Writer delegate;
+        private final int limit;
+        private StringBuilder recorded = new StringBuilder();
+
+        RecordingWriter(final Writer delegate, final int limit) {
+            super();
+
+            this.delegate = delegate;
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(final char[] buffer, final int offset, final int length) throws IOException {
+            delegate.write(buffer, offset, length);
+            if (canRecord(length)) {
+                recorded.append(buffer, offset, length);
+            }
+        }
+
+        @Override
+        public void write(final String text, final int offset, final int length) throws IOException {
+            delegate.write(text, offset, length);
+            if (canRecord(length)) {
+                recorded.append(text, offset, offset + length);
+            }
+        }
+
+        private boolean canRecord(final int length) {
+            if (recorded != null && recorded.length() + length > limit) {
+                recorded = null; // give up recording, the content is too large
+            }
+            return recorded != null;
+        }
+
+        /**
+         * Returns the recorded characters.
+         *
+         * @return the recorded characters, or an empty optional if the limit has been exceeded
+         */
+        Optional<String> getRecorded() {
+            return Optional.ofNullable(recorded).map(StringBuilder::toString);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package io.jenkins.plugins.prism;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static io.jenkins.plugins.prism.SourceArchiveWriter.*;
+
+/**
+ * The index of an archive that contains the source code files of a build, see {@link SourceArchiveWriter} for details
+ * of the format. Only the index is read when an archive is opened, the content of a file is read on demand: each
+ * {@link Entry} is a {@link SourceCodeReaderFactory} that reads the content of the file directly from its position
+ * in the archive.
+ *
+ * @author Ullrich Hafner
+ */
+public final class SourceArchive {
+    /** File name extension of an archive in the folder of a build. */
+    public static final String ARCHIVE_SUFFIX = ".prism-archive";
+
+    private static final int MAXIMUM_STRING_LENGTH = 64 * 1024;
+
+    /**
+     * Returns the archive that contains the source code files of a build.
+     *
+     * @param buildDirectory
+     *         the root folder of the build
+     * @param directory
+     *         the name of the folder that would contain the loose source code files of the build
+     *
+     * @return the archive
+     */
+    public static Path resolve(final Path buildDirectory, final String directory) {
+        return buildDirectory.resolve(directory + ARCHIVE_SUFFIX);
+    }
+
+    /**
+     * Reads the index of the specified archive.
+     *
+     * @param archive
+     *         the archive
+     *
+     * @return the archive
+     * @throws IOException
+     *         if the archive could not be read or is not a valid archive
+     */
+    public static SourceArchive read(final Path archive) throws IOException {
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < MAGIC.length + TRAILER_SIZE) {
+                throw new IOException("File is not a source code archive: " + archive);
+            }
+            ByteBuffer header = readFully(channel, 0, MAGIC.length);
+            ByteBuffer trailer = readFully(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+            long indexOffset = trailer.getLong();
+            if (!hasMagic(header) || !hasMagic(trailer) || indexOffset < MAGIC.length || indexOffset > size) {
+                throw new IOException("File is not a source code archive: " + archive);
+            }
+
+            InputStream input = new BufferedInputStream(Channels.newInputStream(channel.position(MAGIC.length)));
+            long version = readLong(input);
+            if (version != VERSION) {
+                throw new IOException(String.format("Unsupported version %d of source code archive (expected %d)",
+                        version, VERSION));
+            }
+
+            input = new BufferedInputStream(Channels.newInputStream(channel.position(indexOffset)));
+            long count = readLong(input);
+            Map<String, Entry> entries = new LinkedHashMap<>();
+            for (long i = 0; i < count; i++) {
+                String path = readString(input);
+                long offset = readLong(input);
+                long length = readLong(input);
+                long fileSize = readLong(input);
+                int lineCount = (int) (readLong(input) - 1);
+                Charset charset = Charset.forName(readString(input));
+                boolean isCompressed = readLong(input) == DEFLATED;
+                if (offset < MAGIC.length || offset + length > indexOffset) {
+                    throw new IOException("Invalid entry in source code archive: " + path);
+                }
+                entries.put(path, new Entry(archive, path, offset, length, fileSize, lineCount, charset,
+                        isCompressed));
+            }
+            return new SourceArchive(entries);
+        }
+        catch (IllegalArgumentException exception) {
+            throw new IOException("Invalid charset in source code archive: " + archive, exception);
+        }
+    }
+
+    private static ByteBuffer readFully(final FileChannel channel, final long position, final int length)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of source code archive");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static boolean hasMagic(final ByteBuffer buffer) {
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        return Arrays.equals(magic, MAGIC);
+    }
+
+    private static String readString(final InputStream input) throws IOException {
+        long length = readLong(input);
+        if (length > MAXIMUM_STRING_LENGTH) {
+            throw new IOException("Invalid length of string in source code archive: " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) readByte(input);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long readLong(final InputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int current = readByte(input);
+            value |= (long) (current & 0x7F) << shift;
+            if ((current & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    private static int readByte(final InputStream input) throws IOException {
+        int value = input.read();
+        if (value < 0) {
+            throw new EOFException("Unexpected end of source code archive");
+        }
+        return value;
+    }
+
+    private final Map<String, Entry> entries;
+
+    private SourceArchive(final Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Returns all files of the archive, in the order they have been added.
+     *
+     * @return the files of the archive
+     */
+    public Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * Finds the file with the specified relative path.
+     *
+     * @param path
+     *         the relative path of the file in the archive
+     *
+     * @return the file, or an empty optional if the archive does not contain such a file
+     */
+    public Optional<Entry> find(final String path) {
+        return Optional.ofNullable(entries.get(path));
+    }
+
+    /**
+     * A source code file in an archive. The content of the file is read directly from the archive whenever a reader
+     * is created, the archive is not kept open.
+     */
+    public static final class Entry implements SourceCodeReaderFactory {
+        private final Path archive;
+        private final String path;
+        private final long offset;
+        private final long length;
+        private final long size;
+        private final int lineCount;
+        private final Charset charset;
+        private final boolean isCompressed;
+
+        @SuppressWarnings("checkstyle:ParameterNumber")
+        Entry(final Path archive, final String path, final long offset, final long length, final long size,
+                final int lineCount, final Charset charset, final boolean isCompressed) {
+            this.archive = archive;
+            this.path = path;
+            this.offset = offset;
+            this.length = length;
+            this.size = size;
+            this.lineCount = lineCount;
+            this.charset = charset;
+            this.isCompressed = isCompressed;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        long getOffset() {
+            return offset;
+        }
+
+        long getLength() {
+            return length;
+        }
+
+        /**
+         * Returns the size of the file in bytes (before compression).
+         *
+         * @return the size of the file
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the number of lines of the file.
+         *
+         * @return the number of lines, or -1 if the lines of the file could not be counted since the bytes of the
+         *         charset are not compatible with ASCII line terminators
+         */
+        public int getLineCount() {
+            return lineCount;
+        }
+
+        public Charset getCharset() {
+            return charset;
+        }
+
+        public boolean isCompressed() {
+            return isCompressed;
+        }
+
+        /**
+         * Opens a stream that reads the raw bytes of the file from the archive.
+         *
+         * @return the stream
+         * @throws IOException
+         *         if the archive could not be opened
+         */
+        public InputStream open() throws IOException {
+            InputStream content = new EntryInputStream(FileChannel.open(archive, StandardOpenOption.READ),
+                    offset, length);
+            if (isCompressed) {
+                return new InflaterInputStream(content, new Inflater()) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        }
+                        finally {
+                            inf.end();
+                        }
+                    }
+                };
+            }
+            return content;
+        }
+
+        /**
+         * Opens a new reader for the file. Malformed input is replaced by the replacement character of the charset.
+         *
+         * @return the reader
+         * @throws IOException
+         *         if the archive could not be opened
+         */
+        @Override
+        public Reader create() throws IOException {
+            return new InputStreamReader(open(), charset);
+        }
+    }
+
+    /**
+     * Reads a range of bytes of a file using positional reads, so the range can be read without reading the
+     * preceding content.
+     */
+    private static class EntryInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        EntryInputStream(final FileChannel channel, final long offset, final long length) {
+            super();
+
+            this.channel = channel;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int off, final int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int count = (int) Math.min(len, end - position);
+            int read = channel.read(ByteBuffer.wrap(bytes, off, count), position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of source code archive");
+            }
+            position += read;
+            return read;
+        }
+
+        @Override
+        public long skip(final long count) {
+            long skipped = Math.max(0, Math.min(count, end - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package io.jenkins.plugins.prism;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.commons.io.output.CountingOutputStream;
+
+/**
+ * Writes the source code files of a build into a single {@link SourceArchive archive}. Storing all files of a build in
+ * a single file rather than in thousands of loose files reduces the number of inodes, and the archive can be deleted,
+ * backed up, or synchronized as one file. The archive is written to a temporary file that replaces the archive when
+ * the writer is {@link #commit() committed}, so readers never see an incomplete archive. If the writer is closed
+ * without being committed, e.g. because a file could not be added, then the temporary file is deleted and an existing
+ * archive remains unchanged.
+ *
+ * <p>
+ * The format starts with a header that consists of a magic number and the version of the format. The content of the
+ * files follows one after another, each file is optionally compressed using the deflate algorithm. The content is
+ * followed by the central index that contains an entry for each file: the relative path, the offset and the length
+ * of the stored content, the size of the file, the number of lines, the charset, and whether the content is
+ * compressed. The archive ends with a trailer that contains the offset of the index and the magic number. All numbers
+ * of the index are stored as variable-length integers, the offset in the trailer has a fixed size of 8 bytes, so the
+ * index can be found without reading the content.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+public class SourceArchiveWriter implements Closeable {
+    static final byte[] MAGIC = {'P', 'R', 'S', 'A'};
+    static final int VERSION = 1;
+    static final int STORED = 0;
+    static final int DEFLATED = 1;
+    /** Line count of files whose charset does not support counting the lines in the raw bytes. */
+    static final int UNKNOWN_LINES = -1;
+    /** Size of the trailer: the offset of the index and the magic number. */
+    static final int TRAILER_SIZE = Long.BYTES + MAGIC.length;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path archive;
+    private final Path temporary;
+    private final CountingOutputStream output;
+    private final List<SourceArchive.Entry> entries = new ArrayList<>();
+    private final Set<String> paths = new HashSet<>();
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private boolean isClosed;
+
+    /**
+     * Creates a new {@link SourceArchiveWriter} and writes the header of the format.
+     *
+     * @param archive
+     *         the archive to write
+     *
+     * @throws IOException
+     *         if the header could not be written
+     */
+    public SourceArchiveWriter(final Path archive) throws IOException {
+        this.archive = archive;
+
+        Path folder = archive.toAbsolutePath().getParent();
+        Files.createDirectories(folder);
+        temporary = Files.createTempFile(folder, archive.getFileName().toString(), ".tmp");
+        output = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)));
+        output.write(MAGIC);
+        writeLong(output, VERSION);
+    }
+
+    /**
+     * Adds the specified source code file to the archive.
+     *
+     * @param path
+     *         the relative path of the file in the archive
+     * @param file
+     *         the source code file
+     * @param charset
+     *         the charset of the file
+     * @param isCompressed
+     *         determines whether the content will be compressed
+     *
+     * @throws IOException
+     *         if the file could not be read or written
+     */
+    public void add(final String path, final Path file, final Charset charset, final boolean isCompressed)
+            throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            add(path, input, charset, isCompressed);
+        }
+    }
+
+    /**
+     * Adds the specified content of a source code file to the archive.
+     *
+     * @param path
+     *         the relative path of the file in the archive
+     * @param content
+     *         the content of the source code file
+     * @param charset
+     *         the charset of the file
+     * @param isCompressed
+     *         determines whether the content will be compressed
+     *
+     * @throws IOException
+     *         if the content could not be read or written
+     * @throws IllegalArgumentException
+     *         if the archive already contains a file with the same path
+     * @throws IllegalStateException
+     *         if the archive has been committed or closed already
+     */
+    public void add(final String path, final InputStream content, final Charset charset, final boolean isCompressed)
+            throws IOException {
+        if (isClosed) {
+            throw new IllegalStateException("Archive has been closed already: " + archive);
+        }
+        if (!paths.add(path)) {
+            throw new IllegalArgumentException("Archive already contains the file " + path);
+        }
+
+        long offset = output.getByteCount();
+        LineCounter lines = new LineCounter();
+        long size = 0;
+        Deflater deflater = isCompressed ? new Deflater() : null;
+        try {
+            OutputStream entry = deflater == null ? output : new DeflaterOutputStream(output, deflater, BUFFER_SIZE);
+            int read;
+            while ((read = content.read(buffer)) >= 0) {
+                entry.write(buffer, 0, read);
+                lines.count(buffer, read);
+                size += read;
+            }
+            if (entry instanceof DeflaterOutputStream) {
+                ((DeflaterOutputStream) entry).finish();
+            }
+        }
+        finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        int lineCount = LineIndex.isSupported(charset) ? lines.getLineCount() : UNKNOWN_LINES;
+        entries.add(new SourceArchive.Entry(archive, path, offset, output.getByteCount() - offset, size, lineCount,
+                charset, isCompressed));
+    }
+
+    /**
+     * Writes the index and the trailer, closes the underlying stream, and replaces the archive with the written file.
+     * Afterwards, no more files can be added.
+     *
+     * @throws IOException
+     *         if the archive could not be written
+     */
+    public void commit() throws IOException {
+        if (isClosed) {
+            throw new IllegalStateException("Archive has been closed already: " + archive);
+        }
+        isClosed = true;
+        try {
+            try (DataOutputStream stream = new DataOutputStream(output)) {
+                long indexOffset = output.getByteCount();
+                writeLong(stream, entries.size());
+                for (SourceArchive.Entry entry : entries) {
+                    writeString(stream, entry.getPath());
+                    writeLong(stream, entry.getOffset());
+                    writeLong(stream, entry.getLength());
+                    writeLong(stream, entry.getSize());
+                    writeLong(stream, entry.getLineCount() + 1L);
+                    writeString(stream, entry.getCharset().name());
+                    writeLong(stream, entry.isCompressed() ? DEFLATED : STORED);
+                }
+                stream.writeLong(indexOffset);
+                stream.write(MAGIC);
+            }
+            Files.move(temporary, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Closes the underlying stream. If the archive has not been {@link #commit() committed}, then the written file is
+     * discarded and an existing archive remains unchanged.
+     *
+     * @throws IOException
+     *         if the written file could not be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+        try {
+            output.close();
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void writeString(final OutputStream stream, final String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeLong(stream, bytes.length);
+        stream.write(bytes);
+    }
+
+    private static void writeLong(final OutputStream stream, final long value) throws IOException {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            stream.write((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        stream.write((int) remaining);
+    }
+
+    /**
+     * Counts the lines of a file while its bytes are written. Lines are terminated like in {@link LineIndex}.
+     */
+    static class LineCounter {
+        private int lineCount;
+        private boolean isLineStart = true;
+        private boolean isAfterCarriageReturn;
+
+        void count(final byte[] bytes, final int length) {
+            count(bytes, 0, length);
+        }
+
+        void count(final byte[] bytes, final int offset, final int length) {
+            for (int i = offset; i < offset + length; i++) {
+                byte value = bytes[i];
+                if (isAfterCarriageReturn && value == '\n') {
+                    isAfterCarriageReturn = false;
+                }
+                else {
+                    if (isLineStart) {
+                        lineCount++;
+                    }
+                    isAfterCarriageReturn = value == '\r';
+                    isLineStart = value == '\n' || isAfterCarriageReturn;
+                }
+            }
+        }
+
+        int getLineCount() {
+            return lineCount;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+
+import edu.hm.hafner.util.FilteredLog;
+import edu.hm.hafner.util.VisibleForTesting;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+/**
+ * Deletes the source code files of old builds in the background, so that the completion of a build does not wait for
+ * the deletion of thousands of files. The folders to delete are moved aside by the build first, see {@link
+ * #moveAside(Path)}, which is a single rename operation. The moved folders are then deleted by a background worker
+ * using a bounded number of threads. Afterwards, the files of the {@link SourceCodeStore} that are not referenced
+ * anymore are removed, at most once per hour for each store, see {@link SourceCodeStore#pruneIfDue}.
+ *
+ * <p>
+ * The progress of the worker is available using the counters of this class, the duration of each cleanup is logged.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+public final class SourceCodeCleaner {
+    /** Infix of the name of a folder that has been moved aside to be deleted. */
+    static final String DELETING_INFIX = ".deleting-";
+
+    private static final int PARALLELISM = 4;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final Logger LOGGER = Logger.getLogger(SourceCodeCleaner.class.getName());
+
+    private static final SourceCodeCleaner INSTANCE = new SourceCodeCleaner(PARALLELISM);
+
+    /**
+     * Returns the cleaner that is shared by all jobs.
+     *
+     * @return the shared cleaner
+     */
+    public static SourceCodeCleaner getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Moves the specified folder or file aside, so that it can be deleted in the background. The new name is derived
+     * from the old name and is unique.
+     *
+     * @param path
+     *         the folder or file to delete
+     *
+     * @return the new location of the folder or file, or an empty optional if there is no such folder or file
+     * @throws IOException
+     *         if the folder or file could not be moved
+     */
+    public static Optional<Path> moveAside(final Path path) throws IOException {
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            return Optional.empty();
+        }
+        Path aside = path.resolveSibling(path.getFileName() + DELETING_INFIX + System.nanoTime());
+        Files.move(path, aside, StandardCopyOption.ATOMIC_MOVE);
+        return Optional.of(aside);
+    }
+
+    private final ExecutorService worker;
+    private final ExecutorService deleters;
+
+    private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicLong deletedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong prunedCount = new AtomicLong();
+    private final AtomicLong lastDurationMillis = new AtomicLong();
+
+    @VisibleForTesting
+    SourceCodeCleaner(final int parallelism) {
+        worker = createPool(1, "prism-cleanup");
+        deleters = createPool(parallelism, "prism-cleanup-delete");
+    }
+
+    private static ExecutorService createPool(final int threads, final String name) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Schedules the deletion of the specified folders or files. Afterwards, the unreferenced files of the specified
+     * store will be removed. The cleanups are processed in the order they have been scheduled.
+     *
+     * @param paths
+     *         the folders or files to delete, typically moved aside using {@link #moveAside(Path)}
+     * @param store
+     *         the store to prune after the deletion, might be {@code null}
+     *
+     * @return the result of the cleanup, can be used to wait for the completion
+     */
+    public Future<?> schedule(final Collection<Path> paths, @CheckForNull final SourceCodeStore store) {
+        List<Path> obsolete = new ArrayList<>(paths);
+        pending.addAll(obsolete);
+        pendingCount.addAndGet(obsolete.size());
+        return worker.submit(() -> clean(obsolete, store));
+    }
+
+    private void clean(final List<Path> paths, @CheckForNull final SourceCodeStore store) {
+        long start = System.nanoTime();
+        List<Future<?>> deletions = new ArrayList<>();
+        for (Path path : paths) {
+            deletions.add(deleters.submit(() -> delete(path)));
+        }
+        for (Future<?> deletion : deletions) {
+            try {
+                deletion.get();
+            }
+            catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (ExecutionException exception) {
+                LOGGER.log(Level.WARNING, "Could not delete source code files", exception);
+            }
+        }
+
+        int pruned = 0;
+        if (store != null) {
+            FilteredLog log = new FilteredLog("Errors while cleaning the source code store:");
+            pruned = store.pruneIfDue(log);
+            prunedCount.addAndGet(pruned);
+            log.getErrorMessages().forEach(message -> LOGGER.log(Level.WARNING, message));
+        }
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        lastDurationMillis.set(millis);
+        LOGGER.log(Level.FINE, "Deleted {0} source code folders and pruned {1} stored files in {2} ms",
+                new Object[] {paths.size(), pruned, millis});
+    }
+
+    private void delete(final Path path) {
+        try {
+            if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                FileUtils.deleteDirectory(path.toFile());
+            }
+            else {
+                Files.deleteIfExists(path);
+            }
+            deletedCount.incrementAndGet();
+        }
+        catch (IOException exception) {
+            failedCount.incrementAndGet();
+            LOGGER.log(Level.WARNING, "Could not delete source code files in " + path, exception);
+        }
+        finally {
+            pending.remove(path);
+            pendingCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns whether the specified folder or file has been scheduled but not yet deleted.
+     *
+     * @param path
+     *         the folder or file
+     *
+     * @return {@code true} if the deletion is pending, {@code false} otherwise
+     */
+    public boolean isPending(final Path path) {
+        return pending.contains(path);
+    }
+
+    /**
+     * Returns the number of folders or files that have been scheduled but not yet deleted.
+     *
+     * @return the number of pending deletions
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Returns the number of folders or files that have been deleted.
+     *
+     * @return the number of deletions
+     */
+    public long getDeletedCount() {
+        return deletedCount.get();
+    }
+
+    /**
+     * Returns the number of folders or files that could not be deleted.
+     *
+     * @return the number of failed deletions
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Returns the number of files that have been removed from the {@link SourceCodeStore stores}.
+     *
+     * @return the number of removed files
+     */
+    public long getPrunedCount() {
+        return prunedCount.get();
+    }
+
+    /**
+     * Returns the duration of the last cleanup in milliseconds.
+     *
+     * @return the duration of the last cleanup
+     */
+    public long getLastDurationMillis() {
+        return lastDurationMillis.get();
+    }
+}
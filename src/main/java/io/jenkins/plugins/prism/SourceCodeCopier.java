@@ -0,0 +1,704 @@
+package io.jenkins.plugins.prism;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import edu.hm.hafner.util.FilteredLog;
+import edu.hm.hafner.util.PathUtil;
+import edu.hm.hafner.util.VisibleForTesting;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import hudson.FilePath;
+import hudson.remoting.Channel;
+import hudson.remoting.RemoteOutputStream;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import io.jenkins.plugins.prism.SourceArchiveWriter.LineCounter;
+
+/**
+ * Copies source code files from the workspace of a build on an agent into the folder of the build on the controller.
+ * Copying thousands of files one {@link FilePath} at a time requires several remote calls per file, so this copier
+ * transfers the files in batches: each batch is sent as a single compressed stream, and a bounded number of batches
+ * is transferred in parallel.
+ *
+ * <p>
+ * The files are copied in two steps: first, the digests of all files are computed on the agent. Only the files that
+ * are not present on the controller with the same digest are transferred afterwards: files that have already been
+ * copied into the folder of the build are skipped, and files whose content is already part of a
+ * {@link SourceCodeStore} are linked from the store. The copied files are recorded in the {@link SourceManifest} of the
+ * build. The size, the digest, and the number of lines of a transferred file are computed on the controller from the
+ * received content, so the manifest matches the stored content even if the file has been modified after the first
+ * step. The content of a file is sent in chunks, so a file that grows or shrinks while it is sent is not truncated. If
+ * a file cannot be read completely, then only this file is skipped.
+ * </p>
+ *
+ * <p>
+ * Only files in the workspace or in permitted source code directories are copied, see {@link SourceDirectoryFilter}
+ * and {@link FilePermissionEnforcer}. The file names are checked on the controller before the files are requested.
+ * Additionally, the agent checks the real path of each file with a
+ * {@link FilePermissionEnforcer#createStrictMatcher(FilePath, Set) strict matcher} before the file is opened, so files
+ * that are reachable through a symbolic link but are stored outside of all permitted directories are skipped.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+public class SourceCodeCopier {
+    private static final int DEFAULT_PARALLELISM = 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    @VisibleForTesting
+    static final int END_OF_BATCH = -1;
+    private static final int END_OF_FILE = 0;
+    private static final int ABORTED_FILE = -1;
+    private static final PathUtil PATH_UTIL = new PathUtil();
+
+    private final Path buildDirectory;
+    private final String directory;
+    private final Charset charset;
+    private final int parallelism;
+
+    /**
+     * Creates a new {@link SourceCodeCopier}.
+     *
+     * @param buildDirectory
+     *         the root folder of the build
+     * @param directory
+     *         the directory, where the source code files are stored within the build
+     * @param charset
+     *         the charset of the source code files
+     */
+    public SourceCodeCopier(final Path buildDirectory, final String directory, final Charset charset) {
+        this(buildDirectory, directory, charset, DEFAULT_PARALLELISM);
+    }
+
+    @VisibleForTesting
+    SourceCodeCopier(final Path buildDirectory, final String directory, final Charset charset,
+            final int parallelism) {
+        this.buildDirectory = buildDirectory;
+        this.directory = directory;
+        this.charset = charset;
+        this.parallelism = Math.max(parallelism, 1);
+    }
+
+    /**
+     * Copies the specified source code files from the workspace into the folder of the build. Files that are not part
+     * of the workspace or of a permitted source code directory are skipped. Errors are reported in the log, the files
+     * that could be copied are recorded in the manifest nevertheless.
+     *
+     * @param workspace
+     *         the workspace on the agent, files within that folder are always permitted
+     * @param fileNames
+     *         the files to copy, either as absolute paths on the agent or relative to the workspace
+     * @param allowedSourceDirectories
+     *         the approved source directories from the system configuration section
+     * @param requestedSourceDirectories
+     *         source directories either as a relative path in the agent workspace or as an absolute path on the agent
+     * @param store
+     *         the store of the job that keeps the content of the copied files, might be {@code null}
+     * @param log
+     *         logger
+     *
+     * @return the manifest of all files in the folder of the build
+     * @throws InterruptedException
+     *         if the user canceled the copying
+     */
+    public SourceManifest copy(final FilePath workspace, final Collection<String> fileNames,
+            final Set<String> allowedSourceDirectories, final Set<String> requestedSourceDirectories,
+            @CheckForNull final SourceCodeStore store, final FilteredLog log) throws InterruptedException {
+        long start = System.nanoTime();
+
+        Set<String> permittedDirectories = new SourceDirectoryFilter().getPermittedSourceDirectories(
+                PATH_UTIL.getAbsolutePath(workspace.getRemote()), allowedSourceDirectories,
+                requestedSourceDirectories, log);
+        Map<String, String> permittedFiles = getPermittedFiles(workspace, fileNames, permittedDirectories, log);
+        Path manifestFile = SourceManifest.resolve(buildDirectory, directory);
+        SourceManifest manifest = readManifest(manifestFile, log);
+        if (permittedFiles.isEmpty()) {
+            return manifest;
+        }
+
+        List<ScannedFile> scanned;
+        try {
+            scanned = workspace.act(new ScanFiles(new ArrayList<>(permittedFiles.values()), permittedDirectories));
+        }
+        catch (IOException exception) {
+            log.logException(exception, "Can't read source code files in workspace '%s'", workspace.getRemote());
+            return manifest;
+        }
+
+        List<String> paths = new ArrayList<>(permittedFiles.keySet());
+        List<Transfer> transfers = new ArrayList<>();
+        int skipped = 0;
+        int linked = 0;
+        for (int i = 0; i < scanned.size(); i++) {
+            ScannedFile file = scanned.get(i);
+            String path = paths.get(i);
+            if (!file.isPermitted) {
+                log.logError("Skipping source code file '%s' - its real path is not part of the workspace "
+                        + "or a permitted source code directory", permittedFiles.get(path));
+                continue;
+            }
+            if (file.digest == null) {
+                log.logError("Skipping non-existing source code file '%s'", permittedFiles.get(path));
+                continue;
+            }
+            SourceManifest.Entry entry = createEntry(path, file);
+            Path target = getSources().resolve(path);
+            if (isPresent(manifest, entry, target)) {
+                skipped++;
+            }
+            else if (isLinked(store, entry, target, log)) {
+                manifest.add(entry);
+                linked++;
+            }
+            else {
+                transfers.add(new Transfer(permittedFiles.get(path), target, entry));
+            }
+        }
+
+        BatchResult transferred = transfer(workspace, transfers, permittedDirectories, store);
+        transferred.errors.forEach(error -> log.logError("%s", error));
+        transferred.entries.forEach(manifest::add);
+        try {
+            manifest.write(manifestFile);
+        }
+        catch (IOException exception) {
+            log.logException(exception, "Can't write manifest of source code files '%s'", manifestFile);
+        }
+
+        log.logInfo("Copied %d source code files (%d bytes compressed) in %d ms, "
+                        + "linked %d files from the store, skipped %d unchanged files",
+                transferred.entries.size(), transferred.transferredBytes,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), linked, skipped);
+        return manifest;
+    }
+
+    private Path getSources() {
+        return buildDirectory.resolve(directory);
+    }
+
+    /**
+     * Returns the permitted files, the keys are the relative paths in the source code folder of the build, the values
+     * are the absolute paths on the agent.
+     */
+    private Map<String, String> getPermittedFiles(final FilePath workspace, final Collection<String> fileNames,
+            final Set<String> permittedDirectories, final FilteredLog log) {
+        String workspacePath = PATH_UTIL.getAbsolutePath(workspace.getRemote());
+        PermittedPathMatcher matcher = new FilePermissionEnforcer().createMatcher(workspace, permittedDirectories);
+
+        Map<String, String> permittedFiles = new LinkedHashMap<>();
+        for (String fileName : fileNames) {
+            String absolutePath = FilenameUtils.normalizeNoEndSeparator(
+                    PATH_UTIL.createAbsolutePath(workspacePath, fileName), true);
+            if (absolutePath == null || !matcher.isPermitted(absolutePath)) {
+                log.logError("Skipping source code file '%s' - it is not part of the workspace "
+                        + "or a permitted source code directory", fileName);
+            }
+            else {
+                permittedFiles.put(getRelativePath(workspacePath, absolutePath), absolutePath);
+            }
+        }
+        return permittedFiles;
+    }
+
+    /**
+     * Returns the path of the copied file in the source code folder of the build: files in the workspace keep their
+     * relative path, files in other permitted source code directories keep their absolute path (without the root).
+     */
+    private String getRelativePath(final String workspacePath, final String absolutePath) {
+        String prefix = StringUtils.appendIfMissing(workspacePath, "/");
+        if (absolutePath.startsWith(prefix)) {
+            return absolutePath.substring(prefix.length());
+        }
+        return StringUtils.stripStart(StringUtils.remove(absolutePath, ':'), "/");
+    }
+
+    private SourceManifest readManifest(final Path manifestFile, final FilteredLog log) {
+        if (Files.exists(manifestFile)) {
+            try {
+                return SourceManifest.read(manifestFile);
+            }
+            catch (IOException exception) {
+                log.logException(exception, "Can't read manifest of source code files '%s'", manifestFile);
+            }
+        }
+        return new SourceManifest();
+    }
+
+    private SourceManifest.Entry createEntry(final String path, final ScannedFile file) {
+        return createEntry(path, file.digest, file.size, file.lineCount);
+    }
+
+    private SourceManifest.Entry createEntry(final String path, final byte[] digest, final long size,
+            final int lineCount) {
+        return new SourceManifest.Entry(path, size, RenderedSourceCache.toHex(digest),
+                LineIndex.isSupported(charset) ? lineCount : SourceArchiveWriter.UNKNOWN_LINES, charset,
+                SourcePrinter.selectLanguageClass(path));
+    }
+
+    private boolean isPresent(final SourceManifest manifest, final SourceManifest.Entry entry, final Path target) {
+        return manifest.find(entry.getPath())
+                .filter(present -> present.getDigest().equals(entry.getDigest()))
+                .isPresent() && Files.exists(target);
+    }
+
+    private boolean isLinked(@CheckForNull final SourceCodeStore store, final SourceManifest.Entry entry,
+            final Path target, final FilteredLog log) {
+        if (store == null) {
+            return false;
+        }
+        try {
+            return store.link(entry.getDigest(), target);
+        }
+        catch (IOException exception) {
+            log.logException(exception, "Can't link source code file '%s' from the store", entry.getPath());
+            return false;
+        }
+    }
+
+    private BatchResult transfer(final FilePath workspace, final List<Transfer> transfers,
+            final Set<String> permittedDirectories, @CheckForNull final SourceCodeStore store)
+            throws InterruptedException {
+        BatchResult result = new BatchResult();
+        if (transfers.isEmpty()) {
+            return result;
+        }
+
+        int batchCount = Math.min(parallelism, transfers.size());
+        List<List<Transfer>> batches = new ArrayList<>();
+        for (int i = 0; i < batchCount; i++) {
+            batches.add(new ArrayList<>());
+        }
+        for (int i = 0; i < transfers.size(); i++) {
+            batches.get(i % batchCount).add(transfers.get(i));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(batchCount);
+        try {
+            List<Future<BatchResult>> futures = new ArrayList<>();
+            for (List<Transfer> batch : batches) {
+                futures.add(executor.submit(() -> transferBatch(workspace, batch, permittedDirectories, store)));
+            }
+            for (Future<BatchResult> future : futures) {
+                try {
+                    result.add(future.get());
+                }
+                catch (ExecutionException exception) {
+                    result.errors.add("Can't copy source code files: " + exception.getCause());
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    private BatchResult transferBatch(final FilePath workspace, final List<Transfer> batch,
+            final Set<String> permittedDirectories, @CheckForNull final SourceCodeStore store)
+            throws IOException, InterruptedException {
+        BatchResult result = new BatchResult();
+        Path sources = getSources();
+        Files.createDirectories(sources);
+        Path temporary = Files.createTempFile(sources.toAbsolutePath().getParent(), directory, ".transfer");
+        try {
+            List<String> paths = new ArrayList<>();
+            batch.forEach(transfer -> paths.add(transfer.remotePath));
+            try (OutputStream output = Files.newOutputStream(temporary)) {
+                result.errors.addAll(workspace.act(
+                        new SendFiles(paths, permittedDirectories, new RemoteOutputStream(output))));
+            }
+            syncIO(workspace);
+            result.transferredBytes = Files.size(temporary);
+
+            receiveBatch(temporary, batch, store, result);
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the files of a batch from the compressed stream that has been written by {@link SendFiles}. The native
+     * memory of the {@link Inflater} is released as soon as the batch has been read.
+     */
+    private void receiveBatch(final Path temporary, final List<Transfer> batch,
+            @CheckForNull final SourceCodeStore store, final BatchResult result) throws IOException {
+        Inflater inflater = new Inflater();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(Files.newInputStream(temporary), inflater, BUFFER_SIZE)))) {
+            int index;
+            while ((index = input.readInt()) != END_OF_BATCH) {
+                Transfer transfer = batch.get(index);
+                ReceivedFile content = new ReceivedFile(input);
+                try {
+                    store(content, transfer.target, store);
+                }
+                catch (IOException exception) {
+                    content.skipRemaining();
+                    Files.deleteIfExists(transfer.target);
+                    result.errors.add(String.format("Can't store source code file '%s': %s",
+                            transfer.remotePath, exception.getMessage()));
+                    continue;
+                }
+                if (content.isAborted()) {
+                    Files.deleteIfExists(transfer.target);
+                }
+                else {
+                    result.entries.add(createEntry(transfer.entry.getPath(), content.getDigest(),
+                            content.getSize(), content.getLineCount()));
+                }
+            }
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+    private void store(final InputStream content, final Path target, @CheckForNull final SourceCodeStore store)
+            throws IOException {
+        if (store == null) {
+            Path folder = target.toAbsolutePath().getParent();
+            Files.createDirectories(folder);
+            Path temporary = Files.createTempFile(folder, target.getFileName().toString(), ".tmp");
+            try {
+                Files.copy(content, temporary, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            finally {
+                Files.deleteIfExists(temporary);
+            }
+        }
+        else {
+            store.store(content, target);
+        }
+    }
+
+    /**
+     * Makes sure that all asynchronous writes of the agent have been delivered to the controller.
+     */
+    private void syncIO(final FilePath workspace) throws InterruptedException {
+        VirtualChannel channel = workspace.getChannel();
+        if (channel instanceof Channel) {
+            ((Channel) channel).syncLocalIO();
+        }
+    }
+
+    /**
+     * A file that needs to be transferred from the agent.
+     */
+    private static class Transfer {
+        private final String remotePath;
+        private final Path target;
+        private final SourceManifest.Entry entry;
+
+        Transfer(final String remotePath, final Path target, final SourceManifest.Entry entry) {
+            this.remotePath = remotePath;
+            this.target = target;
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * The result of transferring one or more batches.
+     */
+    private static class BatchResult {
+        private final List<SourceManifest.Entry> entries = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+        private long transferredBytes;
+
+        void add(final BatchResult other) {
+            entries.addAll(other.entries);
+            errors.addAll(other.errors);
+            transferredBytes += other.transferredBytes;
+        }
+    }
+
+    /**
+     * The content of a file in the stream of {@link SendFiles}. The size, the digest, and the number of lines are
+     * computed while the content is read. The end of the file is reported as end of this stream, the underlying stream
+     * is not closed.
+     */
+    @VisibleForTesting
+    static class ReceivedFile extends InputStream {
+        private final DataInputStream input;
+        private final MessageDigest digest;
+        private final LineCounter lines = new LineCounter();
+        private final byte[] single = new byte[1];
+        private long size;
+        private int remaining;
+        private boolean isFinished;
+        private boolean isAborted;
+
+        ReceivedFile(final DataInputStream input) throws IOException {
+            super();
+
+            this.input = input;
+            digest = RenderedSourceCache.createDigest();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (remaining == 0) {
+                if (isFinished) {
+                    return -1;
+                }
+                int chunk = input.readInt();
+                if (chunk == END_OF_FILE || chunk == ABORTED_FILE) {
+                    isFinished = true;
+                    isAborted = chunk == ABORTED_FILE;
+                }
+                else if (chunk < 0) {
+                    throw new IOException("Invalid chunk length in stream of source code files: " + chunk);
+                }
+                else {
+                    remaining = chunk;
+                }
+            }
+            int read = input.read(buffer, offset, Math.min(length, remaining));
+            if (read < 0) {
+                throw new EOFException("Unexpected end of stream of source code files");
+            }
+            remaining -= read;
+            size += read;
+            digest.update(buffer, offset, read);
+            lines.count(buffer, offset, read);
+            return read;
+        }
+
+        void skipRemaining() throws IOException {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (read(buffer, 0, buffer.length) >= 0) {
+                // skip the remaining content
+            }
+        }
+
+        boolean isAborted() {
+            return isAborted;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        byte[] getDigest() {
+            return digest.digest();
+        }
+
+        int getLineCount() {
+            return lines.getLineCount();
+        }
+
+        @Override
+        public void close() {
+            // the underlying stream contains the remaining files
+        }
+    }
+
+    /**
+     * Creates a strict matcher on the agent that checks the real paths of the files.
+     */
+    private static PermittedPathMatcher createStrictMatcher(final File workspace,
+            final Set<String> permittedDirectories) {
+        return new FilePermissionEnforcer().createStrictMatcher(new FilePath(workspace), permittedDirectories);
+    }
+
+    /**
+     * The properties of a file on the agent. The digest is {@code null} if the file could not be read or is not
+     * permitted.
+     */
+    private static class ScannedFile implements Serializable {
+        private static final long serialVersionUID = -3476264734553129052L;
+
+        private final boolean isPermitted;
+        @CheckForNull
+        private final byte[] digest;
+        private final long size;
+        private final int lineCount;
+
+        ScannedFile(final boolean isPermitted, @CheckForNull final byte[] digest, final long size,
+                final int lineCount) {
+            this.isPermitted = isPermitted;
+            this.digest = digest;
+            this.size = size;
+            this.lineCount = lineCount;
+        }
+    }
+
+    /**
+     * Computes the digest, the size, and the number of lines of files on the agent. Files whose real path is not
+     * permitted are not opened.
+     */
+    private static class ScanFiles extends MasterToSlaveFileCallable<List<ScannedFile>> {
+        private static final long serialVersionUID = 3817474425286436375L;
+
+        private final ArrayList<String> paths;
+        private final HashSet<String> permittedDirectories;
+
+        ScanFiles(final List<String> paths, final Set<String> permittedDirectories) {
+            super();
+
+            this.paths = new ArrayList<>(paths);
+            this.permittedDirectories = new HashSet<>(permittedDirectories);
+        }
+
+        @Override
+        public List<ScannedFile> invoke(final File workspace, final VirtualChannel channel) throws IOException {
+            PermittedPathMatcher matcher = createStrictMatcher(workspace, permittedDirectories);
+            MessageDigest digest = RenderedSourceCache.createDigest();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            ArrayList<ScannedFile> scanned = new ArrayList<>();
+            for (String path : paths) {
+                if (!matcher.isPermitted(path)) {
+                    scanned.add(new ScannedFile(false, null, 0, 0));
+                    continue;
+                }
+                try (InputStream input = Files.newInputStream(new File(path).toPath())) {
+                    LineCounter lines = new LineCounter();
+                    long size = 0;
+                    int read;
+                    while ((read = input.read(buffer)) >= 0) {
+                        digest.update(buffer, 0, read);
+                        lines.count(buffer, read);
+                        size += read;
+                    }
+                    scanned.add(new ScannedFile(true, digest.digest(), size, lines.getLineCount()));
+                }
+                catch (IOException exception) {
+                    digest.reset();
+                    scanned.add(new ScannedFile(true, null, 0, 0));
+                }
+            }
+            return scanned;
+        }
+    }
+
+    /**
+     * Sends the content of files on the agent as a single compressed stream. Each file is preceded by its index in the
+     * list of files, the content is sent in chunks that are preceded by their length. The last chunk of a file is
+     * followed by {@link #END_OF_FILE}, or by {@link #ABORTED_FILE} if the file could not be read completely. The
+     * stream ends with {@link #END_OF_BATCH}. Files whose real path is not permitted are not opened.
+     */
+    @VisibleForTesting
+    static class SendFiles extends MasterToSlaveFileCallable<List<String>> {
+        private static final long serialVersionUID = -5418946411452717382L;
+
+        private final ArrayList<String> paths;
+        private final HashSet<String> permittedDirectories;
+        private final OutputStream output;
+
+        SendFiles(final List<String> paths, final Set<String> permittedDirectories, final OutputStream output) {
+            super();
+
+            this.paths = new ArrayList<>(paths);
+            this.permittedDirectories = new HashSet<>(permittedDirectories);
+            this.output = output;
+        }
+
+        @Override
+        public List<String> invoke(final File workspace, final VirtualChannel channel) throws IOException {
+            PermittedPathMatcher matcher = createStrictMatcher(workspace, permittedDirectories);
+            ArrayList<String> errors = new ArrayList<>();
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(
+                    new DeflaterOutputStream(output, deflater, BUFFER_SIZE), BUFFER_SIZE))) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                for (int index = 0; index < paths.size(); index++) {
+                    String path = paths.get(index);
+                    if (!matcher.isPermitted(path)) {
+                        errors.add(String.format("Skipping source code file '%s' - its real path is not part of the "
+                                + "workspace or a permitted source code directory", path));
+                        continue;
+                    }
+                    Path file = new File(path).toPath();
+                    try (InputStream input = open(file, errors)) {
+                        if (input != null) {
+                            stream.writeInt(index);
+                            send(file, input, stream, buffer, errors);
+                        }
+                    }
+                }
+                stream.writeInt(END_OF_BATCH);
+            }
+            finally {
+                deflater.end();
+            }
+            return errors;
+        }
+
+        @CheckForNull
+        private InputStream open(final Path file, final List<String> errors) {
+            try {
+                return Files.newInputStream(file);
+            }
+            catch (IOException exception) {
+                errors.add(String.format("Can't read source code file '%s': %s", file, exception.getMessage()));
+                return null;
+            }
+        }
+
+        private void send(final Path file, final InputStream input, final DataOutputStream stream,
+                final byte[] buffer, final List<String> errors) throws IOException {
+            while (true) {
+                int read;
+                try {
+                    read = input.read(buffer);
+                }
+                catch (IOException exception) {
+                    errors.add(String.format("Can't read source code file '%s': %s", file, exception.getMessage()));
+                    stream.writeInt(ABORTED_FILE);
+                    return;
+                }
+                if (read < 0) {
+                    stream.writeInt(END_OF_FILE);
+                    return;
+                }
+                if (read > 0) {
+                    stream.writeInt(read);
+                    stream.write(buffer, 0, read);
+                }
+            }
+        }
+    }
+}
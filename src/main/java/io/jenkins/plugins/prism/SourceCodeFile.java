@@ -0,0 +1,228 @@
+package io.jenkins.plugins.prism;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+
+import org.apache.commons.lang3.SystemUtils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+/**
+ * A source code file that is stored in the file system, e.g. a copy of a source code file in the folder of a build.
+ * In contrast to other {@link SourceCodeReaderFactory factories}, the file is also known as sequence of bytes, so that
+ * the source code view can provide the file for download without decoding the content. Additionally, a reader can
+ * start at an arbitrary line using the {@link LineIndex} of the file, so that a window of a large file can be rendered
+ * without reading all preceding lines. The index is stored in the cache folder of the build, it is named after the
+ * digest of the content or, if the digest is not known, after the path of the file. Large files are read using
+ * {@link MappedSourceLines}, except on Windows: there a memory-mapped file cannot be moved or deleted until the mapping
+ * has been garbage collected, so the retention could not remove the source code folder of a build. The file never
+ * needs to be read to create the cache key of the rendered file, see {@link #getContentKey()}.
+ *
+ * @author Ullrich Hafner
+ */
+public class SourceCodeFile implements SourceCodeReaderFactory {
+    /** Minimum size of a file in bytes that will be read using {@link MappedSourceLines} (not used on Windows). */
+    static final long MAPPING_THRESHOLD = 1024 * 1024;
+
+    private final Path file;
+    private final Charset charset;
+    @CheckForNull
+    private final String digest;
+
+    /**
+     * Creates a new {@link SourceCodeFile}.
+     *
+     * @param file
+     *         the source code file
+     * @param charset
+     *         the charset of the file
+     */
+    public SourceCodeFile(final Path file, final Charset charset) {
+        this(file, charset, null);
+    }
+
+    /**
+     * Creates a new {@link SourceCodeFile} with a known digest of the content.
+     *
+     * @param file
+     *         the source code file
+     * @param charset
+     *         the charset of the file
+     * @param digest
+     *         the SHA-256 digest of the content of the file, see {@link SourceManifest.Entry#getDigest()}
+     */
+    public SourceCodeFile(final Path file, final Charset charset, @CheckForNull final String digest) {
+        this.file = file;
+        this.charset = charset;
+        this.digest = digest;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Returns the SHA-256 digest of the content of the file, if known.
+     *
+     * @return the digest as hex string, or an empty optional if the digest is not known
+     */
+    public Optional<String> getDigest() {
+        return Optional.ofNullable(digest);
+    }
+
+    /**
+     * Returns a key that identifies the content of the file. If the digest of the content is known, e.g. from a
+     * {@link SourceManifest}, then the digest is returned. Otherwise, the key is derived from the absolute path, the
+     * size, and the modification time of the file, so the file does not need to be read.
+     *
+     * @return the key of the content
+     * @throws IOException
+     *         if the attributes of the source code file could not be read
+     */
+    public String getContentKey() throws IOException {
+        if (digest != null) {
+            return digest;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return RenderedSourceCache.digestOf(file.toAbsolutePath().toString(), String.valueOf(attributes.size()),
+                String.valueOf(attributes.lastModifiedTime().toMillis()));
+    }
+
+    /**
+     * Opens a new reader for the source code file. Malformed input is replaced by the replacement character of the
+     * charset.
+     *
+     * @return the reader
+     * @throws IOException
+     *         if the source code file could not be opened
+     */
+    @Override
+    public Reader create() throws IOException {
+        return new InputStreamReader(Files.newInputStream(file), charset);
+    }
+
+    /**
+     * Opens a new reader for the source code file that starts at the specified line. If the charset of the file
+     * supports a {@link LineIndex}, then the reader is positioned using the index. Otherwise, the preceding lines are
+     * read and skipped.
+     *
+     * @param line
+     *         the first line to read (lines start at 1)
+     *
+     * @return the reader
+     * @throws IOException
+     *         if the source code file could not be opened
+     */
+    public Reader create(final int line) throws IOException {
+        return create(line, null);
+    }
+
+    /**
+     * Opens a new reader for the source code file that starts at the specified line. If the charset of the file
+     * supports a {@link LineIndex}, then the reader is positioned using the index. The index is stored in the cache
+     * folder of the specified build, see {@link LineIndex#resolve(Path, String)}. Otherwise, the preceding lines are
+     * read and skipped.
+     *
+     * @param line
+     *         the first line to read (lines start at 1)
+     * @param buildDirectory
+     *         the root folder of the build that shows the file
+     *
+     * @return the reader
+     * @throws IOException
+     *         if the source code file could not be opened
+     */
+    public Reader create(final int line, @CheckForNull final Path buildDirectory) throws IOException {
+        if (line <= 1) {
+            return create();
+        }
+        if (LineIndex.isSupported(charset)) {
+            LineIndex index = LineIndex.load(file, getIndexFile(buildDirectory));
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                channel.position(index.findOffset(channel, line));
+                return new InputStreamReader(Channels.newInputStream(channel), charset);
+            }
+            catch (IOException exception) {
+                channel.close();
+                throw exception;
+            }
+        }
+        BufferedReader reader = new BufferedReader(create());
+        try {
+            for (int skipped = 1; skipped < line && reader.readLine() != null; skipped++) {
+                // skip the preceding lines
+            }
+            return reader;
+        }
+        catch (IOException exception) {
+            reader.close();
+            throw exception;
+        }
+    }
+
+    @CheckForNull
+    private Path getIndexFile(@CheckForNull final Path buildDirectory) {
+        if (buildDirectory == null) {
+            return null;
+        }
+        if (digest == null) {
+            return LineIndex.resolve(buildDirectory, RenderedSourceCache.digestOf(file.toAbsolutePath().toString()));
+        }
+        return LineIndex.resolve(buildDirectory, digest);
+    }
+
+    /**
+     * Opens the lines of the source code file, starting at the specified line. Large files are memory-mapped and
+     * decoded into a reusable buffer, see {@link MappedSourceLines}. Smaller files and all files on Windows are read
+     * using a reader, see {@link #create(int)}.
+     *
+     * @param line
+     *         the first line that needs to be read (lines start at 1). The returned lines might start before this line
+     *         if the charset does not support a {@link LineIndex}.
+     *
+     * @return the lines
+     * @throws IOException
+     *         if the source code file could not be opened
+     */
+    public SourceLines openLines(final int line) throws IOException {
+        return openLines(line, null);
+    }
+
+    /**
+     * Opens the lines of the source code file, starting at the specified line. Large files are memory-mapped and
+     * decoded into a reusable buffer, see {@link MappedSourceLines}. Smaller files and all files on Windows are read
+     * using a reader, see {@link #create(int, Path)}.
+     *
+     * @param line
+     *         the first line that needs to be read (lines start at 1). The returned lines might start before this line
+     *         if the charset does not support a {@link LineIndex}.
+     * @param buildDirectory
+     *         the root folder of the build that shows the file, its cache folder stores the {@link LineIndex} of the
+     *         file
+     *
+     * @return the lines
+     * @throws IOException
+     *         if the source code file could not be opened
+     */
+    public SourceLines openLines(final int line, @CheckForNull final Path buildDirectory) throws IOException {
+        if (!SystemUtils.IS_OS_WINDOWS && Files.size(file) >= MAPPING_THRESHOLD) {
+            return MappedSourceLines.open(file, charset, line, getIndexFile(buildDirectory));
+        }
+        return StreamSourceLines.of(create(line, buildDirectory), line);
+    }
+}
@@ -0,0 +1,23 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Opens a new {@link Reader} for the content of a source code file. In contrast to a single {@link Reader} instance, a
+ * factory can be used to read the source code several times, e.g., to load additional lines of a file that are not
+ * part of the initially rendered window.
+ *
+ * @author Ullrich Hafner
+ */
+@FunctionalInterface
+public interface SourceCodeReaderFactory {
+    /**
+     * Opens a new reader for the source code file. The caller is responsible for closing the reader.
+     *
+     * @return the reader
+     * @throws IOException
+     *         if the source code file could not be opened
+     */
+    Reader create() throws IOException;
+}
@@ -1,10 +1,21 @@
 package io.jenkins.plugins.prism;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
 
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 
 import edu.hm.hafner.util.FilteredLog;
 
@@ -21,7 +32,25 @@ public enum SourceCodeRetention {
     /** Store source code files of the last build, delete older artifacts. */
     LAST_BUILD(new CleanupOldBuilds(), Messages._SourceCodeRetention_LAST_BUILD()),
     /** Store source code files for all builds, never delete those files automatically. */
-    EVERY_BUILD(new Cleanup(), Messages._SourceCodeRetention_EVERY_BUILD());
+    EVERY_BUILD(new Cleanup(), Messages._SourceCodeRetention_EVERY_BUILD()),
+    /**
+     * Store source code files of the last builds, delete older artifacts. The number of builds is defined in the
+     * {@link PrismConfiguration#getRetainedBuilds() global configuration}.
+     */
+    LAST_BUILDS(new KeepLastBuilds(() -> PrismConfiguration.getInstance().getRetainedBuilds()),
+            Messages._SourceCodeRetention_LAST_BUILDS()),
+    /**
+     * Store source code files of builds that are newer than a number of days, delete older artifacts. The number of
+     * days is defined in the {@link PrismConfiguration#getRetainedDays() global configuration}.
+     */
+    RECENT_BUILDS(new KeepRecentBuilds(() -> PrismConfiguration.getInstance().getRetainedDays()),
+            Messages._SourceCodeRetention_RECENT_BUILDS()),
+    /**
+     * Store source code files of the newest builds that fit into a disk budget per job, delete older artifacts. The
+     * budget is defined in the {@link PrismConfiguration#getSourceCodeBudget() global configuration}.
+     */
+    DISK_BUDGET(new KeepDiskBudget(() -> PrismConfiguration.getInstance().getSourceCodeBudget()),
+            Messages._SourceCodeRetention_DISK_BUDGET());
 
     private final Cleanup cleanup;
     private final Localizable localizable;
@@ -36,7 +65,10 @@ public enum SourceCodeRetention {
     }
 
     /**
-     * Cleanup the stored source code files of previous builds.
+     * Cleanup the stored source code files of previous builds. The source code folders of previous builds are moved
+     * aside and will be deleted in the background by the {@link SourceCodeCleaner}, so this method returns
+     * immediately. Afterwards, the files of the {@link SourceCodeStore} of the job that are not referenced by a build
+     * anymore will be removed, if the store has not been pruned recently.
      *
      * @param build
      *         starting with this build, all previous builds will be scanned for source code files that can be deleted
@@ -46,33 +78,272 @@ public enum SourceCodeRetention {
      *         logger
      */
     public void cleanup(final Run<?, ?> build, final String directory, final FilteredLog log) {
-        cleanup.clean(build, directory, log);
+        List<Path> obsolete = cleanup.clean(build, directory, log);
+        SourceCodeCleaner.getInstance().schedule(obsolete, SourceCodeStore.forBuild(build));
     }
 
     static class Cleanup {
-        void clean(final Run<?, ?> build, final String directory, final FilteredLog log) {
+        List<Path> clean(final Run<?, ?> build, final String directory, final FilteredLog log) {
             log.logInfo("Skipping cleaning of source code files in old builds");
+
+            return Collections.emptyList();
         }
     }
 
+    /**
+     * Moves the source code files of all previous builds aside. The cache folder of a build that contains the rendered
+     * source code files and the line indexes is moved aside as well, see {@link RenderedSourceCache}. The number of the
+     * newest build that has been cleaned is stored as watermark in the folder of the job, so subsequent cleanups only
+     * scan the builds after this watermark. Builds that are still running are not cleaned, the watermark stays below
+     * these builds. The folders that have been moved aside are recorded in a journal in the folder of the job: if
+     * Jenkins is restarted before these folders have been deleted, then the next cleanup deletes them.
+     *
+     * <p>
+     * Subclasses may retain the source code files of some previous builds, see {@link #isRetained(Run, int, long)}.
+     * Builds are evaluated from the newest to the oldest build: as soon as a build is not retained, the source code
+     * files of this build and of all older builds are deleted. The watermark stays below the retained builds as well.
+     * </p>
+     */
     static class CleanupOldBuilds extends Cleanup {
+        private static final String WATERMARK_PREFIX = "prism-cleanup-";
+        private static final String JOURNAL_PREFIX = "prism-deleting-";
+
         @Override
-        void clean(final Run<?, ?> currentBuild, final String directory, final FilteredLog log) {
-            for (Run<?, ?> build = currentBuild.getPreviousCompletedBuild();
-                    build != null; build = build.getPreviousCompletedBuild()) {
-                Path buildDir = build.getRootDir().toPath();
-                Path sourcesFolder = buildDir.resolve(directory);
-                if (Files.exists(sourcesFolder)) {
-                    try {
-                        FileUtils.deleteDirectory(sourcesFolder.toFile());
-                        log.logInfo("Deleting source code files of build " + build.getDisplayName());
+        List<Path> clean(final Run<?, ?> currentBuild, final String directory, final FilteredLog log) {
+            Path watermarkFile = getWatermarkFile(currentBuild, directory);
+            int watermark = readWatermark(watermarkFile);
+            SourceCodeSizes sizes = isSizeLimited() ? SourceCodeSizes.load(currentBuild, directory) : null;
+
+            Path journalFile = getJournalFile(currentBuild, directory);
+            List<Path> journal = readJournal(journalFile);
+            List<Path> obsolete = journal.stream()
+                    .filter(path -> !SourceCodeCleaner.getInstance().isPending(path))
+                    .collect(Collectors.toList());
+            if (!obsolete.isEmpty()) {
+                log.logInfo("Found %d source code folders of a previous cleanup that have not been deleted yet",
+                        obsolete.size());
+            }
+            int cleaned = watermark;
+            int retainedCount = 1;
+            long retainedSize = sizes == null ? 0 : sizes.getSize(currentBuild, log);
+            boolean isEvicting = false;
+            for (Run<?, ?> build = currentBuild.getPreviousBuild();
+                    build != null && build.getNumber() > watermark; build = build.getPreviousBuild()) {
+                if (build.isBuilding()) {
+                    cleaned = build.getNumber() - 1;
+                    continue;
+                }
+                if (!isEvicting) {
+                    long size = sizes == null ? 0 : sizes.getSize(build, log);
+                    if (isRetained(build, retainedCount + 1, retainedSize + size)) {
+                        retainedCount++;
+                        retainedSize += size;
+                        cleaned = build.getNumber() - 1;
+                        continue;
                     }
-                    catch (IOException exception) {
-                        log.logException(exception,
-                                "Could not delete source code files of build " + build.getDisplayName());
+                    isEvicting = true;
+                }
+                cleaned = Math.max(cleaned, build.getNumber());
+                moveAside(build, directory, obsolete, log);
+                if (sizes != null) {
+                    sizes.remove(build);
+                }
+            }
+            if (!obsolete.isEmpty()) {
+                log.logInfo("Scheduled deletion of %d source code folders in the background", obsolete.size());
+            }
+            journal.removeAll(obsolete);
+            journal.addAll(obsolete);
+            writeJournal(journalFile, journal, log);
+            if (cleaned > watermark) {
+                writeWatermark(watermarkFile, cleaned, log);
+            }
+            if (sizes != null) {
+                sizes.removeUntil(cleaned);
+                sizes.save(log);
+            }
+            return obsolete;
+        }
+
+        /**
+         * Determines whether the source code files of the specified previous build should be retained. This method is
+         * called for the previous builds from the newest to the oldest build, until the first build is not retained.
+         *
+         * @param build
+         *         the previous build
+         * @param count
+         *         the number of retained builds if this build is retained as well (including the current build)
+         * @param size
+         *         the total size of the source code files of the retained builds if this build is retained as well
+         *         (including the current build), only computed if {@link #isSizeLimited()} returns {@code true}
+         *
+         * @return {@code true} if the source code files should be retained, {@code false} if the source code files of
+         *         this build and of all older builds should be deleted
+         */
+        boolean isRetained(final Run<?, ?> build, final int count, final long size) {
+            return false;
+        }
+
+        /**
+         * Determines whether {@link #isRetained(Run, int, long)} evaluates the size of the source code files. Only then
+         * the sizes of the builds will be computed and cached.
+         *
+         * @return {@code true} if the size of the source code files is evaluated, {@code false} otherwise
+         */
+        boolean isSizeLimited() {
+            return false;
+        }
+
+        private void moveAside(final Run<?, ?> build, final String directory, final List<Path> obsolete,
+                final FilteredLog log) {
+            Path buildDir = build.getRootDir().toPath();
+            try {
+                int count = obsolete.size();
+                SourceCodeCleaner.moveAside(buildDir.resolve(directory)).ifPresent(obsolete::add);
+                SourceCodeCleaner.moveAside(SourceArchive.resolve(buildDir, directory)).ifPresent(obsolete::add);
+                SourceCodeCleaner.moveAside(SourceManifest.resolve(buildDir, directory)).ifPresent(obsolete::add);
+                SourceCodeCleaner.moveAside(RenderedSourceCache.getCacheDirectory(buildDir)).ifPresent(obsolete::add);
+                if (obsolete.size() > count) {
+                    log.logInfo("Deleting source code files of build " + build.getDisplayName());
+                }
+            }
+            catch (IOException exception) {
+                log.logException(exception, "Could not delete source code files of build " + build.getDisplayName());
+            }
+        }
+
+        static Path getWatermarkFile(final Run<?, ?> build, final String directory) {
+            return build.getParent().getRootDir().toPath()
+                    .resolve(WATERMARK_PREFIX + StringUtils.replaceChars(directory, "/\\", "__"));
+        }
+
+        static Path getJournalFile(final Run<?, ?> build, final String directory) {
+            return build.getParent().getRootDir().toPath()
+                    .resolve(JOURNAL_PREFIX + StringUtils.replaceChars(directory, "/\\", "__"));
+        }
+
+        /**
+         * Returns the folders that have been moved aside by a previous cleanup but still exist, e.g. because Jenkins
+         * has been restarted before the {@link SourceCodeCleaner} deleted them, or because the deletion is still
+         * pending.
+         */
+        private List<Path> readJournal(final Path journalFile) {
+            List<Path> leftovers = new ArrayList<>();
+            try {
+                if (Files.exists(journalFile)) {
+                    for (String line : Files.readAllLines(journalFile, StandardCharsets.UTF_8)) {
+                        if (StringUtils.contains(line, SourceCodeCleaner.DELETING_INFIX)) {
+                            Path leftover = Paths.get(line);
+                            if (Files.exists(leftover, LinkOption.NOFOLLOW_LINKS)) {
+                                leftovers.add(leftover);
+                            }
+                        }
                     }
                 }
             }
+            catch (IOException | InvalidPathException ignore) {
+                // the leftovers of the previous cleanup will not be deleted
+            }
+            return leftovers;
+        }
+
+        private void writeJournal(final Path journalFile, final List<Path> journal, final FilteredLog log) {
+            try {
+                if (journal.isEmpty()) {
+                    Files.deleteIfExists(journalFile);
+                }
+                else {
+                    Files.write(journalFile, journal.stream().map(Path::toString).collect(Collectors.toList()),
+                            StandardCharsets.UTF_8);
+                }
+            }
+            catch (IOException exception) {
+                log.logException(exception, "Could not store the source code folders that will be deleted");
+            }
+        }
+
+        private int readWatermark(final Path watermarkFile) {
+            try {
+                if (Files.exists(watermarkFile)) {
+                    return NumberUtils.toInt(new String(Files.readAllBytes(watermarkFile), StandardCharsets.UTF_8)
+                            .trim());
+                }
+            }
+            catch (IOException ignore) {
+                // scan all builds
+            }
+            return 0;
+        }
+
+        private void writeWatermark(final Path watermarkFile, final int watermark, final FilteredLog log) {
+            try {
+                Files.write(watermarkFile, String.valueOf(watermark).getBytes(StandardCharsets.UTF_8));
+            }
+            catch (IOException exception) {
+                log.logException(exception, "Could not store the number of the last cleaned build");
+            }
+        }
+    }
+
+    /**
+     * Retains the source code files of the last builds, including the current build.
+     */
+    static class KeepLastBuilds extends CleanupOldBuilds {
+        private final IntSupplier builds;
+
+        KeepLastBuilds(final IntSupplier builds) {
+            super();
+
+            this.builds = builds;
+        }
+
+        @Override
+        boolean isRetained(final Run<?, ?> build, final int count, final long size) {
+            return count <= builds.getAsInt();
+        }
+    }
+
+    /**
+     * Retains the source code files of builds that have been started within the last days.
+     */
+    static class KeepRecentBuilds extends CleanupOldBuilds {
+        private final IntSupplier days;
+
+        KeepRecentBuilds(final IntSupplier days) {
+            super();
+
+            this.days = days;
+        }
+
+        @Override
+        boolean isRetained(final Run<?, ?> build, final int count, final long size) {
+            return build.getTimeInMillis() >= System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days.getAsInt());
+        }
+    }
+
+    /**
+     * Retains the source code files of the newest builds whose total size does not exceed a budget in megabytes. The
+     * size of the current build is part of the budget, but the current build is always retained.
+     */
+    static class KeepDiskBudget extends CleanupOldBuilds {
+        private static final long MEGABYTE = 1024 * 1024;
+
+        private final IntSupplier megabytes;
+
+        KeepDiskBudget(final IntSupplier megabytes) {
+            super();
+
+            this.megabytes = megabytes;
+        }
+
+        @Override
+        boolean isRetained(final Run<?, ?> build, final int count, final long size) {
+            return size <= megabytes.getAsInt() * MEGABYTE;
+        }
+
+        @Override
+        boolean isSizeLimited() {
+            return true;
         }
     }
 }
@@ -0,0 +1,217 @@
+package io.jenkins.plugins.prism;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import edu.hm.hafner.util.FilteredLog;
+
+import hudson.model.Run;
+
+/**
+ * Caches the total size of the source code files of the builds of a job. The size of a build is computed only once
+ * from the {@link SourceManifest} of the build or by walking the source code folder. Afterwards, the size is stored in
+ * a file in the folder of the job, so subsequent retention checks do not need to walk the folders of the builds again.
+ * The sizes of builds that are still running are not cached, since their source code files might still be changing.
+ *
+ * <p>
+ * Note that the size of a build is the total size of its source code files, even if the content of a file is shared
+ * with other builds by a {@link SourceCodeStore}. So the sum of the sizes is an upper bound of the used disk space.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+final class SourceCodeSizes {
+    private static final String SIZES_PREFIX = "prism-sizes-";
+    private static final char SEPARATOR = '=';
+
+    /**
+     * Loads the cached sizes of the builds of the job of the specified build.
+     *
+     * @param build
+     *         a build of the job
+     * @param directory
+     *         the directory, where the source code files are stored within each build
+     *
+     * @return the cached sizes, empty if no sizes have been cached yet or if the cache could not be read
+     */
+    static SourceCodeSizes load(final Run<?, ?> build, final String directory) {
+        Path file = getSizesFile(build, directory);
+        NavigableMap<Integer, Long> sizes = new TreeMap<>();
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int number = NumberUtils.toInt(StringUtils.substringBefore(line, String.valueOf(SEPARATOR)));
+                    long size = NumberUtils.toLong(StringUtils.substringAfter(line, String.valueOf(SEPARATOR)), -1);
+                    if (number > 0 && size >= 0) {
+                        sizes.put(number, size);
+                    }
+                }
+            }
+            catch (IOException ignore) {
+                // compute all sizes again
+            }
+        }
+        return new SourceCodeSizes(file, directory, sizes);
+    }
+
+    static Path getSizesFile(final Run<?, ?> build, final String directory) {
+        return build.getParent().getRootDir().toPath()
+                .resolve(SIZES_PREFIX + StringUtils.replaceChars(directory, "/\\", "__"));
+    }
+
+    /**
+     * Computes the total size of the source code files of a build. If the build contains a {@link SourceManifest}, then
+     * the total size of the files of the manifest is used. Otherwise, the size is the sum of the sizes of all files in
+     * the source code folder and the size of the archive.
+     *
+     * @param buildDirectory
+     *         the root folder of the build
+     * @param directory
+     *         the directory, where the source code files are stored within the build
+     *
+     * @return the size in bytes
+     * @throws IOException
+     *         if the folder could not be read
+     */
+    static long computeSize(final Path buildDirectory, final String directory) throws IOException {
+        Path manifest = SourceManifest.resolve(buildDirectory, directory);
+        if (Files.isRegularFile(manifest, LinkOption.NOFOLLOW_LINKS)) {
+            return SourceManifest.read(manifest).getTotalSize();
+        }
+
+        long[] size = new long[1];
+        Path sources = buildDirectory.resolve(directory);
+        if (Files.isDirectory(sources, LinkOption.NOFOLLOW_LINKS)) {
+            Files.walkFileTree(sources, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+                    if (attributes.isRegularFile()) {
+                        size[0] += attributes.size();
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        Path archive = SourceArchive.resolve(buildDirectory, directory);
+        if (Files.isRegularFile(archive, LinkOption.NOFOLLOW_LINKS)) {
+            size[0] += Files.size(archive);
+        }
+        return size[0];
+    }
+
+    private final Path file;
+    private final String directory;
+    private final NavigableMap<Integer, Long> sizes;
+    private boolean isModified;
+
+    private SourceCodeSizes(final Path file, final String directory, final NavigableMap<Integer, Long> sizes) {
+        this.file = file;
+        this.directory = directory;
+        this.sizes = sizes;
+    }
+
+    /**
+     * Returns the total size of the source code files of the specified build. If the size is not cached yet, then the
+     * size will be computed.
+     *
+     * @param build
+     *         the build
+     * @param log
+     *         logger
+     *
+     * @return the size in bytes
+     */
+    long getSize(final Run<?, ?> build, final FilteredLog log) {
+        Long cached = sizes.get(build.getNumber());
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            long size = computeSize(build.getRootDir().toPath(), directory);
+            if (!build.isBuilding()) {
+                sizes.put(build.getNumber(), size);
+                isModified = true;
+            }
+            return size;
+        }
+        catch (IOException exception) {
+            log.logException(exception, "Could not compute the size of the source code files of build "
+                    + build.getDisplayName());
+            return 0;
+        }
+    }
+
+    /**
+     * Removes the cached size of the specified build, e.g. since the source code files of the build have been deleted.
+     *
+     * @param build
+     *         the build
+     */
+    void remove(final Run<?, ?> build) {
+        if (sizes.remove(build.getNumber()) != null) {
+            isModified = true;
+        }
+    }
+
+    /**
+     * Removes the cached sizes of all builds up to the specified build number.
+     *
+     * @param number
+     *         the number of the newest build to remove
+     */
+    void removeUntil(final int number) {
+        Map<Integer, Long> obsolete = sizes.headMap(number, true);
+        if (!obsolete.isEmpty()) {
+            obsolete.clear();
+            isModified = true;
+        }
+    }
+
+    /**
+     * Stores the cached sizes in the folder of the job if they have been modified.
+     *
+     * @param log
+     *         logger
+     */
+    void save(final FilteredLog log) {
+        if (!isModified) {
+            return;
+        }
+        try {
+            Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(),
+                    ".tmp");
+            try {
+                try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                    for (Map.Entry<Integer, Long> entry : sizes.entrySet()) {
+                        writer.write(entry.getKey() + String.valueOf(SEPARATOR) + entry.getValue());
+                        writer.newLine();
+                    }
+                }
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                isModified = false;
+            }
+            finally {
+                Files.deleteIfExists(temporary);
+            }
+        }
+        catch (IOException exception) {
+            log.logException(exception, "Could not store the sizes of the source code files");
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.apache.commons.io.IOUtils;
+
+import edu.hm.hafner.util.FilteredLog;
+import edu.hm.hafner.util.VisibleForTesting;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import hudson.model.Run;
+
+/**
+ * A content-addressed store for the source code files of all builds of a job. Most source code files do not change
+ * between two builds, so each distinct file content is stored only once in the folder of the job, the file name is the
+ * SHA-256 digest of the content. The folder of a build contains hard links to the stored files, so the source code
+ * files of a build can still be read from the usual location in the folder of the build. Additional builds with the
+ * same files require no additional disk space and no additional inodes, so disk usage and copy time scale with the
+ * number of changed files rather than with the number of builds.
+ *
+ * <p>
+ * The number of hard links of a stored file is its reference count: a stored file that is not linked from a build
+ * anymore (e.g., since the build has been deleted) is removed by {@link #prune(FilteredLog)}. If the file system does
+ * not support hard links (or the folder of the build is on another file system), then the file is copied to the build
+ * folder instead.
+ * </p>
+ *
+ * <p>
+ * Pruning requires the link counts of the file system, see {@link #prune(FilteredLog)}. On Windows (or other file
+ * systems that do not provide the {@code unix:nlink} attribute), stored files could never be removed. So on such file
+ * systems the store is not used at all: the files are copied to the folder of the build, and the folder of the store
+ * is not created. Since pruning walks the whole store, the store is pruned at most once per hour after a build, see
+ * {@link #pruneIfDue(FilteredLog)}.
+ * </p>
+ *
+ * <p>
+ * Note that the files in the folder of a build must not be modified, since they share their content with other builds.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+public final class SourceCodeStore {
+    /** Name of the folder in the root directory of a job that contains the stored source code files. */
+    public static final String STORE_DIRECTORY = "prism-sources";
+
+    private static final String TEMPORARY_PREFIX = "incoming-";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final long ABANDONED_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final String LINK_COUNT = "unix:nlink";
+    private static final String UNIX_VIEW = "unix";
+    private static final long PRUNE_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int MOVE_ATTEMPTS = 3;
+    /** Time of the last prune of each store, shared by all instances of a store. */
+    private static final Map<Path, Long> LAST_PRUNES = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the store of the job of the specified build.
+     *
+     * @param build
+     *         the build
+     *
+     * @return the store of the job
+     */
+    public static SourceCodeStore forBuild(final Run<?, ?> build) {
+        return new SourceCodeStore(build.getParent().getRootDir().toPath().resolve(STORE_DIRECTORY));
+    }
+
+    private final Path storeDirectory;
+    private final long pruneIntervalMillis;
+    private final BooleanSupplier linkCountDetector;
+    @CheckForNull
+    private volatile Boolean hasLinkCounts;
+
+    private final AtomicLong storedCount = new AtomicLong();
+    private final AtomicLong deduplicatedCount = new AtomicLong();
+    private final AtomicLong copiedCount = new AtomicLong();
+
+    /**
+     * Creates a new store in the specified folder.
+     *
+     * @param storeDirectory
+     *         the folder that contains the stored files
+     */
+    public SourceCodeStore(final Path storeDirectory) {
+        this(storeDirectory, PRUNE_INTERVAL_MILLIS);
+    }
+
+    @VisibleForTesting
+    SourceCodeStore(final Path storeDirectory, final long pruneIntervalMillis) {
+        this(storeDirectory, pruneIntervalMillis, () -> hasLinkCounts(storeDirectory));
+    }
+
+    @VisibleForTesting
+    SourceCodeStore(final Path storeDirectory, final long pruneIntervalMillis,
+            final BooleanSupplier linkCountDetector) {
+        this.storeDirectory = storeDirectory;
+        this.pruneIntervalMillis = pruneIntervalMillis;
+        this.linkCountDetector = linkCountDetector;
+    }
+
+    /**
+     * Returns whether the file system of the specified folder provides the link counts of files. The folder itself does
+     * not need to exist, then the file system of the nearest existing parent is evaluated.
+     */
+    private static boolean hasLinkCounts(final Path folder) {
+        Path existing = folder.toAbsolutePath();
+        while (existing != null && !Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        if (existing == null) {
+            return false;
+        }
+        try {
+            return Files.getFileStore(existing).supportsFileAttributeView(UNIX_VIEW);
+        }
+        catch (IOException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns whether this store is used. The store is not used if the file system does not provide the link counts
+     * that are required to prune the store, then the files are copied to the folder of the build.
+     *
+     * @return {@code true} if the files are stored in this store, {@code false} if the files are copied
+     */
+    public boolean isEnabled() {
+        Boolean enabled = hasLinkCounts;
+        if (enabled == null) {
+            enabled = linkCountDetector.getAsBoolean();
+            hasLinkCounts = enabled;
+        }
+        return enabled;
+    }
+
+    public Path getDirectory() {
+        return storeDirectory;
+    }
+
+    /**
+     * Stores the specified source code file and links it to the specified location in the folder of a build.
+     *
+     * @param source
+     *         the source code file
+     * @param target
+     *         the location of the file in the folder of the build
+     *
+     * @return the stored file
+     * @throws IOException
+     *         if the file could not be stored
+     */
+    public Path store(final Path source, final Path target) throws IOException {
+        try (InputStream input = Files.newInputStream(source)) {
+            return store(input, target);
+        }
+    }
+
+    /**
+     * Stores the specified content of a source code file and links it to the specified location in the folder of a
+     * build. If the same content has already been stored, then the existing file is linked and the content is
+     * discarded.
+     *
+     * @param content
+     *         the content of the source code file, e.g. read from an agent
+     * @param target
+     *         the location of the file in the folder of the build
+     *
+     * @return the stored file, or the target if the store is not {@link #isEnabled() enabled}
+     * @throws IOException
+     *         if the file could not be stored
+     */
+    public Path store(final InputStream content, final Path target) throws IOException {
+        if (!isEnabled()) {
+            return copy(content, target);
+        }
+        Files.createDirectories(storeDirectory);
+        Path temporary = Files.createTempFile(storeDirectory, TEMPORARY_PREFIX, TEMPORARY_SUFFIX);
+        try {
+            MessageDigest digest = RenderedSourceCache.createDigest();
+            try (OutputStream output = new DigestOutputStream(Files.newOutputStream(temporary), digest)) {
+                IOUtils.copy(content, output);
+            }
+
+            Path stored = resolve(RenderedSourceCache.toHex(digest.digest()));
+            if (Files.exists(stored)) {
+                try {
+                    link(stored, target);
+                    deduplicatedCount.incrementAndGet();
+                    return stored;
+                }
+                catch (NoSuchFileException exception) {
+                    // the stored file has been pruned in the meantime: store the content again
+                }
+            }
+            link(temporary, target); // the link count must be at least 2 when the file becomes visible to prune
+            moveIntoStore(temporary, stored);
+            storedCount.incrementAndGet();
+            return stored;
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private Path copy(final InputStream content, final Path target) throws IOException {
+        Path folder = target.toAbsolutePath().getParent();
+        Files.createDirectories(folder);
+        Path temporary = Files.createTempFile(folder, target.getFileName().toString(), TEMPORARY_SUFFIX);
+        try {
+            Files.copy(content, temporary, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            copiedCount.incrementAndGet();
+            return target;
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Links the stored file with the specified digest to the specified location in the folder of a build. Then the
+     * content of the file does not need to be transferred again.
+     *
+     * @param digest
+     *         the SHA-256 digest of the content, as hex string
+     * @param target
+     *         the location of the file in the folder of the build
+     *
+     * @return {@code true} if the content has been stored before and has been linked, {@code false} otherwise
+     * @throws IOException
+     *         if the file could not be linked
+     */
+    public boolean link(final String digest, final Path target) throws IOException {
+        if (!isEnabled()) {
+            return false;
+        }
+        Path stored = resolve(digest);
+        if (!Files.exists(stored)) {
+            return false;
+        }
+        try {
+            link(stored, target);
+            deduplicatedCount.incrementAndGet();
+            return true;
+        }
+        catch (NoSuchFileException exception) {
+            return false; // the stored file has been pruned in the meantime
+        }
+    }
+
+    private Path resolve(final String digest) {
+        return storeDirectory.resolve(digest.substring(0, 2)).resolve(digest.substring(2));
+    }
+
+    private void link(final Path stored, final Path target) throws IOException {
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, stored);
+        }
+        catch (NoSuchFileException exception) {
+            throw exception;
+        }
+        catch (UnsupportedOperationException | FileSystemException exception) {
+            Files.copy(stored, target, StandardCopyOption.REPLACE_EXISTING);
+            copiedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Moves a new file into the store. A concurrent prune might remove the empty folder of the file in the meantime,
+     * so the move is retried a few times.
+     */
+    private void moveIntoStore(final Path temporary, final Path stored) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            Files.createDirectories(stored.getParent());
+            try {
+                Files.move(temporary, stored, StandardCopyOption.ATOMIC_MOVE);
+                return;
+            }
+            catch (FileAlreadyExistsException exception) {
+                return; // the same content has been stored concurrently
+            }
+            catch (NoSuchFileException exception) {
+                if (attempt >= MOVE_ATTEMPTS) {
+                    throw exception;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all stored files that are not linked from a build anymore, if the store has not been pruned within the
+     * last hour. Pruning walks the whole store, so it should not be started after each build.
+     *
+     * @param log
+     *         logger
+     *
+     * @return the number of removed files
+     */
+    public int pruneIfDue(final FilteredLog log) {
+        long now = System.currentTimeMillis();
+        boolean[] isDue = new boolean[1];
+        LAST_PRUNES.compute(storeDirectory.toAbsolutePath(), (directory, last) -> {
+            isDue[0] = last == null || now - last >= pruneIntervalMillis;
+            return isDue[0] ? now : last;
+        });
+        if (isDue[0]) {
+            return prune(log);
+        }
+        return 0;
+    }
+
+    /**
+     * Removes all stored files that are not linked from a build anymore. Files that are currently being stored are
+     * not removed. The link count of the stored files is used as reference count, so the store cannot be pruned if
+     * the file system does not provide link counts (e.g., on Windows).
+     *
+     * @param log
+     *         logger
+     *
+     * @return the number of removed files
+     */
+    public int prune(final FilteredLog log) {
+        if (!Files.isDirectory(storeDirectory)) {
+            return 0;
+        }
+        if (!isEnabled()) {
+            log.logInfo("Skipping cleaning of the source code store: file system does not provide link counts");
+            return 0;
+        }
+
+        int removed = 0;
+        try (DirectoryStream<Path> folders = Files.newDirectoryStream(storeDirectory)) {
+            for (Path folder : folders) {
+                if (Files.isDirectory(folder)) {
+                    removed += prune(folder);
+                }
+                else if (isAbandoned(folder)) {
+                    Files.deleteIfExists(folder);
+                }
+            }
+            log.logInfo("Removed %d unreferenced source code files from the store", removed);
+        }
+        catch (UnsupportedOperationException | IllegalArgumentException exception) {
+            log.logInfo("Skipping cleaning of the source code store: file system does not provide link counts");
+        }
+        catch (IOException exception) {
+            log.logException(exception, "Could not clean the source code store '%s'", storeDirectory);
+        }
+        return removed;
+    }
+
+    private int prune(final Path folder) throws IOException {
+        int removed = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder)) {
+            for (Path file : files) {
+                if (getLinkCount(file) <= 1 && Files.deleteIfExists(file)) {
+                    removed++;
+                }
+            }
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder)) {
+            if (!files.iterator().hasNext()) {
+                Files.deleteIfExists(folder);
+            }
+        }
+        return removed;
+    }
+
+    private int getLinkCount(final Path file) throws IOException {
+        return ((Number) Files.getAttribute(file, LINK_COUNT)).intValue();
+    }
+
+    private boolean isAbandoned(final Path file) throws IOException {
+        String name = file.getFileName().toString();
+        return name.startsWith(TEMPORARY_PREFIX) && name.endsWith(TEMPORARY_SUFFIX)
+                && Files.getLastModifiedTime(file).toMillis() < System.currentTimeMillis() - ABANDONED_MILLIS;
+    }
+
+    /**
+     * Returns the number of files whose content has been stored for the first time.
+     *
+     * @return the number of new files
+     */
+    public long getStoredCount() {
+        return storedCount.get();
+    }
+
+    /**
+     * Returns the number of files whose content has already been stored before.
+     *
+     * @return the number of deduplicated files
+     */
+    public long getDeduplicatedCount() {
+        return deduplicatedCount.get();
+    }
+
+    /**
+     * Returns the number of files that have been copied to the folder of the build since they could not be linked, or
+     * since the store is not {@link #isEnabled() enabled}.
+     *
+     * @return the number of copied files
+     */
+    public long getCopiedCount() {
+        return copiedCount.get();
+    }
+}
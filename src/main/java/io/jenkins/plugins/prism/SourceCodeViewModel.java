@@ -1,28 +1,124 @@
 package io.jenkins.plugins.prism;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
+import edu.hm.hafner.util.VisibleForTesting;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import org.apache.commons.jelly.XMLOutput;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import hudson.FilePath;
+import hudson.PluginWrapper;
 import hudson.model.ModelObject;
 import hudson.model.Run;
+import jenkins.model.Jenkins;
+
+import io.jenkins.plugins.prism.RenderAdmission.BusyException;
+import io.jenkins.plugins.prism.RenderAdmission.Permit;
 
 /**
- * Renders a source code file with Prism syntax highlighting in a separate Jenkins view. Optionally, highlights a marker
+ * Renders a source code file with Prism syntax highlighting in a separate Jenkins view. Optionally, highlights markers
  * in the source code: either a line, some characters in a line, or a multi-line block.
  *
+ * <p>
+ * The source code is not rendered when this model is created: the model just captures the file name, the markers, and
+ * a factory that opens the source code file. Rather, the view streams the colorized source code directly into the
+ * HTTP response, see {@link #writeSourceCode(XMLOutput)}. The rendered HTML is not retained by the model. If the model
+ * has been created with a {@link SourceCodeReaderFactory} and {@link PrismConfiguration#getContextLines() context
+ * lines} are configured, then only a window of the source code around the marker will be rendered. The remaining lines
+ * are loaded on demand using {@link #doLines(int, int)}. If the source code is provided by a {@link SourceCodeFile},
+ * then the lines before the window are not read at all, see {@link LineIndex}, and large files are read without
+ * creating a string for each line, see {@link MappedSourceLines}. If the source code is provided by a
+ * {@link WorkspaceSourceCodeFile}, then the file is read from the workspace on the agent when the view is opened, so
+ * the file does not need to be copied to the controller during the build. If the model has been created with a
+ * {@link Reader}, then the content is read when the model is created, and the whole file is rendered without caching.
+ * </p>
+ *
+ * <p>
+ * If the model has been created with a {@link SourceCodeReaderFactory}, then the rendered HTML will be stored in the
+ * {@link RenderedSourceCache}. Subsequent views of the same source code file with the same markers will be served from
+ * the cache.
+ * </p>
+ *
+ * <p>
+ * A model can highlight several markers at once, e.g. all issues of a file. Then the file will be read and rendered
+ * only once, and the view shows a list of links that jump to the individual markers. Such a view always shows the
+ * whole file. Additionally, the lines of the file can be decorated with CSS classes, see {@link LineDecorations}.
+ * </p>
+ *
+ * <p>
+ * If {@link PrismConfiguration#isServerSideHighlighting() server side highlighting} is enabled, then the syntax tokens
+ * of supported languages are created while rendering, so that Prism.js does not need to tokenize the source code.
+ * </p>
+ *
+ * <p>
+ * Rendering a source code file requires a permit of the {@link RenderAdmission}. If too many files are rendered at the
+ * same time, then the view shows a message that asks the user to try again later. Identical renders that are
+ * requested at the same time are coalesced by the {@link RenderCoalescer}, so that the file is rendered only once.
+ * </p>
+ *
+ * <p>
+ * The view and the lines that are loaded on demand support conditional requests: the responses carry a strong entity
+ * tag, and requests with a matching {@code If-None-Match} header are answered with {@code 304 Not Modified}, see
+ * {@link #doIndex(StaplerRequest, StaplerResponse)}. If the source code is provided by a {@link SourceCodeFile}, then
+ * the raw content of the file is available for download, see {@link #doRaw()}.
+ * </p>
+ *
  * @author Ullrich Hafner
  */
 @SuppressWarnings("PMD.CyclomaticComplexity")
 public class SourceCodeViewModel implements ModelObject {
+    /** Estimated memory of a render that streams the HTML: the buffers of the reader and the {@link SourcePrinter}. */
+    private static final long STREAMING_MEMORY = 256 * 1024;
+    /** Estimated number of HTML characters per byte of source code, including the markup and the escaped characters. */
+    private static final int HTML_CHARACTERS_PER_BYTE = 4;
+    private static final int RETRY_AFTER_SECONDS = 5;
+    private static final String INDEX_VIEW = "index.jelly";
+    /** Marks a request that already holds a permit of the {@link RenderAdmission} to render the source code. */
+    @VisibleForTesting
+    static final String PERMIT_ATTRIBUTE = SourceCodeViewModel.class.getName() + ".permit";
+
     private final Run<?, ?> owner;
     private final String fileName;
-    private final String sourceCode;
+    private final SourceCodeReaderFactory readerFactory;
+    private final List<Marker> markers;
+    private final LineDecorations decorations;
+    private final boolean isReusable;
+    private final Supplier<PrismConfiguration> configuration;
+    private final RenderedSourceCache cache;
+    private final RenderAdmission admission;
+    private final RenderCoalescer coalescer;
+
+    @CheckForNull
+    private volatile String contentDigest;
 
     /**
-     * Creates a new source code view model instance.
+     * Creates a new source code view model instance. The content of the reader is read and the reader is closed when
+     * the model is created. The source code is not rendered before the view is shown.
      *
      * @param owner
      *         the current build as owner of this view
@@ -32,22 +128,268 @@ public class SourceCodeViewModel implements ModelObject {
      *         the source code file to show, provided by a {@link Reader} instance
      * @param marker
      *         a block of lines (or a part of a line) to mark in the source code view
+     *
+     * @deprecated use {@link #SourceCodeViewModel(Run, String, SourceCodeReaderFactory, Marker)} so that the
+     *         source code file is opened only when it is rendered
      */
+    @Deprecated
     public SourceCodeViewModel(final Run<?, ?> owner, final String fileName, final Reader sourceCodeReader,
             final Marker marker) {
+        this(owner, fileName, new ContentReaderFactory(sourceCodeReader),
+                Collections.singletonList(marker), LineDecorations.NONE, false);
+    }
+
+    /**
+     * Creates a new source code view model instance. The source code file will be opened using the specified factory
+     * whenever the content needs to be rendered.
+     *
+     * @param owner
+     *         the current build as owner of this view
+     * @param fileName
+     *         the file name of the shown content
+     * @param readerFactory
+     *         the factory that opens the source code file to show
+     * @param marker
+     *         a block of lines (or a part of a line) to mark in the source code view
+     */
+    public SourceCodeViewModel(final Run<?, ?> owner, final String fileName,
+            final SourceCodeReaderFactory readerFactory, final Marker marker) {
+        this(owner, fileName, readerFactory, Collections.singletonList(marker), LineDecorations.NONE, true);
+    }
+
+    /**
+     * Creates a new source code view model instance that highlights several markers. The source code file will be
+     * opened using the specified factory whenever the content needs to be rendered.
+     *
+     * @param owner
+     *         the current build as owner of this view
+     * @param fileName
+     *         the file name of the shown content
+     * @param readerFactory
+     *         the factory that opens the source code file to show
+     * @param markers
+     *         the blocks of lines (or parts of a line) to mark in the source code view, the markers may overlap
+     */
+    public SourceCodeViewModel(final Run<?, ?> owner, final String fileName,
+            final SourceCodeReaderFactory readerFactory, final Collection<Marker> markers) {
+        this(owner, fileName, readerFactory, markers, LineDecorations.NONE);
+    }
+
+    /**
+     * Creates a new source code view model instance that highlights several markers and decorates the lines with CSS
+     * classes. The source code file will be opened using the specified factory whenever the content needs to be
+     * rendered.
+     *
+     * @param owner
+     *         the current build as owner of this view
+     * @param fileName
+     *         the file name of the shown content
+     * @param readerFactory
+     *         the factory that opens the source code file to show
+     * @param markers
+     *         the blocks of lines (or parts of a line) to mark in the source code view, the markers may overlap
+     * @param decorations
+     *         the CSS classes of the lines, e.g. the coverage state of each line
+     */
+    public SourceCodeViewModel(final Run<?, ?> owner, final String fileName,
+            final SourceCodeReaderFactory readerFactory, final Collection<Marker> markers,
+            final LineDecorations decorations) {
+        this(owner, fileName, readerFactory, MarkerSet.copyOf(markers), decorations, true);
+    }
+
+    private SourceCodeViewModel(final Run<?, ?> owner, final String fileName,
+            final SourceCodeReaderFactory readerFactory, final List<Marker> markers,
+            final LineDecorations decorations, final boolean isReusable) {
+        this(owner, fileName, readerFactory, markers, decorations, isReusable, PrismConfiguration::getInstance,
+                RenderedSourceCache.getInstance(), RenderAdmission.getInstance(), RenderCoalescer.getInstance());
+    }
+
+    @VisibleForTesting
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    SourceCodeViewModel(final Run<?, ?> owner, final String fileName,
+            final SourceCodeReaderFactory readerFactory, final List<Marker> markers,
+            final LineDecorations decorations, final boolean isReusable,
+            final Supplier<PrismConfiguration> configuration, final RenderedSourceCache cache,
+            final RenderAdmission admission, final RenderCoalescer coalescer) {
         this.owner = owner;
         this.fileName = fileName;
-        sourceCode = render(sourceCodeReader, marker);
+        this.readerFactory = readerFactory;
+        this.markers = markers;
+        this.decorations = decorations;
+        this.isReusable = isReusable;
+        this.configuration = configuration;
+        this.cache = cache;
+        this.admission = admission;
+        this.coalescer = coalescer;
+    }
+
+    private void render(final Writer writer, final int contextLines) throws IOException {
+        if (!isReusable) {
+            renderAdmitted(writer, contextLines, STREAMING_MEMORY);
+            return;
+        }
+
+        String key = createCacheKey(contextLines);
+        Path buildDirectory = owner.getRootDir().toPath();
+        if (cache.isEnabled()) {
+            Optional<String> cached = cache.get(key, buildDirectory);
+            if (cached.isPresent()) {
+                writer.write(cached.get());
+                return;
+            }
+        }
+
+        int recordingLimit = getRecordingLimit();
+        Optional<String> rendered = coalescer.render(key, writer, recordingLimit,
+                output -> renderAdmitted(output, contextLines, estimateMemory(recordingLimit)));
+        if (cache.isEnabled()) {
+            rendered.ifPresent(html -> cache.put(key, html, buildDirectory));
+        }
+    }
+
+    private int getRecordingLimit() {
+        return cache.isEnabled() ? cache.getMaximumEntrySize() : RenderCoalescer.DEFAULT_RECORDING_LIMIT;
+    }
+
+    /**
+     * Estimates the memory of a render: the leader of a coalesced render records the HTML up to the recording limit.
+     * If the size of the source code file is known, then only the memory for the estimated HTML of this file is
+     * reserved.
+     */
+    private long estimateMemory(final int recordingLimit) {
+        long recorded = recordingLimit;
+        if (readerFactory instanceof SourceCodeFile) {
+            try {
+                long html = Files.size(((SourceCodeFile) readerFactory).getFile()) * HTML_CHARACTERS_PER_BYTE;
+                recorded = Math.min(recorded, html);
+            }
+            catch (IOException ignore) {
+                // the file will not be rendered anyway
+            }
+        }
+        return STREAMING_MEMORY + recorded * Character.BYTES;
+    }
+
+    private void renderAdmitted(final Writer writer, final int contextLines, final long memory) throws IOException {
+        if (isAdmitted()) {
+            renderSource(writer, contextLines);
+        }
+        else {
+            Permit permit = admission.acquire(memory);
+            try {
+                renderSource(writer, contextLines);
+            }
+            finally {
+                permit.close();
+            }
+        }
     }
 
-    private String render(final Reader affectedFile, final Marker marker) {
-        try (BufferedReader reader = new BufferedReader(affectedFile)) {
-            SourcePrinter sourcePrinter = new SourcePrinter();
-            return sourcePrinter.render(fileName, reader.lines(), marker);
+    private boolean isAdmitted() {
+        StaplerRequest request = Stapler.getCurrentRequest();
+        return request != null && request.getAttribute(PERMIT_ATTRIBUTE) != null;
+    }
+
+    private String createCacheKey(final int contextLines) throws IOException {
+        PrismConfiguration configuration = getConfiguration();
+        return RenderedSourceCache.createKey(createContentDigest(), fileName, markers, decorations,
+                contextLines, configuration.getTheme(), configuration.isServerSideHighlighting());
+    }
+
+    /**
+     * Returns the digest of the content of the source code. A {@link SourceCodeFile} is not read at all, its content is
+     * identified by its {@link SourceCodeFile#getContentKey() key}.
+     */
+    private String createContentDigest() throws IOException {
+        if (readerFactory instanceof SourceCodeFile) {
+            SourceCodeFile file = (SourceCodeFile) readerFactory;
+            return RenderedSourceCache.digestOf(file.getContentKey(), file.getCharset().name());
         }
-        catch (IOException e) {
-            return String.format("%s%n%s", ExceptionUtils.getMessage(e), ExceptionUtils.getStackTrace(e));
+        String digest = contentDigest;
+        if (digest == null) {
+            digest = computeContentDigest();
+            contentDigest = digest;
         }
+        return digest;
+    }
+
+    /**
+     * Computes the digest of the content by reading the whole source code. Reading the file is not for free, so it
+     * requires a permit of the {@link RenderAdmission}, unless the request already holds a permit.
+     */
+    private String computeContentDigest() throws IOException {
+        if (isAdmitted()) {
+            return readContentDigest();
+        }
+        Permit permit = admission.acquire(STREAMING_MEMORY);
+        try {
+            return readContentDigest();
+        }
+        finally {
+            permit.close();
+        }
+    }
+
+    private String readContentDigest() throws IOException {
+        try (Reader reader = readerFactory.create()) {
+            return RenderedSourceCache.digest(reader);
+        }
+    }
+
+    private void renderSource(final Writer writer, final int contextLines) throws IOException {
+        try {
+            if (markers.size() == 1) {
+                Marker marker = markers.get(0);
+                int first = contextLines > 0 ? getFirstReadLine(marker.getLineStart() - contextLines) : 1;
+                createPrinter().render(fileName, openLines(first), marker, decorations, contextLines, writer);
+            }
+            else {
+                createPrinter().render(fileName, openLines(1), markers, decorations, writer);
+            }
+        }
+        catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+    }
+
+    private void renderLines(final Writer writer, final int from, final int to) throws IOException {
+        try {
+            createPrinter().renderLines(fileName, openLines(getFirstReadLine(from)), decorations, from, to, writer);
+        }
+        catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+    }
+
+    /**
+     * Returns the first line that needs to be read in order to render the lines starting at the specified line. Lines
+     * of a {@link SourceCodeFile} can be skipped using its {@link LineIndex}. The syntax tokens of server side
+     * highlighting depend on the preceding lines, so in this case the file is always read from the start.
+     */
+    private int getFirstReadLine(final int line) {
+        if (readerFactory instanceof SourceCodeFile && !getConfiguration().isServerSideHighlighting()) {
+            return Math.max(1, line);
+        }
+        return 1;
+    }
+
+    private SourceLines openLines(final int line) throws IOException {
+        if (readerFactory instanceof SourceCodeFile) {
+            return ((SourceCodeFile) readerFactory).openLines(line, owner.getRootDir().toPath());
+        }
+        return StreamSourceLines.of(readerFactory.create(), 1);
+    }
+
+    private SourcePrinter createPrinter() {
+        return new SourcePrinter(getConfiguration().isServerSideHighlighting());
+    }
+
+    private String createBusyMessage() {
+        return "<div class=\"alert alert-warning\" role=\"alert\">" + Messages.SourceCodeViewModel_Busy() + "</div>";
+    }
+
+    private String createErrorMessage(final IOException exception) {
+        return String.format("%s%n%s", ExceptionUtils.getMessage(exception), ExceptionUtils.getStackTrace(exception));
     }
 
     @Override
@@ -65,12 +407,253 @@ public class SourceCodeViewModel implements ModelObject {
     }
 
     /**
-     * Returns the colorized source code.
+     * Returns the colorized source code. The source code is rendered on each invocation and is not retained by this
+     * model. Note that the whole HTML output will be created in memory, use {@link #writeSourceCode(XMLOutput)} to
+     * stream the source code into a view.
      *
      * @return the source code
      */
     public String getSourceCode() {
-        return sourceCode;
+        StringWriter writer = new StringWriter();
+        try {
+            render(writer, 0);
+            return writer.toString();
+        }
+        catch (BusyException exception) {
+            return createBusyMessage();
+        }
+        catch (IOException exception) {
+            return createErrorMessage(exception);
+        }
+    }
+
+    /**
+     * Writes the colorized source code to the specified output of a Jelly view. The source code is rendered in small
+     * chunks that are directly written to the output, so the HTML of the whole file is never held in memory. If
+     * this view is {@link #isWindowed() windowed}, then only the configured number of context lines before and after
+     * the marker will be rendered.
+     *
+     * @param output
+     *         the output of the Jelly view
+     *
+     * @throws IOException
+     *         if the output could not be written
+     */
+    public void writeSourceCode(final XMLOutput output) throws IOException {
+        Writer writer = output.asWriter();
+        try {
+            render(writer, getContextLines());
+        }
+        catch (BusyException exception) {
+            writer.write(createBusyMessage());
+        }
+        catch (IOException exception) {
+            writer.write(createErrorMessage(exception));
+        }
+    }
+
+    /**
+     * Returns whether only a window of the source code around the marker is rendered. The remaining lines of the source
+     * code will be loaded on demand using {@link #doLines(int, int)}.
+     *
+     * @return {@code true} if only a window of the source code is rendered, {@code false} if the whole file is rendered
+     */
+    public boolean isWindowed() {
+        return getContextLines() > 0;
+    }
+
+    /**
+     * Returns the number of lines that are rendered before and after the marker. If the model has been created with a
+     * {@link Reader} or if several markers are shown, then the whole file will be rendered.
+     *
+     * @return the number of context lines, or 0 if the whole file should be rendered
+     */
+    public int getContextLines() {
+        if (isReusable && markers.size() == 1) {
+            return getConfiguration().getContextLines();
+        }
+        return 0;
+    }
+
+    /**
+     * Renders the specified range of lines of the source code. This end point is used by the view to load the lines
+     * that are not part of the initially rendered window.
+     *
+     * @param from
+     *         the first line to render (lines start at 1)
+     * @param to
+     *         the last line to render
+     *
+     * @return the colorized lines as a {@code code} element, or an empty response if the range is not part of the file
+     */
+    public HttpResponse doLines(@QueryParameter final int from, @QueryParameter final int to) {
+        return (request, response, node) -> {
+            if (!isReusable) {
+                response.setContentType("text/html;charset=UTF-8");
+                return;
+            }
+            try {
+                String entityTag = ConditionalRequests.createEntityTag(createCacheKey(0), "lines",
+                        String.valueOf(from), String.valueOf(to), getPluginVersion());
+                if (ConditionalRequests.answerIfNotModified(request, response, entityTag)) {
+                    return;
+                }
+                Permit permit = admission.acquire(STREAMING_MEMORY);
+                try {
+                    ConditionalRequests.setEntityTag(response, entityTag);
+                    response.setContentType("text/html;charset=UTF-8");
+                    renderLines(response.getWriter(), from, to);
+                }
+                finally {
+                    permit.close();
+                }
+            }
+            catch (BusyException exception) {
+                reject(response, exception);
+            }
+        };
+    }
+
+    /**
+     * Shows the source code view. If this model can render the source code several times, then the view is
+     * identified by a strong entity tag that is derived from the content of the source code file and all other
+     * properties that influence the HTML. If the browser already has the current version of the view (e.g., when
+     * navigating back or when opening the same marker again), then the request is answered with {@code 304 Not
+     * Modified} without rendering the source code again.
+     *
+     * <p>
+     * A permit of the {@link RenderAdmission} is requested only if this request actually needs to render the source
+     * code, i.e. if the HTML is neither cached nor currently rendered by another request. The permit reserves the
+     * memory for the estimated HTML of the file. Since the permit is requested before the view starts writing the
+     * response, a busy server answers with {@code 503 Service Unavailable} rather than with a page that would be
+     * reused for subsequent conditional requests.
+     * </p>
+     *
+     * @param request
+     *         the request
+     * @param response
+     *         the response
+     *
+     * @throws IOException
+     *         if the response could not be written
+     * @throws ServletException
+     *         if the view could not be rendered
+     */
+    public void doIndex(final StaplerRequest request, final StaplerResponse response)
+            throws IOException, ServletException {
+        if (!isReusable) {
+            request.getView(this, INDEX_VIEW).forward(request, response);
+            return;
+        }
+
+        try {
+            String key = createCacheKey(getContextLines());
+            String entityTag = ConditionalRequests.createEntityTag(key, "page",
+                    getPluginVersion(), String.valueOf(Jenkins.VERSION), Jenkins.getAuthentication2().getName(),
+                    String.valueOf(request.getLocale()));
+            if (ConditionalRequests.answerIfNotModified(request, response, entityTag)) {
+                return;
+            }
+            if (isRenderRequired(key)) {
+                long memory = estimateMemory(getRecordingLimit());
+                try (Permit permit = admission.acquire(memory)) {
+                    ConditionalRequests.setEntityTag(response, entityTag);
+                    request.setAttribute(PERMIT_ATTRIBUTE, permit);
+                    request.getView(this, INDEX_VIEW).forward(request, response);
+                }
+            }
+            else {
+                ConditionalRequests.setEntityTag(response, entityTag);
+                request.getView(this, INDEX_VIEW).forward(request, response);
+            }
+        }
+        catch (BusyException exception) {
+            reject(response, exception);
+        }
+    }
+
+    private boolean isRenderRequired(final String key) {
+        if (cache.isEnabled() && cache.contains(key, owner.getRootDir().toPath())) {
+            return false;
+        }
+        return !coalescer.isRendering(key);
+    }
+
+    /**
+     * Provides the raw content of the source code file for download. The raw content is available only if the source
+     * code is provided by a {@link SourceCodeFile} that is stored in the folder of the build or in one of the
+     * {@link PrismConfiguration#getSourceDirectories() permitted source code directories}. The file is sent without
+     * decoding its content, byte ranges are supported.
+     *
+     * @return the raw content of the file, or a {@code 404} response if the raw content is not available
+     */
+    public HttpResponse doRaw() {
+        return (request, response, node) -> {
+            if (readerFactory instanceof SourceCodeFile && isPermitted(((SourceCodeFile) readerFactory).getFile())) {
+                SourceCodeFile file = (SourceCodeFile) readerFactory;
+                RawSourceDownload.send(request, response, file.getFile(), file.getCharset());
+            }
+            else {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
+        };
+    }
+
+    private boolean isPermitted(final Path file) {
+        Set<String> permittedDirectories = getConfiguration().getSourceDirectories().stream()
+                .map(PermittedSourceCodeDirectory::getPath)
+                .collect(Collectors.toSet());
+        return new FilePermissionEnforcer().isInWorkspace(file.toAbsolutePath().normalize().toString(),
+                new FilePath(owner.getRootDir()), permittedDirectories);
+    }
+
+    private void reject(final StaplerResponse response, final BusyException exception) throws IOException {
+        response.setHeader("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, exception.getMessage());
+    }
+
+    private PrismConfiguration getConfiguration() {
+        return configuration.get();
+    }
+
+    private static String getPluginVersion() {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return "";
+        }
+        PluginWrapper plugin = jenkins.getPluginManager().whichPlugin(SourceCodeViewModel.class);
+        return plugin == null ? "" : plugin.getVersion();
+    }
+
+    /**
+     * Provides the content of the reader of the deprecated constructor. The reader is read and closed immediately, so
+     * the content can be rendered any number of times, and the reader is not kept open if the view is never shown.
+     */
+    private static class ContentReaderFactory implements SourceCodeReaderFactory {
+        private final String content;
+        @CheckForNull
+        private final IOException error;
+
+        ContentReaderFactory(final Reader reader) {
+            String read = "";
+            IOException readError = null;
+            try (Reader input = reader) {
+                read = IOUtils.toString(input);
+            }
+            catch (IOException exception) {
+                readError = exception;
+            }
+            content = read;
+            error = readError;
+        }
+
+        @Override
+        public Reader create() throws IOException {
+            if (error != null) {
+                throw new IOException("Can't read the source code file", error);
+            }
+            return new StringReader(content);
+        }
     }
 
     /**
@@ -79,7 +662,6 @@ public class SourceCodeViewModel implements ModelObject {
      * @return the theme CSS file
      */
     public String getThemeCssFileName() {
-        return PrismConfiguration.getInstance().getTheme().getFileName();
+        return getConfiguration().getTheme().getFileName();
     }
 }
-
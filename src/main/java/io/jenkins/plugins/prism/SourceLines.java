@@ -0,0 +1,69 @@
+package io.jenkins.plugins.prism;
+
+import java.io.Closeable;
+import java.util.stream.Stream;
+
+/**
+ * The lines of a source code file that are rendered by the {@link SourcePrinter}. The lines are read one after another,
+ * a line is exposed as a {@link CharSequence} that is valid only until the next line is requested. So an
+ * implementation can reuse its buffers for all lines of a file and does not need to create a {@link String} for each
+ * line, see {@link MappedSourceLines}.
+ *
+ * @author Ullrich Hafner
+ */
+public interface SourceLines extends Closeable {
+    /**
+     * Returns the lines of the specified stream.
+     *
+     * @param lines
+     *         the lines of the source code
+     *
+     * @return the lines
+     */
+    static SourceLines of(final Stream<String> lines) {
+        return of(lines, 1);
+    }
+
+    /**
+     * Returns the lines of the specified stream that starts with the specified line of a source code file.
+     *
+     * @param lines
+     *         the lines of the source code, starting with the specified line
+     * @param firstLine
+     *         the line number of the first element of the stream (lines start at 1)
+     *
+     * @return the lines
+     */
+    static SourceLines of(final Stream<String> lines, final int firstLine) {
+        return new StreamSourceLines(lines, firstLine);
+    }
+
+    /**
+     * Returns whether there are more lines.
+     *
+     * @return {@code true} if there are more lines, {@code false} otherwise
+     * @throws java.io.UncheckedIOException
+     *         if the lines could not be read
+     */
+    boolean hasNext();
+
+    /**
+     * Returns the next line. The line does not contain the line terminator. The returned characters may change when
+     * {@link #hasNext()} or {@link #next()} is invoked again.
+     *
+     * @return the next line
+     * @throws java.util.NoSuchElementException
+     *         if there are no more lines
+     * @throws java.io.UncheckedIOException
+     *         if the lines could not be read
+     */
+    CharSequence next();
+
+    /**
+     * Returns the line number of the line that has been returned by the last invocation of {@link #next()}, or the
+     * number of the line before the first line if no line has been returned yet.
+     *
+     * @return the line number of the current line
+     */
+    int getLine();
+}
@@ -0,0 +1,301 @@
+package io.jenkins.plugins.prism;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.commons.lang3.StringUtils;
+
+import io.jenkins.plugins.prism.SourceArchiveWriter.LineCounter;
+
+/**
+ * A manifest of the source code files that have been stored for a build. For each file, the manifest records the
+ * relative path, the size in bytes, the SHA-256 digest of the content, the number of lines, the charset, and the
+ * language class that is used by the {@link SourcePrinter}. The manifest is stored next to the source code folder of
+ * the build, so retention, cache keys, and listings of the stored files can be derived from a single small file
+ * rather than by walking the source code folder and reading all files.
+ *
+ * <p>
+ * The manifest is a UTF-8 text file that starts with a header line. Each subsequent line describes one file, the
+ * values are separated by tabs. Paths that contain tabs or line breaks are not supported. Note that the files of a
+ * build must not be modified after the manifest has been written, otherwise the recorded values are outdated.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+public final class SourceManifest {
+    /** File name extension of a manifest in the folder of a build. */
+    public static final String MANIFEST_SUFFIX = ".prism-manifest";
+
+    private static final String HEADER = "# prism source manifest 1";
+    private static final char SEPARATOR = '\t';
+    private static final int FIELD_COUNT = 6;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Returns the manifest of the source code files of a build.
+     *
+     * @param buildDirectory
+     *         the root folder of the build
+     * @param directory
+     *         the name of the folder that contains the source code files of the build
+     *
+     * @return the manifest
+     */
+    public static Path resolve(final Path buildDirectory, final String directory) {
+        return buildDirectory.resolve(directory + MANIFEST_SUFFIX);
+    }
+
+    /**
+     * Reads the specified manifest.
+     *
+     * @param manifest
+     *         the manifest
+     *
+     * @return the manifest
+     * @throws IOException
+     *         if the manifest could not be read or is not a valid manifest
+     */
+    public static SourceManifest read(final Path manifest) throws IOException {
+        SourceManifest sourceManifest = new SourceManifest();
+        try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine())) {
+                throw new IOException("File is not a source code manifest: " + manifest);
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = StringUtils.splitPreserveAllTokens(line, SEPARATOR);
+                if (fields.length != FIELD_COUNT) {
+                    throw new IOException("Invalid entry in source code manifest: " + line);
+                }
+                sourceManifest.add(new Entry(fields[0], Long.parseLong(fields[1]), fields[2],
+                        Integer.parseInt(fields[3]), Charset.forName(fields[4]), fields[5]));
+            }
+        }
+        catch (IllegalArgumentException exception) {
+            throw new IOException("Invalid entry in source code manifest: " + manifest, exception);
+        }
+        return sourceManifest;
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * Adds the specified source code file to the manifest. The file is read once to compute the digest and the number
+     * of lines.
+     *
+     * @param path
+     *         the relative path of the file in the source code folder of the build
+     * @param file
+     *         the source code file
+     * @param charset
+     *         the charset of the file
+     *
+     * @return the entry of the file
+     * @throws IOException
+     *         if the file could not be read
+     */
+    public Entry add(final String path, final Path file, final Charset charset) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            return add(path, input, charset);
+        }
+    }
+
+    /**
+     * Adds the specified content of a source code file to the manifest. The content is read once to compute the
+     * digest and the number of lines. If the manifest already contains a file with the same path, then this entry
+     * will be replaced.
+     *
+     * @param path
+     *         the relative path of the file in the source code folder of the build
+     * @param content
+     *         the content of the source code file
+     * @param charset
+     *         the charset of the file
+     *
+     * @return the entry of the file
+     * @throws IOException
+     *         if the content could not be read
+     * @throws IllegalArgumentException
+     *         if the path contains a tab or a line break
+     */
+    public Entry add(final String path, final InputStream content, final Charset charset) throws IOException {
+        if (StringUtils.containsAny(path, SEPARATOR, '\n', '\r')) {
+            throw new IllegalArgumentException("Path of a source code file must not contain tabs or line breaks: "
+                    + path);
+        }
+
+        MessageDigest digest = RenderedSourceCache.createDigest();
+        LineCounter lines = new LineCounter();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long size = 0;
+        int read;
+        while ((read = content.read(buffer)) >= 0) {
+            digest.update(buffer, 0, read);
+            lines.count(buffer, read);
+            size += read;
+        }
+        int lineCount = LineIndex.isSupported(charset) ? lines.getLineCount() : SourceArchiveWriter.UNKNOWN_LINES;
+        Entry entry = new Entry(path, size, RenderedSourceCache.toHex(digest.digest()), lineCount, charset,
+                SourcePrinter.selectLanguageClass(path));
+        add(entry);
+        return entry;
+    }
+
+    void add(final Entry entry) {
+        entries.put(entry.getPath(), entry);
+    }
+
+    /**
+     * Returns all files of the manifest, in the order they have been added.
+     *
+     * @return the files of the manifest
+     */
+    public Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * Finds the file with the specified relative path.
+     *
+     * @param path
+     *         the relative path of the file in the source code folder of the build
+     *
+     * @return the file, or an empty optional if the manifest does not contain such a file
+     */
+    public Optional<Entry> find(final String path) {
+        return Optional.ofNullable(entries.get(path));
+    }
+
+    /**
+     * Returns the total size of all files of the manifest.
+     *
+     * @return the size in bytes
+     */
+    public long getTotalSize() {
+        return entries.values().stream().mapToLong(Entry::getSize).sum();
+    }
+
+    /**
+     * Writes the manifest to the specified file. The manifest is written to a temporary file first that replaces the
+     * specified file afterwards, so readers never see an incomplete manifest.
+     *
+     * @param manifest
+     *         the file to write
+     *
+     * @throws IOException
+     *         if the manifest could not be written
+     */
+    public void write(final Path manifest) throws IOException {
+        Path folder = manifest.toAbsolutePath().getParent();
+        Files.createDirectories(folder);
+        Path temporary = Files.createTempFile(folder, manifest.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                for (Entry entry : entries.values()) {
+                    writer.write(StringUtils.join(new Object[] {entry.getPath(), entry.getSize(), entry.getDigest(),
+                            entry.getLineCount(), entry.getCharset().name(), entry.getLanguage()}, SEPARATOR));
+                    writer.newLine();
+                }
+            }
+            Files.move(temporary, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * A source code file in a manifest.
+     */
+    public static final class Entry {
+        private final String path;
+        private final long size;
+        private final String digest;
+        private final int lineCount;
+        private final Charset charset;
+        private final String language;
+
+        Entry(final String path, final long size, final String digest, final int lineCount, final Charset charset,
+                final String language) {
+            this.path = path;
+            this.size = size;
+            this.digest = digest;
+            this.lineCount = lineCount;
+            this.charset = charset;
+            this.language = language;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Returns the size of the file in bytes.
+         *
+         * @return the size of the file
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the SHA-256 digest of the content of the file, see {@link SourceCodeStore}.
+         *
+         * @return the digest as hex string
+         */
+        public String getDigest() {
+            return digest;
+        }
+
+        /**
+         * Returns the number of lines of the file.
+         *
+         * @return the number of lines, or -1 if the lines of the file could not be counted since the bytes of the
+         *         charset are not compatible with ASCII line terminators
+         */
+        public int getLineCount() {
+            return lineCount;
+        }
+
+        public Charset getCharset() {
+            return charset;
+        }
+
+        /**
+         * Returns the CSS class of the Prism language of the file, e.g. {@code language-java}.
+         *
+         * @return the language class
+         */
+        public String getLanguage() {
+            return language;
+        }
+
+        /**
+         * Creates a {@link SourceCodeFile} for this file. The digest of the manifest is used as content digest of the
+         * file, so the cache key of the rendered file can be created without reading the file.
+         *
+         * @param sourceDirectory
+         *         the source code folder of the build
+         *
+         * @return the source code file
+         */
+        public SourceCodeFile createFile(final Path sourceDirectory) {
+            return new SourceCodeFile(sourceDirectory.resolve(path), charset, digest);
+        }
+    }
+}
@@ -1,12 +1,20 @@
 package io.jenkins.plugins.prism;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.text.StringEscapeUtils;
 
-import edu.hm.hafner.util.LookaheadStream;
 import edu.hm.hafner.util.VisibleForTesting;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 
 import j2html.tags.ContainerTag;
 import j2html.tags.UnescapedText;
@@ -26,22 +34,50 @@ import static j2html.TagCreator.*;
 class SourcePrinter {
     private static final Sanitizer SANITIZER = new Sanitizer();
 
-    private static final ColumnMarker COLUMN_MARKER = new ColumnMarker("-n/a-");
     private static final String LINE_NUMBERS = "line-numbers";
     private static final String MATCH_BRACES = "match-braces";
+    private static final String HIGHLIGHT = "highlight";
+    private static final String CLOSING_CODE_TAG = "</code>";
+    private static final String CLOSING_SPAN_TAG = "</span>";
+    private static final String MARKER_ANCHOR = "prism-marker-";
+    /** Marks {@code code} elements that already contain syntax tokens, so Prism.js does not need to tokenize them. */
+    private static final String SERVER_HIGHLIGHTED = "data-highlighted=\"server\"";
+    private static final Marker WITHOUT_COLUMNS = new Marker.MarkerBuilder().build();
+
+    /** Number of characters that are collected before the escaped source code is written. */
+    private static final int CHUNK_SIZE = 16 * 1024;
 
     private final JenkinsFacade jenkinsFacade;
+    private final boolean isServerSideHighlighting;
 
     /**
-     * Creates a new instance of {@link SourcePrinter}.
+     * Creates a new instance of {@link SourcePrinter}. The source code will be highlighted in the browser.
      */
     SourcePrinter() {
-        this(new JenkinsFacade());
+        this(false);
+    }
+
+    /**
+     * Creates a new instance of {@link SourcePrinter}.
+     *
+     * @param isServerSideHighlighting
+     *         determines whether the source code should be split into syntax tokens on the server (if the language
+     *         is supported by the {@link SyntaxHighlighter}), or whether the source code should be highlighted by
+     *         Prism.js in the browser
+     */
+    SourcePrinter(final boolean isServerSideHighlighting) {
+        this(new JenkinsFacade(), isServerSideHighlighting);
     }
 
     @VisibleForTesting
     SourcePrinter(final JenkinsFacade jenkinsFacade) {
+        this(jenkinsFacade, false);
+    }
+
+    @VisibleForTesting
+    SourcePrinter(final JenkinsFacade jenkinsFacade, final boolean isServerSideHighlighting) {
         this.jenkinsFacade = jenkinsFacade;
+        this.isServerSideHighlighting = isServerSideHighlighting;
     }
 
     /**
@@ -58,35 +94,358 @@ class SourcePrinter {
      * @return the source code as colorized HTML
      */
     public String render(final String fileName, final Stream<String> lines, final Marker marker) {
-        try (LookaheadStream stream = new LookaheadStream(lines)) {
-            int start = marker.getLineStart();
-            int end = marker.getLineEnd();
+        StringWriter writer = new StringWriter();
+        try {
+            render(fileName, lines, marker, writer);
+        }
+        catch (IOException exception) {
+            throw new UncheckedIOException(exception); // cannot happen for a StringWriter
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes a colorized HTML snippet with the specified source code to the specified {@link Writer}. Highlights the
+     * specified issue and provides a clickable and collapsible element that shows the details for the issue. The lines
+     * are escaped and written in small chunks, so the rendered HTML is never held completely in memory.
+     *
+     * @param fileName
+     *         the file name of the source code file
+     * @param lines
+     *         the lines of the source code
+     * @param marker
+     *         the issue to show
+     * @param writer
+     *         the writer that receives the source code as colorized HTML
+     *
+     * @throws IOException
+     *         if the HTML could not be written
+     */
+    public void render(final String fileName, final Stream<String> lines, final Marker marker, final Writer writer)
+            throws IOException {
+        render(fileName, lines, marker, 0, writer);
+    }
+
+    /**
+     * Writes a colorized HTML snippet with a window of the specified source code to the specified {@link Writer}.
+     * Highlights the specified issue and provides a clickable and collapsible element that shows the details for the
+     * issue. Only the marked lines and the specified number of context lines before and after the marker will be
+     * rendered. Lines after this window will not be read from the stream anymore. The remaining lines can be rendered
+     * afterwards using {@link #renderLines(String, Stream, int, int, Writer)}.
+     *
+     * @param fileName
+     *         the file name of the source code file
+     * @param lines
+     *         the lines of the source code
+     * @param marker
+     *         the issue to show
+     * @param contextLines
+     *         the number of lines to render before and after the marker, use 0 to render all lines
+     * @param writer
+     *         the writer that receives the source code as colorized HTML
+     *
+     * @throws IOException
+     *         if the HTML could not be written
+     */
+    public void render(final String fileName, final Stream<String> lines, final Marker marker,
+            final int contextLines, final Writer writer) throws IOException {
+        render(fileName, lines, marker, LineDecorations.NONE, contextLines, writer);
+    }
+
+    /**
+     * Writes a colorized HTML snippet with a window of the specified source code to the specified {@link Writer}.
+     * Highlights the specified issue and decorates the lines with the CSS classes of the specified {@link
+     * LineDecorations}. Both are applied while streaming the lines, see {@link #render(String, Stream, Marker, int,
+     * Writer)} for details.
+     *
+     * @param fileName
+     *         the file name of the source code file
+     * @param lines
+     *         the lines of the source code
+     * @param marker
+     *         the issue to show
+     * @param decorations
+     *         the CSS classes of the lines
+     * @param contextLines
+     *         the number of lines to render before and after the marker, use 0 to render all lines
+     * @param writer
+     *         the writer that receives the source code as colorized HTML
+     *
+     * @throws IOException
+     *         if the HTML could not be written
+     */
+    public void render(final String fileName, final Stream<String> lines, final Marker marker,
+            final LineDecorations decorations, final int contextLines, final Writer writer) throws IOException {
+        render(fileName, SourceLines.of(lines), marker, decorations, contextLines, writer);
+    }
+
+    /**
+     * Writes a colorized HTML snippet with a window of the specified source code to the specified {@link Writer}, see
+     * {@link #render(String, Stream, Marker, LineDecorations, int, Writer)} for details. The lines are provided by
+     * {@link SourceLines}, e.g. the {@link MappedSourceLines} of a large file. The lines may start after the first
+     * line of the file, as long as the window is not before the first provided line. The lines will be closed
+     * afterwards.
+     *
+     * @param fileName
+     *         the file name of the source code file
+     * @param lines
+     *         the lines of the source code
+     * @param marker
+     *         the issue to show
+     * @param decorations
+     *         the CSS classes of the lines
+     * @param contextLines
+     *         the number of lines to render before and after the marker, use 0 to render all lines
+     * @param writer
+     *         the writer that receives the source code as colorized HTML
+     *
+     * @throws IOException
+     *         if the HTML could not be written
+     */
+    public void render(final String fileName, final SourceLines lines, final Marker marker,
+            final LineDecorations decorations, final int contextLines, final Writer writer) throws IOException {
+        try (SourceLines stream = lines) {
+            String language = selectLanguageClass(fileName);
+            CodeWriter code = createCodeWriter(writer, stream, decorations, language);
+
+            int last;
+            if (contextLines > 0) {
+                int first = Math.max(1, marker.getLineStart() - contextLines);
+                last = (int) Math.min(Integer.MAX_VALUE, (long) marker.getLineEnd() + contextLines);
+                code.skipLines(first);
+
+                code.appendHtml(String.format("<pre data-start=\"%d\" data-end=\"%d\">", first, last));
+            }
+            else {
+                last = Integer.MAX_VALUE;
+
+                code.appendHtml("<pre>");
+            }
+            code.writeCode(marker.getLineStart() - 1, language, LINE_NUMBERS, MATCH_BRACES);
+            code.writeMarkedCode(Collections.singletonList(marker), marker.getLineEnd(),
+                    language, LINE_NUMBERS, HIGHLIGHT, MATCH_BRACES);
+            code.appendHtml(createInfoPanel(marker).render());
+            code.writeCode(last, language, LINE_NUMBERS, MATCH_BRACES);
+            code.appendHtml("</pre>\n");
+            code.flush();
+        }
+    }
+
+    /**
+     * Writes a colorized HTML snippet with the specified source code to the specified {@link Writer}. Highlights all
+     * of the specified markers in a single pass over the source code: the lines of overlapping markers are highlighted
+     * as one block that is followed by the info panels of these markers. The source code is preceded by a list of
+     * links that jump to the info panels of the individual markers.
+     *
+     * @param fileName
+     *         the file name of the source code file
+     * @param lines
+     *         the lines of the source code
+     * @param markers
+     *         the issues to show, the order of the markers is not relevant. Use a {@link MarkerSet} to store a large
+     *         number of markers.
+     * @param writer
+     *         the writer that receives the source code as colorized HTML
+     *
+     * @throws IOException
+     *         if the HTML could not be written
+     */
+    public void render(final String fileName, final Stream<String> lines, final Collection<Marker> markers,
+            final Writer writer) throws IOException {
+        render(fileName, lines, markers, LineDecorations.NONE, writer);
+    }
+
+    /**
+     * Writes a colorized HTML snippet with the specified source code to the specified {@link Writer}. Highlights all
+     * of the specified markers and decorates the lines with the CSS classes of the specified {@link LineDecorations}.
+     * Both are applied in a single pass over the source code, see {@link #render(String, Stream, Collection, Writer)}
+     * for details.
+     *
+     * @param fileName
+     *         the file name of the source code file
+     * @param lines
+     *         the lines of the source code
+     * @param markers
+     *         the issues to show, the order of the markers is not relevant. Use a {@link MarkerSet} to store a large
+     *         number of markers.
+     * @param decorations
+     *         the CSS classes of the lines
+     * @param writer
+     *         the writer that receives the source code as colorized HTML
+     *
+     * @throws IOException
+     *         if the HTML could not be written
+     */
+    public void render(final String fileName, final Stream<String> lines, final Collection<Marker> markers,
+            final LineDecorations decorations, final Writer writer) throws IOException {
+        render(fileName, SourceLines.of(lines), markers, decorations, writer);
+    }
 
-            StringBuilder before = readBlockUntilLine(stream, start - 1);
-            StringBuilder marked = readBlockUntilLine(stream, end);
-            StringBuilder after = readBlockUntilLine(stream, Integer.MAX_VALUE);
+    /**
+     * Writes a colorized HTML snippet with the specified source code to the specified {@link Writer}, see {@link
+     * #render(String, Stream, Collection, LineDecorations, Writer)} for details. The lines are provided by {@link
+     * SourceLines}, e.g. the {@link MappedSourceLines} of a large file. The lines will be closed afterwards.
+     *
+     * @param fileName
+     *         the file name of the source code file
+     * @param lines
+     *         the lines of the source code
+     * @param markers
+     *         the issues to show, the order of the markers is not relevant. Use a {@link MarkerSet} to store a large
+     *         number of markers.
+     * @param decorations
+     *         the CSS classes of the lines
+     * @param writer
+     *         the writer that receives the source code as colorized HTML
+     *
+     * @throws IOException
+     *         if the HTML could not be written
+     */
+    public void render(final String fileName, final SourceLines lines, final Collection<Marker> markers,
+            final LineDecorations decorations, final Writer writer) throws IOException {
+        MarkerSet sorted = MarkerSet.copyOf(markers);
 
+        try (SourceLines stream = lines) {
             String language = selectLanguageClass(fileName);
-            String code = asCode(before, language, LINE_NUMBERS, MATCH_BRACES)
-                    + asMarkedCode(marked, marker, language, LINE_NUMBERS, "highlight", MATCH_BRACES)
-                    + createInfoPanel(marker)
-                    + asCode(after, language, LINE_NUMBERS, MATCH_BRACES);
+            CodeWriter code = createCodeWriter(writer, stream, decorations, language);
+
+            code.appendHtml(createJumpList(sorted));
+            code.appendHtml("<pre>");
+            int start = 0;
+            while (start < sorted.size()) {
+                int lineStart = sorted.get(start).getLineStart();
+                int lineEnd = sorted.get(start).getLineEnd();
+                int end = start + 1;
+                while (end < sorted.size() && sorted.get(end).getLineStart() <= lineEnd) {
+                    lineEnd = Math.max(lineEnd, sorted.get(end).getLineEnd());
+                    end++;
+                }
+
+                code.writeCode(lineStart - 1, language, LINE_NUMBERS, MATCH_BRACES);
+                code.writeMarkedCode(sorted.subList(start, end), lineEnd,
+                        language, LINE_NUMBERS, HIGHLIGHT, MATCH_BRACES);
+                for (int index = start; index < end; index++) {
+                    code.appendHtml(createInfoPanel(sorted.get(index)).withId(MARKER_ANCHOR + index).render());
+                }
+                start = end;
+            }
+            code.writeCode(Integer.MAX_VALUE, language, LINE_NUMBERS, MATCH_BRACES);
+            code.appendHtml("</pre>\n");
+            code.flush();
+        }
+    }
+
+    /**
+     * Writes a colorized HTML snippet of the specified range of lines to the specified {@link Writer}. The lines are
+     * rendered as a single {@code code} element that can be inserted into the {@code pre} element of a window that
+     * has been rendered by {@link #render(String, Stream, Marker, int, Writer)}. If the specified range is not part of
+     * the source code, then nothing will be written.
+     *
+     * @param fileName
+     *         the file name of the source code file
+     * @param lines
+     *         the lines of the source code
+     * @param from
+     *         the first line to render (lines start at 1)
+     * @param to
+     *         the last line to render
+     * @param writer
+     *         the writer that receives the source code as colorized HTML
+     *
+     * @throws IOException
+     *         if the HTML could not be written
+     */
+    public void renderLines(final String fileName, final Stream<String> lines, final int from, final int to,
+            final Writer writer) throws IOException {
+        renderLines(fileName, lines, LineDecorations.NONE, from, to, writer);
+    }
+
+    /**
+     * Writes a colorized HTML snippet of the specified range of lines to the specified {@link Writer}. The lines are
+     * decorated with the CSS classes of the specified {@link LineDecorations}, see {@link #renderLines(String, Stream,
+     * int, int, Writer)} for details.
+     *
+     * @param fileName
+     *         the file name of the source code file
+     * @param lines
+     *         the lines of the source code
+     * @param decorations
+     *         the CSS classes of the lines
+     * @param from
+     *         the first line to render (lines start at 1)
+     * @param to
+     *         the last line to render
+     * @param writer
+     *         the writer that receives the source code as colorized HTML
+     *
+     * @throws IOException
+     *         if the HTML could not be written
+     */
+    public void renderLines(final String fileName, final Stream<String> lines, final LineDecorations decorations,
+            final int from, final int to, final Writer writer) throws IOException {
+        renderLines(fileName, SourceLines.of(lines), decorations, from, to, writer);
+    }
 
-            return pre().with(new UnescapedText(code)).renderFormatted();
+    /**
+     * Writes a colorized HTML snippet of the specified range of lines to the specified {@link Writer}, see {@link
+     * #renderLines(String, Stream, int, int, Writer)} for details. The lines are provided by {@link SourceLines}, e.g.
+     * the {@link MappedSourceLines} of a large file. The lines may start at any line before or at the first line of
+     * the range. The lines will be closed afterwards.
+     *
+     * @param fileName
+     *         the file name of the source code file
+     * @param lines
+     *         the lines of the source code
+     * @param decorations
+     *         the CSS classes of the lines
+     * @param from
+     *         the first line to render (lines start at 1)
+     * @param to
+     *         the last line to render
+     * @param writer
+     *         the writer that receives the source code as colorized HTML
+     *
+     * @throws IOException
+     *         if the HTML could not be written
+     */
+    public void renderLines(final String fileName, final SourceLines lines, final LineDecorations decorations,
+            final int from, final int to, final Writer writer) throws IOException {
+        try (SourceLines stream = lines) {
+            String language = selectLanguageClass(fileName);
+            CodeWriter code = createCodeWriter(writer, stream, decorations, language);
+            code.skipLines(from);
+            if (stream.hasNext() && from <= to) {
+                code.writeCode(to, language, LINE_NUMBERS, MATCH_BRACES);
+                code.flush();
+            }
         }
     }
 
-    private StringBuilder readBlockUntilLine(final LookaheadStream stream, final int end) {
-        StringBuilder marked = new StringBuilder();
-        while (stream.hasNext() && stream.getLine() < end) {
-            marked.append(stream.next());
-            marked.append("\n");
+    private CodeWriter createCodeWriter(final Writer writer, final SourceLines stream,
+            final LineDecorations decorations, final String language) {
+        HtmlCodeEmitter emitter = new HtmlCodeEmitter(writer, CHUNK_SIZE);
+        if (isServerSideHighlighting) {
+            return new CodeWriter(emitter, stream, decorations, SyntaxHighlighter.create(language).orElse(null));
         }
-        return marked;
+        return new CodeWriter(emitter, stream, decorations, null);
     }
 
-    private String createInfoPanel(final Marker marker) {
-        return createBox(marker).withClass("analysis-warning").render();
+    private ContainerTag createInfoPanel(final Marker marker) {
+        return createBox(marker).withClass("analysis-warning");
+    }
+
+    private String createJumpList(final List<Marker> markers) {
+        if (markers.isEmpty()) {
+            return "";
+        }
+        ContainerTag list = ol();
+        for (int index = 0; index < markers.size(); index++) {
+            Marker marker = markers.get(index);
+            list.with(li().with(a().withHref("#" + MARKER_ANCHOR + index).with(
+                    span(String.valueOf(marker.getLineStart())).withClass("analysis-marker-line"),
+                    text(marker.getTitle()))));
+        }
+        return nav().withClass("analysis-markers").with(list).render();
     }
 
     private ContainerTag createBox(final Marker marker) {
@@ -135,8 +494,17 @@ class SourcePrinter {
         return new UnescapedText(SANITIZER.render(message));
     }
 
+    /**
+     * Returns the CSS class of the Prism language of the specified file. The language is derived from the extension
+     * of the file name.
+     *
+     * @param fileName
+     *         the name of the file
+     *
+     * @return the CSS class of the language
+     */
     @SuppressWarnings({"javancss", "PMD.CyclomaticComplexity"})
-    private String selectLanguageClass(final String fileName) {
+    static String selectLanguageClass(final String fileName) {
         switch (StringUtils.substringAfterLast(fileName, ".")) {
             case "htm":
             case "html":
@@ -198,95 +566,94 @@ class SourcePrinter {
         }
     }
 
-    private String asMarkedCode(final StringBuilder text, final Marker marker, final String... classes) {
-        StringBuilder marked;
-        if (marker.getLineStart() == marker.getLineEnd()) {
-            marked = COLUMN_MARKER.markColumns(text.toString(), marker.getColumnStart(), marker.getColumnEnd());
-        }
-        else {
-            marked = text;
+    /**
+     * Writes the lines of a source code file as {@code code} elements. The lines are read from a stream, escaped,
+     * decorated, and optionally split into syntax tokens.
+     */
+    private static class CodeWriter {
+        private final HtmlCodeEmitter emitter;
+        private final SourceLines stream;
+        private final LineDecorations decorations;
+        @CheckForNull
+        private final SyntaxHighlighter highlighter;
+        private final LineTokens tokens = new LineTokens();
+
+        CodeWriter(final HtmlCodeEmitter emitter, final SourceLines stream, final LineDecorations decorations,
+                @CheckForNull final SyntaxHighlighter highlighter) {
+            this.emitter = emitter;
+            this.stream = stream;
+            this.decorations = decorations;
+            this.highlighter = highlighter;
         }
 
-        String sanitized = SANITIZER.render(StringEscapeUtils.escapeHtml4(marked.toString()));
-        String  markerReplaced = COLUMN_MARKER.replacePlaceHolderWithHtmlTag(sanitized);
-        return code().withClasses(classes).with(new UnescapedText(markerReplaced)).render();
-    }
-
-    private String asCode(final StringBuilder text, final String... classes) {
-        return code().withClasses(classes).with(unescape(StringEscapeUtils.escapeHtml4(text.toString()))).render();
-    }
+        void appendHtml(final String html) throws IOException {
+            emitter.appendHtml(html);
+        }
 
-    /**
-     * Encloses columns between {@code start} and {@code end} with an HTML tag (see {@code openingTag} and {@code
-     * closingTag}).
-     */
-    static final class ColumnMarker {
-        private static final String OPENING_TAG = "<span class='code-mark'>";
-        private static final String CLOSING_TAG = "</span>";
+        void flush() throws IOException {
+            emitter.flush();
+        }
 
         /**
-         * Creates a {@link ColumnMarker} that will use {@code placeHolderText} for enclosing.
-         *
-         * @param placeHolderText
-         *         Used to construct an opening and closing text that can later be replaced with the HTML tag {@code
-         *         openingTag} {@code closingTag}. It should be a text that is unlikely to appear in any source code.
+         * Skips the lines before the specified line. Skipped lines are still tokenized, so that multi-line tokens
+         * that start before the first rendered line are highlighted correctly.
          */
-        ColumnMarker(final String placeHolderText) {
-            openingTagPlaceHolder = "OpEn" + placeHolderText;
-            closingTagPlaceHolder = "ClOsE" + placeHolderText;
+        void skipLines(final int first) {
+            while (stream.hasNext() && stream.getLine() < first - 1) {
+                CharSequence line = stream.next();
+                if (highlighter != null) {
+                    highlighter.tokenize(line, tokens);
+                }
+            }
         }
 
-        private final String openingTagPlaceHolder;
-        private final String closingTagPlaceHolder;
+        void writeCode(final int end, final String... classes) throws IOException {
+            emitter.appendHtml(createOpeningCodeTag(classes));
+            while (stream.hasNext() && stream.getLine() < end) {
+                writeLine(WITHOUT_COLUMNS);
+            }
+            emitter.appendHtml(CLOSING_CODE_TAG);
+        }
 
         /**
-         * Encloses columns between start and end with the HTML tag {@code openingTag} {@code closingTag}. This will
-         * make prism highlight the enclosed part of the line.
-         *
-         * @param text
-         *         the source code line
-         * @param start
-         *         the first column in text, that needs to be marked
-         * @param end
-         *         the last column in text, that needs to be marked
-         *
-         * @return StringBuilder containing the text with the added html tag "mark"
+         * Writes the highlighted lines of the specified markers. The columns of a marker will be marked only if the
+         * marker is the only single-line marker of a line.
          */
-        public StringBuilder markColumns(final String text, final int start, final int end) {
-            if (start < 1 || text.length() == 0 || end > text.length()) {
-                return new StringBuilder(text);
+        void writeMarkedCode(final List<Marker> markers, final int end, final String... classes)
+                throws IOException {
+            Map<Integer, Marker> columnsPerLine = new HashMap<>();
+            for (Marker marker : markers) {
+                if (marker.getLineStart() == marker.getLineEnd()) {
+                    columnsPerLine.merge(marker.getLineStart(), marker, (first, second) -> WITHOUT_COLUMNS);
+                }
             }
-            final int realStart = start - 1;
-            final int realEnd = (end == 0) ? text.length() - 1 : end - 1;
 
-            if (realStart > realEnd) {
-                return new StringBuilder(text);
+            emitter.appendHtml(createOpeningCodeTag(classes));
+            while (stream.hasNext() && stream.getLine() < end) {
+                Marker columns = columnsPerLine.getOrDefault(stream.getLine() + 1, WITHOUT_COLUMNS);
+                writeLine(columns);
             }
-            final int afterMark = realEnd + 1;
-
-            final String before = text.substring(0, realStart);
-            final String toBeMarked = text.substring(realStart, afterMark);
-            final String after = text.substring(afterMark);
+            emitter.appendHtml(CLOSING_CODE_TAG);
+        }
 
-            return new StringBuilder(before)
-                    .append(openingTagPlaceHolder)
-                    .append(toBeMarked)
-                    .append(closingTagPlaceHolder)
-                    .append(after);
+        private void writeLine(final Marker columns) throws IOException {
+            String openingTag = decorations.getOpeningTag(stream.getLine() + 1);
+            CharSequence line = stream.next();
+            if (highlighter != null) {
+                highlighter.tokenize(line, tokens);
+            }
+            emitter.appendHtml(openingTag);
+            emitter.appendLine(line, columns.getColumnStart(), columns.getColumnEnd(), tokens);
+            if (!openingTag.isEmpty()) {
+                emitter.appendHtml(CLOSING_SPAN_TAG);
+            }
         }
 
-        /**
-         * Encloses columns between start and end with the HTML tag {@code openingTag} {@code closingTag}. This will
-         * make prism highlight the enclosed part of the line.
-         *
-         * @param text
-         *         the source code line
-         *
-         * @return String containing the text with the added html tag
-         */
-        public String replacePlaceHolderWithHtmlTag(final String text) {
-            return text.replaceAll(openingTagPlaceHolder, OPENING_TAG)
-                    .replaceAll(closingTagPlaceHolder, CLOSING_TAG);
+        private String createOpeningCodeTag(final String... classes) {
+            if (highlighter == null) {
+                return "<code class=\"" + String.join(" ", classes) + "\">";
+            }
+            return "<code class=\"" + String.join(" ", classes) + "\" " + SERVER_HIGHLIGHTED + ">";
         }
     }
 }
@@ -0,0 +1,68 @@
+package io.jenkins.plugins.prism;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.stream.Stream;
+
+import edu.hm.hafner.util.LookaheadStream;
+
+/**
+ * Provides the lines of a {@link Stream} of strings as {@link SourceLines}.
+ *
+ * @author Ullrich Hafner
+ */
+class StreamSourceLines implements SourceLines {
+    /**
+     * Returns the lines of the specified reader. The reader will be closed when the lines are closed.
+     *
+     * @param reader
+     *         the reader of the source code, positioned at the start of the specified line
+     * @param firstLine
+     *         the line number of the first line of the reader (lines start at 1)
+     *
+     * @return the lines
+     */
+    static SourceLines of(final Reader reader, final int firstLine) {
+        BufferedReader lines = new BufferedReader(reader);
+        return new StreamSourceLines(lines.lines().onClose(() -> close(lines)), firstLine);
+    }
+
+    private static void close(final Reader reader) {
+        try {
+            reader.close();
+        }
+        catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private final LookaheadStream stream;
+    private final int skippedLines;
+
+    StreamSourceLines(final Stream<String> lines, final int firstLine) {
+        stream = new LookaheadStream(lines);
+        skippedLines = Math.max(firstLine, 1) - 1;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return stream.hasNext();
+    }
+
+    @Override
+    public CharSequence next() {
+        return stream.next();
+    }
+
+    @Override
+    public int getLine() {
+        return skippedLines + stream.getLine();
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+}
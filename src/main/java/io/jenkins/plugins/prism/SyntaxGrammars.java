@@ -0,0 +1,244 @@
+package io.jenkins.plugins.prism;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import io.jenkins.plugins.prism.SyntaxHighlighter.Grammar;
+import io.jenkins.plugins.prism.SyntaxHighlighter.GrammarBuilder;
+
+/**
+ * Provides the grammars of the languages that can be highlighted on the server. The grammars are simplified versions
+ * of the corresponding Prism.js grammars: they use the same token types, but nested tokens are flattened.
+ *
+ * @author Ullrich Hafner
+ */
+final class SyntaxGrammars {
+    private static final String COMMENT = "comment";
+    private static final String STRING = "string";
+    private static final String KEYWORD = "keyword";
+    private static final String BOOLEAN = "boolean";
+    private static final String NUMBER = "number";
+    private static final String FUNCTION = "function";
+    private static final String CLASS_NAME = "class-name";
+    private static final String OPERATOR = "operator";
+    private static final String PUNCTUATION = "punctuation";
+    private static final String BLOCK_COMMENT = "block-comment";
+
+    // possessive quantifiers: otherwise each character of a string literal adds a stack frame to the matcher
+    private static final String DOUBLE_QUOTED_STRING = "\"(?:[^\"\\\\]|\\\\.)*+\"";
+    private static final String SINGLE_QUOTED_STRING = "'(?:[^'\\\\]|\\\\.)*+'";
+    private static final String FUNCTION_CALL = "\\b\\w+(?=\\s*\\()";
+    private static final String CLIKE_OPERATOR = "->|::|--|\\+\\+|&&|\\|\\||<<=?|>>>?=?|[-+*/%&|^!=<>]=?|[?:~]";
+    private static final String CLIKE_PUNCTUATION = "[{}\\[\\];(),.]";
+
+    // a plain YAML key starts a line, follows a list item '- ', or follows '{' or ',' in a flow mapping: all other
+    // positions are skipped, otherwise a long line without a colon is scanned to its end from each of its characters
+    private static final String YAML_KEY_START = "[^\\s#:\"'\\-\\[\\]{},&*!|>?]";
+    private static final String YAML_BLOCK_KEY = "(?<=^[ \\t]{0,64}|^[ \\t]{0,64}-[ \\t]{1,8})" + YAML_KEY_START
+            + "[^#:\\s]*+(?:[ \\t]++[^#:\\s]++)*+";
+    private static final String YAML_FLOW_KEY = "(?<=[{,][ \\t]{0,8})" + YAML_KEY_START
+            + "[^#:,\\[\\]{}\\s]*+(?:[ \\t]++[^#:,\\[\\]{}\\s]++)*+";
+
+    private static final Map<String, Grammar> GRAMMARS = new HashMap<>();
+
+    static {
+        GRAMMARS.put("language-java", createJava());
+        GRAMMARS.put("language-c", createC());
+        GRAMMARS.put("language-cpp", createCpp());
+        GRAMMARS.put("language-javascript", createJavaScript(""));
+        GRAMMARS.put("language-typescript", createJavaScript(
+                "|abstract|as|asserts|declare|enum|infer|is|keyof|module|namespace|never|readonly|type|unique"));
+        GRAMMARS.put("language-python", createPython());
+        GRAMMARS.put("language-markup", createMarkup());
+        GRAMMARS.put("language-yaml", createYaml());
+    }
+
+    /**
+     * Returns the grammar of the specified language.
+     *
+     * @param languageClass
+     *         the CSS class of the language, see {@link SourcePrinter}
+     *
+     * @return the grammar, or an empty optional if the language is not supported
+     */
+    static Optional<Grammar> get(final String languageClass) {
+        return Optional.ofNullable(GRAMMARS.get(languageClass));
+    }
+
+    private static Grammar createJava() {
+        return new GrammarBuilder()
+                .token(COMMENT, "//.*")
+                .token(COMMENT, "/\\*", BLOCK_COMMENT)
+                .token(STRING, "\"\"\"", "text-block")
+                .token(STRING, DOUBLE_QUOTED_STRING)
+                .token("char", "'(?:\\\\.|[^'\\\\]){1,6}'")
+                .token("annotation punctuation", "(?<![.\\w])@\\w+(?:\\.\\w+)*")
+                .token(KEYWORD, words("abstract|assert|boolean|break|byte|case|catch|char|class|const|continue"
+                        + "|default|do|double|else|enum|exports|extends|final|finally|float|for|goto|if|implements"
+                        + "|import|instanceof|int|interface|long|module|native|new|null|open|opens|package|permits"
+                        + "|private|protected|provides|public|record|requires|return|sealed|short|static|strictfp"
+                        + "|super|switch|synchronized|this|throw|throws|to|transient|transitive|try|uses|var|void"
+                        + "|volatile|while|with|yield"))
+                .token(BOOLEAN, words("true|false"))
+                .token(FUNCTION, FUNCTION_CALL)
+                .token("constant", "\\b[A-Z][A-Z_\\d]+\\b")
+                .token(CLASS_NAME, "\\b[A-Z]\\w*\\b")
+                .token(NUMBER, "(?i:\\b0b[01][01_]*l?\\b|\\b0x[\\da-f_]+l?\\b"
+                        + "|(?:\\b\\d[\\d_]*(?:\\.[\\d_]*)?|\\B\\.\\d[\\d_]*)(?:e[+-]?\\d[\\d_]*)?[dfl]?)")
+                .token(OPERATOR, CLIKE_OPERATOR)
+                .token(PUNCTUATION, CLIKE_PUNCTUATION)
+                .mode(BLOCK_COMMENT, COMMENT)
+                .exit(COMMENT, "\\*/")
+                .mode("text-block", STRING)
+                .token(STRING, "\\\\.")
+                .exit(STRING, "\"\"\"")
+                .build();
+    }
+
+    private static GrammarBuilder createCBase(final String keywords) {
+        return new GrammarBuilder()
+                .token(COMMENT, "//.*")
+                .token(COMMENT, "/\\*", BLOCK_COMMENT)
+                .token("macro property", "^\\s*#\\s*[a-z]+.*")
+                .token(STRING, DOUBLE_QUOTED_STRING)
+                .token("char", "'(?:\\\\.|[^'\\\\]){0,4}'")
+                .token(KEYWORD, words(keywords))
+                .token("constant", words("EOF|NULL|SEEK_CUR|SEEK_END|SEEK_SET|__DATE__|__FILE__|__LINE__"
+                        + "|__TIMESTAMP__|__TIME__|__func__|stderr|stdin|stdout"))
+                .token(FUNCTION, FUNCTION_CALL)
+                .token(NUMBER, "(?i:(?:\\b0x[\\da-f]+(?:\\.[\\da-f]*)?(?:p[+-]?\\d+)?"
+                        + "|(?:\\b\\d+(?:\\.\\d*)?|\\B\\.\\d+)(?:e[+-]?\\d+)?)[ful]{0,4})")
+                .token(OPERATOR, CLIKE_OPERATOR)
+                .token(PUNCTUATION, CLIKE_PUNCTUATION);
+    }
+
+    private static Grammar createC() {
+        return createCBase("_Alignas|_Alignof|_Atomic|_Bool|_Complex|_Generic|_Imaginary|_Noreturn|_Static_assert"
+                + "|_Thread_local|__attribute__|asm|auto|break|case|char|const|continue|default|do|double|else|enum"
+                + "|extern|float|for|goto|if|inline|int|long|register|return|short|signed|sizeof|static|struct"
+                + "|switch|typedef|typeof|union|unsigned|void|volatile|while")
+                .mode(BLOCK_COMMENT, COMMENT)
+                .exit(COMMENT, "\\*/")
+                .build();
+    }
+
+    private static Grammar createCpp() {
+        return createCBase("alignas|alignof|asm|auto|bool|break|case|catch|char|char8_t|char16_t|char32_t|class"
+                + "|co_await|co_return|co_yield|compl|concept|const|const_cast|consteval|constexpr|constinit"
+                + "|continue|decltype|default|delete|do|double|dynamic_cast|else|enum|explicit|export|extern|final"
+                + "|float|for|friend|goto|if|import|inline|int|long|module|mutable|namespace|new|noexcept|nullptr"
+                + "|operator|override|private|protected|public|register|reinterpret_cast|requires|return|short"
+                + "|signed|sizeof|static|static_assert|static_cast|struct|switch|template|this|thread_local|throw"
+                + "|try|typedef|typeid|typename|union|unsigned|using|virtual|void|volatile|wchar_t|while")
+                .token(BOOLEAN, words("true|false"))
+                .mode(BLOCK_COMMENT, COMMENT)
+                .exit(COMMENT, "\\*/")
+                .build();
+    }
+
+    private static Grammar createJavaScript(final String additionalKeywords) {
+        return new GrammarBuilder()
+                .token(COMMENT, "//.*")
+                .token(COMMENT, "/\\*", BLOCK_COMMENT)
+                .token(STRING, "`", "template")
+                .token(STRING, DOUBLE_QUOTED_STRING)
+                .token(STRING, SINGLE_QUOTED_STRING)
+                .token(KEYWORD, words("async|await|break|case|catch|class|const|continue|debugger|default|delete"
+                        + "|do|else|export|extends|finally|for|from|function|get|if|implements|import|in|instanceof"
+                        + "|interface|let|new|null|of|package|private|protected|public|return|set|static|super"
+                        + "|switch|this|throw|try|typeof|undefined|var|void|while|with|yield" + additionalKeywords))
+                .token(BOOLEAN, words("true|false"))
+                .token(FUNCTION, "[_$a-zA-Z][$\\w]*(?=\\s*\\()")
+                .token(NUMBER, "(?i:\\b(?:NaN|Infinity)\\b|\\b0x[\\da-f]+n?\\b|\\b0b[01]+n?\\b|\\b0o[0-7]+n?\\b"
+                        + "|(?:\\b\\d+(?:\\.\\d*)?|\\B\\.\\d+)(?:e[+-]?\\d+)?n?)")
+                .token(OPERATOR, "=>|--|\\+\\+|\\*\\*=?|&&=?|\\|\\|=?|[!=]==|<<=?|>>>?=?|\\?\\?=?|\\?\\.?|\\.{3}"
+                        + "|[-+*/%&|^!=<>]=?|[~:]")
+                .token(PUNCTUATION, CLIKE_PUNCTUATION)
+                .mode(BLOCK_COMMENT, COMMENT)
+                .exit(COMMENT, "\\*/")
+                .mode("template", STRING)
+                .token(STRING, "\\\\.")
+                .exit(STRING, "`")
+                .build();
+    }
+
+    private static Grammar createPython() {
+        String prefix = "(?i:[rub]|rb|br|f|fr|rf)?";
+        return new GrammarBuilder()
+                .token(COMMENT, "#.*")
+                .token(STRING, prefix + "\"\"\"", "double-quoted-text")
+                .token(STRING, prefix + "'''", "single-quoted-text")
+                .token(STRING, prefix + "(?:" + DOUBLE_QUOTED_STRING + "|" + SINGLE_QUOTED_STRING + ")")
+                .token("decorator annotation punctuation", "(?<![\\w)\\]])@\\w+(?:\\.\\w+)*")
+                .token(FUNCTION, "(?<=\\bdef )\\w+")
+                .token(CLASS_NAME, "(?<=\\bclass )\\w+")
+                .token(KEYWORD, words("and|as|assert|async|await|break|case|class|continue|def|del|elif|else"
+                        + "|except|exec|finally|for|from|global|if|import|in|is|lambda|match|nonlocal|not|or|pass"
+                        + "|print|raise|return|try|while|with|yield"))
+                .token("builtin", words("__import__|abs|all|any|ascii|bin|bool|bytearray|bytes|callable|chr"
+                        + "|classmethod|compile|complex|delattr|dict|dir|divmod|enumerate|eval|filter|float|format"
+                        + "|frozenset|getattr|globals|hasattr|hash|help|hex|id|input|int|isinstance|issubclass|iter"
+                        + "|len|list|locals|map|max|memoryview|min|next|object|oct|open|ord|pow|property|range|repr"
+                        + "|reversed|round|set|setattr|slice|sorted|staticmethod|str|sum|super|tuple|type|vars|zip"))
+                .token(BOOLEAN, words("False|None|True"))
+                .token(NUMBER, "(?i:\\b(?:0[box])?(?:\\d[\\da-f_]*(?:\\.\\d*)?|\\.\\d+)(?:e[+-]?\\d+)?j?\\b)")
+                .token(OPERATOR, ":=|\\*\\*=?|//=?|<<=?|>>=?|[-+*/%@&|^=!<>]=?|[~]")
+                .token(PUNCTUATION, "[{}\\[\\];(),.:]")
+                .mode("double-quoted-text", STRING)
+                .token(STRING, "\\\\.")
+                .exit(STRING, "\"\"\"")
+                .mode("single-quoted-text", STRING)
+                .token(STRING, "\\\\.")
+                .exit(STRING, "'''")
+                .build();
+    }
+
+    private static Grammar createMarkup() {
+        return new GrammarBuilder()
+                .token(COMMENT, "<!--", "markup-comment")
+                .token("cdata", "<!\\[CDATA\\[", "cdata")
+                .token("prolog", "<\\?.*?\\?>")
+                .token("doctype", "(?i:<!DOCTYPE[^>]*>)")
+                .token("entity", "&#?[\\w]+;")
+                .token(PUNCTUATION, "</?(?=[\\w:])", "tag-name")
+                .mode("tag-name", null)
+                .token("tag", "[\\w:.-]+", "tag")
+                .mode("tag", null)
+                .token("attr-name", "[\\w:.-]+")
+                .token("punctuation attr-equals", "=")
+                .token("attr-value", "\"[^\"]*\"|'[^']*'")
+                .exit(PUNCTUATION, "/?>")
+                .mode("markup-comment", COMMENT)
+                .exit(COMMENT, "-->")
+                .mode("cdata", "cdata")
+                .exit("cdata", "\\]\\]>")
+                .build();
+    }
+
+    private static Grammar createYaml() {
+        return new GrammarBuilder()
+                .token(COMMENT, "(?<![^\\s])#.*")
+                .token("directive important", "^%.*")
+                .token(PUNCTUATION, "^(?:---|\\.\\.\\.)")
+                .token("key atrule", "(?:" + DOUBLE_QUOTED_STRING + "|'[^']*+'|" + YAML_BLOCK_KEY + "|" + YAML_FLOW_KEY
+                        + ")(?=[ \\t]*+:(?:\\s|$))")
+                .token(STRING, DOUBLE_QUOTED_STRING + "|'[^']*+'")
+                .token("important", "[&*][\\w-]+")
+                .token("tag", "!\\S*")
+                .token(BOOLEAN, "(?i:\\b(?:true|false|yes|no|on|off)\\b)")
+                .token("null important", "(?i:\\bnull\\b)|~")
+                .token(NUMBER, "(?i:(?<![\\w.])[+-]?(?:0x[\\da-f]+|0o[0-7]+|(?:\\d[\\d_]*(?:\\.\\d*)?|\\.\\d+)"
+                        + "(?:e[+-]?\\d+)?|\\.inf|\\.nan)(?![\\w.]))")
+                .token(PUNCTUATION, "[:\\[\\]{}\\-,|>?]")
+                .build();
+    }
+
+    private static String words(final String alternatives) {
+        return "\\b(?:" + alternatives + ")\\b";
+    }
+
+    private SyntaxGrammars() {
+        // prevents instantiation
+    }
+}
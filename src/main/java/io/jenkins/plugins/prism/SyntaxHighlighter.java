@@ -0,0 +1,257 @@
+package io.jenkins.plugins.prism;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits the lines of a source code file into syntax tokens that use the same CSS classes as the tokens created by
+ * Prism.js. So the source code can be highlighted on the server, and the existing {@link PrismTheme themes} can be
+ * used to style the tokens.
+ *
+ * <p>
+ * The tokens are defined by a {@link Grammar} that consists of several modes. Each mode defines a set of regular
+ * expressions that will be matched against the text of a line: the leftmost match is used, if several expressions
+ * match at the same position then the first expression wins. A match may switch to another mode, e.g. the start of a
+ * block comment switches to the block comment mode. The current mode is retained between lines, so multi-line
+ * constructs are highlighted correctly, as long as the lines are tokenized in order.
+ * </p>
+ *
+ * <p>
+ * A highlighter stores the current mode of the file, so a new instance is required for each source code file.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+final class SyntaxHighlighter {
+    /**
+     * Creates a new highlighter for the specified language.
+     *
+     * @param languageClass
+     *         the CSS class of the language, see {@link SourcePrinter}
+     *
+     * @return a new highlighter, or an empty optional if the language is not supported
+     */
+    static Optional<SyntaxHighlighter> create(final String languageClass) {
+        return SyntaxGrammars.get(languageClass).map(SyntaxHighlighter::new);
+    }
+
+    private final Grammar grammar;
+    private final Matcher[] matchers;
+    private int mode;
+
+    SyntaxHighlighter(final Grammar grammar) {
+        this.grammar = grammar;
+
+        matchers = new Matcher[grammar.modes.length];
+        for (int i = 0; i < matchers.length; i++) {
+            matchers[i] = grammar.modes[i].pattern.matcher("");
+        }
+    }
+
+    /**
+     * Splits the specified line into syntax tokens.
+     *
+     * @param line
+     *         the line to tokenize
+     * @param tokens
+     *         the tokens of the line, will be cleared before the line is tokenized
+     */
+    void tokenize(final CharSequence line, final LineTokens tokens) {
+        tokens.clear();
+
+        int length = line.length();
+        int position = 0;
+        while (position < length) {
+            Mode current = grammar.modes[mode];
+            Matcher matcher = matchers[mode].reset(line);
+            if (!matcher.find(position)) {
+                tokens.add(position, length, current.defaultTag);
+                return;
+            }
+            int start = matcher.start();
+            int end = matcher.end();
+            tokens.add(position, start, current.defaultTag);
+            if (start == end) { // ignore empty matches
+                tokens.add(start, start + 1, current.defaultTag);
+                position = start + 1;
+            }
+            else {
+                int rule = current.findRule(matcher);
+                tokens.add(start, end, current.tags[rule]);
+                if (current.nextModes[rule] >= 0) {
+                    mode = current.nextModes[rule];
+                }
+                position = end;
+            }
+        }
+    }
+
+    /**
+     * The modes of a language. The first mode is the initial mode of a file.
+     */
+    static final class Grammar {
+        private final Mode[] modes;
+
+        private Grammar(final Mode[] modes) {
+            this.modes = modes;
+        }
+    }
+
+    /**
+     * A mode of a language: a set of regular expressions that will be combined into a single pattern.
+     */
+    private static final class Mode {
+        private final Pattern pattern;
+        private final String[] tags;
+        private final int[] nextModes;
+        private final String defaultTag;
+
+        Mode(final Pattern pattern, final String[] tags, final int[] nextModes, final String defaultTag) {
+            this.pattern = pattern;
+            this.tags = tags;
+            this.nextModes = nextModes;
+            this.defaultTag = defaultTag;
+        }
+
+        int findRule(final Matcher matcher) {
+            for (int rule = 0; rule < tags.length; rule++) {
+                if (matcher.start(rule + 1) >= 0) {
+                    return rule;
+                }
+            }
+            throw new IllegalStateException("Match does not belong to a rule: " + pattern);
+        }
+    }
+
+    /**
+     * Creates {@link Grammar grammars} using the builder pattern. The regular expressions of the rules must not
+     * contain capturing groups.
+     */
+    static class GrammarBuilder {
+        private static final String MAIN = "main";
+
+        private final List<String> modeNames = new ArrayList<>();
+        private final List<String> defaultTypes = new ArrayList<>();
+        private final List<List<String[]>> rules = new ArrayList<>();
+        private final Map<String, String> tags = new HashMap<>();
+
+        /**
+         * Creates a new builder. The rules that are added first belong to the initial mode.
+         */
+        GrammarBuilder() {
+            mode(MAIN, null);
+        }
+
+        /**
+         * Starts a new mode. All subsequently added rules belong to this mode.
+         *
+         * @param name
+         *         the name of the mode
+         * @param defaultType
+         *         the token type of text that is not matched by any of the rules, might be {@code null}
+         *
+         * @return this builder
+         */
+        GrammarBuilder mode(final String name, final String defaultType) {
+            modeNames.add(name);
+            defaultTypes.add(defaultType);
+            rules.add(new ArrayList<>());
+            return this;
+        }
+
+        /**
+         * Adds a rule to the current mode.
+         *
+         * @param type
+         *         the token type, i.e. the Prism CSS classes of the token
+         * @param regex
+         *         the regular expression of the token
+         *
+         * @return this builder
+         */
+        GrammarBuilder token(final String type, final String regex) {
+            return token(type, regex, null);
+        }
+
+        /**
+         * Adds a rule to the current mode that switches to another mode.
+         *
+         * @param type
+         *         the token type, i.e. the Prism CSS classes of the token
+         * @param regex
+         *         the regular expression of the token
+         * @param nextMode
+         *         the name of the mode to switch to, or {@code null} to stay in the current mode
+         *
+         * @return this builder
+         */
+        GrammarBuilder token(final String type, final String regex, final String nextMode) {
+            rules.get(rules.size() - 1).add(new String[] {type, regex, nextMode});
+            return this;
+        }
+
+        /**
+         * Adds a rule to the current mode that switches back to the initial mode.
+         *
+         * @param type
+         *         the token type, i.e. the Prism CSS classes of the token
+         * @param regex
+         *         the regular expression of the token
+         *
+         * @return this builder
+         */
+        GrammarBuilder exit(final String type, final String regex) {
+            return token(type, regex, MAIN);
+        }
+
+        /**
+         * Creates the grammar.
+         *
+         * @return the grammar
+         */
+        Grammar build() {
+            Mode[] modes = new Mode[modeNames.size()];
+            for (int i = 0; i < modes.length; i++) {
+                List<String[]> modeRules = rules.get(i);
+                StringBuilder regex = new StringBuilder();
+                String[] ruleTags = new String[modeRules.size()];
+                int[] nextModes = new int[modeRules.size()];
+                for (int rule = 0; rule < modeRules.size(); rule++) {
+                    String[] definition = modeRules.get(rule);
+                    if (rule > 0) {
+                        regex.append('|');
+                    }
+                    regex.append('(').append(definition[1]).append(')');
+                    ruleTags[rule] = createTag(definition[0]);
+                    nextModes[rule] = definition[2] == null ? -1 : indexOf(definition[2]);
+                }
+                Pattern pattern = Pattern.compile(regex.toString());
+                if (pattern.matcher("").groupCount() != modeRules.size()) {
+                    throw new IllegalArgumentException("Rules must not contain capturing groups: " + regex);
+                }
+                modes[i] = new Mode(pattern, ruleTags, nextModes, createTag(defaultTypes.get(i)));
+            }
+            return new Grammar(modes);
+        }
+
+        private int indexOf(final String name) {
+            int index = modeNames.indexOf(name);
+            if (index < 0) {
+                throw new IllegalArgumentException("No such mode: " + name);
+            }
+            return index;
+        }
+
+        private String createTag(final String type) {
+            if (type == null) {
+                return null;
+            }
+            return tags.computeIfAbsent(type, key -> "<span class=\"token " + key + "\">");
+        }
+    }
+}
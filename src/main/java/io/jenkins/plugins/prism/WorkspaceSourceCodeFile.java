@@ -0,0 +1,247 @@
+package io.jenkins.plugins.prism;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.lang.ref.SoftReference;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.io.FilenameUtils;
+
+import edu.hm.hafner.util.PathUtil;
+import edu.hm.hafner.util.VisibleForTesting;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * A source code file that is read directly from the workspace on the agent when the source code view is opened. Then
+ * the source code files do not need to be copied to the controller during the build: most of these files are never
+ * viewed, so the copying wastes time and disk space.
+ *
+ * <p>
+ * The whole file is read ahead in a single remote call, so rendering the file does not require a remote call for
+ * each chunk of the file. The content is reused for a short time, since a view opens the file several times (e.g.,
+ * to compute the entity tag and to render the file). The content is held by a {@link SoftReference} that is dropped
+ * as soon as the content is outdated, so the garbage collector can reclaim the content under memory pressure. Files
+ * are read only if they are part of the workspace or of a permitted source code directory, see
+ * {@link FilePermissionEnforcer}. The agent additionally checks the real path of the file with a
+ * {@link FilePermissionEnforcer#createStrictMatcher(FilePath, Set) strict matcher} before the file is opened, so
+ * files that are reachable through a symbolic link but are stored outside of all permitted directories are not read.
+ * Files that cannot be read within a strict timeout (e.g., since the agent is offline or overloaded) are reported as
+ * unreadable.
+ * </p>
+ *
+ * <p>
+ * If a stored copy of the file is available, then the stored copy is read and the agent is not contacted at all: the
+ * workspace might have been changed by a subsequent build, so the content of the file in the workspace might not match
+ * the build anymore. The file is read from the agent only if there is no stored copy or if the stored copy cannot be
+ * read. Consumers should provide a stored copy for files that need to be shown exactly as they have been built.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+public class WorkspaceSourceCodeFile implements SourceCodeReaderFactory {
+    /** Maximum size of a file in bytes that will be read from the agent. */
+    static final long MAXIMUM_SIZE = 16 * 1024 * 1024;
+
+    private static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    @VisibleForTesting
+    static final long CONTENT_LIFETIME_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final PathUtil PATH_UTIL = new PathUtil();
+
+    private final FilePath workspace;
+    private final String fileName;
+    private final Charset charset;
+    private final Set<String> permittedDirectories;
+    @CheckForNull
+    private final SourceCodeReaderFactory storedCopy;
+    private final long timeoutMillis;
+    private final long contentLifetimeMillis;
+
+    @CheckForNull
+    private SoftReference<byte[]> content;
+    private long readTime;
+
+    /**
+     * Creates a new {@link WorkspaceSourceCodeFile}.
+     *
+     * @param workspace
+     *         the workspace on the agent, files within that folder are always permitted
+     * @param fileName
+     *         the file to read, either as absolute path on the agent or relative to the workspace
+     * @param charset
+     *         the charset of the file
+     * @param permittedDirectories
+     *         additional permitted directories, see {@link SourceDirectoryFilter}
+     * @param storedCopy
+     *         the stored copy of the file that will be read instead of the file on the agent, might be {@code null}
+     */
+    public WorkspaceSourceCodeFile(final FilePath workspace, final String fileName, final Charset charset,
+            final Set<String> permittedDirectories, @CheckForNull final SourceCodeReaderFactory storedCopy) {
+        this(workspace, fileName, charset, permittedDirectories, storedCopy, DEFAULT_TIMEOUT_MILLIS,
+                CONTENT_LIFETIME_MILLIS);
+    }
+
+    @VisibleForTesting
+    WorkspaceSourceCodeFile(final FilePath workspace, final String fileName, final Charset charset,
+            final Set<String> permittedDirectories, @CheckForNull final SourceCodeReaderFactory storedCopy,
+            final long timeoutMillis, final long contentLifetimeMillis) {
+        this.workspace = workspace;
+        this.fileName = fileName;
+        this.charset = charset;
+        this.permittedDirectories = new HashSet<>(permittedDirectories);
+        this.storedCopy = storedCopy;
+        this.timeoutMillis = timeoutMillis;
+        this.contentLifetimeMillis = contentLifetimeMillis;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Opens a new reader for the source code file. The file is read from the stored copy, or from the workspace on the
+     * agent if there is no stored copy or if the stored copy cannot be read. Malformed input is replaced by the
+     * replacement character of the charset.
+     *
+     * @return the reader
+     * @throws IOException
+     *         if the file could neither be read from the stored copy nor from the agent
+     */
+    @Override
+    public Reader create() throws IOException {
+        if (storedCopy == null) {
+            return createFromAgent();
+        }
+        try {
+            return storedCopy.create();
+        }
+        catch (IOException exception) {
+            try {
+                return createFromAgent();
+            }
+            catch (IOException agentException) {
+                agentException.addSuppressed(exception);
+                throw agentException;
+            }
+        }
+    }
+
+    private Reader createFromAgent() throws IOException {
+        return new InputStreamReader(new ByteArrayInputStream(read()), charset);
+    }
+
+    private synchronized byte[] read() throws IOException {
+        long now = System.currentTimeMillis();
+        byte[] cached = getContent(now);
+        if (cached != null) {
+            return cached;
+        }
+
+        String absolutePath = getPermittedPath();
+        try {
+            Future<byte[]> future = readFromAgent(absolutePath);
+            try {
+                byte[] read = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+                content = new SoftReference<>(read);
+                readTime = now;
+                return read;
+            }
+            catch (TimeoutException exception) {
+                future.cancel(true);
+                throw new IOException(String.format("Reading '%s' from the agent took longer than %d ms",
+                        absolutePath, timeoutMillis), exception);
+            }
+            catch (ExecutionException exception) {
+                throw new IOException(String.format("Can't read '%s' from the agent", absolutePath),
+                        exception.getCause());
+            }
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Reading " + absolutePath + " from the agent has been interrupted");
+        }
+    }
+
+    /**
+     * Returns the content that has been read recently. Outdated content is dropped, so that it can be reclaimed by the
+     * garbage collector while the file is read again.
+     */
+    @CheckForNull
+    private byte[] getContent(final long now) {
+        if (content == null) {
+            return null;
+        }
+        byte[] cached = content.get();
+        if (cached == null || now - readTime >= contentLifetimeMillis) {
+            content = null;
+            return null;
+        }
+        return cached;
+    }
+
+    @VisibleForTesting
+    Future<byte[]> readFromAgent(final String absolutePath) throws IOException, InterruptedException {
+        return workspace.actAsync(new ReadFile(absolutePath, permittedDirectories));
+    }
+
+    private String getPermittedPath() throws IOException {
+        String absolutePath = FilenameUtils.normalizeNoEndSeparator(
+                PATH_UTIL.createAbsolutePath(PATH_UTIL.getAbsolutePath(workspace.getRemote()), fileName), true);
+        if (absolutePath == null
+                || !new FilePermissionEnforcer().isInWorkspace(absolutePath, workspace, permittedDirectories)) {
+            throw new IOException(String.format(
+                    "Source code file '%s' is not part of the workspace or a permitted source code directory",
+                    fileName));
+        }
+        return absolutePath;
+    }
+
+    /**
+     * Reads the whole content of a file on the agent. The file is not opened if its real path is not permitted.
+     */
+    @VisibleForTesting
+    static class ReadFile extends MasterToSlaveFileCallable<byte[]> {
+        private static final long serialVersionUID = 2265281392426577513L;
+
+        private final String path;
+        private final HashSet<String> permittedDirectories;
+
+        ReadFile(final String path, final Set<String> permittedDirectories) {
+            super();
+
+            this.path = path;
+            this.permittedDirectories = new HashSet<>(permittedDirectories);
+        }
+
+        @Override
+        public byte[] invoke(final File workspace, final VirtualChannel channel) throws IOException {
+            if (!new FilePermissionEnforcer().createStrictMatcher(new FilePath(workspace), permittedDirectories)
+                    .isPermitted(path)) {
+                throw new IOException(String.format("The real path of source code file '%s' is not part of the "
+                        + "workspace or a permitted source code directory", path));
+            }
+            Path file = new File(path).toPath();
+            long size = Files.size(file);
+            if (size > MAXIMUM_SIZE) {
+                throw new IOException(String.format("Source code file '%s' is too large to be read from the agent "
+                        + "(%d bytes)", path, size));
+            }
+            return Files.readAllBytes(file);
+        }
+    }
+}
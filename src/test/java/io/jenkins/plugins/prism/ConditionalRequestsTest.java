@@ -0,0 +1,56 @@
+package io.jenkins.plugins.prism;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the class {@link ConditionalRequests}.
+ *
+ * @author Ullrich Hafner
+ */
+class ConditionalRequestsTest {
+    @Test
+    void shouldCreateStrongEntityTags() {
+        String entityTag = ConditionalRequests.createEntityTag("digest", "page", "1.0");
+
+        assertThat(entityTag).startsWith("\"").endsWith("\"").hasSize(66);
+        assertThat(ConditionalRequests.createEntityTag("digest", "page", "1.0")).isEqualTo(entityTag);
+        assertThat(ConditionalRequests.createEntityTag("digest", "page", "1.1")).isNotEqualTo(entityTag);
+        assertThat(ConditionalRequests.createEntityTag("digest", "page1", ".0")).isNotEqualTo(entityTag);
+    }
+
+    @Test
+    void shouldMatchIfNoneMatchHeader() {
+        String entityTag = "\"abc\"";
+
+        assertThat(ConditionalRequests.matches(null, entityTag)).isFalse();
+        assertThat(ConditionalRequests.matches("\"other\"", entityTag)).isFalse();
+        assertThat(ConditionalRequests.matches("abc", entityTag)).isFalse();
+        assertThat(ConditionalRequests.matches("\"abc\"", entityTag)).isTrue();
+        assertThat(ConditionalRequests.matches("W/\"abc\"", entityTag)).isTrue();
+        assertThat(ConditionalRequests.matches(" \"other\" , \"abc\" ", entityTag)).isTrue();
+        assertThat(ConditionalRequests.matches("*", entityTag)).isTrue();
+    }
+
+    @Test
+    void shouldAnswerWithNotModified() {
+        String entityTag = ConditionalRequests.createEntityTag("digest");
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+
+        assertThat(ConditionalRequests.answerIfNotModified(request, response, entityTag)).isFalse();
+        verifyNoInteractions(response);
+
+        when(request.getHeader("If-None-Match")).thenReturn(entityTag);
+        assertThat(ConditionalRequests.answerIfNotModified(request, response, entityTag)).isTrue();
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(response).setHeader("ETag", entityTag);
+        verify(response).setHeader("Cache-Control", ConditionalRequests.CACHE_CONTROL);
+    }
+}
@@ -37,6 +37,14 @@ class ConfigurationAsCodeITest extends IntegrationTestWithJenkinsPerTest {
         assertThat(PrismConfiguration.getInstance().getTheme()).isEqualTo(PrismTheme.DARK);
     }
 
+    /** Reads a YAML file with the number of context lines. */
+    @Test
+    void shouldImportContextLines() {
+        configureJenkins("contextLines.yaml");
+
+        assertThat(PrismConfiguration.getInstance().getContextLines()).isEqualTo(100);
+    }
+
     private void configureJenkins(final String fileName) {
         try {
             ConfigurationAsCode.get().configure(getResourceAsFile(fileName).toUri().toString());
@@ -1,8 +1,13 @@
 package io.jenkins.plugins.prism;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.jvnet.hudson.test.Issue;
 
 import hudson.FilePath;
@@ -42,6 +47,34 @@ class FilePermissionEnforcerTest {
         assertThat(validator.isInWorkspace("b.c", WORKSPACE_UNIX, "/a")).isFalse();
     }
 
+    @Test
+    void shouldNotLeaveWorkspaceWithParentSegmentsOnUnix() {
+        assumeThat(isWindows()).isFalse();
+
+        FilePermissionEnforcer validator = new FilePermissionEnforcer();
+        assertThat(validator.isInWorkspace("/workspace/a/../b.c", WORKSPACE_UNIX, "/a")).isTrue();
+        assertThat(validator.isInWorkspace("/workspace/../etc/passwd", WORKSPACE_UNIX, "/a")).isFalse();
+        assertThat(validator.isInWorkspace("/a/../../b.c", WORKSPACE_UNIX, "/a")).isFalse();
+    }
+
+    @Test
+    void shouldResolveSymbolicLinksWithStrictMatcher(@TempDir final Path folder) throws IOException {
+        assumeThat(isWindows()).isFalse();
+
+        Path workspace = Files.createDirectories(folder.resolve("workspace"));
+        Path outside = Files.createDirectories(folder.resolve("outside"));
+        Files.createFile(outside.resolve("secret.txt"));
+        Files.createSymbolicLink(workspace.resolve("link"), outside);
+
+        FilePermissionEnforcer validator = new FilePermissionEnforcer();
+        FilePath workspacePath = new FilePath(workspace.toFile());
+        String linked = workspace.resolve("link/secret.txt").toString();
+        assertThat(validator.createMatcher(workspacePath, Collections.emptySet()).isPermitted(linked)).isTrue();
+        assertThat(validator.createStrictMatcher(workspacePath, Collections.emptySet()).isPermitted(linked)).isFalse();
+        assertThat(validator.createStrictMatcher(workspacePath, Collections.singleton(outside.toString()))
+                .isPermitted(linked)).isTrue();
+    }
+
     @Test @Issue("JENKINS-63782")
     void shouldComparePathsCaseInsensitiveOnWindows() {
         assumeThat(isWindows()).isTrue();
@@ -0,0 +1,183 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link HtmlCodeEmitter}.
+ *
+ * @author Ullrich Hafner
+ */
+class HtmlCodeEmitterTest {
+    private static final String CODE = "text that could be code";
+    private static final String OPEN = "<span class='code-mark'>";
+    private static final String CLOSE = "</span>";
+    private static final String KEYWORD = "<span class=\"token keyword\">";
+    private static final String STRING = "<span class=\"token string\">";
+
+    @Test
+    void shouldEscapeLikeTheSanitizer() throws IOException {
+        assertThat(emit("if (a < b && c > d) { s = \"x\" + 'y'; } // @see `code`"))
+                .isEqualTo("if (a &lt; b &amp;&amp; c &gt; d) { s &#61; &#34;x&#34; &#43; &#39;y&#39;; } "
+                        + "// &#64;see &#96;code&#96;\n");
+        assertThat(emit("tab\there")).isEqualTo("tab\there\n");
+        assertThat(emit("umlaut ä and emoji 😀")).isEqualTo("umlaut ä and emoji &#x1f600;\n");
+        assertThat(emit("control\u0000\u0007 lone \uD83D surrogate ￿")).isEqualTo("control lone  surrogate \n");
+        assertThat(emit("<script>alert('xss')</script>")).doesNotContain("<script>");
+    }
+
+    @Test
+    void shouldWriteInChunks() throws IOException {
+        StringWriter writer = new StringWriter();
+        HtmlCodeEmitter emitter = new HtmlCodeEmitter(writer, 10);
+
+        emitter.appendLine("short");
+        assertThat(writer.toString()).isEmpty();
+
+        emitter.appendLine("line");
+        assertThat(writer.toString()).isEqualTo("short\nline\n");
+
+        emitter.appendHtml("<b>");
+        assertThat(writer.toString()).isEqualTo("short\nline\n");
+
+        emitter.flush();
+        assertThat(writer.toString()).isEqualTo("short\nline\n<b>");
+    }
+
+    @Test
+    void withColumnStartZeroThenDontMark() throws IOException {
+        assertThat(mark(CODE, 0, 0)).isEqualTo(CODE + "\n");
+    }
+
+    @Test
+    void givenColumnStartAndColumnEndZeroThenMarkFromStartToLineEnd() throws IOException {
+        assertThat(mark(CODE, 6, 0)).isEqualTo("text " + OPEN + "that could be code\n" + CLOSE);
+    }
+
+    @Test
+    void givenColumnStartAndColumnEndWithColumnEndPointingToLineEndThenMarkFromStartToLineEnd() throws IOException {
+        assertThat(mark(CODE, 6, 23)).isEqualTo("text " + OPEN + "that could be code" + CLOSE + "\n");
+    }
+
+    @Test
+    void givenColumnStartAndColumnEndThenMarkFromColumnStartToColumnEnd() throws IOException {
+        assertThat(mark(CODE, 6, 10)).isEqualTo("text " + OPEN + "that " + CLOSE + "could be code\n");
+    }
+
+    @Test
+    void givenColumnStartAndColumnEndWithDifferenceOfOneThenMarkFromColumnStartToColumnEnd() throws IOException {
+        assertThat(mark(CODE, 6, 7)).isEqualTo("text " + OPEN + "th" + CLOSE + "at could be code\n");
+    }
+
+    @Test
+    void givenColumnStartAndColumnEndWithSameValueThenMarkOneCharacter() throws IOException {
+        assertThat(mark(CODE, 6, 6)).isEqualTo("text " + OPEN + "t" + CLOSE + "hat could be code\n");
+    }
+
+    @Test
+    void givenAnEmptyTextThenMarkNothing() throws IOException {
+        assertThat(mark("", 6, 6)).isEqualTo("\n");
+    }
+
+    @Test
+    void givenColumnStartWithValueOneThenMarkTheLineFromBegin() throws IOException {
+        assertThat(mark(CODE, 1, 6)).isEqualTo(OPEN + "text t" + CLOSE + "hat could be code\n");
+    }
+
+    @Test
+    void givenColumnStartWithValueOfTheLastCharacterThenMarkTheLastCharacter() throws IOException {
+        assertThat(mark(CODE, 23, 0)).isEqualTo("text that could be cod" + OPEN + "e\n" + CLOSE);
+    }
+
+    @Test
+    void givenColumnStartWithValueOfBehindColumnEndThenDoNotMark() throws IOException {
+        assertThat(mark(CODE, 23, 10)).isEqualTo(CODE + "\n");
+    }
+
+    @Test
+    void givenColumnStartIsAfterLineEndThenDoNotMark() throws IOException {
+        assertThat(mark(CODE, 30, 10)).isEqualTo(CODE + "\n");
+    }
+
+    @Test
+    void givenColumnStartIsNegativeThenDoNotMark() throws IOException {
+        assertThat(mark(CODE, -1, 10)).isEqualTo(CODE + "\n");
+    }
+
+    @Test
+    void givenColumnEndIsNegativeThenDoNotMark() throws IOException {
+        assertThat(mark(CODE, 1, -1)).isEqualTo(CODE + "\n");
+    }
+
+    @Test
+    void givenColumnEndIsAfterLineEndThenDoNotMark() throws IOException {
+        assertThat(mark(CODE, 1, 25)).isEqualTo(CODE + "\n");
+    }
+
+    @Test
+    void shouldEscapeMarkedColumns() throws IOException {
+        assertThat(mark("a<b>c", 2, 4)).isEqualTo("a" + OPEN + "&lt;b&gt;" + CLOSE + "c\n");
+    }
+
+    @Test
+    void shouldWrapTokensInSpans() throws IOException {
+        LineTokens tokens = new LineTokens();
+        tokens.add(0, 6, KEYWORD);
+        tokens.add(7, 10, null);
+        tokens.add(11, 14, STRING);
+
+        assertThat(mark("return a < \"b\";", 0, -1, tokens))
+                .isEqualTo(KEYWORD + "return" + CLOSE + " a &lt; " + STRING + "&#34;b&#34;" + CLOSE + ";\n");
+    }
+
+    @Test
+    void shouldSplitTokensAtMarkedColumns() throws IOException {
+        LineTokens tokens = new LineTokens();
+        tokens.add(0, 6, KEYWORD);
+        tokens.add(11, 14, STRING);
+
+        assertThat(mark("return a < \"b\";", 4, 9, tokens))
+                .isEqualTo(KEYWORD + "ret" + CLOSE + OPEN + KEYWORD + "urn" + CLOSE + " a " + CLOSE
+                        + "&lt; " + STRING + "&#34;b&#34;" + CLOSE + ";\n");
+        assertThat(mark("return a < \"b\";", 14, 0, tokens))
+                .isEqualTo(KEYWORD + "return" + CLOSE + " a &lt; " + STRING + "&#34;b" + CLOSE + OPEN + STRING
+                        + "&#34;" + CLOSE + ";\n" + CLOSE);
+        assertThat(mark("return", 7, 7, tokens(0, 6, KEYWORD)))
+                .isEqualTo(KEYWORD + "return" + CLOSE + OPEN + "\n" + CLOSE);
+    }
+
+    private LineTokens tokens(final int start, final int end, final String openingTag) {
+        LineTokens tokens = new LineTokens();
+        tokens.add(start, end, openingTag);
+        return tokens;
+    }
+
+    private String mark(final String line, final int columnStart, final int columnEnd, final LineTokens tokens)
+            throws IOException {
+        StringWriter writer = new StringWriter();
+        HtmlCodeEmitter emitter = new HtmlCodeEmitter(writer, 1024);
+        emitter.appendLine(line, columnStart, columnEnd, tokens);
+        emitter.flush();
+        return writer.toString();
+    }
+
+    private String emit(final String line) throws IOException {
+        StringWriter writer = new StringWriter();
+        HtmlCodeEmitter emitter = new HtmlCodeEmitter(writer, 1024);
+        emitter.appendLine(line);
+        emitter.flush();
+        return writer.toString();
+    }
+
+    private String mark(final String line, final int columnStart, final int columnEnd) throws IOException {
+        StringWriter writer = new StringWriter();
+        HtmlCodeEmitter emitter = new HtmlCodeEmitter(writer, 1024);
+        emitter.appendLine(line, columnStart, columnEnd);
+        emitter.flush();
+        return writer.toString();
+    }
+}
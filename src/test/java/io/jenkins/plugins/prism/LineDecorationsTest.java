@@ -0,0 +1,62 @@
+package io.jenkins.plugins.prism;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link LineDecorations}.
+ *
+ * @author Ullrich Hafner
+ */
+class LineDecorationsTest {
+    private static final String COVERED = "covered";
+    private static final String MISSED = "missed";
+
+    @Test
+    void shouldMapStatesToCssClasses() {
+        LineDecorations decorations = new LineDecorations(new byte[] {1, 0, 2, (byte) 255}, createClasses());
+
+        assertThat(decorations.isEmpty()).isFalse();
+        assertThat(decorations.getCssClass(0)).isEmpty();
+        assertThat(decorations.getCssClass(1)).isEqualTo(COVERED);
+        assertThat(decorations.getCssClass(2)).isEmpty();
+        assertThat(decorations.getCssClass(3)).isEqualTo(MISSED);
+        assertThat(decorations.getCssClass(4)).isEqualTo("class-255");
+        assertThat(decorations.getCssClass(5)).isEmpty();
+
+        assertThat(decorations.getOpeningTag(1)).isEqualTo("<span class=\"covered\">");
+        assertThat(decorations.getOpeningTag(2)).isEmpty();
+        assertThat(decorations.getOpeningTag(1)).isSameAs(decorations.getOpeningTag(1));
+    }
+
+    @Test
+    void shouldRejectStatesWithoutCssClass() {
+        assertThatIllegalArgumentException().isThrownBy(() -> new LineDecorations(new byte[] {3}, COVERED, MISSED))
+                .withMessageContaining("State 3");
+    }
+
+    @Test
+    void shouldRemoveInvalidCharactersFromCssClasses() {
+        LineDecorations decorations = new LineDecorations(new byte[] {1}, "\"><script>alert(1)</script>");
+
+        assertThat(decorations.getOpeningTag(1)).isEqualTo("<span class=\"scriptalert1script\">");
+    }
+
+    @Test
+    void shouldNotDecorateAnything() {
+        assertThat(LineDecorations.NONE.isEmpty()).isTrue();
+        assertThat(new LineDecorations(new byte[100]).isEmpty()).isTrue();
+        assertThat(LineDecorations.NONE.getOpeningTag(1)).isEmpty();
+    }
+
+    private String[] createClasses() {
+        String[] classes = new String[255];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = "class-" + (i + 1);
+        }
+        classes[0] = COVERED;
+        classes[1] = MISSED;
+        return classes;
+    }
+}
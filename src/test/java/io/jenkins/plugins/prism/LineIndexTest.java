@@ -0,0 +1,137 @@
+package io.jenkins.plugins.prism;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link LineIndex}.
+ *
+ * @author Ullrich Hafner
+ */
+class LineIndexTest {
+    @TempDir
+    private Path folder;
+
+    @Test
+    void shouldCountLinesLikeBufferedReader() throws IOException {
+        assertThat(LineIndex.create(write("")).getLineCount()).isZero();
+        assertThat(LineIndex.create(write("a")).getLineCount()).isEqualTo(1);
+        assertThat(LineIndex.create(write("a\n")).getLineCount()).isEqualTo(1);
+        assertThat(LineIndex.create(write("a\r\n")).getLineCount()).isEqualTo(1);
+        assertThat(LineIndex.create(write("a\r")).getLineCount()).isEqualTo(1);
+        assertThat(LineIndex.create(write("\n\n")).getLineCount()).isEqualTo(2);
+        assertThat(LineIndex.create(write("a\r\rb\r\nc\nd")).getLineCount()).isEqualTo(5);
+    }
+
+    @Test
+    void shouldFindOffsetsOfAllLines() throws IOException {
+        StringBuilder content = new StringBuilder();
+        String[] terminators = {"\n", "\r\n", "\r"};
+        int lines = LineIndex.STRIDE * 3 + 5;
+        long[] expected = new long[lines + 1];
+        for (int line = 1; line <= lines; line++) {
+            expected[line] = content.length();
+            content.append("line ").append(line).append(terminators[line % terminators.length]);
+        }
+        Path file = write(content.toString());
+
+        LineIndex index = LineIndex.create(file);
+
+        assertThat(index.getLineCount()).isEqualTo(lines);
+        assertThat(index.getSize()).isEqualTo(content.length());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int line = 1; line <= lines; line++) {
+                assertThat(index.findOffset(channel, line)).as("Offset of line %d", line).isEqualTo(expected[line]);
+            }
+            assertThat(index.findOffset(channel, lines + 1)).isEqualTo(content.length());
+            assertThat(index.findOffset(channel, 0)).isZero();
+        }
+    }
+
+    @Test
+    void shouldWriteAndReadIndex() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int line = 1; line <= 1000; line++) {
+            content.append("line ").append(line).append('\n');
+        }
+        Path file = write(content.toString());
+        LineIndex index = LineIndex.create(file);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        index.writeTo(output);
+        LineIndex copy = LineIndex.readFrom(new ByteArrayInputStream(output.toByteArray()));
+
+        assertThat(output.size()).isLessThan(64);
+        assertThat(copy.getLineCount()).isEqualTo(1000);
+        assertThat(copy.getSize()).isEqualTo(index.getSize());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertThat(copy.findOffset(channel, 500)).isEqualTo(index.findOffset(channel, 500));
+        }
+    }
+
+    @Test
+    void shouldRejectInvalidIndex() {
+        assertThatIOException().isThrownBy(() -> LineIndex.readFrom(new ByteArrayInputStream(new byte[] {1, 2, 3})));
+        assertThatIOException().isThrownBy(() -> LineIndex.readFrom(new ByteArrayInputStream(LineIndex.MAGIC)));
+    }
+
+    @Test
+    void shouldStoreIndexInCacheFolderOfBuild() throws IOException {
+        Path file = write("a\nb\nc\n");
+        Path build = folder.resolve("build");
+        Path indexFile = LineIndex.resolve(build, "digest");
+
+        assertThat(indexFile.getParent()).isEqualTo(build.resolve(RenderedSourceCache.CACHE_DIRECTORY));
+        assertThat(LineIndex.load(file, indexFile).getLineCount()).isEqualTo(3);
+        assertThat(indexFile).exists();
+        assertThat(LineIndex.load(file, indexFile).getLineCount()).isEqualTo(3);
+
+        Files.write(file, "a\nb\nc\nd\n".getBytes(StandardCharsets.UTF_8));
+        assertThat(LineIndex.load(file, indexFile).getLineCount()).isEqualTo(4);
+
+        FileTime modified = Files.getLastModifiedTime(file);
+        Files.write(file, "a\nb\nc\n\n\n".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 2000));
+        assertThat(LineIndex.load(file, indexFile).getLineCount()).isEqualTo(5);
+
+        Files.write(indexFile, new byte[] {'P', 'R'});
+        assertThat(LineIndex.load(file, indexFile).getLineCount()).isEqualTo(5);
+        assertThat(folder).isDirectoryNotContaining("glob:**" + LineIndex.INDEX_SUFFIX);
+    }
+
+    @Test
+    void shouldNotStoreIndexWithoutIndexFile() throws IOException {
+        Path file = write("a\nb\n");
+
+        assertThat(LineIndex.load(file, null).getLineCount()).isEqualTo(2);
+        assertThat(folder).isDirectoryNotContaining("glob:**" + LineIndex.INDEX_SUFFIX);
+    }
+
+    @Test
+    void shouldSupportAsciiCompatibleCharsets() {
+        assertThat(LineIndex.isSupported(StandardCharsets.UTF_8)).isTrue();
+        assertThat(LineIndex.isSupported(StandardCharsets.ISO_8859_1)).isTrue();
+        assertThat(LineIndex.isSupported(StandardCharsets.US_ASCII)).isTrue();
+        assertThat(LineIndex.isSupported(Charset.forName("windows-1252"))).isTrue();
+
+        assertThat(LineIndex.isSupported(StandardCharsets.UTF_16)).isFalse();
+        assertThat(LineIndex.isSupported(StandardCharsets.UTF_16LE)).isFalse();
+    }
+
+    private Path write(final String content) throws IOException {
+        return Files.write(folder.resolve("file.txt"), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
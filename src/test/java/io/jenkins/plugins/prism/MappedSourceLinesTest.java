@@ -0,0 +1,185 @@
+package io.jenkins.plugins.prism;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.jenkins.plugins.prism.Marker.MarkerBuilder;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link MappedSourceLines}.
+ *
+ * @author Ullrich Hafner
+ */
+class MappedSourceLinesTest {
+    private static final String[] CONTENTS = {
+            "",
+            "a",
+            "a\n",
+            "a\r\n",
+            "a\r",
+            "\n\n",
+            "a\r\rb\r\nc\nd",
+            "Grüße aus München\r\n😀 Emoji\nΑλφάβητο\r",
+            "tab\there & <there>\n\n\nlast line without newline"
+    };
+
+    @TempDir
+    private Path folder;
+
+    @Test
+    void shouldReadLinesLikeBufferedReader() throws IOException {
+        for (String content : CONTENTS) {
+            Path file = write(content.getBytes(StandardCharsets.UTF_8));
+            for (int windowSize : new int[] {4, 5, 7, 64, MappedSourceLines.WINDOW_SIZE}) {
+                assertThat(readMapped(file, StandardCharsets.UTF_8, windowSize))
+                        .as("Lines of '%s' with window size %d", content, windowSize)
+                        .containsExactlyElementsOf(readBuffered(content.getBytes(StandardCharsets.UTF_8),
+                                StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    void shouldReadLongLinesAndManyLines() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int line = 0; line < 2000; line++) {
+            content.append("Line ").append(line).append(line % 2 == 0 ? "\r\n" : "\n");
+        }
+        for (int i = 0; i < 50_000; i++) {
+            content.append((char) ('a' + i % 26));
+        }
+        content.append("\r\nafter the long line");
+        byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+        Path file = write(bytes);
+
+        assertThat(readMapped(file, StandardCharsets.UTF_8, 1000))
+                .containsExactlyElementsOf(readBuffered(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shouldReplaceMalformedInput() throws IOException {
+        byte[] bytes = {'a', (byte) 0xC3, '\n', (byte) 0xFF, 'b'};
+        Path file = write(bytes);
+
+        assertThat(readMapped(file, StandardCharsets.UTF_8, 3))
+                .containsExactlyElementsOf(readBuffered(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shouldDecodeOtherCharsets() throws IOException {
+        String content = "first\r\nsecond\nthird";
+        for (Charset charset : new Charset[] {StandardCharsets.UTF_16, StandardCharsets.ISO_8859_1}) {
+            byte[] bytes = content.getBytes(charset);
+            Path file = write(bytes);
+
+            assertThat(readMapped(file, charset, 8)).containsExactlyElementsOf(readBuffered(bytes, charset));
+        }
+    }
+
+    @Test
+    void shouldStartAtLine() throws IOException {
+        Path file = write("1\n2\r\n3\r4\n5".getBytes(StandardCharsets.UTF_8));
+
+        try (MappedSourceLines lines = MappedSourceLines.open(file, StandardCharsets.UTF_8, 3, null)) {
+            assertThat(lines.getLine()).isEqualTo(2);
+            assertThat(lines.next().toString()).isEqualTo("3");
+            assertThat(lines.getLine()).isEqualTo(3);
+            assertThat(lines.next().toString()).isEqualTo("4");
+            assertThat(lines.next().toString()).isEqualTo("5");
+            assertThat(lines.hasNext()).isFalse();
+            assertThatExceptionOfType(NoSuchElementException.class).isThrownBy(lines::next);
+        }
+        try (MappedSourceLines lines = MappedSourceLines.open(file, StandardCharsets.UTF_8, 10, null)) {
+            assertThat(lines.hasNext()).isFalse();
+        }
+
+        Path utf16 = write("1\n2\n3".getBytes(StandardCharsets.UTF_16));
+        try (MappedSourceLines lines = MappedSourceLines.open(utf16, StandardCharsets.UTF_16, 3, null)) {
+            assertThat(lines.getLine()).isZero();
+            assertThat(lines.next().toString()).isEqualTo("1");
+        }
+    }
+
+    @Test
+    void shouldExposeLineAsCharSequence() throws IOException {
+        Path file = write("Hello World\n".getBytes(StandardCharsets.UTF_8));
+
+        try (MappedSourceLines lines = MappedSourceLines.open(file, StandardCharsets.UTF_8, 1, null)) {
+            CharSequence line = lines.next();
+
+            assertThat(line.length()).isEqualTo(11);
+            assertThat(line.charAt(6)).isEqualTo('W');
+            assertThat(line.subSequence(6, 11).toString()).isEqualTo("World");
+            assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> line.charAt(11));
+            assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> line.subSequence(5, 12));
+        }
+    }
+
+    @Test
+    void shouldRenderSameHtmlAsStream() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int line = 1; line <= 300; line++) {
+            content.append("int value").append(line).append(" = \"<").append(line).append(">\";\r\n");
+        }
+        byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+        Path file = write(bytes);
+        Marker marker = new MarkerBuilder().withLineStart(200).withColumnStart(5).withColumnEnd(9).build();
+        SourcePrinter printer = new SourcePrinter();
+
+        StringWriter expected = new StringWriter();
+        printer.render("Values.java", readBuffered(bytes, StandardCharsets.UTF_8).stream(), marker,
+                LineDecorations.NONE, 10, expected);
+        StringWriter actual = new StringWriter();
+        printer.render("Values.java", MappedSourceLines.open(file, StandardCharsets.UTF_8, 190, null), marker,
+                LineDecorations.NONE, 10, actual);
+        assertThat(actual.toString()).isEqualTo(expected.toString());
+
+        StringWriter expectedLines = new StringWriter();
+        printer.renderLines("Values.java", readBuffered(bytes, StandardCharsets.UTF_8).stream(),
+                LineDecorations.NONE, 250, 260, expectedLines);
+        StringWriter actualLines = new StringWriter();
+        printer.renderLines("Values.java", MappedSourceLines.open(file, StandardCharsets.UTF_8, 1, null),
+                LineDecorations.NONE, 250, 260, actualLines);
+        assertThat(actualLines.toString()).isEqualTo(expectedLines.toString());
+    }
+
+    private List<String> readMapped(final Path file, final Charset charset, final int windowSize)
+            throws IOException {
+        List<String> lines = new ArrayList<>();
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try (MappedSourceLines mapped = new MappedSourceLines(channel, charset, 0, 1, windowSize)) {
+            while (mapped.hasNext()) {
+                lines.add(mapped.next().toString());
+                assertThat(mapped.getLine()).isEqualTo(lines.size());
+            }
+        }
+        return lines;
+    }
+
+    private List<String> readBuffered(final byte[] bytes, final Charset charset) {
+        return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes), charset)).lines()
+                .collect(Collectors.toList());
+    }
+
+    private Path write(final byte[] bytes) throws IOException {
+        return Files.write(Files.createTempFile(folder, "file", ".txt"), bytes); // mapped files cannot be overwritten
+    }
+}
@@ -0,0 +1,134 @@
+package io.jenkins.plugins.prism;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import io.jenkins.plugins.prism.Marker.MarkerBuilder;
+import io.jenkins.plugins.prism.MarkerSet.MarkerSetBuilder;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link MarkerSet}.
+ *
+ * @author Ullrich Hafner
+ */
+class MarkerSetTest {
+    private static final String TITLE = "title";
+    private static final String ICON = "icon";
+    private static final String DESCRIPTION = "description";
+
+    @Test
+    void shouldCreateEmptySet() {
+        MarkerSet markers = new MarkerSetBuilder().build();
+
+        assertThat(markers).isEmpty();
+        assertThat(markers.findMarkers(1, 100)).isEmpty();
+        assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> markers.get(0));
+    }
+
+    @Test
+    void shouldSortMarkersAndShareStrings() {
+        MarkerSet markers = new MarkerSetBuilder()
+                .add(createMarker(10, 12, "other"))
+                .add(createMarker(5, 5, TITLE))
+                .add(createMarker(5, 3, TITLE))
+                .build();
+
+        assertThat(markers).hasSize(3);
+        assertThat(markers).extracting(Marker::getLineStart).containsExactly(3, 5, 10);
+        assertThat(markers).extracting(Marker::getLineEnd).containsExactly(5, 5, 12);
+        assertThat(markers).extracting(Marker::getTitle).containsExactly(TITLE, TITLE, "other");
+        assertThat(markers.getStringCount()).isEqualTo(4);
+
+        Marker marker = markers.get(1);
+        assertThat(marker.getIcon()).isEqualTo(ICON);
+        assertThat(marker.getDescription()).isEqualTo(DESCRIPTION);
+        assertThat(marker.getColumnStart()).isEqualTo(2);
+        assertThat(marker.getColumnEnd()).isEqualTo(4);
+
+        assertThat(MarkerSet.copyOf(markers)).isSameAs(markers);
+        assertThat(MarkerSet.copyOf(Arrays.asList(markers.get(2), markers.get(0))))
+                .extracting(Marker::getLineStart).containsExactly(3, 10);
+    }
+
+    @Test
+    void shouldFindOverlappingMarkers() {
+        MarkerSet markers = new MarkerSetBuilder()
+                .add(createMarker(1, 100, "whole file"))
+                .add(createMarker(5, 5, "five"))
+                .add(createMarker(7, 9, "seven to nine"))
+                .add(createMarker(20, 20, "twenty"))
+                .build();
+
+        assertThat(markers.findMarkers(6, 6)).extracting(Marker::getTitle).containsExactly("whole file");
+        assertThat(markers.findMarkers(5, 7)).extracting(Marker::getTitle)
+                .containsExactly("whole file", "five", "seven to nine");
+        assertThat(markers.findMarkers(9, 20)).extracting(Marker::getTitle)
+                .containsExactly("whole file", "seven to nine", "twenty");
+        assertThat(markers.findMarkers(101, 200)).isEmpty();
+        assertThat(markers.findMarkers(7, 6)).isEmpty();
+    }
+
+    @Test
+    void shouldFindSameMarkersAsLinearScan() {
+        Random random = new Random(42);
+        for (int size : new int[] {1, 2, 3, 7, 8, 9, 15, 16, 17, 100, 1000, 1025}) {
+            List<Marker> all = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                int start = 1 + random.nextInt(2000);
+                int length = random.nextInt(10) == 0 ? random.nextInt(500) : random.nextInt(5);
+                all.add(createMarker(start, start + length, TITLE));
+            }
+            MarkerSet markers = MarkerSet.copyOf(all);
+
+            for (int query = 0; query < 200; query++) {
+                int from = random.nextInt(2600);
+                int to = from + random.nextInt(50);
+
+                int[] expected = IntStream.range(0, markers.size())
+                        .filter(i -> markers.get(i).getLineStart() <= to && markers.get(i).getLineEnd() >= from)
+                        .toArray();
+                assertThat(markers.findIndices(from, to)).as("size %d, lines %d-%d", size, from, to)
+                        .containsExactly(expected);
+            }
+        }
+    }
+
+    @Test
+    void shouldFindSameMarkersAsBruteForceScanForAllSizes() {
+        Random random = new Random(4711);
+        for (int size = 1; size <= 300; size++) {
+            List<Marker> all = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                int start = 1 + random.nextInt(size);
+                int length = random.nextInt(20) == 0 ? random.nextInt(2 * size) : random.nextInt(3);
+                all.add(createMarker(start, start + length, TITLE));
+            }
+            MarkerSet markers = MarkerSet.copyOf(all);
+
+            int lastLine = 3 * size;
+            for (int line = 0; line <= lastLine; line++) {
+                int from = line;
+                int to = from + random.nextInt(3);
+                int[] expected = IntStream.range(0, markers.size())
+                        .filter(i -> markers.get(i).getLineStart() <= to && markers.get(i).getLineEnd() >= from)
+                        .toArray();
+                assertThat(markers.findIndices(from, to)).as("size %d, lines %d-%d", size, from, to)
+                        .containsExactly(expected);
+            }
+        }
+    }
+
+    private Marker createMarker(final int lineStart, final int lineEnd, final String title) {
+        return new MarkerBuilder().withLineStart(lineStart).withLineEnd(lineEnd)
+                .withColumnStart(2).withColumnEnd(4)
+                .withTitle(title).withIcon(ICON).withDescription(DESCRIPTION)
+                .build();
+    }
+}
@@ -0,0 +1,95 @@
+package io.jenkins.plugins.prism;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import io.jenkins.plugins.prism.Marker.MarkerBuilder;
+import io.jenkins.plugins.prism.MarkerSet.MarkerSetBuilder;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the classes {@link MarkerWriter} and {@link MarkerReader}.
+ *
+ * @author Ullrich Hafner
+ */
+class MarkerWriterTest {
+    private static final String DESCRIPTION = "<b>Description</b> with ümlauts and 😀";
+
+    @Test
+    void shouldWriteAndReadMarkers() throws IOException {
+        MarkerSetBuilder builder = new MarkerSetBuilder();
+        for (int line = 1; line <= 1000; line++) {
+            builder.add(new MarkerBuilder().withLineStart(line).withLineEnd(line + line % 3)
+                    .withColumnStart(line % 5).withColumnEnd(line % 5 + 10)
+                    .withTitle("Title " + line % 10).withIcon("icon.svg").withDescription(DESCRIPTION)
+                    .build());
+        }
+        MarkerSet markers = builder.build();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        markers.writeTo(output);
+
+        assertThat(output.size()).isLessThan(markers.size() * 10);
+
+        MarkerSet read = MarkerSet.readFrom(new ByteArrayInputStream(output.toByteArray()));
+
+        assertThat(read).hasSize(markers.size());
+        for (int i = 0; i < markers.size(); i++) {
+            assertThat(read.get(i)).usingRecursiveComparison().isEqualTo(markers.get(i));
+        }
+        assertThat(read.getStringCount()).isEqualTo(12);
+    }
+
+    @Test
+    void shouldStreamMarkersInAnyOrder() throws IOException {
+        Marker second = new MarkerBuilder().withLineStart(20).withTitle("second").build();
+        Marker first = new MarkerBuilder().withLineStart(10).withLineEnd(12).withTitle(null).build();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (MarkerWriter writer = new MarkerWriter(output)) {
+            writer.writeAll(Arrays.asList(second, first));
+        }
+
+        try (MarkerReader reader = new MarkerReader(new ByteArrayInputStream(output.toByteArray()))) {
+            assertThat(reader.read()).hasValueSatisfying(marker -> {
+                assertThat(marker).usingRecursiveComparison().isEqualTo(second);
+            });
+            assertThat(reader.read()).hasValueSatisfying(marker -> {
+                assertThat(marker.getLineStart()).isEqualTo(10);
+                assertThat(marker.getLineEnd()).isEqualTo(12);
+                assertThat(marker.getTitle()).isEmpty();
+            });
+            assertThat(reader.read()).isEmpty();
+            assertThat(reader.read()).isEmpty();
+        }
+    }
+
+    @Test
+    void shouldRejectInvalidInput() throws IOException {
+        assertThatIOException().isThrownBy(() -> read(new byte[] {'X', 'M', 'L', '!', 1}))
+                .withMessageContaining("does not contain markers");
+        assertThatIOException().isThrownBy(() -> read(new byte[] {'P', 'R', 'S', 'M', 99}))
+                .withMessageContaining("Unsupported version 99");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new MarkerSetBuilder().add(new MarkerBuilder().withLineStart(1).build()).build().writeTo(output);
+        byte[] bytes = output.toByteArray();
+
+        assertThatExceptionOfType(EOFException.class)
+                .isThrownBy(() -> read(Arrays.copyOf(bytes, bytes.length - 1)));
+    }
+
+    private Optional<Marker> read(final byte[] bytes) throws IOException {
+        try (MarkerReader reader = new MarkerReader(new ByteArrayInputStream(bytes))) {
+            reader.readAll();
+            return reader.read();
+        }
+    }
+}
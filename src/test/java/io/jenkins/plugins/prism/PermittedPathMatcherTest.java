@@ -0,0 +1,130 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static hudson.Functions.*;
+import static org.assertj.core.api.Assertions.*;
+import static org.assertj.core.api.Assumptions.*;
+
+/**
+ * Tests the class {@link PermittedPathMatcher}.
+ *
+ * @author Ullrich Hafner
+ */
+class PermittedPathMatcherTest {
+    @TempDir
+    private Path folder;
+
+    @Test
+    void shouldMatchFilesInPermittedDirectories() {
+        PermittedPathMatcher matcher = new PermittedPathMatcher(Arrays.asList("/workspace", "/opt/src/"), true);
+
+        assertThat(matcher.isPermitted("/workspace/b.c")).isTrue();
+        assertThat(matcher.isPermitted("/workspace/a/b/c.d")).isTrue();
+        assertThat(matcher.isPermitted("/workspace")).isTrue();
+        assertThat(matcher.isPermitted("/opt/src/Main.java")).isTrue();
+        assertThat(matcher.isPermitted("/workspace//a//b.c")).isTrue();
+        assertThat(matcher.isPermitted("/workspace/./b.c")).isTrue();
+
+        assertThat(matcher.isPermitted("/opt/Main.java")).isFalse();
+        assertThat(matcher.isPermitted("/workspace2/b.c")).isFalse();
+        assertThat(matcher.isPermitted("/b/workspace/b.c")).isFalse();
+        assertThat(matcher.isPermitted("/Workspace/b.c")).isFalse();
+        assertThat(matcher.isPermitted("workspace/b.c")).isFalse();
+        assertThat(matcher.isPermitted("b.c")).isFalse();
+        assertThat(matcher.isPermitted("")).isFalse();
+        assertThat(matcher.isPermitted("/")).isFalse();
+    }
+
+    @Test
+    void shouldResolveParentSegments() {
+        PermittedPathMatcher matcher = new PermittedPathMatcher(Collections.singleton("/workspace/project/.."), true);
+
+        assertThat(matcher.isPermitted("/workspace/other/b.c")).isTrue();
+        assertThat(matcher.isPermitted("/workspace/a/../b.c")).isTrue();
+        assertThat(matcher.isPermitted("/workspace/../etc/passwd")).isFalse();
+        assertThat(matcher.isPermitted("/workspace/../../workspace/b.c")).isFalse();
+    }
+
+    @Test
+    void shouldPermitEverythingBelowRoot() {
+        PermittedPathMatcher matcher = new PermittedPathMatcher(Collections.singleton("/"), true);
+
+        assertThat(matcher.isPermitted("/a/b.c")).isTrue();
+        assertThat(matcher.isPermitted("b.c")).isFalse();
+        assertThat(matcher.isPermitted("C:/a/b.c")).isFalse();
+    }
+
+    @Test
+    void shouldMatchWindowsPathsCaseInsensitive() {
+        PermittedPathMatcher matcher = new PermittedPathMatcher(Arrays.asList("C:\\workspace", "D:\\"), false);
+
+        assertThat(matcher.isPermitted("C:\\workspace\\b.c")).isTrue();
+        assertThat(matcher.isPermitted("c:\\WORKSPACE\\b.c")).isTrue();
+        assertThat(matcher.isPermitted("C:/workspace/a/b.c")).isTrue();
+        assertThat(matcher.isPermitted("d:\\a\\b.c")).isTrue();
+
+        assertThat(matcher.isPermitted("C:\\a\\workspace\\b.c")).isFalse();
+        assertThat(matcher.isPermitted("E:\\workspace\\b.c")).isFalse();
+        assertThat(matcher.isPermitted("\\workspace\\b.c")).isFalse();
+    }
+
+    @Test
+    void shouldFilterPermittedFiles() {
+        PermittedPathMatcher matcher = new PermittedPathMatcher(Arrays.asList("/workspace", "/opt/src"), true);
+
+        assertThat(matcher.filterPermitted(Arrays.asList("/workspace/b.c", "/etc/passwd", "/opt/src/a.c",
+                "/workspace/../secret", "/opt/src/b.c"))).containsExactly("/workspace/b.c", "/opt/src/a.c",
+                "/opt/src/b.c");
+        assertThat(matcher.filterPermitted(Collections.emptyList())).isEmpty();
+    }
+
+    @Test
+    void shouldRejectSymbolicLinksToOutsideInStrictMode() throws IOException {
+        assumeThat(isWindows()).isFalse();
+
+        Path root = folder.toRealPath();
+        Path workspace = Files.createDirectories(root.resolve("workspace"));
+        Files.createFile(workspace.resolve("b.c"));
+        Path outside = Files.createDirectories(root.resolve("outside"));
+        Files.createFile(outside.resolve("secret.txt"));
+        Files.createSymbolicLink(workspace.resolve("link"), outside);
+        Files.createSymbolicLink(workspace.resolve("inside"), workspace);
+
+        PermittedPathMatcher lenient = new PermittedPathMatcher(Collections.singleton(workspace.toString()), true);
+        assertThat(lenient.isStrict()).isFalse();
+        assertThat(lenient.isPermitted(workspace.resolve("link/secret.txt").toString())).isTrue();
+
+        PermittedPathMatcher strict = new PermittedPathMatcher(Collections.singleton(workspace.toString()), true,
+                new RealPathResolver());
+        assertThat(strict.isStrict()).isTrue();
+        assertThat(strict.isPermitted(workspace.resolve("b.c").toString())).isTrue();
+        assertThat(strict.isPermitted(workspace.resolve("inside/b.c").toString())).isTrue();
+        assertThat(strict.isPermitted(workspace.resolve("link/secret.txt").toString())).isFalse();
+        assertThat(strict.isPermitted(workspace.resolve("missing.c").toString())).isFalse();
+        assertThat(strict.isPermitted("b.c")).isFalse();
+    }
+
+    @Test
+    void shouldResolvePermittedDirectoriesInStrictMode() throws IOException {
+        assumeThat(isWindows()).isFalse();
+
+        Path root = folder.toRealPath();
+        Path workspace = Files.createDirectories(root.resolve("workspace"));
+        Files.createFile(workspace.resolve("b.c"));
+        Path link = Files.createSymbolicLink(root.resolve("link-to-workspace"), workspace);
+
+        PermittedPathMatcher strict = new PermittedPathMatcher(
+                Arrays.asList(link.toString(), root.resolve("missing").toString()), true, new RealPathResolver());
+        assertThat(strict.isPermitted(workspace.resolve("b.c").toString())).isTrue();
+        assertThat(strict.isPermitted(link.resolve("b.c").toString())).isTrue();
+        assertThat(strict.isPermitted(root.resolve("missing/b.c").toString())).isFalse();
+    }
+}
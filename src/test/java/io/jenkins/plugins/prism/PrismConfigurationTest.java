@@ -129,6 +129,86 @@ class PrismConfigurationTest {
         assertThat(configuration.doFillThemeItems()).extracting(o -> o.value).contains(PrismTheme.PRISM.name());
     }
 
+    @Test
+    void shouldInitializeContextLines() {
+        PrismConfiguration configuration = createConfiguration();
+
+        assertThat(configuration.getContextLines()).isZero();
+
+        configuration.setContextLines(50);
+        assertThat(configuration.getContextLines()).isEqualTo(50);
+
+        configuration.setContextLines(-1);
+        assertThat(configuration.getContextLines()).isZero();
+    }
+
+    @Test
+    void shouldInitializeCache() {
+        PrismConfiguration configuration = createConfiguration();
+
+        assertThat(configuration.getCacheSize()).isEqualTo(16);
+        assertThat(configuration.isDiskCacheEnabled()).isFalse();
+
+        configuration.setCacheSize(0);
+        configuration.setDiskCacheEnabled(true);
+        assertThat(configuration.getCacheSize()).isZero();
+        assertThat(configuration.isDiskCacheEnabled()).isTrue();
+
+        configuration.setCacheSize(-1);
+        assertThat(configuration.getCacheSize()).isZero();
+    }
+
+    @Test
+    void shouldInitializeServerSideHighlighting() {
+        PrismConfiguration configuration = createConfiguration();
+
+        assertThat(configuration.isServerSideHighlighting()).isFalse();
+
+        configuration.setServerSideHighlighting(true);
+        assertThat(configuration.isServerSideHighlighting()).isTrue();
+    }
+
+    @Test
+    void shouldInitializeAdmissionControl() {
+        PrismConfiguration configuration = createConfiguration();
+
+        assertThat(configuration.getMaximumConcurrentRenders()).isEqualTo(4);
+        assertThat(configuration.getRenderMemoryBudget()).isEqualTo(256);
+
+        configuration.setMaximumConcurrentRenders(10);
+        configuration.setRenderMemoryBudget(1024);
+        assertThat(configuration.getMaximumConcurrentRenders()).isEqualTo(10);
+        assertThat(configuration.getRenderMemoryBudget()).isEqualTo(1024);
+
+        configuration.setMaximumConcurrentRenders(-1);
+        configuration.setRenderMemoryBudget(-1);
+        assertThat(configuration.getMaximumConcurrentRenders()).isZero();
+        assertThat(configuration.getRenderMemoryBudget()).isZero();
+    }
+
+    @Test
+    void shouldInitializeRetention() {
+        PrismConfiguration configuration = createConfiguration();
+
+        assertThat(configuration.getRetainedBuilds()).isEqualTo(10);
+        assertThat(configuration.getRetainedDays()).isEqualTo(30);
+        assertThat(configuration.getSourceCodeBudget()).isEqualTo(1024);
+
+        configuration.setRetainedBuilds(5);
+        configuration.setRetainedDays(7);
+        configuration.setSourceCodeBudget(100);
+        assertThat(configuration.getRetainedBuilds()).isEqualTo(5);
+        assertThat(configuration.getRetainedDays()).isEqualTo(7);
+        assertThat(configuration.getSourceCodeBudget()).isEqualTo(100);
+
+        configuration.setRetainedBuilds(0);
+        configuration.setRetainedDays(-1);
+        configuration.setSourceCodeBudget(-1);
+        assertThat(configuration.getRetainedBuilds()).isEqualTo(1);
+        assertThat(configuration.getRetainedDays()).isZero();
+        assertThat(configuration.getSourceCodeBudget()).isZero();
+    }
+
     private String getWorkspaceChild(final String expected) {
         return PATH_UTIL.createAbsolutePath(NORMALIZED, expected);
     }
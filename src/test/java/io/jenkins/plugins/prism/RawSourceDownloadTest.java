@@ -0,0 +1,170 @@
+package io.jenkins.plugins.prism;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.jenkins.plugins.prism.RawSourceDownload.ByteRange;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the class {@link RawSourceDownload}.
+ *
+ * @author Ullrich Hafner
+ */
+class RawSourceDownloadTest {
+    private static final String CONTENT = "0123456789";
+
+    @TempDir
+    private Path folder;
+
+    @Test
+    void shouldParseRanges() {
+        assertThat(ByteRange.parse(null, 10)).isEmpty();
+        assertThat(ByteRange.parse("items=1-2", 10)).isEmpty();
+        assertThat(ByteRange.parse("bytes=1-2,4-5", 10)).isEmpty();
+        assertThat(ByteRange.parse("bytes=-", 10)).isEmpty();
+        assertThat(ByteRange.parse("bytes=5-2", 10)).isEmpty();
+        assertThat(ByteRange.parse("bytes=99999999999999999999-", 10)).isEmpty();
+
+        assertRange("bytes=1-2", 1, 2);
+        assertRange("bytes=5-", 5, 9);
+        assertRange("bytes=5-100", 5, 9);
+        assertRange("bytes=-3", 7, 9);
+        assertRange("bytes=-100", 0, 9);
+
+        assertThat(ByteRange.parse("bytes=10-", 10)).hasValueSatisfying(
+                range -> assertThat(range.isSatisfiable()).isFalse());
+        assertThat(ByteRange.parse("bytes=-0", 10)).hasValueSatisfying(
+                range -> assertThat(range.isSatisfiable()).isFalse());
+    }
+
+    private void assertRange(final String header, final long first, final long last) {
+        assertThat(ByteRange.parse(header, 10)).hasValueSatisfying(range -> {
+            assertThat(range.isSatisfiable()).isTrue();
+            assertThat(range.getFirst()).isEqualTo(first);
+            assertThat(range.getLast()).isEqualTo(last);
+            assertThat(range.getLength()).isEqualTo(last - first + 1);
+        });
+    }
+
+    @Test
+    void shouldSendWholeFile() throws IOException {
+        Path file = createFile();
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        HttpServletResponse response = createResponse(body);
+
+        RawSourceDownload.send(request, response, file, StandardCharsets.ISO_8859_1);
+
+        assertThat(body.toByteArray()).isEqualTo(CONTENT.getBytes(StandardCharsets.ISO_8859_1));
+        verify(response).setContentType("text/plain;charset=ISO-8859-1");
+        verify(response).setContentLengthLong(10);
+        verify(response).setHeader("Accept-Ranges", "bytes");
+        verify(response, never()).setStatus(anyInt());
+    }
+
+    @Test
+    void shouldSendRange() throws IOException {
+        Path file = createFile();
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader("Range")).thenReturn("bytes=2-4");
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        HttpServletResponse response = createResponse(body);
+
+        RawSourceDownload.send(request, response, file, StandardCharsets.UTF_8);
+
+        assertThat(body.toString("UTF-8")).isEqualTo("234");
+        verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(response).setHeader("Content-Range", "bytes 2-4/10");
+        verify(response).setContentLengthLong(3);
+    }
+
+    @Test
+    void shouldIgnoreRangeIfFileHasChanged() throws IOException {
+        Path file = createFile();
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader("Range")).thenReturn("bytes=2-4");
+        when(request.getHeader("If-Range")).thenReturn("\"outdated\"");
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        HttpServletResponse response = createResponse(body);
+
+        RawSourceDownload.send(request, response, file, StandardCharsets.UTF_8);
+
+        assertThat(body.toString("UTF-8")).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void shouldRejectUnsatisfiableRange() throws IOException {
+        Path file = createFile();
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader("Range")).thenReturn("bytes=20-");
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        HttpServletResponse response = createResponse(body);
+
+        RawSourceDownload.send(request, response, file, StandardCharsets.UTF_8);
+
+        assertThat(body.size()).isZero();
+        verify(response).setHeader("Content-Range", "bytes */10");
+        verify(response).sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+    }
+
+    @Test
+    void shouldAnswerWithNotModified() throws IOException {
+        Path file = createFile();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        HttpServletResponse response = createResponse(body);
+        RawSourceDownload.send(mock(HttpServletRequest.class), response, file, StandardCharsets.UTF_8);
+
+        String entityTag = ConditionalRequests.createEntityTag("raw", file.toString(), "10",
+                String.valueOf(Files.getLastModifiedTime(file).toMillis()));
+        verify(response).setHeader("ETag", entityTag);
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader("If-None-Match")).thenReturn(entityTag);
+        ByteArrayOutputStream notModified = new ByteArrayOutputStream();
+        HttpServletResponse cached = createResponse(notModified);
+
+        RawSourceDownload.send(request, cached, file, StandardCharsets.UTF_8);
+
+        assertThat(notModified.size()).isZero();
+        verify(cached).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    }
+
+    private Path createFile() throws IOException {
+        return Files.write(folder.resolve("file.txt"), CONTENT.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private HttpServletResponse createResponse(final ByteArrayOutputStream body) throws IOException {
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(final WriteListener writeListener) {
+                // not required
+            }
+
+            @Override
+            public void write(final int b) {
+                body.write(b);
+            }
+        });
+        return response;
+    }
+}
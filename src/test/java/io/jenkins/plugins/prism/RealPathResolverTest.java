@@ -0,0 +1,104 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static hudson.Functions.*;
+import static org.assertj.core.api.Assertions.*;
+import static org.assertj.core.api.Assumptions.*;
+
+/**
+ * Tests the class {@link RealPathResolver}.
+ *
+ * @author Ullrich Hafner
+ */
+class RealPathResolverTest {
+    private static final int DEPTH = 12;
+    private static final int PACKAGES = 10;
+    private static final int FILES_PER_PACKAGE = 1000;
+
+    @TempDir
+    private Path folder;
+
+    @Test
+    void shouldResolveFilesWithoutLinks() throws IOException {
+        Path root = folder.toRealPath();
+        Path file = createFile(root.resolve("a/b/c.d"));
+
+        RealPathResolver resolver = new RealPathResolver();
+        assertThat(resolver.resolve(file.toString())).isEqualTo(file);
+        assertThat(resolver.resolve(root.resolve("a/./b/../b/c.d").toString())).isEqualTo(file);
+    }
+
+    @Test
+    void shouldResolveSymbolicLinks() throws IOException {
+        assumeThat(isWindows()).isFalse();
+
+        Path root = folder.toRealPath();
+        Path file = createFile(root.resolve("outside/secret.txt"));
+        Path workspace = Files.createDirectories(root.resolve("workspace"));
+        Files.createSymbolicLink(workspace.resolve("link"), root.resolve("outside"));
+        Files.createSymbolicLink(workspace.resolve("file-link.txt"), file);
+
+        RealPathResolver resolver = new RealPathResolver();
+        assertThat(resolver.resolve(workspace.resolve("link/secret.txt").toString())).isEqualTo(file);
+        assertThat(resolver.resolve(workspace.resolve("file-link.txt").toString())).isEqualTo(file);
+        assertThat(resolver.resolve(workspace.resolve("link/../workspace/link/secret.txt").toString()))
+                .as("Parent segments must be resolved after the symbolic link")
+                .isEqualTo(file);
+    }
+
+    @Test
+    void shouldRejectMissingFiles() throws IOException {
+        Path root = folder.toRealPath();
+        createFile(root.resolve("a/b.c"));
+
+        RealPathResolver resolver = new RealPathResolver();
+        assertThatIOException().isThrownBy(() -> resolver.resolve(root.resolve("a/missing.c").toString()));
+        assertThatIOException().isThrownBy(() -> resolver.resolve(root.resolve("missing/b.c").toString()));
+        assertThatIOException().isThrownBy(() -> resolver.resolve("a/b.c"));
+    }
+
+    /**
+     * Resolves 10,000 files that share a deep directory tree. A resolver that calls {@link Path#toRealPath} for each
+     * file needs a file system call for each segment of each path. The memoizing resolver needs a single call for each
+     * file and for each directory.
+     */
+    @Test
+    void shouldResolveSharedDirectoriesOnlyOnce() throws IOException {
+        Path root = folder.toRealPath();
+        Path tree = root;
+        for (int i = 0; i < DEPTH; i++) {
+            tree = tree.resolve("level" + i);
+        }
+        List<String> files = new ArrayList<>();
+        for (int p = 0; p < PACKAGES; p++) {
+            Path directory = Files.createDirectories(tree.resolve("package" + p));
+            for (int f = 0; f < FILES_PER_PACKAGE; f++) {
+                files.add(Files.createFile(directory.resolve("File" + f + ".java")).toString());
+            }
+        }
+
+        RealPathResolver resolver = new RealPathResolver();
+        for (String file : files) {
+            assertThat(resolver.resolve(file).toString()).isEqualTo(file);
+        }
+
+        int segmentsPerFile = root.getNameCount() + DEPTH + 2;
+        int directories = root.getNameCount() + DEPTH + PACKAGES;
+        assertThat(resolver.getFileSystemCalls())
+                .isEqualTo(files.size() + directories)
+                .isLessThan((long) files.size() * segmentsPerFile / 10);
+    }
+
+    private Path createFile(final Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        return Files.createFile(file);
+    }
+}
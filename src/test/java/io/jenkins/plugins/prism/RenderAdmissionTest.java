@@ -0,0 +1,154 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.jenkins.plugins.prism.RenderAdmission.BusyException;
+import io.jenkins.plugins.prism.RenderAdmission.Permit;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link RenderAdmission}.
+ *
+ * @author Ullrich Hafner
+ */
+class RenderAdmissionTest {
+    @Test
+    void shouldLimitConcurrentRenders() throws IOException {
+        RenderAdmission admission = new RenderAdmission(() -> 2, () -> 0, 0);
+
+        try (Permit first = admission.acquire(100); Permit second = admission.acquire(100)) {
+            assertThat(admission.getActiveCount()).isEqualTo(2);
+            assertThat(admission.getReservedMemory()).isEqualTo(200);
+
+            assertThatExceptionOfType(BusyException.class).isThrownBy(() -> admission.acquire(100));
+            assertThat(admission.getRejectedCount()).isEqualTo(1);
+            assertThat(admission.getQueuedCount()).isEqualTo(1);
+        }
+        assertThat(admission.getActiveCount()).isZero();
+        assertThat(admission.getReservedMemory()).isZero();
+
+        try (Permit permit = admission.acquire(100)) {
+            assertThat(admission.getAdmittedCount()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void shouldLimitMemory() throws IOException {
+        RenderAdmission admission = new RenderAdmission(() -> 0, () -> 1000, 0);
+
+        try (Permit large = admission.acquire(5000)) {
+            assertThat(admission.getActiveCount()).isEqualTo(1);
+
+            assertThatExceptionOfType(BusyException.class).isThrownBy(() -> admission.acquire(1));
+        }
+        try (Permit first = admission.acquire(600)) {
+            assertThatExceptionOfType(BusyException.class).isThrownBy(() -> admission.acquire(600));
+            try (Permit second = admission.acquire(400)) {
+                assertThat(admission.getReservedMemory()).isEqualTo(1000);
+            }
+        }
+        assertThat(admission.getRejectedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldReleasePermitOnlyOnce() throws IOException {
+        RenderAdmission admission = new RenderAdmission(() -> 2, () -> 0, 0);
+
+        Permit permit = admission.acquire(100);
+        Permit other = admission.acquire(100);
+        permit.close();
+        permit.close();
+
+        assertThat(admission.getActiveCount()).isEqualTo(1);
+        other.close();
+        assertThat(admission.getActiveCount()).isZero();
+    }
+
+    @Test
+    void shouldAdmitWaitingRequestWhenPermitIsReleased() throws Exception {
+        RenderAdmission admission = new RenderAdmission(() -> 1, () -> 0, TimeUnit.MINUTES.toMillis(1));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Permit permit = admission.acquire(100);
+            CountDownLatch started = new CountDownLatch(1);
+            Future<Integer> waiting = executor.submit(() -> {
+                started.countDown();
+                try (Permit next = admission.acquire(100)) {
+                    return admission.getActiveCount();
+                }
+            });
+            started.await();
+            while (admission.getWaitingCount() == 0) {
+                Thread.sleep(10);
+            }
+            permit.close();
+
+            assertThat(waiting.get(1, TimeUnit.MINUTES)).isEqualTo(1);
+            assertThat(admission.getQueuedCount()).isEqualTo(1);
+            assertThat(admission.getRejectedCount()).isZero();
+            assertThat(admission.getWaitingCount()).isZero();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldRejectRequestsIfQueueIsFull() throws Exception {
+        RenderAdmission admission = new RenderAdmission(() -> 1, () -> 0, TimeUnit.MINUTES.toMillis(1));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (Permit permit = admission.acquire(100)) {
+            for (int i = 0; i < 2; i++) {
+                executor.submit(() -> {
+                    admission.acquire(100).close();
+                    return null;
+                });
+            }
+            while (admission.getWaitingCount() < 2) {
+                Thread.sleep(10);
+            }
+
+            assertThatExceptionOfType(BusyException.class).isThrownBy(() -> admission.acquire(100));
+            assertThat(admission.getRejectedCount()).isEqualTo(1);
+            assertThat(admission.getQueuedCount()).isEqualTo(2);
+        }
+        finally {
+            executor.shutdown();
+            assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+        }
+    }
+
+    @Test
+    void shouldBoundQueueIfOnlyMemoryIsLimited() throws Exception {
+        RenderAdmission admission = new RenderAdmission(() -> 0, () -> 100, TimeUnit.MINUTES.toMillis(1));
+        int queueLength = RenderAdmission.DEFAULT_QUEUE_LENGTH;
+        ExecutorService executor = Executors.newFixedThreadPool(queueLength);
+        try (Permit permit = admission.acquire(100)) {
+            for (int i = 0; i < queueLength; i++) {
+                executor.submit(() -> {
+                    admission.acquire(100).close();
+                    return null;
+                });
+            }
+            while (admission.getWaitingCount() < queueLength) {
+                Thread.sleep(10);
+            }
+
+            assertThatExceptionOfType(BusyException.class).isThrownBy(() -> admission.acquire(100));
+            assertThat(admission.getRejectedCount()).isEqualTo(1);
+            assertThat(admission.getQueuedCount()).isEqualTo(queueLength);
+        }
+        finally {
+            executor.shutdown();
+            assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.jenkins.plugins.prism.RenderCoalescer.SourceRenderer;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link RenderCoalescer}.
+ *
+ * @author Ullrich Hafner
+ */
+class RenderCoalescerTest {
+    private static final String KEY = "key";
+    private static final String HTML = "<pre>code</pre>";
+    private static final int LIMIT = 1000;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldRenderAndRecordHtml() throws IOException {
+        RenderCoalescer coalescer = new RenderCoalescer(0);
+
+        StringWriter writer = new StringWriter();
+        assertThat(coalescer.render(KEY, writer, LIMIT, output -> output.write(HTML))).contains(HTML);
+        assertThat(writer).hasToString(HTML);
+
+        StringWriter large = new StringWriter();
+        assertThat(coalescer.render(KEY, large, 5, output -> output.write(HTML))).isEmpty();
+        assertThat(large).hasToString(HTML);
+
+        assertThat(coalescer.getRenderCount()).isEqualTo(2);
+        assertThat(coalescer.getCoalescedCount()).isZero();
+    }
+
+    @Test
+    void shouldShareHtmlWithWaitingRequests() throws Exception {
+        RenderCoalescer coalescer = new RenderCoalescer(TimeUnit.MINUTES.toMillis(1));
+        CountDownLatch rendering = new CountDownLatch(1);
+        CountDownLatch waiting = new CountDownLatch(1);
+
+        Future<Optional<String>> leader = executor.submit(() -> coalescer.render(KEY, new StringWriter(), LIMIT,
+                output -> {
+                    rendering.countDown();
+                    output.write("<pre>");
+                    await(waiting);
+                    output.write("code</pre>");
+                }));
+        rendering.await();
+        assertThat(coalescer.isRendering(KEY)).isTrue();
+        assertThat(coalescer.isRendering("other")).isFalse();
+
+        StringWriter writer = new StringWriter();
+        Thread release = startWhenWaiting(coalescer, waiting);
+        assertThat(coalescer.render(KEY, writer, LIMIT, failingRenderer())).isEmpty();
+        release.join();
+
+        assertThat(writer).hasToString(HTML);
+        assertThat(leader.get(1, TimeUnit.MINUTES)).contains(HTML);
+        assertThat(coalescer.isRendering(KEY)).isFalse();
+        assertThat(coalescer.getRenderCount()).isEqualTo(1);
+        assertThat(coalescer.getCoalescedCount()).isEqualTo(1);
+        assertThat(coalescer.getFallbackCount()).isZero();
+    }
+
+    @Test
+    void shouldCompleteRenderForWaitingRequestsIfClientDisconnects() throws Exception {
+        RenderCoalescer coalescer = new RenderCoalescer(TimeUnit.MINUTES.toMillis(1));
+        CountDownLatch rendering = new CountDownLatch(1);
+        CountDownLatch waiting = new CountDownLatch(1);
+
+        Future<Optional<String>> leader = executor.submit(() -> coalescer.render(KEY, new DisconnectedWriter(), LIMIT,
+                output -> {
+                    rendering.countDown();
+                    await(waiting);
+                    output.write(HTML);
+                }));
+        rendering.await();
+
+        StringWriter writer = new StringWriter();
+        Thread release = startWhenWaiting(coalescer, waiting);
+        coalescer.render(KEY, writer, LIMIT, failingRenderer());
+        release.join();
+
+        assertThat(writer).hasToString(HTML);
+        assertThatThrownBy(() -> leader.get(1, TimeUnit.MINUTES)).hasRootCauseInstanceOf(IOException.class)
+                .hasMessageContaining("Disconnected");
+    }
+
+    @Test
+    void shouldAbortRenderIfClientDisconnectsWithoutWaitingRequests() {
+        RenderCoalescer coalescer = new RenderCoalescer(0);
+
+        assertThatIOException().isThrownBy(() -> coalescer.render(KEY, new DisconnectedWriter(), LIMIT,
+                output -> {
+                    output.write(HTML);
+                    fail("Render should have been aborted");
+                })).withMessage("Disconnected");
+    }
+
+    @Test
+    void shouldRenderOnItsOwnAfterTimeout() throws Exception {
+        RenderCoalescer coalescer = new RenderCoalescer(1);
+        CountDownLatch rendering = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+
+        Future<Optional<String>> leader = executor.submit(() -> coalescer.render(KEY, new StringWriter(), LIMIT,
+                output -> {
+                    rendering.countDown();
+                    await(finished);
+                    output.write(HTML);
+                }));
+        rendering.await();
+
+        StringWriter writer = new StringWriter();
+        coalescer.render(KEY, writer, LIMIT, output -> output.write("own"));
+        finished.countDown();
+
+        assertThat(writer).hasToString("own");
+        assertThat(leader.get(1, TimeUnit.MINUTES)).contains(HTML);
+        assertThat(coalescer.getFallbackCount()).isEqualTo(1);
+    }
+
+    private Thread startWhenWaiting(final RenderCoalescer coalescer, final CountDownLatch waiting) {
+        Thread thread = new Thread(() -> {
+            try {
+                while (coalescer.getWaitingCount(KEY) == 0) {
+                    Thread.sleep(10);
+                }
+            }
+            catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            waiting.countDown();
+        });
+        thread.start();
+        return thread;
+    }
+
+    private SourceRenderer failingRenderer() {
+        return output -> fail("Source code should not be rendered");
+    }
+
+    private static void await(final CountDownLatch latch) throws IOException {
+        try {
+            latch.await();
+        }
+        catch (InterruptedException exception) {
+            throw new IOException(exception);
+        }
+    }
+
+    private static class DisconnectedWriter extends Writer {
+        @Override
+        public void write(final char[] buffer, final int offset, final int length) throws IOException {
+            throw new IOException("Disconnected");
+        }
+
+        @Override
+        public void flush() {
+            // nothing to do
+        }
+
+        @Override
+        public void close() {
+            // nothing to do
+        }
+    }
+}
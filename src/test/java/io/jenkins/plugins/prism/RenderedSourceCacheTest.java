@@ -0,0 +1,166 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.jenkins.plugins.prism.Marker.MarkerBuilder;
+import io.jenkins.plugins.prism.RenderedSourceCache.RecordingWriter;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link RenderedSourceCache}.
+ *
+ * @author Ullrich Hafner
+ */
+class RenderedSourceCacheTest {
+    private static final String FILE_NAME = "file.java";
+    private static final String CONTENT = "content";
+
+    @TempDir
+    private Path buildDirectory;
+
+    @Test
+    void shouldBeDisabledIfNoTierIsEnabled() {
+        assertThat(new RenderedSourceCache(() -> 0, () -> false).isEnabled()).isFalse();
+        assertThat(new RenderedSourceCache(() -> 10, () -> false).isEnabled()).isTrue();
+        assertThat(new RenderedSourceCache(() -> 0, () -> true).isEnabled()).isTrue();
+    }
+
+    @Test
+    void shouldCountHitsAndMisses() {
+        RenderedSourceCache cache = new RenderedSourceCache(() -> 100, () -> false);
+
+        assertThat(cache.get("key", buildDirectory)).isEmpty();
+        assertThat(cache.getMissCount()).isEqualTo(1);
+
+        cache.put("key", "html", buildDirectory);
+        assertThat(cache.contains("key", buildDirectory)).isTrue();
+        assertThat(cache.get("key", buildDirectory)).contains("html");
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getEntryCount()).isEqualTo(1);
+        assertThat(cache.getSize()).isEqualTo(4);
+        assertThat(buildDirectory).isEmptyDirectory();
+
+        cache.clear();
+        assertThat(cache.get("key", buildDirectory)).isEmpty();
+        assertThat(cache.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedEntries() {
+        RenderedSourceCache cache = new RenderedSourceCache(() -> 10, () -> false);
+
+        cache.put("one", "1111", buildDirectory);
+        cache.put("two", "2222", buildDirectory);
+        assertThat(cache.get("one", buildDirectory)).contains("1111");
+
+        cache.put("three", "3333", buildDirectory);
+
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+        assertThat(cache.getSize()).isEqualTo(8);
+        assertThat(cache.get("two", buildDirectory)).isEmpty();
+        assertThat(cache.get("one", buildDirectory)).contains("1111");
+        assertThat(cache.get("three", buildDirectory)).contains("3333");
+
+        cache.put("large", "0123456789-", buildDirectory);
+        assertThat(cache.get("large", buildDirectory)).isEmpty();
+        assertThat(cache.getEntryCount()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldUseDiskTier() {
+        RenderedSourceCache cache = new RenderedSourceCache(() -> 100, () -> true);
+
+        assertThat(cache.contains("key", buildDirectory)).isFalse();
+        cache.put("key", "html", buildDirectory);
+        assertThat(buildDirectory.resolve("prism-cache").resolve("key.html")).hasContent("html");
+
+        cache.clear();
+        assertThat(cache.contains("key", buildDirectory)).isTrue();
+        assertThat(cache.getDiskHitCount()).isZero();
+        assertThat(cache.get("key", buildDirectory)).contains("html");
+        assertThat(cache.getDiskHitCount()).isEqualTo(1);
+        assertThat(cache.get("key", buildDirectory)).contains("html");
+        assertThat(cache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedEntriesFromDisk() throws IOException {
+        RenderedSourceCache cache = new RenderedSourceCache(() -> 0, () -> true, () -> 10);
+        Path cacheDirectory = RenderedSourceCache.getCacheDirectory(buildDirectory);
+
+        cache.put("one", "1111", buildDirectory);
+        cache.put("two", "2222", buildDirectory);
+        age(cacheDirectory.resolve("one.html"), 2);
+        age(cacheDirectory.resolve("two.html"), 3);
+        assertThat(cache.get("one", buildDirectory)).contains("1111");
+
+        cache.put("three", "3333", buildDirectory);
+
+        assertThat(cache.getDiskEvictionCount()).isEqualTo(1);
+        assertThat(cache.contains("two", buildDirectory)).isFalse();
+        assertThat(cache.get("one", buildDirectory)).contains("1111");
+        assertThat(cache.get("three", buildDirectory)).contains("3333");
+
+        cache.put("large", "0123456789-", buildDirectory);
+        assertThat(cache.contains("large", buildDirectory)).isFalse();
+        assertThat(cacheDirectory).isDirectoryContaining("glob:**one.html").isDirectoryContaining("glob:**three.html");
+    }
+
+    @Test
+    void shouldCreateDifferentKeysForDifferentProperties() throws IOException {
+        String digest = RenderedSourceCache.digest(new StringReader(CONTENT));
+        assertThat(digest).hasSize(64).isEqualTo(RenderedSourceCache.digest(new StringReader(CONTENT)));
+        assertThat(RenderedSourceCache.digest(new StringReader("other"))).isNotEqualTo(digest);
+
+        Marker marker = new MarkerBuilder().withLineStart(1).withTitle("title").build();
+        String key = RenderedSourceCache.createKey(digest, FILE_NAME, marker, 0, PrismTheme.PRISM);
+
+        assertThat(RenderedSourceCache.createKey(digest, FILE_NAME, marker, 0, PrismTheme.PRISM))
+                .isEqualTo(key);
+        assertThat(RenderedSourceCache.createKey("other", FILE_NAME, marker, 0, PrismTheme.PRISM))
+                .isNotEqualTo(key);
+        assertThat(RenderedSourceCache.createKey(digest, "file.c", marker, 0, PrismTheme.PRISM))
+                .isNotEqualTo(key);
+        assertThat(RenderedSourceCache.createKey(digest, FILE_NAME, marker, 10, PrismTheme.PRISM))
+                .isNotEqualTo(key);
+        assertThat(RenderedSourceCache.createKey(digest, FILE_NAME, marker, 0, PrismTheme.DARK))
+                .isNotEqualTo(key);
+        assertThat(RenderedSourceCache.createKey(digest, FILE_NAME,
+                new MarkerBuilder().withLineStart(2).withTitle("title").build(), 0, PrismTheme.PRISM))
+                .isNotEqualTo(key);
+        assertThat(RenderedSourceCache.createKey(digest, FILE_NAME,
+                new MarkerBuilder().withLineStart(1).withTitle("other").build(), 0, PrismTheme.PRISM))
+                .isNotEqualTo(key);
+    }
+
+    @Test
+    void shouldRecordUntilLimitIsReached() throws IOException {
+        StringWriter output = new StringWriter();
+        RecordingWriter writer = new RecordingWriter(output, 5);
+
+        writer.write("abc");
+        assertThat(writer.getRecorded()).contains("abc");
+
+        writer.write(new char[] {'d', 'e', 'f'});
+        assertThat(writer.getRecorded()).isEmpty();
+
+        writer.write("g");
+        assertThat(writer.getRecorded()).isEmpty();
+        assertThat(output).hasToString("abcdefg");
+    }
+
+    private void age(final Path file, final int minutes) throws IOException {
+        Files.setLastModifiedTime(file,
+                FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(minutes)));
+    }
+}
@@ -0,0 +1,158 @@
+package io.jenkins.plugins.prism;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.jenkins.plugins.prism.SourceArchive.Entry;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the classes {@link SourceArchiveWriter} and {@link SourceArchive}.
+ *
+ * @author Ullrich Hafner
+ */
+class SourceArchiveTest {
+    private static final String JAVA = "package a;\r\n\r\npublic class Main {\n}\n";
+    private static final String TEXT = "Grüße\rnach München";
+
+    @TempDir
+    private Path folder;
+
+    @Test
+    void shouldWriteAndReadArchive() throws IOException {
+        Path archive = SourceArchive.resolve(folder, "sources");
+        StringBuilder large = new StringBuilder();
+        for (int line = 1; line <= 5000; line++) {
+            large.append("Line ").append(line).append('\n');
+        }
+        Path file = Files.write(folder.resolve("large.txt"), large.toString().getBytes(StandardCharsets.UTF_8));
+
+        try (SourceArchiveWriter writer = new SourceArchiveWriter(archive)) {
+            writer.add("src/a/Main.java", asStream(JAVA, StandardCharsets.UTF_8), StandardCharsets.UTF_8, false);
+            writer.add("Text.txt", asStream(TEXT, StandardCharsets.ISO_8859_1), StandardCharsets.ISO_8859_1, true);
+            writer.add("large.txt", file, StandardCharsets.UTF_8, true);
+            writer.add("utf16.txt", asStream(TEXT, StandardCharsets.UTF_16), StandardCharsets.UTF_16, false);
+            writer.commit();
+        }
+
+        assertThat(archive.getFileName().toString()).isEqualTo("sources.prism-archive");
+        assertThat(Files.size(archive)).isLessThan(large.length());
+        try (Stream<Path> files = Files.list(folder)) {
+            assertThat(files.map(Path::getFileName).map(Path::toString).collect(Collectors.toList()))
+                    .containsExactlyInAnyOrder("large.txt", "sources.prism-archive");
+        }
+
+        SourceArchive read = SourceArchive.read(archive);
+        assertThat(read.getEntries()).extracting(Entry::getPath)
+                .containsExactly("src/a/Main.java", "Text.txt", "large.txt", "utf16.txt");
+
+        Entry java = read.find("src/a/Main.java").orElseThrow(IllegalStateException::new);
+        assertThat(read(java)).isEqualTo(JAVA);
+        assertThat(java.getLineCount()).isEqualTo(4);
+        assertThat(java.getSize()).isEqualTo(JAVA.length());
+        assertThat(java.isCompressed()).isFalse();
+        assertThat(java.getCharset()).isEqualTo(StandardCharsets.UTF_8);
+
+        Entry text = read.find("Text.txt").orElseThrow(IllegalStateException::new);
+        assertThat(read(text)).isEqualTo(TEXT);
+        assertThat(text.getLineCount()).isEqualTo(2);
+        assertThat(text.isCompressed()).isTrue();
+        try (InputStream raw = text.open()) {
+            assertThat(IOUtils.toByteArray(raw)).isEqualTo(TEXT.getBytes(StandardCharsets.ISO_8859_1));
+        }
+
+        Entry compressed = read.find("large.txt").orElseThrow(IllegalStateException::new);
+        assertThat(read(compressed)).isEqualTo(large.toString());
+        assertThat(compressed.getLineCount()).isEqualTo(5000);
+        assertThat(compressed.getSize()).isEqualTo(large.length());
+
+        Entry utf16 = read.find("utf16.txt").orElseThrow(IllegalStateException::new);
+        assertThat(read(utf16)).isEqualTo(TEXT);
+        assertThat(utf16.getLineCount()).isEqualTo(-1);
+
+        assertThat(read.find("missing.txt")).isEmpty();
+    }
+
+    @Test
+    void shouldReadEmptyArchive() throws IOException {
+        Path archive = folder.resolve("empty.prism-archive");
+        try (SourceArchiveWriter writer = new SourceArchiveWriter(archive)) {
+            writer.commit();
+        }
+
+        assertThat(SourceArchive.read(archive).getEntries()).isEmpty();
+    }
+
+    @Test
+    void shouldRejectDuplicatePaths() throws IOException {
+        try (SourceArchiveWriter writer = new SourceArchiveWriter(folder.resolve("archive"))) {
+            writer.add("a.txt", asStream("a", StandardCharsets.UTF_8), StandardCharsets.UTF_8, false);
+
+            assertThatIllegalArgumentException().isThrownBy(
+                    () -> writer.add("a.txt", asStream("b", StandardCharsets.UTF_8), StandardCharsets.UTF_8, false));
+        }
+    }
+
+    @Test
+    void shouldDiscardArchiveThatHasNotBeenCommitted() throws IOException {
+        Path archive = folder.resolve("archive");
+        try (SourceArchiveWriter writer = new SourceArchiveWriter(archive)) {
+            writer.add("a.txt", asStream("a", StandardCharsets.UTF_8), StandardCharsets.UTF_8, false);
+            writer.commit();
+
+            assertThatIllegalStateException().isThrownBy(
+                    () -> writer.add("b.txt", asStream("b", StandardCharsets.UTF_8), StandardCharsets.UTF_8, false));
+        }
+
+        try (SourceArchiveWriter writer = new SourceArchiveWriter(archive)) {
+            writer.add("b.txt", asStream("b", StandardCharsets.UTF_8), StandardCharsets.UTF_8, false);
+        }
+
+        assertThat(SourceArchive.read(archive).getEntries()).extracting(Entry::getPath).containsExactly("a.txt");
+        try (Stream<Path> files = Files.list(folder)) {
+            assertThat(files).containsExactly(archive);
+        }
+    }
+
+    @Test
+    void shouldRejectInvalidArchives() throws IOException {
+        Path empty = Files.write(folder.resolve("empty"), new byte[0]);
+        assertThatIOException().isThrownBy(() -> SourceArchive.read(empty));
+
+        Path text = Files.write(folder.resolve("text"), JAVA.getBytes(StandardCharsets.UTF_8));
+        assertThatIOException().isThrownBy(() -> SourceArchive.read(text));
+
+        Path archive = folder.resolve("archive");
+        try (SourceArchiveWriter writer = new SourceArchiveWriter(archive)) {
+            writer.add("a.txt", asStream(JAVA, StandardCharsets.UTF_8), StandardCharsets.UTF_8, false);
+            writer.commit();
+        }
+        byte[] bytes = Files.readAllBytes(archive);
+        bytes[bytes.length - 1] = 'X';
+        Path corrupt = Files.write(folder.resolve("corrupt"), bytes);
+        assertThatIOException().isThrownBy(() -> SourceArchive.read(corrupt));
+    }
+
+    private String read(final Entry entry) throws IOException {
+        try (Reader reader = entry.create()) {
+            return IOUtils.toString(reader);
+        }
+    }
+
+    private ByteArrayInputStream asStream(final String content, final Charset charset) {
+        return new ByteArrayInputStream(content.getBytes(charset));
+    }
+}
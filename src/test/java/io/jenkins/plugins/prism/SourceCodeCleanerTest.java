@@ -0,0 +1,90 @@
+package io.jenkins.plugins.prism;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static hudson.Functions.*;
+import static org.assertj.core.api.Assertions.*;
+import static org.assertj.core.api.Assumptions.*;
+
+/**
+ * Tests the class {@link SourceCodeCleaner}.
+ *
+ * @author Ullrich Hafner
+ */
+class SourceCodeCleanerTest {
+    @TempDir
+    private Path folder;
+
+    @Test
+    void shouldMoveFolderAside() throws IOException {
+        Path sources = createSources(folder.resolve("build/sources"), 3);
+
+        Path aside = SourceCodeCleaner.moveAside(sources).orElseThrow(IllegalStateException::new);
+
+        assertThat(sources).doesNotExist();
+        assertThat(aside).isDirectory().hasParent(folder.resolve("build"));
+        assertThat(aside.getFileName().toString()).startsWith("sources" + SourceCodeCleaner.DELETING_INFIX);
+        assertThat(SourceCodeCleaner.moveAside(sources)).isEmpty();
+    }
+
+    @Test
+    void shouldDeleteFoldersInBackground() throws IOException, InterruptedException, ExecutionException,
+            TimeoutException {
+        Path first = createSources(folder.resolve("build-1/sources"), 10);
+        Path second = createSources(folder.resolve("build-2/sources"), 10);
+        Path archive = Files.write(folder.resolve("build-2/sources.prism-archive"), new byte[10]);
+        SourceCodeCleaner cleaner = new SourceCodeCleaner(2);
+
+        cleaner.schedule(Arrays.asList(first, second, archive, folder.resolve("missing")), null)
+                .get(10, TimeUnit.SECONDS);
+
+        assertThat(first).doesNotExist();
+        assertThat(second).doesNotExist();
+        assertThat(archive).doesNotExist();
+        assertThat(cleaner.getDeletedCount()).isEqualTo(4);
+        assertThat(cleaner.getFailedCount()).isZero();
+        assertThat(cleaner.getPendingCount()).isZero();
+        assertThat(cleaner.isPending(first)).isFalse();
+        assertThat(cleaner.getLastDurationMillis()).isNotNegative();
+    }
+
+    @Test
+    void shouldPruneStoreAfterDeletion() throws IOException, InterruptedException, ExecutionException,
+            TimeoutException {
+        assumeThat(isWindows()).isFalse();
+
+        SourceCodeStore store = new SourceCodeStore(folder.resolve("store"), 0);
+        Path sources = folder.resolve("build-1/sources");
+        Path stored = store.store(new ByteArrayInputStream("content".getBytes(StandardCharsets.UTF_8)),
+                sources.resolve("Main.java"));
+        SourceCodeCleaner cleaner = new SourceCodeCleaner(1);
+
+        cleaner.schedule(Collections.emptyList(), store).get(10, TimeUnit.SECONDS);
+        assertThat(stored).exists();
+        assertThat(cleaner.getPrunedCount()).isZero();
+
+        cleaner.schedule(Collections.singletonList(sources), store).get(10, TimeUnit.SECONDS);
+        assertThat(stored).doesNotExist();
+        assertThat(cleaner.getPrunedCount()).isEqualTo(1);
+    }
+
+    private Path createSources(final Path sources, final int count) throws IOException {
+        Files.createDirectories(sources.resolve("nested"));
+        for (int i = 0; i < count; i++) {
+            Files.write(sources.resolve("nested/File" + i + ".java"), new byte[i]);
+        }
+        return sources;
+    }
+}
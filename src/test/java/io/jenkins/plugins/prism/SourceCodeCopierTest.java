@@ -0,0 +1,256 @@
+package io.jenkins.plugins.prism;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.hm.hafner.util.FilteredLog;
+import edu.hm.hafner.util.PathUtil;
+
+import hudson.FilePath;
+
+import io.jenkins.plugins.prism.SourceCodeCopier.ReceivedFile;
+import io.jenkins.plugins.prism.SourceCodeCopier.SendFiles;
+import io.jenkins.plugins.prism.SourceManifest.Entry;
+
+import static hudson.Functions.*;
+import static org.assertj.core.api.Assertions.*;
+import static org.assertj.core.api.Assumptions.*;
+
+/**
+ * Tests the class {@link SourceCodeCopier}.
+ *
+ * @author Ullrich Hafner
+ */
+class SourceCodeCopierTest {
+    private static final String SOURCES = "sources";
+    private static final String JAVA = "package a;\n\npublic class Main {\n}\n";
+    private static final PathUtil PATH_UTIL = new PathUtil();
+
+    @TempDir
+    private Path folder;
+
+    @Test
+    void shouldCopyFilesOfWorkspace() throws IOException, InterruptedException {
+        Path workspace = createWorkspace();
+        Path build = Files.createDirectories(folder.resolve("build"));
+        FilteredLog log = new FilteredLog("Errors");
+
+        SourceManifest manifest = new SourceCodeCopier(build, SOURCES, StandardCharsets.UTF_8).copy(
+                new FilePath(workspace.toFile()), Arrays.asList("src/a/Main.java", "README.md", "missing.txt"),
+                Collections.emptySet(), Collections.emptySet(), null, log);
+
+        assertThat(manifest.getEntries()).extracting(Entry::getPath).containsExactly("src/a/Main.java", "README.md");
+        assertThat(manifest.find("src/a/Main.java")).hasValueSatisfying(entry -> {
+            assertThat(entry.getSize()).isEqualTo(JAVA.length());
+            assertThat(entry.getLineCount()).isEqualTo(4);
+            assertThat(entry.getLanguage()).isEqualTo("language-java");
+        });
+        assertThat(build.resolve(SOURCES).resolve("src/a/Main.java")).hasContent(JAVA);
+        assertThat(build.resolve(SOURCES).resolve("README.md")).hasContent("# Readme");
+        assertThat(SourceManifest.read(SourceManifest.resolve(build, SOURCES)).getEntries()).hasSize(2);
+        assertThat(log.getErrorMessages()).anySatisfy(message -> assertThat(message).contains("missing.txt"));
+        assertThat(log.getInfoMessages()).anySatisfy(message -> assertThat(message)
+                .startsWith("Copied 2 source code files").endsWith("skipped 0 unchanged files"));
+        try (Stream<Path> files = Files.list(build)) {
+            assertThat(files.map(Path::getFileName).map(Path::toString))
+                    .containsExactlyInAnyOrder(SOURCES, SOURCES + SourceManifest.MANIFEST_SUFFIX);
+        }
+    }
+
+    @Test
+    void shouldSkipFilesOutsideOfWorkspace() throws IOException, InterruptedException {
+        Path workspace = createWorkspace();
+        Path outside = Files.createDirectories(folder.resolve("outside"));
+        Path secret = Files.write(outside.resolve("secret.txt"), "secret".getBytes(StandardCharsets.UTF_8));
+        Path build = Files.createDirectories(folder.resolve("build"));
+        FilteredLog log = new FilteredLog("Errors");
+
+        SourceManifest manifest = new SourceCodeCopier(build, SOURCES, StandardCharsets.UTF_8).copy(
+                new FilePath(workspace.toFile()), Arrays.asList(secret.toString(), "../outside/secret.txt"),
+                Collections.emptySet(), Collections.singleton(outside.toString()), null, log);
+
+        assertThat(manifest.getEntries()).isEmpty();
+        assertThat(build.resolve(SOURCES)).doesNotExist();
+        assertThat(log.getErrorMessages()).anySatisfy(message -> assertThat(message).contains("not been approved"))
+                .anySatisfy(message -> assertThat(message).contains("../outside/secret.txt"));
+
+        String permitted = PATH_UTIL.getAbsolutePath(outside);
+        SourceManifest approved = new SourceCodeCopier(build, SOURCES, StandardCharsets.UTF_8).copy(
+                new FilePath(workspace.toFile()), Collections.singletonList(secret.toString()),
+                Collections.singleton(permitted), Collections.singleton(permitted), null, new FilteredLog("Errors"));
+
+        assertThat(approved.getEntries()).hasSize(1);
+        String path = approved.getEntries().iterator().next().getPath();
+        assertThat(path).endsWith("outside/secret.txt").doesNotStartWith("/");
+        assertThat(build.resolve(SOURCES).resolve(path)).hasContent("secret");
+    }
+
+    @Test
+    void shouldSkipUnchangedFiles() throws IOException, InterruptedException {
+        Path workspace = createWorkspace();
+        Path build = Files.createDirectories(folder.resolve("build"));
+        List<String> files = Arrays.asList("src/a/Main.java", "README.md");
+        SourceCodeCopier copier = new SourceCodeCopier(build, SOURCES, StandardCharsets.UTF_8);
+        copier.copy(new FilePath(workspace.toFile()), files, Collections.emptySet(), Collections.emptySet(), null,
+                new FilteredLog("Errors"));
+
+        Files.write(workspace.resolve("README.md"), "# Changed".getBytes(StandardCharsets.UTF_8));
+        FilteredLog log = new FilteredLog("Errors");
+        SourceManifest manifest = copier.copy(new FilePath(workspace.toFile()), files,
+                Collections.emptySet(), Collections.emptySet(), null, log);
+
+        assertThat(manifest.getEntries()).hasSize(2);
+        assertThat(build.resolve(SOURCES).resolve("README.md")).hasContent("# Changed");
+        assertThat(log.getInfoMessages()).anySatisfy(message -> assertThat(message)
+                .startsWith("Copied 1 source code files").endsWith("skipped 1 unchanged files"));
+    }
+
+    @Test
+    void shouldLinkFilesFromStore() throws IOException, InterruptedException {
+        Path workspace = createWorkspace();
+        SourceCodeStore store = new SourceCodeStore(folder.resolve("store"));
+        List<String> files = Arrays.asList("src/a/Main.java", "README.md");
+
+        Path first = Files.createDirectories(folder.resolve("1"));
+        new SourceCodeCopier(first, SOURCES, StandardCharsets.UTF_8).copy(new FilePath(workspace.toFile()), files,
+                Collections.emptySet(), Collections.emptySet(), store, new FilteredLog("Errors"));
+        assertThat(store.getStoredCount()).isEqualTo(2);
+
+        Path second = Files.createDirectories(folder.resolve("2"));
+        FilteredLog log = new FilteredLog("Errors");
+        SourceManifest manifest = new SourceCodeCopier(second, SOURCES, StandardCharsets.UTF_8).copy(
+                new FilePath(workspace.toFile()), files, Collections.emptySet(), Collections.emptySet(), store, log);
+
+        assertThat(manifest.getEntries()).hasSize(2);
+        assertThat(second.resolve(SOURCES).resolve("src/a/Main.java")).hasContent(JAVA);
+        assertThat(store.getStoredCount()).isEqualTo(2);
+        assertThat(log.getInfoMessages()).anySatisfy(message -> assertThat(message)
+                .startsWith("Copied 0 source code files").contains("linked 2 files from the store"));
+    }
+
+    @Test
+    void shouldCopyBatchesInParallel() throws IOException, InterruptedException {
+        Path workspace = Files.createDirectories(folder.resolve("workspace"));
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String name = "File" + i + ".java";
+            Files.write(workspace.resolve(name), ("class File" + i + " {}\n").getBytes(StandardCharsets.UTF_8));
+            files.add(name);
+        }
+        Path build = Files.createDirectories(folder.resolve("build"));
+        FilteredLog log = new FilteredLog("Errors");
+
+        SourceManifest manifest = new SourceCodeCopier(build, SOURCES, StandardCharsets.UTF_8, 3).copy(
+                new FilePath(workspace.toFile()), files, Collections.emptySet(), Collections.emptySet(), null, log);
+
+        assertThat(manifest.getEntries()).hasSize(50);
+        for (int i = 0; i < 50; i++) {
+            assertThat(build.resolve(SOURCES).resolve("File" + i + ".java")).hasContent("class File" + i + " {}");
+        }
+        assertThat(log.getErrorMessages()).isEmpty();
+    }
+
+    @Test
+    void shouldComputeEntriesFromReceivedContentAndContinueAfterReadErrors() throws IOException {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            large.append("line ").append(i).append('\n');
+        }
+        Path first = Files.write(folder.resolve("Large.java"), large.toString().getBytes(StandardCharsets.UTF_8));
+        Path unreadable = Files.createDirectories(folder.resolve("Directory.java"));
+        Path last = Files.write(folder.resolve("Last.java"), JAVA.getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        List<String> errors = new SendFiles(Arrays.asList(first.toString(), unreadable.toString(), last.toString()),
+                Collections.emptySet(), output).invoke(folder.toFile(), null);
+        assertThat(errors).singleElement().asString().contains("Directory.java");
+
+        try (DataInputStream input = new DataInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(output.toByteArray())))) {
+            assertThat(input.readInt()).isEqualTo(0);
+            ReceivedFile largeFile = new ReceivedFile(input);
+            assertThat(IOUtils.toByteArray(largeFile)).isEqualTo(Files.readAllBytes(first));
+            assertThat(largeFile.isAborted()).isFalse();
+            assertThat(largeFile.getSize()).isEqualTo(Files.size(first));
+            assertThat(largeFile.getLineCount()).isEqualTo(20_000);
+            assertThat(RenderedSourceCache.toHex(largeFile.getDigest())).isEqualTo(
+                    new SourceManifest().add("Large.java", first, StandardCharsets.UTF_8).getDigest());
+
+            assertThat(input.readInt()).isEqualTo(1);
+            ReceivedFile aborted = new ReceivedFile(input);
+            aborted.skipRemaining();
+            assertThat(aborted.isAborted()).isTrue();
+
+            assertThat(input.readInt()).isEqualTo(2);
+            ReceivedFile lastFile = new ReceivedFile(input);
+            assertThat(IOUtils.toString(lastFile, StandardCharsets.UTF_8)).isEqualTo(JAVA);
+            assertThat(lastFile.getLineCount()).isEqualTo(4);
+
+            assertThat(input.readInt()).isEqualTo(SourceCodeCopier.END_OF_BATCH);
+        }
+    }
+
+    @Test
+    void shouldSkipSymbolicLinksToFilesOutsideOfWorkspace() throws IOException, InterruptedException {
+        assumeThat(isWindows()).isFalse();
+
+        Path workspace = createWorkspace();
+        Path secret = Files.write(folder.resolve("secret.txt"), "secret".getBytes(StandardCharsets.UTF_8));
+        Files.createSymbolicLink(workspace.resolve("link.txt"), secret);
+        Path build = Files.createDirectories(folder.resolve("build"));
+        FilteredLog log = new FilteredLog("Errors");
+
+        SourceManifest manifest = new SourceCodeCopier(build, SOURCES, StandardCharsets.UTF_8).copy(
+                new FilePath(workspace.toFile()), Arrays.asList("README.md", "link.txt"),
+                Collections.emptySet(), Collections.emptySet(), null, log);
+
+        assertThat(manifest.getEntries()).extracting(Entry::getPath).containsExactly("README.md");
+        assertThat(build.resolve(SOURCES).resolve("link.txt")).doesNotExist();
+        assertThat(log.getErrorMessages()).anySatisfy(message -> assertThat(message)
+                .contains("link.txt").contains("real path is not part of the workspace"));
+    }
+
+    @Test
+    void shouldNotSendSymbolicLinksToFilesOutsideOfWorkspace() throws IOException {
+        assumeThat(isWindows()).isFalse();
+
+        Path workspace = createWorkspace();
+        Path secret = Files.write(folder.resolve("secret.txt"), "secret".getBytes(StandardCharsets.UTF_8));
+        Path link = Files.createSymbolicLink(workspace.resolve("link.txt"), secret);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        List<String> errors = new SendFiles(Arrays.asList(link.toString(), workspace.resolve("README.md").toString()),
+                Collections.emptySet(), output).invoke(workspace.toFile(), null);
+        assertThat(errors).singleElement().asString().contains("link.txt").contains("real path");
+
+        try (DataInputStream input = new DataInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(output.toByteArray())))) {
+            assertThat(input.readInt()).isEqualTo(1);
+            assertThat(IOUtils.toString(new ReceivedFile(input), StandardCharsets.UTF_8)).isEqualTo("# Readme");
+            assertThat(input.readInt()).isEqualTo(SourceCodeCopier.END_OF_BATCH);
+        }
+    }
+
+    private Path createWorkspace() throws IOException {
+        Path workspace = Files.createDirectories(folder.resolve("workspace"));
+        Files.write(Files.createDirectories(workspace.resolve("src/a")).resolve("Main.java"),
+                JAVA.getBytes(StandardCharsets.UTF_8));
+        Files.write(workspace.resolve("README.md"), "# Readme".getBytes(StandardCharsets.UTF_8));
+        return workspace;
+    }
+}
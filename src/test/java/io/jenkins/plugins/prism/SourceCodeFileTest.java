@@ -0,0 +1,135 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static hudson.Functions.*;
+import static org.assertj.core.api.Assertions.*;
+import static org.assertj.core.api.Assumptions.*;
+
+/**
+ * Tests the class {@link SourceCodeFile}.
+ *
+ * @author Ullrich Hafner
+ */
+class SourceCodeFileTest {
+    @TempDir
+    private Path folder;
+
+    @Test
+    void shouldDecodeFileWithCharset() throws IOException {
+        Path path = Files.write(folder.resolve("file.txt"), "Grüße".getBytes(StandardCharsets.ISO_8859_1));
+
+        SourceCodeFile file = new SourceCodeFile(path, StandardCharsets.ISO_8859_1);
+
+        assertThat(file.getFile()).isEqualTo(path);
+        assertThat(file.getCharset()).isEqualTo(StandardCharsets.ISO_8859_1);
+        try (Reader reader = file.create()) {
+            assertThat(IOUtils.toString(reader)).isEqualTo("Grüße");
+        }
+        try (Reader reader = new SourceCodeFile(path, StandardCharsets.UTF_8).create()) {
+            assertThat(IOUtils.toString(reader)).isEqualTo("Gr��e");
+        }
+    }
+
+    @Test
+    void shouldStartAtLine() throws IOException {
+        Path path = Files.write(folder.resolve("file.txt"), "1\r\n2\r3\n4".getBytes(StandardCharsets.UTF_8));
+
+        SourceCodeFile file = new SourceCodeFile(path, StandardCharsets.UTF_8);
+
+        assertThat(read(file, 1)).isEqualTo("1\r\n2\r3\n4");
+        assertThat(read(file, 2)).isEqualTo("2\r3\n4");
+        assertThat(read(file, 3)).isEqualTo("3\n4");
+        assertThat(read(file, 4)).isEqualTo("4");
+        assertThat(read(file, 5)).isEmpty();
+        assertThat(folder).isDirectoryNotContaining("glob:**" + LineIndex.INDEX_SUFFIX);
+    }
+
+    @Test
+    void shouldStoreIndexInCacheFolderOfBuild() throws IOException {
+        Path sources = Files.createDirectories(folder.resolve("sources"));
+        Path path = Files.write(sources.resolve("file.txt"), "1\n2\n3".getBytes(StandardCharsets.UTF_8));
+        Path build = folder.resolve("build");
+
+        SourceCodeFile file = new SourceCodeFile(path, StandardCharsets.UTF_8, "digest");
+
+        try (Reader reader = file.create(2, build)) {
+            assertThat(IOUtils.toString(reader)).isEqualTo("2\n3");
+        }
+        try (SourceLines lines = file.openLines(3, build)) {
+            assertThat(lines.next()).hasToString("3");
+        }
+        assertThat(LineIndex.resolve(build, "digest")).exists();
+        assertThat(sources).isDirectoryNotContaining("glob:**" + LineIndex.INDEX_SUFFIX);
+    }
+
+    @Test
+    void shouldStoreIndexOfFileWithoutDigest() throws IOException {
+        Path sources = Files.createDirectories(folder.resolve("sources"));
+        Path path = Files.write(sources.resolve("file.txt"), "1\n2\n3".getBytes(StandardCharsets.UTF_8));
+        Path build = folder.resolve("build");
+
+        SourceCodeFile file = new SourceCodeFile(path, StandardCharsets.UTF_8);
+
+        try (Reader reader = file.create(2, build)) {
+            assertThat(IOUtils.toString(reader)).isEqualTo("2\n3");
+        }
+        assertThat(LineIndex.resolve(build, RenderedSourceCache.digestOf(path.toAbsolutePath().toString()))).exists();
+        assertThat(sources).isDirectoryNotContaining("glob:**" + LineIndex.INDEX_SUFFIX);
+
+        FileTime modified = Files.getLastModifiedTime(path);
+        Files.write(path, "\n\n123".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(path, FileTime.fromMillis(modified.toMillis() + 2000));
+        try (Reader reader = file.create(2, build)) {
+            assertThat(IOUtils.toString(reader)).isEqualTo("\n123");
+        }
+    }
+
+    @Test
+    void shouldSkipLinesIfCharsetHasNoIndex() throws IOException {
+        Path path = Files.write(folder.resolve("file.txt"), "1\n2\n3".getBytes(StandardCharsets.UTF_16));
+
+        SourceCodeFile file = new SourceCodeFile(path, StandardCharsets.UTF_16);
+
+        assertThat(read(file, 2)).isEqualTo("2\n3");
+        assertThat(read(file, 4)).isEmpty();
+        assertThat(folder).isDirectoryNotContaining("glob:**" + LineIndex.INDEX_SUFFIX);
+    }
+
+    @Test
+    void shouldMapLargeFiles() throws IOException {
+        assumeThat(isWindows()).isFalse();
+
+        Path small = Files.write(folder.resolve("small.txt"), "1\n2\n3".getBytes(StandardCharsets.UTF_8));
+        byte[] large = new byte[(int) SourceCodeFile.MAPPING_THRESHOLD];
+        Arrays.fill(large, (byte) '\n');
+        Path big = Files.write(folder.resolve("large.txt"), large);
+
+        try (SourceLines lines = new SourceCodeFile(small, StandardCharsets.UTF_8).openLines(2)) {
+            assertThat(lines).isNotInstanceOf(MappedSourceLines.class);
+            assertThat(lines.getLine()).isEqualTo(1);
+            assertThat(lines.next()).hasToString("2");
+        }
+        try (SourceLines lines = new SourceCodeFile(big, StandardCharsets.UTF_8).openLines(1000)) {
+            assertThat(lines).isInstanceOf(MappedSourceLines.class);
+            assertThat(lines.getLine()).isEqualTo(999);
+            assertThat(lines.next()).isEmpty();
+        }
+    }
+
+    private String read(final SourceCodeFile file, final int line) throws IOException {
+        try (Reader reader = file.create(line)) {
+            return IOUtils.toString(reader);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.hm.hafner.util.FilteredLog;
+
+import hudson.model.Job;
+import hudson.model.Run;
+
+import io.jenkins.plugins.prism.SourceCodeRetention.Cleanup;
+import io.jenkins.plugins.prism.SourceCodeRetention.CleanupOldBuilds;
+import io.jenkins.plugins.prism.SourceCodeRetention.KeepDiskBudget;
+import io.jenkins.plugins.prism.SourceCodeRetention.KeepLastBuilds;
+import io.jenkins.plugins.prism.SourceCodeRetention.KeepRecentBuilds;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the class {@link SourceCodeRetention}.
+ *
+ * @author Ullrich Hafner
+ */
+class SourceCodeRetentionTest {
+    private static final String SOURCES = "sources";
+
+    @TempDir
+    private Path folder;
+
+    @Test
+    void shouldNotCleanEveryBuild() throws IOException {
+        List<Run<?, ?>> builds = createBuilds(3);
+        FilteredLog log = new FilteredLog("Errors");
+
+        assertThat(new Cleanup().clean(builds.get(2), SOURCES, log)).isEmpty();
+        assertThat(builds.get(0).getRootDir().toPath().resolve(SOURCES)).exists();
+        assertThat(log.getInfoMessages()).containsExactly("Skipping cleaning of source code files in old builds");
+    }
+
+    @Test
+    void shouldMoveSourcesOfPreviousBuildsAside() throws IOException {
+        List<Run<?, ?>> builds = createBuilds(4);
+        Path archive = Files.write(SourceArchive.resolve(builds.get(1).getRootDir().toPath(), SOURCES), new byte[1]);
+        Path cache = Files.createDirectories(
+                RenderedSourceCache.getCacheDirectory(builds.get(2).getRootDir().toPath()));
+        Files.write(cache.resolve("key.html"), new byte[1]);
+        FilteredLog log = new FilteredLog("Errors");
+
+        List<Path> obsolete = new CleanupOldBuilds().clean(builds.get(3), SOURCES, log);
+
+        assertThat(obsolete).hasSize(5).allSatisfy(
+                path -> assertThat(path.getFileName().toString()).contains(SourceCodeCleaner.DELETING_INFIX));
+        assertThat(getSources(builds.get(0))).doesNotExist();
+        assertThat(getSources(builds.get(1))).doesNotExist();
+        assertThat(archive).doesNotExist();
+        assertThat(getSources(builds.get(2))).doesNotExist();
+        assertThat(cache).doesNotExist();
+        assertThat(getSources(builds.get(3))).exists();
+        assertThat(log.getInfoMessages()).contains("Scheduled deletion of 5 source code folders in the background");
+        assertThat(CleanupOldBuilds.getWatermarkFile(builds.get(3), SOURCES)).hasContent("3");
+    }
+
+    @Test
+    void shouldScanOnlyBuildsAfterWatermark() throws IOException {
+        List<Run<?, ?>> builds = createBuilds(6);
+        Files.write(CleanupOldBuilds.getWatermarkFile(builds.get(5), SOURCES), "3".getBytes(StandardCharsets.UTF_8));
+
+        List<Path> obsolete = new CleanupOldBuilds().clean(builds.get(5), SOURCES, new FilteredLog("Errors"));
+
+        verify(builds.get(2), never()).getRootDir();
+        verify(builds.get(2), never()).getPreviousBuild();
+        assertThat(obsolete).hasSize(2);
+        assertThat(getSources(builds.get(0))).exists();
+        assertThat(getSources(builds.get(2))).exists();
+        assertThat(getSources(builds.get(3))).doesNotExist();
+        assertThat(getSources(builds.get(4))).doesNotExist();
+        assertThat(CleanupOldBuilds.getWatermarkFile(builds.get(5), SOURCES)).hasContent("5");
+    }
+
+    @Test
+    void shouldDeleteLeftoversOfPreviousCleanup() throws IOException {
+        List<Run<?, ?>> builds = createBuilds(3);
+        List<Path> scheduled = new CleanupOldBuilds().clean(builds.get(1), SOURCES, new FilteredLog("Errors"));
+        assertThat(scheduled).hasSize(1);
+        Path journal = CleanupOldBuilds.getJournalFile(builds.get(1), SOURCES);
+        assertThat(journal).hasContent(scheduled.get(0).toString());
+
+        FilteredLog log = new FilteredLog("Errors");
+        List<Path> obsolete = new CleanupOldBuilds().clean(builds.get(2), SOURCES, log);
+
+        assertThat(obsolete).hasSize(2).contains(scheduled.get(0));
+        assertThat(log.getInfoMessages()).contains(
+                "Found 1 source code folders of a previous cleanup that have not been deleted yet");
+        assertThat(Files.readAllLines(journal)).hasSize(2);
+
+        delete(obsolete);
+        assertThat(new CleanupOldBuilds().clean(builds.get(2), SOURCES, new FilteredLog("Errors"))).isEmpty();
+        assertThat(journal).doesNotExist();
+    }
+
+    @Test
+    void shouldKeepWatermarkBelowRunningBuilds() throws IOException {
+        List<Run<?, ?>> builds = createBuilds(5);
+        when(builds.get(1).isBuilding()).thenReturn(true);
+
+        List<Path> obsolete = new CleanupOldBuilds().clean(builds.get(4), SOURCES, new FilteredLog("Errors"));
+
+        assertThat(obsolete).hasSize(3);
+        assertThat(getSources(builds.get(1))).exists();
+        assertThat(CleanupOldBuilds.getWatermarkFile(builds.get(4), SOURCES)).hasContent("1");
+    }
+
+    @Test
+    void shouldKeepLastBuilds() throws IOException {
+        List<Run<?, ?>> builds = createBuilds(5);
+
+        List<Path> obsolete = new KeepLastBuilds(() -> 3).clean(builds.get(4), SOURCES, new FilteredLog("Errors"));
+
+        assertThat(obsolete).hasSize(2);
+        assertThat(getSources(builds.get(0))).doesNotExist();
+        assertThat(getSources(builds.get(1))).doesNotExist();
+        assertThat(getSources(builds.get(2))).exists();
+        assertThat(getSources(builds.get(3))).exists();
+        assertThat(CleanupOldBuilds.getWatermarkFile(builds.get(4), SOURCES)).hasContent("2");
+        delete(obsolete);
+
+        Run<?, ?> next = createBuild(6, builds.get(4));
+        assertThat(new KeepLastBuilds(() -> 3).clean(next, SOURCES, new FilteredLog("Errors"))).hasSize(1);
+        assertThat(getSources(builds.get(2))).doesNotExist();
+        assertThat(getSources(builds.get(3))).exists();
+        assertThat(CleanupOldBuilds.getWatermarkFile(next, SOURCES)).hasContent("3");
+    }
+
+    @Test
+    void shouldKeepRecentBuilds() throws IOException {
+        List<Run<?, ?>> builds = createBuilds(4);
+        long now = System.currentTimeMillis();
+        when(builds.get(0).getTimeInMillis()).thenReturn(now - TimeUnit.DAYS.toMillis(10));
+        when(builds.get(1).getTimeInMillis()).thenReturn(now - TimeUnit.DAYS.toMillis(8));
+        when(builds.get(2).getTimeInMillis()).thenReturn(now - TimeUnit.DAYS.toMillis(2));
+
+        List<Path> obsolete = new KeepRecentBuilds(() -> 7).clean(builds.get(3), SOURCES, new FilteredLog("Errors"));
+
+        assertThat(obsolete).hasSize(2);
+        assertThat(getSources(builds.get(1))).doesNotExist();
+        assertThat(getSources(builds.get(2))).exists();
+        assertThat(CleanupOldBuilds.getWatermarkFile(builds.get(3), SOURCES)).hasContent("2");
+    }
+
+    @Test
+    void shouldEvictOldestBuildsIfBudgetIsExceeded() throws IOException {
+        List<Run<?, ?>> builds = createBuilds(5);
+        for (Run<?, ?> build : builds) {
+            Files.write(getSources(build).resolve("Main.java"), new byte[400 * 1024]);
+        }
+        FilteredLog log = new FilteredLog("Errors");
+
+        List<Path> obsolete = new KeepDiskBudget(() -> 1).clean(builds.get(4), SOURCES, log);
+
+        assertThat(obsolete).hasSize(3);
+        assertThat(getSources(builds.get(1))).doesNotExist();
+        assertThat(getSources(builds.get(2))).doesNotExist();
+        assertThat(getSources(builds.get(3))).exists();
+        assertThat(log.getErrorMessages()).isEmpty();
+        assertThat(SourceCodeSizes.getSizesFile(builds.get(4), SOURCES)).hasContent("4=409600\n5=409600");
+    }
+
+    @Test
+    void shouldUseCachedSizes() throws IOException {
+        List<Run<?, ?>> builds = createBuilds(3);
+        Files.write(SourceCodeSizes.getSizesFile(builds.get(2), SOURCES),
+                "1=1\n2=2000000\n".getBytes(StandardCharsets.UTF_8));
+
+        List<Path> obsolete = new KeepDiskBudget(() -> 1).clean(builds.get(2), SOURCES, new FilteredLog("Errors"));
+
+        assertThat(obsolete).hasSize(2);
+        assertThat(getSources(builds.get(0))).doesNotExist();
+        assertThat(getSources(builds.get(1))).doesNotExist();
+        assertThat(SourceCodeSizes.getSizesFile(builds.get(2), SOURCES)).hasContent("3=1");
+    }
+
+    @Test
+    void shouldNotCacheSizeOfRunningBuild() throws IOException {
+        List<Run<?, ?>> builds = createBuilds(2);
+        when(builds.get(1).isBuilding()).thenReturn(true);
+        FilteredLog log = new FilteredLog("Errors");
+
+        SourceCodeSizes sizes = SourceCodeSizes.load(builds.get(1), SOURCES);
+        assertThat(sizes.getSize(builds.get(0), log)).isEqualTo(1);
+        assertThat(sizes.getSize(builds.get(1), log)).isEqualTo(1);
+        sizes.save(log);
+
+        assertThat(SourceCodeSizes.getSizesFile(builds.get(1), SOURCES)).hasContent("1=1");
+    }
+
+    private void delete(final List<Path> obsolete) throws IOException {
+        for (Path path : obsolete) {
+            FileUtils.deleteDirectory(path.toFile());
+        }
+    }
+
+    private Path getSources(final Run<?, ?> build) {
+        return build.getRootDir().toPath().resolve(SOURCES);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<Run<?, ?>> createBuilds(final int count) throws IOException {
+        Job job = mock(Job.class);
+        when(job.getRootDir()).thenReturn(folder.toFile());
+
+        List<Run<?, ?>> builds = new ArrayList<>();
+        Run previous = null;
+        for (int number = 1; number <= count; number++) {
+            Run build = createBuild(number, previous);
+            when(build.getParent()).thenReturn(job);
+            builds.add(build);
+            previous = build;
+        }
+        return builds;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Run createBuild(final int number, final Run<?, ?> previous) throws IOException {
+        Path buildDir = Files.createDirectories(folder.resolve("builds").resolve(String.valueOf(number)));
+        Files.write(Files.createDirectories(buildDir.resolve(SOURCES)).resolve("Main.java"), new byte[1]);
+
+        Run build = mock(Run.class);
+        when(build.getNumber()).thenReturn(number);
+        when(build.getRootDir()).thenReturn(buildDir.toFile());
+        when(build.getPreviousBuild()).thenReturn(previous);
+        when(build.getDisplayName()).thenReturn("#" + number);
+        when(build.getTimeInMillis()).thenReturn(System.currentTimeMillis());
+        if (previous != null) {
+            Job job = previous.getParent();
+            when(build.getParent()).thenReturn(job);
+        }
+        return build;
+    }
+}
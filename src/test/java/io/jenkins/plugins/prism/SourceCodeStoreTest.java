@@ -0,0 +1,165 @@
+package io.jenkins.plugins.prism;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.hm.hafner.util.FilteredLog;
+
+import static hudson.Functions.*;
+import static org.assertj.core.api.Assertions.*;
+import static org.assertj.core.api.Assumptions.*;
+
+/**
+ * Tests the class {@link SourceCodeStore}.
+ *
+ * @author Ullrich Hafner
+ */
+class SourceCodeStoreTest {
+    private static final String CONTENT = "public class Main {}";
+
+    @TempDir
+    private Path folder;
+
+    @Test
+    void shouldStoreIdenticalContentOnlyOnce() throws IOException {
+        assumeThat(isWindows()).isFalse();
+
+        SourceCodeStore store = new SourceCodeStore(folder.resolve("store"));
+        Path first = folder.resolve("build-1/sources/Main.java");
+        Path second = folder.resolve("build-2/sources/Main.java");
+
+        Path stored = store.store(asStream(CONTENT), first);
+        assertThat(store.store(asStream(CONTENT), second)).isEqualTo(stored);
+
+        assertThat(first).hasContent(CONTENT);
+        assertThat(second).hasContent(CONTENT);
+        assertThat(stored).hasContent(CONTENT);
+        assertThat(stored.getFileName().toString()).hasSize(62);
+        assertThat(stored.getParent().getFileName().toString()).hasSize(2);
+        assertThat(store.getStoredCount()).isEqualTo(1);
+        assertThat(store.getDeduplicatedCount()).isEqualTo(1);
+        assertThat(store.getCopiedCount()).isZero();
+        assertThat(Files.isSameFile(first, second)).isTrue();
+        assertThat(Files.getAttribute(stored, "unix:nlink")).isEqualTo(3);
+
+        Path changed = store.store(asStream(CONTENT + "\n"), folder.resolve("build-3/sources/Main.java"));
+        assertThat(changed).isNotEqualTo(stored);
+        assertThat(store.getStoredCount()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldReplaceExistingFileInBuild() throws IOException {
+        SourceCodeStore store = new SourceCodeStore(folder.resolve("store"));
+        Path source = Files.write(folder.resolve("Main.java"), CONTENT.getBytes(StandardCharsets.UTF_8));
+        Path target = Files.write(folder.resolve("Copy.java"), "old".getBytes(StandardCharsets.UTF_8));
+
+        store.store(source, target);
+
+        assertThat(target).hasContent(CONTENT);
+        assertThat(source).hasContent(CONTENT);
+    }
+
+    @Test
+    void shouldPruneUnreferencedFiles() throws IOException {
+        assumeThat(isWindows()).isFalse();
+
+        SourceCodeStore store = new SourceCodeStore(folder.resolve("store"));
+        Path first = folder.resolve("build-1/Main.java");
+        Path second = folder.resolve("build-2/Main.java");
+        Path other = folder.resolve("build-1/Other.java");
+        Path stored = store.store(asStream(CONTENT), first);
+        store.store(asStream(CONTENT), second);
+        Path otherStored = store.store(asStream("other"), other);
+
+        FilteredLog log = new FilteredLog("Errors");
+        assertThat(store.prune(log)).isZero();
+
+        Files.delete(first);
+        Files.delete(other);
+        assertThat(store.prune(log)).isEqualTo(1);
+        assertThat(stored).exists();
+        assertThat(otherStored).doesNotExist();
+        assertThat(otherStored.getParent()).doesNotExist();
+
+        Files.delete(second);
+        assertThat(store.prune(log)).isEqualTo(1);
+        assertThat(stored).doesNotExist();
+        assertThat(log.getInfoMessages()).contains("Removed 1 unreferenced source code files from the store");
+        assertThat(log.getErrorMessages()).isEmpty();
+    }
+
+    @Test
+    void shouldPruneAtMostOncePerInterval() throws IOException {
+        assumeThat(isWindows()).isFalse();
+
+        Path directory = folder.resolve("store");
+        Path build = folder.resolve("build-1/Main.java");
+        Path stored = new SourceCodeStore(directory).store(asStream(CONTENT), build);
+        Files.delete(build);
+
+        FilteredLog log = new FilteredLog("Errors");
+        assertThat(new SourceCodeStore(directory).pruneIfDue(log)).isEqualTo(1);
+        assertThat(stored).doesNotExist();
+
+        Path other = new SourceCodeStore(directory).store(asStream("other"), build);
+        Files.delete(build);
+        assertThat(new SourceCodeStore(directory).pruneIfDue(log)).isZero();
+        assertThat(other).exists();
+        assertThat(new SourceCodeStore(directory, 0).pruneIfDue(log)).isEqualTo(1);
+        assertThat(other).doesNotExist();
+    }
+
+    @Test
+    void shouldStoreContentAgainIfStoredFileHasBeenPruned() throws IOException {
+        assumeThat(isWindows()).isFalse();
+
+        SourceCodeStore store = new SourceCodeStore(folder.resolve("store"));
+        Path first = folder.resolve("build-1/Main.java");
+        Path stored = store.store(asStream(CONTENT), first);
+        Files.delete(first);
+        assertThat(store.prune(new FilteredLog("Errors"))).isEqualTo(1);
+
+        Path second = folder.resolve("build-2/Main.java");
+        assertThat(store.store(asStream(CONTENT), second)).isEqualTo(stored);
+        assertThat(stored).hasContent(CONTENT);
+        assertThat(second).hasContent(CONTENT);
+        assertThat(Files.isSameFile(stored, second)).isTrue();
+        assertThat(Files.getAttribute(stored, "unix:nlink")).isEqualTo(2);
+    }
+
+    @Test
+    void shouldCopyFilesIfFileSystemProvidesNoLinkCounts() throws IOException {
+        Path storeDirectory = folder.resolve("store");
+        SourceCodeStore store = new SourceCodeStore(storeDirectory, 0, () -> false);
+        Path first = folder.resolve("build-1/sources/Main.java");
+        Path second = folder.resolve("build-2/sources/Main.java");
+
+        assertThat(store.isEnabled()).isFalse();
+        assertThat(store.store(asStream(CONTENT), first)).isEqualTo(first);
+        assertThat(store.link(RenderedSourceCache.digestOf(CONTENT), second)).isFalse();
+        assertThat(store.store(asStream(CONTENT), second)).isEqualTo(second);
+
+        assertThat(first).hasContent(CONTENT);
+        assertThat(second).hasContent(CONTENT);
+        assertThat(storeDirectory).doesNotExist();
+        assertThat(store.getStoredCount()).isZero();
+        assertThat(store.getDeduplicatedCount()).isZero();
+        assertThat(store.getCopiedCount()).isEqualTo(2);
+        assertThat(store.prune(new FilteredLog("Errors"))).isZero();
+    }
+
+    @Test
+    void shouldIgnoreMissingStore() {
+        assertThat(new SourceCodeStore(folder.resolve("missing")).prune(new FilteredLog("Errors"))).isZero();
+    }
+
+    private ByteArrayInputStream asStream(final String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,97 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.SAXException;
+
+import com.gargoylesoftware.htmlunit.html.DomElement;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+import org.jvnet.hudson.test.JenkinsRule.WebClient;
+import hudson.model.Action;
+import hudson.model.Run;
+
+import io.jenkins.plugins.prism.Marker.MarkerBuilder;
+import io.jenkins.plugins.util.IntegrationTestWithJenkinsPerTest;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Renders the source code view {@code index.jelly} of {@link SourceCodeViewModel} in Jenkins.
+ *
+ * @author Ullrich Hafner
+ */
+class SourceCodeViewModelITest extends IntegrationTestWithJenkinsPerTest {
+    private static final String JAVA = "package a;\n\npublic class Main {\n    int value;\n}\n";
+
+    @Test
+    void shouldRenderSourceCodeOfReaderFactory() throws Exception {
+        Run<?, ?> build = buildSuccessfully(createFreeStyleProject());
+        build.addAction(new SourceCodeAction(new SourceCodeViewModel(build, "Main.java",
+                () -> new StringReader(JAVA), createMarker())));
+
+        assertThatSourceCodeIsRendered(openView(build));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void shouldRenderSourceCodeOfReader() throws Exception {
+        Run<?, ?> build = buildSuccessfully(createFreeStyleProject());
+        build.addAction(new SourceCodeAction(new SourceCodeViewModel(build, "Main.java",
+                new StringReader(JAVA), createMarker())));
+
+        assertThatSourceCodeIsRendered(openView(build));
+    }
+
+    private Marker createMarker() {
+        return new MarkerBuilder().withLineStart(4).withLineEnd(4).withTitle("Marked line").build();
+    }
+
+    private HtmlPage openView(final Run<?, ?> build) throws IOException, SAXException {
+        WebClient webClient = getJenkins().createWebClient();
+        webClient.setJavaScriptEnabled(false);
+        return webClient.getPage(build, SourceCodeAction.URL + "/model/");
+    }
+
+    private void assertThatSourceCodeIsRendered(final HtmlPage page) {
+        assertThat(page.getElementsByTagName("pre")).isNotEmpty();
+        assertThat(page.getElementsByTagName("code")).isNotEmpty()
+                .extracting(DomElement::getTextContent)
+                .anySatisfy(code -> assertThat(code).contains("public class Main").contains("int value;"));
+        assertThat(page.asXml()).contains("Marked line");
+    }
+
+    /**
+     * Shows a source code view in a build.
+     */
+    public static class SourceCodeAction implements Action {
+        static final String URL = "source-code";
+
+        private final SourceCodeViewModel model;
+
+        SourceCodeAction(final SourceCodeViewModel model) {
+            this.model = model;
+        }
+
+        public SourceCodeViewModel getModel() {
+            return model;
+        }
+
+        @Override
+        public String getIconFileName() {
+            return null;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Source Code";
+        }
+
+        @Override
+        public String getUrlName() {
+            return URL;
+        }
+    }
+}
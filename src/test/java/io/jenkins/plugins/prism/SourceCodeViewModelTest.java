@@ -0,0 +1,340 @@
+package io.jenkins.plugins.prism;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import hudson.model.Run;
+
+import io.jenkins.plugins.prism.Marker.MarkerBuilder;
+import io.jenkins.plugins.prism.RenderAdmission.Permit;
+import io.jenkins.plugins.util.GlobalConfigurationFacade;
+import io.jenkins.plugins.util.JenkinsFacade;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the class {@link SourceCodeViewModel}.
+ *
+ * @author Ullrich Hafner
+ */
+class SourceCodeViewModelTest {
+    private static final String FILE_NAME = "Main.java";
+    private static final String SOURCE_CODE = "public class Main {\n    int value;\n}\n";
+    private static final String DIGEST = "1234";
+    private static final long WAIT_MILLIS = 10_000;
+
+    @TempDir
+    private Path buildDirectory;
+
+    private PrismConfiguration configuration;
+    private RenderedSourceCache cache;
+    private RenderAdmission admission;
+    private RenderCoalescer coalescer;
+    private Path sourceFile;
+
+    @BeforeEach
+    void createConfiguration() throws IOException {
+        configuration = new PrismConfiguration(mock(GlobalConfigurationFacade.class), mock(JenkinsFacade.class));
+        configuration.setContextLines(0);
+        configuration.setServerSideHighlighting(false);
+        cache = new RenderedSourceCache(() -> 0, () -> false);
+        admission = new RenderAdmission(() -> 1, () -> 0, 0);
+        coalescer = new RenderCoalescer(WAIT_MILLIS);
+        sourceFile = Files.write(buildDirectory.resolve(FILE_NAME), SOURCE_CODE.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shouldRenderLines() throws Exception {
+        SourceCodeViewModel model = createModel(new SourceCodeFile(sourceFile, StandardCharsets.UTF_8));
+        StringWriter body = new StringWriter();
+        StaplerResponse response = createResponse(body);
+
+        serve(model.doLines(2, 2), mock(StaplerRequest.class), response);
+
+        assertThat(body.toString()).contains("int value;").doesNotContain("public class Main");
+        verify(response).setContentType("text/html;charset=UTF-8");
+        verify(response).setHeader(eq("ETag"), anyString());
+        assertThat(admission.getActiveCount()).isZero();
+        assertThat(admission.getAdmittedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldCreateEntityTagOfFileWithoutReadingContent() throws Exception {
+        SourceCodeViewModel model = createModel(new SourceCodeFile(sourceFile, StandardCharsets.UTF_8));
+        String entityTag = requestLinesEntityTag(model);
+
+        StaplerRequest request = mock(StaplerRequest.class);
+        when(request.getHeader("If-None-Match")).thenReturn(entityTag);
+        StaplerResponse response = createResponse(new StringWriter());
+
+        serve(model.doLines(1, 3), request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        assertThat(admission.getAdmittedCount()).isEqualTo(1);
+
+        Files.write(sourceFile, (SOURCE_CODE + "\n").getBytes(StandardCharsets.UTF_8));
+        assertThat(requestLinesEntityTag(model)).isNotEqualTo(entityTag);
+    }
+
+    @Test
+    void shouldAnswerLinesWithNotModified() throws Exception {
+        SourceCodeViewModel model = createModel(new SourceCodeFile(sourceFile, StandardCharsets.UTF_8, DIGEST));
+        String entityTag = requestLinesEntityTag(model);
+
+        StaplerRequest request = mock(StaplerRequest.class);
+        when(request.getHeader("If-None-Match")).thenReturn(entityTag);
+        StringWriter body = new StringWriter();
+        StaplerResponse response = createResponse(body);
+
+        serve(model.doLines(1, 3), request, response);
+
+        assertThat(body.toString()).isEmpty();
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        assertThat(admission.getAdmittedCount()).isEqualTo(1);
+    }
+
+    private String requestLinesEntityTag(final SourceCodeViewModel model) throws Exception {
+        StaplerResponse response = createResponse(new StringWriter());
+        serve(model.doLines(1, 3), mock(StaplerRequest.class), response);
+
+        return captureEntityTag(response);
+    }
+
+    @Test
+    void shouldRejectLinesIfBusy() throws Exception {
+        SourceCodeViewModel model = createModel(new SourceCodeFile(sourceFile, StandardCharsets.UTF_8, DIGEST));
+        StaplerResponse response = createResponse(new StringWriter());
+
+        try (Permit permit = admission.acquire(0)) {
+            assertThat(permit).isNotNull();
+
+            serve(model.doLines(1, 3), mock(StaplerRequest.class), response);
+        }
+
+        verify(response).setHeader("Retry-After", "5");
+        verify(response).sendError(eq(HttpServletResponse.SC_SERVICE_UNAVAILABLE), anyString());
+        verify(response, never()).setHeader(eq("ETag"), anyString());
+        assertThat(admission.getRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldForwardToViewWithPermit() throws Exception {
+        SourceCodeViewModel model = createModel(new SourceCodeFile(sourceFile, StandardCharsets.UTF_8, DIGEST));
+        StaplerRequest request = mock(StaplerRequest.class);
+        AtomicInteger activeRenders = new AtomicInteger(-1);
+        stubView(model, request, () -> activeRenders.set(admission.getActiveCount()));
+        StaplerResponse response = createResponse(new StringWriter());
+
+        model.doIndex(request, response);
+
+        assertThat(activeRenders).hasValue(1);
+        assertThat(admission.getActiveCount()).isZero();
+        verify(request).setAttribute(eq(SourceCodeViewModel.PERMIT_ATTRIBUTE), any(Permit.class));
+        verify(response).setHeader(eq("ETag"), anyString());
+    }
+
+    @Test
+    void shouldAnswerViewWithNotModified() throws Exception {
+        SourceCodeViewModel model = createModel(new SourceCodeFile(sourceFile, StandardCharsets.UTF_8, DIGEST));
+        StaplerRequest request = mock(StaplerRequest.class);
+        RequestDispatcher view = stubView(model, request, () -> { });
+        StaplerResponse response = createResponse(new StringWriter());
+        model.doIndex(request, response);
+        String entityTag = captureEntityTag(response);
+
+        StaplerRequest conditional = mock(StaplerRequest.class);
+        when(conditional.getHeader("If-None-Match")).thenReturn(entityTag);
+        StaplerResponse notModified = createResponse(new StringWriter());
+
+        model.doIndex(conditional, notModified);
+
+        verify(notModified).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(conditional, never()).getView(any(Object.class), anyString());
+        verify(view).forward(request, response);
+        assertThat(admission.getAdmittedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRejectViewIfBusy() throws Exception {
+        SourceCodeViewModel model = createModel(new SourceCodeFile(sourceFile, StandardCharsets.UTF_8, DIGEST));
+        StaplerRequest request = mock(StaplerRequest.class);
+        RequestDispatcher view = stubView(model, request, () -> { });
+        StaplerResponse response = createResponse(new StringWriter());
+
+        try (Permit permit = admission.acquire(0)) {
+            assertThat(permit).isNotNull();
+
+            model.doIndex(request, response);
+        }
+
+        verify(response).setHeader("Retry-After", "5");
+        verify(response).sendError(eq(HttpServletResponse.SC_SERVICE_UNAVAILABLE), anyString());
+        verify(view, never()).forward(any(), any());
+    }
+
+    @Test
+    void shouldForwardCachedViewWithoutPermit() throws Exception {
+        cache = new RenderedSourceCache(() -> 1024 * 1024, () -> false);
+        SourceCodeViewModel model = createModel(new SourceCodeFile(sourceFile, StandardCharsets.UTF_8, DIGEST));
+        assertThat(model.getSourceCode()).contains("public class Main");
+        assertThat(cache.getEntryCount()).isEqualTo(1);
+
+        StaplerRequest request = mock(StaplerRequest.class);
+        RequestDispatcher view = stubView(model, request, () -> { });
+        StaplerResponse response = createResponse(new StringWriter());
+
+        try (Permit permit = admission.acquire(0)) {
+            assertThat(permit).isNotNull();
+
+            model.doIndex(request, response);
+        }
+
+        verify(view).forward(request, response);
+        verify(request, never()).setAttribute(anyString(), any());
+        verify(response).setHeader(eq("ETag"), anyString());
+        assertThat(admission.getRejectedCount()).isZero();
+    }
+
+    @Test
+    void shouldForwardCoalescedViewWithoutPermit() throws Exception {
+        CountDownLatch isRendering = new CountDownLatch(1);
+        CountDownLatch isReleased = new CountDownLatch(1);
+        SourceCodeFile blockingFile = new SourceCodeFile(sourceFile, StandardCharsets.UTF_8, DIGEST) {
+            @Override
+            public SourceLines openLines(final int line, final Path directory) throws IOException {
+                isRendering.countDown();
+                try {
+                    isReleased.await(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.openLines(line, directory);
+            }
+        };
+        admission = new RenderAdmission(() -> 2, () -> 0, 0);
+        SourceCodeViewModel model = createModel(blockingFile);
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(model::getSourceCode);
+        assertThat(isRendering.await(WAIT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+
+        StaplerRequest request = mock(StaplerRequest.class);
+        RequestDispatcher view = stubView(model, request, () -> { });
+        StaplerResponse response = createResponse(new StringWriter());
+
+        model.doIndex(request, response);
+
+        verify(view).forward(request, response);
+        verify(request, never()).setAttribute(anyString(), any());
+        assertThat(admission.getAdmittedCount()).isEqualTo(1);
+
+        isReleased.countDown();
+        assertThat(leader.get(WAIT_MILLIS, TimeUnit.MILLISECONDS)).contains("public class Main");
+        assertThat(coalescer.getRenderCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldSendRawContentOfFile() throws Exception {
+        SourceCodeViewModel model = createModel(new SourceCodeFile(sourceFile, StandardCharsets.UTF_8));
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        StaplerResponse response = createResponse(new StringWriter());
+        when(response.getOutputStream()).thenReturn(createOutputStream(body));
+
+        serve(model.doRaw(), mock(StaplerRequest.class), response);
+
+        assertThat(body.toString("UTF-8")).isEqualTo(SOURCE_CODE);
+        verify(response).setContentType("text/plain;charset=UTF-8");
+    }
+
+    @Test
+    void shouldNotSendRawContentOfOtherSources() throws Exception {
+        SourceCodeViewModel model = createModel(() -> new StringReader(SOURCE_CODE));
+        StaplerResponse response = createResponse(new StringWriter());
+
+        serve(model.doRaw(), mock(StaplerRequest.class), response);
+
+        verify(response).sendError(HttpServletResponse.SC_NOT_FOUND);
+        verify(response, never()).getOutputStream();
+    }
+
+    private SourceCodeViewModel createModel(final SourceCodeReaderFactory readerFactory) {
+        Run<?, ?> owner = mock(Run.class);
+        when(owner.getRootDir()).thenReturn(buildDirectory.toFile());
+        Marker marker = new MarkerBuilder().withLineStart(2).withLineEnd(2).withTitle("Marked line").build();
+
+        return new SourceCodeViewModel(owner, FILE_NAME, readerFactory, MarkerSet.copyOf(Collections.singleton(marker)),
+                LineDecorations.NONE, true, () -> configuration, cache, admission, coalescer);
+    }
+
+    private RequestDispatcher stubView(final SourceCodeViewModel model, final StaplerRequest request,
+            final Runnable renderer) throws Exception {
+        RequestDispatcher view = mock(RequestDispatcher.class);
+        doAnswer(invocation -> {
+            renderer.run();
+            return null;
+        }).when(view).forward(any(), any());
+        when(request.getView(model, "index.jelly")).thenReturn(view);
+        return view;
+    }
+
+    private void serve(final HttpResponse httpResponse, final StaplerRequest request,
+            final StaplerResponse response) throws Exception {
+        httpResponse.generateResponse(request, response, null);
+    }
+
+    private StaplerResponse createResponse(final StringWriter body) throws IOException {
+        StaplerResponse response = mock(StaplerResponse.class);
+        when(response.getWriter()).thenReturn(new PrintWriter(body, true));
+        return response;
+    }
+
+    private String captureEntityTag(final StaplerResponse response) {
+        ArgumentCaptor<String> entityTag = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), entityTag.capture());
+        return entityTag.getValue();
+    }
+
+    private ServletOutputStream createOutputStream(final ByteArrayOutputStream body) {
+        return new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(final WriteListener writeListener) {
+                // not required
+            }
+
+            @Override
+            public void write(final int b) {
+                body.write(b);
+            }
+        };
+    }
+}
@@ -0,0 +1,119 @@
+package io.jenkins.plugins.prism;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.jenkins.plugins.prism.SourceManifest.Entry;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link SourceManifest}.
+ *
+ * @author Ullrich Hafner
+ */
+class SourceManifestTest {
+    private static final String JAVA = "package a;\r\n\r\npublic class Main {\n}\n";
+    private static final String TEXT = "Grüße\rnach München";
+
+    @TempDir
+    private Path folder;
+
+    @Test
+    void shouldWriteAndReadManifest() throws IOException {
+        Path file = Files.write(folder.resolve("Main.java"), JAVA.getBytes(StandardCharsets.UTF_8));
+
+        SourceManifest manifest = new SourceManifest();
+        Entry java = manifest.add("src/a/Main.java", file, StandardCharsets.UTF_8);
+        manifest.add("Text.txt", new ByteArrayInputStream(TEXT.getBytes(StandardCharsets.ISO_8859_1)),
+                StandardCharsets.ISO_8859_1);
+        manifest.add("utf16.txt", new ByteArrayInputStream(TEXT.getBytes(StandardCharsets.UTF_16)),
+                StandardCharsets.UTF_16);
+
+        assertThat(java.getSize()).isEqualTo(JAVA.length());
+        assertThat(java.getDigest()).isEqualTo(RenderedSourceCache.toHex(
+                RenderedSourceCache.createDigest().digest(JAVA.getBytes(StandardCharsets.UTF_8))));
+        assertThat(java.getLineCount()).isEqualTo(4);
+        assertThat(java.getLanguage()).isEqualTo("language-java");
+
+        Path written = SourceManifest.resolve(folder, "sources");
+        assertThat(written.getFileName().toString()).isEqualTo("sources.prism-manifest");
+        manifest.write(written);
+
+        SourceManifest read = SourceManifest.read(written);
+        assertThat(read.getEntries()).extracting(Entry::getPath)
+                .containsExactly("src/a/Main.java", "Text.txt", "utf16.txt");
+        assertThat(read.getTotalSize()).isEqualTo(manifest.getTotalSize()).isEqualTo(JAVA.length()
+                + TEXT.getBytes(StandardCharsets.ISO_8859_1).length + TEXT.getBytes(StandardCharsets.UTF_16).length);
+
+        assertThat(read.find("src/a/Main.java")).hasValueSatisfying(entry -> {
+            assertThat(entry.getSize()).isEqualTo(java.getSize());
+            assertThat(entry.getDigest()).isEqualTo(java.getDigest());
+            assertThat(entry.getLineCount()).isEqualTo(4);
+            assertThat(entry.getCharset()).isEqualTo(StandardCharsets.UTF_8);
+            assertThat(entry.getLanguage()).isEqualTo("language-java");
+        });
+        assertThat(read.find("Text.txt")).hasValueSatisfying(entry -> {
+            assertThat(entry.getLineCount()).isEqualTo(2);
+            assertThat(entry.getCharset()).isEqualTo(StandardCharsets.ISO_8859_1);
+            assertThat(entry.getLanguage()).isEqualTo("language-clike");
+        });
+        assertThat(read.find("utf16.txt")).hasValueSatisfying(
+                entry -> assertThat(entry.getLineCount()).isEqualTo(SourceArchiveWriter.UNKNOWN_LINES));
+        assertThat(read.find("missing.txt")).isEmpty();
+    }
+
+    @Test
+    void shouldCreateSourceCodeFileWithDigest() throws IOException {
+        Path sources = Files.createDirectories(folder.resolve("sources"));
+        Path file = Files.write(sources.resolve("Main.java"), JAVA.getBytes(StandardCharsets.UTF_8));
+
+        Entry entry = new SourceManifest().add("Main.java", file, StandardCharsets.UTF_8);
+        SourceCodeFile sourceCodeFile = entry.createFile(sources);
+
+        assertThat(sourceCodeFile.getFile()).isEqualTo(file);
+        assertThat(sourceCodeFile.getCharset()).isEqualTo(StandardCharsets.UTF_8);
+        assertThat(sourceCodeFile.getDigest()).contains(entry.getDigest());
+        assertThat(new SourceCodeFile(file, StandardCharsets.UTF_8).getDigest()).isEmpty();
+    }
+
+    @Test
+    void shouldUseManifestToComputeSizeOfBuild() throws IOException {
+        Path sources = Files.createDirectories(folder.resolve("sources"));
+        Files.write(sources.resolve("Main.java"), new byte[100]);
+        assertThat(SourceCodeSizes.computeSize(folder, "sources")).isEqualTo(100);
+
+        SourceManifest manifest = new SourceManifest();
+        manifest.add("Main.java", new ByteArrayInputStream(new byte[42]), StandardCharsets.UTF_8);
+        manifest.write(SourceManifest.resolve(folder, "sources"));
+
+        assertThat(SourceCodeSizes.computeSize(folder, "sources")).isEqualTo(42);
+    }
+
+    @Test
+    void shouldRejectInvalidManifests() throws IOException {
+        Path manifest = SourceManifest.resolve(folder, "sources");
+
+        Files.write(manifest, "something else\n".getBytes(StandardCharsets.UTF_8));
+        assertThatIOException().isThrownBy(() -> SourceManifest.read(manifest))
+                .withMessageContaining("not a source code manifest");
+
+        Files.write(manifest, "# prism source manifest 1\nMain.java\t12\n".getBytes(StandardCharsets.UTF_8));
+        assertThatIOException().isThrownBy(() -> SourceManifest.read(manifest))
+                .withMessageContaining("Invalid entry");
+
+        Files.write(manifest, "# prism source manifest 1\nMain.java\tabc\tdigest\t1\tUTF-8\tlanguage-java\n"
+                .getBytes(StandardCharsets.UTF_8));
+        assertThatIOException().isThrownBy(() -> SourceManifest.read(manifest))
+                .withMessageContaining("Invalid entry");
+
+        assertThatIllegalArgumentException().isThrownBy(() -> new SourceManifest().add("a\tb",
+                new ByteArrayInputStream(new byte[0]), StandardCharsets.UTF_8));
+    }
+}
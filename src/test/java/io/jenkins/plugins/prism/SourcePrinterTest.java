@@ -1,15 +1,23 @@
 package io.jenkins.plugins.prism;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
-import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
 import edu.hm.hafner.util.ResourceTest;
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import io.jenkins.plugins.prism.Marker.MarkerBuilder;
+import io.jenkins.plugins.prism.MarkerSet.MarkerSetBuilder;
 import io.jenkins.plugins.util.JenkinsFacade;
 
 import static org.assertj.core.api.Assertions.*;
@@ -221,111 +229,216 @@ class SourcePrinterTest extends ResourceTest {
         assertThat(pre.text()).isEqualToIgnoringWhitespace(expectedFile);
     }
 
+    @Test
+    void shouldStreamSourceCodeToWriter() throws IOException {
+        MarkerBuilder builder = new MarkerBuilder();
+        Marker issue = builder.withLineStart(5).withColumnStart(11).withColumnEnd(25).withTitle(MESSAGE).build();
+
+        SourcePrinter printer = new SourcePrinter(createJenkinsFacade());
+
+        StringWriter writer = new StringWriter();
+        printer.render(FILE_NAME, asStream("format-cpp.txt"), issue, writer);
+
+        assertThat(writer.toString()).isEqualTo(printer.render(FILE_NAME, asStream("format-cpp.txt"), issue));
+    }
+
+    @Test
+    void shouldRenderLargeFilesInSeveralChunks() {
+        List<String> lines = IntStream.rangeClosed(1, 10_000)
+                .mapToObj(line -> "Line " + line + ": <b>bold</b> & 'text'")
+                .collect(Collectors.toList());
+        MarkerBuilder builder = new MarkerBuilder();
+        Marker issue = builder.withLineStart(5000).withLineEnd(5001).build();
+
+        SourcePrinter printer = new SourcePrinter();
+
+        Document document = Jsoup.parse(printer.render(FILE_NAME, lines.stream(), issue));
+
+        Elements code = document.getElementsByTag("code");
+        assertThat(code).hasSize(3);
+        assertThat(code.get(0).wholeText())
+                .startsWith("Line 1: <b>bold</b> & 'text'\n")
+                .endsWith("Line 4999: <b>bold</b> & 'text'\n");
+        assertThat(code.get(1).wholeText())
+                .isEqualTo("Line 5000: <b>bold</b> & 'text'\nLine 5001: <b>bold</b> & 'text'\n");
+        assertThat(code.get(2).wholeText())
+                .startsWith("Line 5002: <b>bold</b> & 'text'\n")
+                .endsWith("Line 10000: <b>bold</b> & 'text'\n");
+    }
+
+    @Test
+    void shouldRenderWindowAroundMarker() {
+        MarkerBuilder builder = new MarkerBuilder();
+        Marker issue = builder.withLineStart(5000).withLineEnd(5001).withTitle(MESSAGE).build();
+
+        SourcePrinter printer = new SourcePrinter();
+
+        StringWriter writer = new StringWriter();
+        Stream<String> infiniteLines = Stream.iterate(1, line -> line + 1).map(line -> "Line " + line);
+        assertThatNoException().isThrownBy(() -> printer.render(FILE_NAME, infiniteLines, issue, 2, writer));
+
+        Document document = Jsoup.parse(writer.toString());
+
+        Elements pre = document.getElementsByTag("pre");
+        assertThat(pre.attr("data-start")).isEqualTo("4998");
+        assertThat(pre.attr("data-end")).isEqualTo("5003");
+
+        Elements code = document.getElementsByTag("code");
+        assertThat(code).hasSize(3);
+        assertThat(code.get(0).wholeText()).isEqualTo("Line 4998\nLine 4999\n");
+        assertThat(code.get(1).wholeText()).isEqualTo("Line 5000\nLine 5001\n");
+        assertThat(code.get(2).wholeText()).isEqualTo("Line 5002\nLine 5003\n");
+        assertThat(document.getElementsByClass("analysis-warning-title").text()).isEqualTo(MESSAGE);
+    }
+
+    @Test
+    void shouldStartWindowAtFirstLine() {
+        MarkerBuilder builder = new MarkerBuilder();
+        Marker issue = builder.withLineStart(2).build();
+
+        SourcePrinter printer = new SourcePrinter();
+
+        StringWriter writer = new StringWriter();
+        assertThatNoException().isThrownBy(
+                () -> printer.render(FILE_NAME, asStream("format-cpp.txt"), issue, 10, writer));
+
+        Document document = Jsoup.parse(writer.toString());
+        assertThat(document.getElementsByTag("pre").attr("data-start")).isEqualTo("1");
+        assertThatCodeIsEqualToSourceText(document, "format-cpp.txt");
+    }
+
+    @Test
+    void shouldRenderRangeOfLines() {
+        SourcePrinter printer = new SourcePrinter();
+
+        assertThat(renderLines(printer, 3, 4)).isEqualTo(
+                "<code class=\"language-clike line-numbers match-braces\">int main(int argc, char**argv) {\n\n</code>");
+        assertThat(renderLines(printer, 8, 100)).isEqualTo(
+                "<code class=\"language-clike line-numbers match-braces\">  return 0;\n}\n</code>");
+        assertThat(renderLines(printer, 10, 100)).isEmpty();
+        assertThat(renderLines(printer, 4, 3)).isEmpty();
+    }
+
+    @Test
+    void shouldRenderSeveralMarkersInOnePass() {
+        MarkerBuilder builder = new MarkerBuilder();
+        List<Marker> markers = Arrays.asList(
+                builder.withLineStart(10).withLineEnd(10).withTitle("Author").build(),
+                builder.withLineStart(3).withLineEnd(3).withColumnStart(8).withColumnEnd(10)
+                        .withTitle("Import").build(),
+                builder.withLineStart(8).withLineEnd(9).withColumnStart(0).withColumnEnd(0)
+                        .withTitle("Comment").build(),
+                builder.withLineStart(7).withLineEnd(8).withTitle("Overlapping").build());
+
+        SourcePrinter printer = new SourcePrinter();
+
+        StringWriter writer = new StringWriter();
+        assertThatNoException().isThrownBy(
+                () -> printer.render(FILE_NAME, asStream("format-java.txt"), markers, writer));
+
+        Document document = Jsoup.parse(writer.toString());
+        assertThatCodeIsEqualToSourceText(document);
+
+        Elements highlighted = document.select("code.highlight");
+        assertThat(highlighted).hasSize(3);
+        assertThat(highlighted.get(0).wholeText()).isEqualTo("import org.apache.commons.lang3.StringUtils;\n");
+        assertThat(highlighted.get(1).wholeText()).startsWith("/**\n").endsWith(" *\n");
+        assertThat(highlighted.get(2).wholeText()).isEqualTo(" * @author Ullrich Hafner\n");
+        assertThat(document.getElementsByClass("code-mark").text()).isEqualTo("org");
+
+        assertThat(document.getElementsByClass("analysis-warning-title").eachText())
+                .containsExactly("Import", "Overlapping", "Comment", "Author");
+        assertThat(document.select(".analysis-markers a").eachAttr("href"))
+                .containsExactly("#prism-marker-0", "#prism-marker-1", "#prism-marker-2", "#prism-marker-3");
+        assertThat(document.select(".analysis-markers a").eachText())
+                .containsExactly("3Import", "7Overlapping", "8Comment", "10Author");
+        assertThat(document.getElementById("prism-marker-3")).isNotNull()
+                .extracting(Element::text).isEqualTo("Author");
+    }
+
+    @Test
+    void shouldDecorateLines() {
+        LineDecorations decorations = new LineDecorations(new byte[] {1, 0, 2, 0, 3, 1},
+                "covered", "partial", "missed");
+        Marker issue = new MarkerBuilder().withLineStart(5).withColumnStart(3).withColumnEnd(5).build();
+
+        SourcePrinter printer = new SourcePrinter();
+
+        StringWriter writer = new StringWriter();
+        assertThatNoException().isThrownBy(
+                () -> printer.render(FILE_NAME, asStream("format-cpp.txt"), issue, decorations, 0, writer));
+
+        Document document = Jsoup.parse(writer.toString());
+        assertThatCodeIsEqualToSourceText(document, "format-cpp.txt");
+        assertThat(document.select("span.covered")).hasSize(2);
+        assertThat(document.select("span.covered").eachText()).containsExactly("#include <iostream>");
+        assertThat(document.select("span.partial").eachText()).containsExactly("int main(int argc, char**argv) {");
+        assertThat(document.select("span.missed")).hasSize(1);
+        assertThat(document.select("span.missed > span.code-mark").text()).isEqualTo("int");
+        assertThat(document.select("code.highlight > span.missed")).hasSize(1);
+
+        StringWriter lines = new StringWriter();
+        assertThatNoException().isThrownBy(() -> printer.renderLines(FILE_NAME, asStream("format-cpp.txt"),
+                decorations, 1, 2, lines));
+        assertThat(lines.toString()).isEqualTo("<code class=\"language-clike line-numbers match-braces\">"
+                + "<span class=\"covered\">#include &lt;iostream&gt;\n</span>\n</code>");
+
+        StringWriter all = new StringWriter();
+        assertThatNoException().isThrownBy(() -> printer.render(FILE_NAME, asStream("format-cpp.txt"),
+                new MarkerSetBuilder().build(), decorations, all));
+        assertThat(Jsoup.parse(all.toString()).select("span.covered")).hasSize(2);
+        assertThat(all.toString()).doesNotContain("analysis-markers", "highlight");
+    }
+
+    @Test
+    void shouldHighlightSyntaxOnServer() {
+        Marker issue = new MarkerBuilder().withLineStart(23).withColumnStart(23).withColumnEnd(30).build();
+
+        SourcePrinter printer = new SourcePrinter(createJenkinsFacade(), true);
+
+        StringWriter writer = new StringWriter();
+        assertThatNoException().isThrownBy(
+                () -> printer.render("IntegerParser.java", asStream("format-java.txt"), issue, writer));
+
+        Document document = Jsoup.parse(writer.toString());
+        assertThatCodeIsEqualToSourceText(document, "format-java.txt");
+        assertThat(document.select("code[data-highlighted=server]")).hasSize(3);
+        assertThat(document.select("span.token.keyword").eachText()).contains("package", "import", "public", "final");
+        assertThat(document.select("span.token.comment").eachText())
+                .contains("/**", "* Parses integers from string values.", "*/");
+        assertThat(document.select("span.token.annotation").eachText()).contains("@Nullable");
+        assertThat(document.select("span.code-mark").text()).isEqualTo("parseInt");
+        assertThat(document.select("code.highlight span.token.function").eachText()).contains("parseInt");
+
+        StringWriter lines = new StringWriter();
+        assertThatNoException().isThrownBy(() -> printer.renderLines("IntegerParser.java",
+                asStream("format-java.txt"), 8, 8, lines));
+        assertThat(lines.toString()).isEqualTo(
+                "<code class=\"language-java line-numbers match-braces\" data-highlighted=\"server\">"
+                + "<span class=\"token comment\"> * Parses integers from string values.</span>\n</code>");
+
+        StringWriter plain = new StringWriter();
+        assertThatNoException().isThrownBy(
+                () -> new SourcePrinter(createJenkinsFacade(), true).render(FILE_NAME, asStream("format-java.txt"),
+                        issue, plain));
+        assertThat(plain.toString()).doesNotContain("data-highlighted", "token");
+    }
+
+    private String renderLines(final SourcePrinter printer, final int from, final int to) {
+        StringWriter writer = new StringWriter();
+        assertThatNoException().isThrownBy(
+                () -> printer.renderLines(FILE_NAME, asStream("format-cpp.txt"), from, to, writer));
+        return writer.toString();
+    }
+
+    private void assertThatCodeIsEqualToSourceText(final Document document, final String fileName) {
+        Elements code = document.getElementsByTag("code");
+        assertThat(code.text()).isEqualToIgnoringWhitespace(toString(fileName));
+    }
+
     private JenkinsFacade createJenkinsFacade() {
         JenkinsFacade jenkinsFacade = mock(JenkinsFacade.class);
         when(jenkinsFacade.getImagePath(anyString())).thenReturn("/path/to/icon");
         return jenkinsFacade;
     }
-
-    @Nested
-    @SuppressFBWarnings("SIC_INNER_SHOULD_BE_STATIC")
-    class ColumnMarkerTest {
-        @Test
-        void withColumnStartZeroThenDontMark() {
-            assertThat(new SourcePrinter.ColumnMarker("MARK")
-                    .markColumns("text that could be code", 0, 0))
-                    .contains("text that could be code");
-        }
-
-        @Test
-        void givenColumnStartAndColumnEndZeroThenMarkFromStartToLineEnd() {
-            assertThat(new SourcePrinter.ColumnMarker("MARK")
-                    .markColumns("text that could be code", 6, 0))
-                    .contains("text OpEnMARKthat could be codeClOsEMARK");
-        }
-
-        @Test
-        void givenColumnStartAndColumnEndwithColumnEndPointingToLineEndThenMarkFromStartToLineEnd() {
-            assertThat(new SourcePrinter.ColumnMarker("MARK")
-                    .markColumns("text that could be code", 6, 23))
-                    .contains("text OpEnMARKthat could be codeClOsEMARK");
-        }
-
-        @Test
-        void givenColumnStartAndColumnEndThenMarkFromColumnStartToColumnEnd() {
-            assertThat(new SourcePrinter.ColumnMarker("MARK")
-                    .markColumns("text that could be code", 6, 10))
-                    .contains("text OpEnMARKthat ClOsEMARKcould be code");
-        }
-
-        @Test
-        void givenColumnStartAndColumnEndWithDifferenceOfOneThenMarkFromColumnStartToColumnEnd() {
-            assertThat(new SourcePrinter.ColumnMarker("MARK")
-                    .markColumns("text that could be code", 6, 7))
-                    .contains("text OpEnMARKthClOsEMARKat could be code");
-        }
-
-        @Test
-        void givenColumnStartAndColumnEndWithSameValueThenMarkOneCharacter() {
-            assertThat(new SourcePrinter.ColumnMarker("MARK")
-                    .markColumns("text that could be code", 6, 6))
-                    .contains("text OpEnMARKtClOsEMARKhat could be code");
-        }
-
-        @Test
-        void givenAnEmptyTextThenMarkNothing() {
-            assertThat(new SourcePrinter.ColumnMarker("MARK")
-                    .markColumns("", 6, 6))
-                    .contains("");
-        }
-
-        @Test
-        void givenColumnStartWithValueOneThenMarkTheLineFromBegin() {
-            assertThat(new SourcePrinter.ColumnMarker("MARK")
-                    .markColumns("text that could be code", 1, 6))
-                    .contains("OpEnMARKtext tClOsEMARKhat could be code");
-        }
-
-        @Test
-        void givenColumnStartWithValueOfTheLastCharacterThenMarkTheLastCharacter() {
-            assertThat(new SourcePrinter.ColumnMarker("MARK")
-                    .markColumns("text that could be code", 23, 0))
-                    .contains("text that could be codOpEnMARKeClOsEMARK");
-        }
-
-        @Test
-        void givenColumnStartWithValueOfBehindColumnEndThenDoNotMark() {
-            assertThat(new SourcePrinter.ColumnMarker("MARK")
-                    .markColumns("text that could be code", 23, 10))
-                    .contains("text that could be code");
-        }
-
-        @Test
-        void givenColumnStartIsAfterLineEndThenDoNotMark() {
-            assertThat(new SourcePrinter.ColumnMarker("MARK")
-                    .markColumns("text that could be code", 30, 10))
-                    .contains("text that could be code");
-        }
-
-        @Test
-        void givenColumnStartIsNegativeThenDoNotMark() {
-            assertThat(new SourcePrinter.ColumnMarker("MARK")
-                    .markColumns("text that could be code", -1, 10))
-                    .contains("text that could be code");
-        }
-
-        @Test
-        void givenColumnEndIsNegativeThenDoNotMark() {
-            assertThat(new SourcePrinter.ColumnMarker("MARK")
-                    .markColumns("text that could be code", 1, -1))
-                    .contains("text that could be code");
-        }
-
-        @Test
-        void givenColumnEndIsAfterLineEndThenDoNotMark() {
-            assertThat(new SourcePrinter.ColumnMarker("MARK")
-                    .markColumns("text that could be code", 1, 24))
-                    .contains("text that could be code");
-        }
-    }
 }
@@ -0,0 +1,121 @@
+package io.jenkins.plugins.prism;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+import io.jenkins.plugins.prism.SyntaxHighlighter.GrammarBuilder;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the classes {@link SyntaxHighlighter} and {@link SyntaxGrammars}.
+ *
+ * @author Ullrich Hafner
+ */
+class SyntaxHighlighterTest {
+    @Test
+    void shouldSupportSelectedLanguages() {
+        assertThat(SyntaxHighlighter.create("language-java")).isPresent();
+        assertThat(SyntaxHighlighter.create("language-python")).isPresent();
+        assertThat(SyntaxHighlighter.create("language-markup")).isPresent();
+        assertThat(SyntaxHighlighter.create("language-yaml")).isPresent();
+        assertThat(SyntaxHighlighter.create("language-clike")).isEmpty();
+    }
+
+    @Test
+    void shouldTokenizeJava() {
+        SyntaxHighlighter highlighter = create("language-java");
+
+        assertThat(tokenize(highlighter, "public int size = 42; // \"comment\""))
+                .containsExactly("keyword:public", "keyword:int", "operator:=", "number:42", "punctuation:;",
+                        "comment:// \"comment\"");
+        assertThat(tokenize(highlighter, "String text = \"a \\\" b\";"))
+                .containsExactly("class-name:String", "operator:=", "string:\"a \\\" b\"", "punctuation:;");
+    }
+
+    @Test
+    void shouldRetainModeAcrossLines() {
+        SyntaxHighlighter highlighter = create("language-java");
+
+        assertThat(tokenize(highlighter, "int a; /* start")).endsWith("comment:/* start");
+        assertThat(tokenize(highlighter, " return 1;")).containsExactly("comment: return 1;");
+        assertThat(tokenize(highlighter, "end */ return")).containsExactly("comment:end */", "keyword:return");
+    }
+
+    @Test
+    void shouldTokenizeMarkup() {
+        SyntaxHighlighter highlighter = create("language-markup");
+
+        assertThat(tokenize(highlighter, "<a href=\"x\">text</a>")).contains("attr-name:href", "attr-value:\"x\"");
+    }
+
+    @Test
+    void shouldTokenizeYaml() {
+        SyntaxHighlighter highlighter = create("language-yaml");
+
+        assertThat(tokenize(highlighter, "key: true # comment"))
+                .contains("key atrule:key", "boolean:true", "comment:# comment");
+    }
+
+    @Test
+    void shouldTokenizeLongStringLiterals() {
+        String content = StringUtils.repeat("ab\\\"", 20_000) + StringUtils.repeat('x', 40_000);
+        String doubleQuoted = "\"" + content + "\"";
+        String singleQuoted = "'" + content.replace('"', '\'') + "'";
+
+        assertThat(tokenize(create("language-java"), doubleQuoted + ";"))
+                .containsExactly("string:" + doubleQuoted, "punctuation:;");
+        assertThat(tokenize(create("language-cpp"), doubleQuoted)).containsExactly("string:" + doubleQuoted);
+        assertThat(tokenize(create("language-javascript"), singleQuoted)).containsExactly("string:" + singleQuoted);
+        assertThat(tokenize(create("language-python"), singleQuoted)).containsExactly("string:" + singleQuoted);
+        assertThat(tokenize(create("language-yaml"), doubleQuoted)).containsExactly("string:" + doubleQuoted);
+        assertThat(tokenize(create("language-yaml"), doubleQuoted + ": value"))
+                .startsWith("key atrule:" + doubleQuoted);
+    }
+
+    @Test
+    void shouldTokenizeLongYamlLinesWithoutColon() {
+        SyntaxHighlighter highlighter = create("language-yaml");
+        String words = StringUtils.repeat("word ", 40_000);
+        String flowSequence = "[" + StringUtils.repeat("item ", 20_000) + StringUtils.repeat(", item", 20_000) + "]";
+
+        assertThat(tokenize(highlighter, words)).isEmpty();
+        assertThat(tokenize(highlighter, "- " + words)).containsExactly("punctuation:-");
+        assertThat(tokenize(highlighter, flowSequence)).hasSize(20_002)
+                .allMatch(token -> token.startsWith("punctuation:"));
+
+        assertThat(tokenize(highlighter, "  - list item : value"))
+                .containsExactly("punctuation:-", "key atrule:list item", "punctuation::");
+        assertThat(tokenize(highlighter, "{a: 1, b c: 2}")).contains("key atrule:a", "key atrule:b c");
+        assertThat(tokenize(highlighter, "text - no: key")).doesNotContain("key atrule:no");
+    }
+
+    @Test
+    void shouldRejectCapturingGroups() {
+        GrammarBuilder builder = new GrammarBuilder().token("keyword", "(if)");
+
+        assertThatIllegalArgumentException().isThrownBy(builder::build).withMessageContaining("capturing groups");
+        assertThatIllegalArgumentException().isThrownBy(new GrammarBuilder().token("a", "a", "none")::build)
+                .withMessageContaining("No such mode: none");
+    }
+
+    private SyntaxHighlighter create(final String languageClass) {
+        return SyntaxHighlighter.create(languageClass).orElseThrow(IllegalArgumentException::new);
+    }
+
+    private List<String> tokenize(final SyntaxHighlighter highlighter, final String line) {
+        LineTokens tokens = new LineTokens();
+        highlighter.tokenize(line, tokens);
+
+        List<String> types = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String tag = tokens.getOpeningTag(i);
+            String type = tag.substring("<span class=\"token ".length(), tag.length() - 2);
+            types.add(type + ":" + line.substring(tokens.getStart(i), tokens.getEnd(i)));
+        }
+        return types;
+    }
+}
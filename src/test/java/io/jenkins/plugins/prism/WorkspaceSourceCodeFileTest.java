@@ -0,0 +1,194 @@
+package io.jenkins.plugins.prism;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.hm.hafner.util.PathUtil;
+
+import hudson.FilePath;
+
+import io.jenkins.plugins.prism.WorkspaceSourceCodeFile.ReadFile;
+
+import static hudson.Functions.*;
+import static org.assertj.core.api.Assertions.*;
+import static org.assertj.core.api.Assumptions.*;
+
+/**
+ * Tests the class {@link WorkspaceSourceCodeFile}.
+ *
+ * @author Ullrich Hafner
+ */
+class WorkspaceSourceCodeFileTest {
+    private static final String JAVA = "package a;\n\npublic class Main {\n}\n";
+    private static final String STORED = "stored copy";
+
+    @TempDir
+    private Path folder;
+
+    @Test
+    void shouldReadFileFromWorkspace() throws IOException {
+        Path workspace = createWorkspace();
+
+        WorkspaceSourceCodeFile file = new WorkspaceSourceCodeFile(new FilePath(workspace.toFile()),
+                "src/Main.java", StandardCharsets.UTF_8, Collections.emptySet(), null);
+
+        assertThat(read(file)).isEqualTo(JAVA);
+        assertThat(file.getCharset()).isEqualTo(StandardCharsets.UTF_8);
+
+        Files.delete(workspace.resolve("src/Main.java"));
+        assertThat(read(file)).as("content is reused for a short time").isEqualTo(JAVA);
+    }
+
+    @Test
+    void shouldReadAbsolutePathInPermittedDirectory() throws IOException {
+        Path workspace = createWorkspace();
+        Path permitted = Files.createDirectories(folder.resolve("permitted"));
+        Path file = Files.write(permitted.resolve("Other.java"), JAVA.getBytes(StandardCharsets.UTF_8));
+        String absolutePath = new PathUtil().getAbsolutePath(file);
+
+        assertThatIOException().isThrownBy(() -> read(new WorkspaceSourceCodeFile(new FilePath(workspace.toFile()),
+                absolutePath, StandardCharsets.UTF_8, Collections.emptySet(), null)))
+                .withMessageContaining("is not part of the workspace");
+        assertThat(read(new WorkspaceSourceCodeFile(new FilePath(workspace.toFile()), absolutePath,
+                StandardCharsets.UTF_8, Collections.singleton(new PathUtil().getAbsolutePath(permitted)), null)))
+                .isEqualTo(JAVA);
+    }
+
+    @Test
+    void shouldRejectFilesOutsideOfWorkspace() throws IOException {
+        Path workspace = createWorkspace();
+        Files.write(folder.resolve("secret.txt"), "secret".getBytes(StandardCharsets.UTF_8));
+
+        WorkspaceSourceCodeFile file = new WorkspaceSourceCodeFile(new FilePath(workspace.toFile()),
+                "../secret.txt", StandardCharsets.UTF_8, Collections.emptySet(), null);
+
+        assertThatIOException().isThrownBy(() -> read(file)).withMessageContaining("../secret.txt");
+    }
+
+    @Test
+    void shouldRejectSymbolicLinksToFilesOutsideOfWorkspace() throws IOException {
+        assumeThat(isWindows()).isFalse();
+
+        Path workspace = createWorkspace();
+        Path secret = Files.write(folder.resolve("secret.txt"), "secret".getBytes(StandardCharsets.UTF_8));
+        Path link = Files.createSymbolicLink(workspace.resolve("link.txt"), secret);
+
+        WorkspaceSourceCodeFile file = new WorkspaceSourceCodeFile(new FilePath(workspace.toFile()),
+                "link.txt", StandardCharsets.UTF_8, Collections.emptySet(), null);
+
+        assertThatIOException().isThrownBy(() -> read(file)).withMessageContaining("Can't read");
+        assertThatIOException().isThrownBy(() -> new ReadFile(link.toString(), Collections.emptySet())
+                .invoke(workspace.toFile(), null)).withMessageContaining("real path");
+        assertThat(new ReadFile(link.toString(), Collections.singleton(folder.toString()))
+                .invoke(workspace.toFile(), null)).isEqualTo("secret".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shouldPreferStoredCopy() throws IOException {
+        Path workspace = createWorkspace();
+        Path stored = Files.write(folder.resolve("stored.java"), STORED.getBytes(StandardCharsets.UTF_8));
+        SourceCodeFile storedCopy = new SourceCodeFile(stored, StandardCharsets.UTF_8);
+
+        assertThat(read(new WorkspaceSourceCodeFile(new FilePath(workspace.toFile()), "src/Main.java",
+                StandardCharsets.UTF_8, Collections.emptySet(), storedCopy))).isEqualTo(STORED);
+        assertThat(read(new WorkspaceSourceCodeFile(new FilePath(workspace.toFile()), "missing.java",
+                StandardCharsets.UTF_8, Collections.emptySet(), storedCopy))).isEqualTo(STORED);
+    }
+
+    @Test
+    void shouldReadFromAgentIfStoredCopyIsMissing() throws IOException {
+        Path workspace = createWorkspace();
+        SourceCodeFile missingCopy = new SourceCodeFile(folder.resolve("missing-copy.java"), StandardCharsets.UTF_8);
+
+        assertThat(read(new WorkspaceSourceCodeFile(new FilePath(workspace.toFile()), "src/Main.java",
+                StandardCharsets.UTF_8, Collections.emptySet(), missingCopy))).isEqualTo(JAVA);
+        assertThatIOException().isThrownBy(() -> read(new WorkspaceSourceCodeFile(new FilePath(workspace.toFile()),
+                "missing.java", StandardCharsets.UTF_8, Collections.emptySet(), missingCopy)))
+                .withMessageContaining("Can't read")
+                .satisfies(exception -> assertThat(exception.getSuppressed()).hasSize(1));
+    }
+
+    @Test
+    void shouldCancelReadingAfterTimeout() throws IOException {
+        Path workspace = createWorkspace();
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        WorkspaceSourceCodeFile file = new WorkspaceSourceCodeFile(new FilePath(workspace.toFile()),
+                "src/Main.java", StandardCharsets.UTF_8, Collections.emptySet(), null, 10,
+                WorkspaceSourceCodeFile.CONTENT_LIFETIME_MILLIS) {
+            @Override
+            Future<byte[]> readFromAgent(final String absolutePath) {
+                return future;
+            }
+        };
+
+        assertThatIOException().isThrownBy(() -> read(file))
+                .withMessageContaining("took longer than 10 ms")
+                .withCauseInstanceOf(TimeoutException.class);
+        assertThat(future).isCancelled();
+    }
+
+    @Test
+    void shouldReuseContentOnlyWithinLifetime() throws IOException {
+        Path workspace = createWorkspace();
+        AtomicInteger reads = new AtomicInteger();
+
+        WorkspaceSourceCodeFile reused = createCountingFile(workspace, reads,
+                WorkspaceSourceCodeFile.CONTENT_LIFETIME_MILLIS);
+        assertThat(read(reused)).isEqualTo(JAVA);
+        assertThat(read(reused)).isEqualTo(JAVA);
+        assertThat(reads).hasValue(1);
+
+        WorkspaceSourceCodeFile expired = createCountingFile(workspace, reads, 0);
+        assertThat(read(expired)).isEqualTo(JAVA);
+        assertThat(read(expired)).isEqualTo(JAVA);
+        assertThat(reads).hasValue(3);
+    }
+
+    private WorkspaceSourceCodeFile createCountingFile(final Path workspace, final AtomicInteger reads,
+            final long contentLifetimeMillis) {
+        return new WorkspaceSourceCodeFile(new FilePath(workspace.toFile()), "src/Main.java", StandardCharsets.UTF_8,
+                Collections.emptySet(), null, TimeUnit.SECONDS.toMillis(10), contentLifetimeMillis) {
+            @Override
+            Future<byte[]> readFromAgent(final String absolutePath) {
+                reads.incrementAndGet();
+                return CompletableFuture.completedFuture(JAVA.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+    }
+
+    @Test
+    void shouldRejectLargeFiles() throws IOException {
+        Path workspace = createWorkspace();
+        Files.write(workspace.resolve("large.txt"), new byte[(int) WorkspaceSourceCodeFile.MAXIMUM_SIZE + 1]);
+
+        assertThatIOException().isThrownBy(() -> read(new WorkspaceSourceCodeFile(new FilePath(workspace.toFile()),
+                "large.txt", StandardCharsets.UTF_8, Collections.emptySet(), null)))
+                .withMessageContaining("Can't read");
+    }
+
+    private String read(final WorkspaceSourceCodeFile file) throws IOException {
+        try (Reader reader = file.create()) {
+            return IOUtils.toString(reader);
+        }
+    }
+
+    private Path createWorkspace() throws IOException {
+        Path workspace = Files.createDirectories(folder.resolve("workspace"));
+        Files.write(Files.createDirectories(workspace.resolve("src")).resolve("Main.java"),
+                JAVA.getBytes(StandardCharsets.UTF_8));
+        return workspace;
+    }
+}